@@ -4,6 +4,7 @@ import com.spaniard.jms.client.core.JmsMessageHandler;
 import com.spaniard.jms.client.core.JmsMessageReceiver;
 import com.spaniard.jms.client.core.JmsMessageSender;
 import com.spaniard.jms.client.core.JmsModelMapping;
+import com.spaniard.jms.client.core.JmsSendProfile;
 import com.spaniard.jms.client.listener.JmsMessageListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,7 +31,8 @@ import java.util.*;
 /**
  * Handler for {@link JmsMessageSender} and {@link JmsMessageListener} beans.
  * 1. Generates mapping (Model class -> JMS Queue) in {@link JmsMessageSender} bean using {@link JmsModelMapping} annotation.
- * 2. Generates mapping {@link JmsMessageListener} bean using JmsMessageHandler type
+ * 2. Precompiles send profiles (Model class -> {@link JmsSendProfile}) in {@link JmsMessageSender} bean using {@link JmsModelMapping} annotation.
+ * 3. Generates mapping {@link JmsMessageListener} bean using JmsMessageHandler type
  */
 public class JmsModelMappingBeanPostProcessor implements BeanPostProcessor, PriorityOrdered, ApplicationContextAware {
 
@@ -103,6 +105,8 @@ public class JmsModelMappingBeanPostProcessor implements BeanPostProcessor, Prio
                     }
                 }
             }
+            log.info("Start processing {} for filling send profiles", beanName);
+            fillSendProfiles(beanName, (JmsMessageSender) bean);
             log.info("Start processing {} for filling modelClasses (DTO objects)", beanName);
             fillModelClasses(beanClass, bean);
             log.info("End processing {}", beanName);
@@ -141,6 +145,19 @@ public class JmsModelMappingBeanPostProcessor implements BeanPostProcessor, Prio
         return bean;
     }
 
+    // precompiles send profiles of annotated DTO classes, profiles which are set explicitly are kept
+    private void fillSendProfiles(String beanName, JmsMessageSender bean) {
+        Map<Class<?>, JmsSendProfile> sendProfiles = new HashMap<>(bean.getSendProfiles());
+        for (Class<?> dtoClass : annotatedDtoClasses.values()) {
+            JmsSendProfile sendProfile = JmsSendProfile.of(dtoClass.getAnnotation(JMS_MODEL_ANNOTATION_CLASS));
+            if (!sendProfile.isDefault() && !sendProfiles.containsKey(dtoClass)) {
+                log.info("Add new send profile ({}, {}) for {} bean", dtoClass.getName(), sendProfile, beanName);
+                sendProfiles.put(dtoClass, sendProfile);
+            }
+        }
+        bean.setSendProfiles(sendProfiles);
+    }
+
     // fills `modelClasses` field in JmsMessageSender, JmsMessageListener, JmsMessageReceiver beans
     private void fillModelClasses(Class<?> beanClass, Object bean) {
         Field modelClassesField = ReflectionUtils.findField(beanClass, MODEL_CLASSES_FIELD_NAME);
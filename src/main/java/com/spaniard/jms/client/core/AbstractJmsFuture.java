@@ -0,0 +1,113 @@
+package com.spaniard.jms.client.core;
+
+import com.spaniard.jms.client.core.support.JmsMessagePayload;
+import com.spaniard.jms.client.core.support.compression.JmsPayloadCompressor;
+import com.spaniard.jms.client.core.support.unmarshalling.Unmarshaller;
+import com.spaniard.jms.client.exception.JmsException;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Base {@link JmsFuture} backed by {@link CompletableFuture}. State transitions are lock-free, waiting threads are
+ * parked by the CompletableFuture itself. If callback executor is set, the future is completed on that executor,
+ * so non-async dependent stages (thenApply, whenComplete, ...) run there instead of the jms dispatcher thread.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public abstract class AbstractJmsFuture<T> implements JmsFuture<T> {
+
+    private final CompletableFuture<T> response = new CompletableFuture<>();
+    // read-only view, so that callers could not complete the future
+    private final CompletionStage<T> stage = response.thenApply(Function.identity());
+
+    private final Class<T> responseClass;
+    private final Strategy strategy;
+    private final Unmarshaller unmarshaller;
+    private final Executor callbackExecutor;
+    // inflates compressed replies, could be null
+    private final JmsPayloadCompressor payloadCompressor;
+
+    protected AbstractJmsFuture(Class<T> responseClass, Strategy strategy, Unmarshaller unmarshaller, Executor callbackExecutor) {
+        this(responseClass, strategy, unmarshaller, callbackExecutor, null);
+    }
+
+    protected AbstractJmsFuture(Class<T> responseClass, Strategy strategy, Unmarshaller unmarshaller,
+                                Executor callbackExecutor, JmsPayloadCompressor payloadCompressor) {
+        this.responseClass = responseClass;
+        this.strategy = strategy;
+        this.unmarshaller = unmarshaller;
+        this.callbackExecutor = callbackExecutor;
+        this.payloadCompressor = payloadCompressor;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return response.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return response.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+        return response.isDone();
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        return response.get();
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        return response.get(timeout, unit);
+    }
+
+    @Override
+    public CompletionStage<T> toCompletionStage() {
+        return stage;
+    }
+
+    @Override
+    public void onMessage(Message message) {
+        try {
+            final Object modelObject = JmsMessagePayload.unmarshall(unmarshaller, strategy, message, payloadCompressor);
+            complete(responseClass.cast(modelObject));
+        } catch (JmsException | JMSException | RuntimeException e) {
+            completeExceptionally(e);
+        }
+    }
+
+    protected void complete(final T value) {
+        completeOnExecutor(() -> response.complete(value));
+    }
+
+    protected void completeExceptionally(final Throwable cause) {
+        completeOnExecutor(() -> response.completeExceptionally(cause));
+    }
+
+    private void completeOnExecutor(final Runnable completion) {
+        if (callbackExecutor == null) {
+            completion.run();
+            return;
+        }
+        try {
+            callbackExecutor.execute(completion);
+        } catch (RejectedExecutionException e) {
+            // never lose the reply, complete on the current thread
+            completion.run();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.spaniard.jms.client.core;
+
+/**
+ * Result of a single transacted batch sent by `JmsMessageSender.sendAll(...)`.
+ * Batch covers elements [firstIndex, firstIndex + size) of the given collection.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public final class JmsBatchResult {
+
+    private final int firstIndex;
+    private final int size;
+    private final Throwable cause;
+
+    private JmsBatchResult(int firstIndex, int size, Throwable cause) {
+        this.firstIndex = firstIndex;
+        this.size = size;
+        this.cause = cause;
+    }
+
+    static JmsBatchResult committed(int firstIndex, int size) {
+        return new JmsBatchResult(firstIndex, size, null);
+    }
+
+    static JmsBatchResult rolledBack(int firstIndex, int size, Throwable cause) {
+        return new JmsBatchResult(firstIndex, size, cause);
+    }
+
+    public int getFirstIndex() {
+        return firstIndex;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public boolean isCommitted() {
+        return cause == null;
+    }
+
+    /**
+     * @return reason of the rollback or null if the batch is committed
+     */
+    public Throwable getCause() {
+        return cause;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("JmsBatchResult[firstIndex=%d, size=%d, committed=%s]", firstIndex, size, isCommitted());
+    }
+}
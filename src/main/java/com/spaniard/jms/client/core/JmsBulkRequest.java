@@ -0,0 +1,298 @@
+package com.spaniard.jms.client.core;
+
+import com.spaniard.jms.client.core.support.ClassName;
+import com.spaniard.jms.client.core.support.JmsMessagePayload;
+import com.spaniard.jms.client.core.support.compression.JmsPayloadCompressor;
+import com.spaniard.jms.client.core.support.unmarshalling.Unmarshaller;
+import com.spaniard.jms.client.exception.JmsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageListener;
+import javax.jms.Session;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Replies of the requests sent back-to-back by `JmsMessageSender.requestAll(...)`. Every request gets its own
+ * correlation id, all replies are received through one reply destination.
+ * <p>
+ * Every request gets exactly one result: the reply, the failure of its send or unmarshalling, or a timeout at
+ * the deadline. Results could be taken as they arrive with {@link #poll()} or {@link #stream()}, or all at once in
+ * the request order with {@link #toCompletionStage()}. Jms resources are released as soon as the last result
+ * arrives, the bulk request should be closed anyway if it is abandoned before the deadline.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public class JmsBulkRequest<T> implements MessageListener, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClassName.getClassName());
+
+    // deadlines of all bulk requests and release of their jms resources
+    private static final ScheduledThreadPoolExecutor TIMER;
+
+    static {
+        TIMER = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "jms-bulk-request-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        TIMER.setRemoveOnCancelPolicy(true);
+    }
+
+    private final List<?> requests;
+    private final List<String> correlationIds;
+    // correlation id -> index of the request, entry is removed by the first result
+    private final Map<String, Integer> pending = new ConcurrentHashMap<>();
+    private final BlockingQueue<JmsBulkResult<T>> arrivals = new LinkedBlockingQueue<>();
+    private final CompletableFuture<List<JmsBulkResult<T>>> completion = new CompletableFuture<>();
+    // read-only view, so that callers could not complete the bulk request
+    private final CompletionStage<List<JmsBulkResult<T>>> stage = completion.thenApply(Function.identity());
+    private final AtomicBoolean released = new AtomicBoolean();
+    // results taken by poll, every request has exactly one result
+    private final AtomicInteger taken = new AtomicInteger();
+
+    private final Class<T> responseClass;
+    private final Strategy strategy;
+    private final Unmarshaller unmarshaller;
+    private final Executor callbackExecutor;
+    private final JmsPayloadCompressor payloadCompressor;
+    private final AutoCloseable resources;
+    private final long timeoutMillis;
+    private final ScheduledFuture<?> deadlineTask;
+
+    // guarded by this, in the request order
+    private final List<JmsBulkResult<T>> results;
+    private int arrived;
+    private boolean done;
+
+    private MessageConsumer messageConsumer;
+
+    JmsBulkRequest(List<?> requests, List<String> correlationIds, long timeoutMillis, Class<T> responseClass,
+                   Strategy strategy, Unmarshaller unmarshaller, Executor callbackExecutor,
+                   JmsPayloadCompressor payloadCompressor, AutoCloseable resources) {
+        this.requests = Collections.unmodifiableList(new ArrayList<>(requests));
+        this.correlationIds = correlationIds;
+        for (int i = 0; i < correlationIds.size(); i++) {
+            pending.put(correlationIds.get(i), i);
+        }
+        this.results = new ArrayList<>(Collections.nCopies(requests.size(), null));
+        this.responseClass = responseClass;
+        this.strategy = strategy;
+        this.unmarshaller = unmarshaller;
+        this.callbackExecutor = callbackExecutor;
+        this.payloadCompressor = payloadCompressor;
+        this.resources = resources;
+        this.timeoutMillis = timeoutMillis;
+        this.deadlineTask = TIMER.schedule(() -> expire(new TimeoutException(
+                String.format("No reply is received in %d ms", timeoutMillis))), timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // replies are consumed by the bulk request itself from the temp-queue of the requests
+    void consume(final Session session, final Destination replyTo) throws JMSException {
+        messageConsumer = session.createConsumer(replyTo);
+        messageConsumer.setMessageListener(this);
+    }
+
+    public List<?> getRequests() {
+        return requests;
+    }
+
+    /**
+     * @return number of requests which have no result yet
+     */
+    public int getPending() {
+        return pending.size();
+    }
+
+    /**
+     * Takes the next result in the arrival order, waits if there is none. Requests without a reply arrive as
+     * timed out at the deadline.
+     *
+     * @return next result or null if all results are taken
+     * @throws InterruptedException
+     */
+    public JmsBulkResult<T> poll() throws InterruptedException {
+        while (true) {
+            final JmsBulkResult<T> result = arrivals.poll();
+            if (result != null) return take(result);
+            // completion could be run later by the callback executor, do not wait for it
+            if (taken.get() >= requests.size()) return null;
+            final JmsBulkResult<T> next = arrivals.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+            if (next != null) return take(next);
+        }
+    }
+
+    /**
+     * Blocking stream of results in the arrival order, see {@link #poll()}. Results taken by `poll()` are not
+     * repeated in the stream.
+     *
+     * @return stream which ends when every request has its result
+     */
+    public Stream<JmsBulkResult<T>> stream() {
+        return StreamSupport.stream(new Spliterators.AbstractSpliterator<JmsBulkResult<T>>(requests.size(),
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super JmsBulkResult<T>> action) {
+                final JmsBulkResult<T> result;
+                try {
+                    result = poll();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                if (result == null) return false;
+                action.accept(result);
+                return true;
+            }
+        }, false);
+    }
+
+    /**
+     * @return results in the request order, completed when every request has its result (at the deadline at the
+     * latest). Dependent stages run on the callback executor if it is set.
+     */
+    public CompletionStage<List<JmsBulkResult<T>>> toCompletionStage() {
+        return stage;
+    }
+
+    public boolean isDone() {
+        return completion.isDone();
+    }
+
+    @Override
+    public void onMessage(Message message) {
+        final String correlationId;
+        try {
+            correlationId = message.getJMSCorrelationID();
+        } catch (JMSException e) {
+            logger.error("Could not read correlation id of the reply", e);
+            return;
+        }
+        final Integer index = correlationId == null ? null : pending.remove(correlationId);
+        if (index == null) {
+            logger.debug("No pending request found for correlation id [{}], reply is dropped", correlationId);
+            return;
+        }
+        try {
+            final Object modelObject = JmsMessagePayload.unmarshall(unmarshaller, strategy, message, payloadCompressor);
+            arrive(JmsBulkResult.replied(index, requests.get(index), responseClass.cast(modelObject)));
+        } catch (JmsException | JMSException | RuntimeException e) {
+            arrive(JmsBulkResult.failed(index, requests.get(index), e));
+        }
+    }
+
+    // is called when the request could not be sent or the reply is received through the shared reply channel
+    void onReply(final String correlationId, final T reply, final Throwable cause) {
+        final Integer index = pending.remove(correlationId);
+        if (index == null) return;
+        arrive(cause == null
+                ? JmsBulkResult.replied(index, requests.get(index), reply)
+                : JmsBulkResult.failed(index, requests.get(index), cause));
+    }
+
+    /**
+     * Completes the bulk request, requests without a reply fail, and releases jms resources.
+     */
+    @Override
+    public void close() {
+        expire(new JmsException("Bulk request is closed before the reply is received"));
+        release();
+    }
+
+    private JmsBulkResult<T> take(final JmsBulkResult<T> result) {
+        taken.incrementAndGet();
+        return result;
+    }
+
+    private void arrive(final JmsBulkResult<T> result) {
+        final List<JmsBulkResult<T>> snapshot;
+        synchronized (this) {
+            if (done) return;
+            results.set(result.getIndex(), result);
+            arrivals.offer(result);
+            if (++arrived < results.size()) return;
+            done = true;
+            snapshot = new ArrayList<>(results);
+        }
+        finish(snapshot);
+    }
+
+    // every request without a result fails with the same cause
+    private void expire(final Throwable cause) {
+        int expired = 0;
+        for (String correlationId : correlationIds) {
+            final Integer index = pending.remove(correlationId);
+            if (index != null) {
+                expired++;
+                arrive(JmsBulkResult.failed(index, requests.get(index), cause));
+            }
+        }
+        if (expired > 0) {
+            logger.debug("Bulk request is completed, {} of {} requests have no reply", expired, requests.size());
+        }
+    }
+
+    private void finish(final List<JmsBulkResult<T>> snapshot) {
+        deadlineTask.cancel(false);
+        try {
+            // reply consumer could not be closed by its own dispatcher thread
+            TIMER.execute(this::release);
+        } catch (RejectedExecutionException e) {
+            release();
+        }
+        final Runnable completeBulk = () -> completion.complete(Collections.unmodifiableList(snapshot));
+        if (callbackExecutor == null) {
+            completeBulk.run();
+            return;
+        }
+        try {
+            callbackExecutor.execute(completeBulk);
+        } catch (RejectedExecutionException e) {
+            // never lose the replies, complete on the current thread
+            completeBulk.run();
+        }
+    }
+
+    private void release() {
+        if (!released.compareAndSet(false, true)) return;
+        if (messageConsumer != null) {
+            try {
+                messageConsumer.close();
+            } catch (JMSException e) {
+                logger.error(e.getMessage(), e);
+            }
+        }
+        try {
+            resources.close();
+        } catch (Exception e) {
+            logger.error("Could not release bulk request resources", e);
+        }
+    }
+}
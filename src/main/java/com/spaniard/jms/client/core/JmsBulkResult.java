@@ -0,0 +1,73 @@
+package com.spaniard.jms.client.core;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Reply of a single request of `JmsMessageSender.requestAll(...)`.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public final class JmsBulkResult<T> {
+
+    private final int index;
+    private final Object request;
+    private final T reply;
+    private final Throwable cause;
+
+    private JmsBulkResult(int index, Object request, T reply, Throwable cause) {
+        this.index = index;
+        this.request = request;
+        this.reply = reply;
+        this.cause = cause;
+    }
+
+    static <T> JmsBulkResult<T> replied(int index, Object request, T reply) {
+        return new JmsBulkResult<>(index, request, reply, null);
+    }
+
+    static <T> JmsBulkResult<T> failed(int index, Object request, Throwable cause) {
+        return new JmsBulkResult<>(index, request, null, cause);
+    }
+
+    /**
+     * @return index of the request in the given list
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public Object getRequest() {
+        return request;
+    }
+
+    /**
+     * @return unmarshalled reply or null if the reply could not be received
+     */
+    public T getReply() {
+        return reply;
+    }
+
+    public boolean isReplied() {
+        return cause == null;
+    }
+
+    /**
+     * @return true if there was no reply until the deadline
+     */
+    public boolean isTimedOut() {
+        return cause instanceof TimeoutException;
+    }
+
+    /**
+     * @return reason of the failure (sending, unmarshalling, timeout) or null if the reply is received
+     */
+    public Throwable getCause() {
+        return cause;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("JmsBulkResult[index=%d, replied=%s]", index, isReplied());
+    }
+}
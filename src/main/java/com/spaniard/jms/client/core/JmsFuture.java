@@ -1,13 +1,33 @@
 package com.spaniard.jms.client.core;
 
 import javax.jms.MessageListener;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
+ * Future of the reply. `get(timeout, unit)` throws TimeoutException if no reply is received in time.
+ * Reply could be processed without blocking a thread using {@link #toCompletionStage()}.
+ * Future should be closed in either case.
+ *
  * @author Alexander Nesterov
  * @version 1.0
  */
 public interface JmsFuture<T> extends Future<T>, MessageListener, AutoCloseable {
 
+    /**
+     * @return completion stage of the reply. Dependent stages run on the callback executor if it is set.
+     */
+    CompletionStage<T> toCompletionStage();
+
+    default <U> CompletionStage<U> thenApply(Function<? super T, ? extends U> fn) {
+        return toCompletionStage().thenApply(fn);
+    }
+
+    default CompletionStage<T> whenComplete(BiConsumer<? super T, ? super Throwable> action) {
+        return toCompletionStage().whenComplete(action);
+    }
+
     void close();
 }
@@ -1,140 +1,50 @@
 package com.spaniard.jms.client.core;
 
+import com.spaniard.jms.client.core.support.compression.JmsPayloadCompressor;
+import com.spaniard.jms.client.core.support.unmarshalling.Unmarshaller;
 import com.spaniard.jms.client.exception.JmsException;
 import com.spaniard.jms.client.core.support.ClassName;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.jms.*;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 
 /**
+ * Future which consumes the reply from its own reply destination.
+ *
  * @author Alexander Nesterov
  * @version 1.0
  */
 
-public class JmsFutureImpl<T> implements JmsFuture<T> {
+public class JmsFutureImpl<T> extends AbstractJmsFuture<T> {
 
     private static final Logger logger = LoggerFactory.getLogger(ClassName.getClassName());
 
-    private enum State {
-        WAITING, CANCELLED, DONE, ERROR
-    }
-
     private final MessageConsumer messageConsumer;
-    private final Connection connection;
-    private final Session session;
-
-    private final Lock lock = new ReentrantLock();
-    private final Condition condition = lock.newCondition();
-
-    private volatile State state;
-    private volatile T response;
-
-    private final Class<T> responseClass;
-    private final Function<String, Object> unmarshaller;
+    // session and connection owner (either plain jms resources or pooled session)
+    private final JmsMessageSender.JmsMessageSenderAutoClosable resources;
 
     public JmsFutureImpl(Connection connection, Session session, Destination replyTempQueue,
                          Class<T> responseClass, Function<String, Object> unmarshaller) throws JmsException {
-        this.connection = connection;
-        this.session = session;
+        this(session, replyTempQueue, responseClass, null, (strategy, message) -> unmarshaller.apply(message), null, null, () -> {
+            closeSession(session);
+            closeConnection(connection);
+        });
+    }
+
+    JmsFutureImpl(Session session, Destination replyTempQueue, Class<T> responseClass, Strategy strategy,
+                  Unmarshaller unmarshaller, Executor callbackExecutor, JmsPayloadCompressor payloadCompressor,
+                  JmsMessageSender.JmsMessageSenderAutoClosable resources) throws JmsException {
+        super(responseClass, strategy, unmarshaller, callbackExecutor, payloadCompressor);
+        this.resources = resources;
         try {
             this.messageConsumer = session.createConsumer(replyTempQueue);
             this.messageConsumer.setMessageListener(this);
-            state = State.WAITING;
         } catch (JMSException e) {
             throw new JmsException(e.getMessage(), e);
         }
-        this.responseClass = responseClass;
-        this.unmarshaller = unmarshaller;
-    }
-
-    @Override
-    public boolean cancel(boolean mayInterruptIfRunning) {
-        if (mayInterruptIfRunning && state == State.WAITING) {
-            state = State.CANCELLED;
-            // notify
-            awaken();
-            return true;
-        }
-        return false;
-    }
-
-    @Override
-    public boolean isCancelled() {
-        return state == State.CANCELLED;
-    }
-
-    @Override
-    public boolean isDone() {
-        return state == State.DONE;
-    }
-
-    @Override
-    public T get() throws InterruptedException, ExecutionException {
-        lock.lock();
-        try {
-            while (response == null && state != State.CANCELLED && state != State.ERROR) {
-                condition.await();
-            }
-            state = State.DONE;
-            return response;
-        } finally {
-            lock.unlock();
-        }
-    }
-
-    @Override
-    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-        long nanos = unit.toNanos(timeout);
-        lock.lock();
-        try {
-            while (response == null && state != State.CANCELLED && state != State.ERROR) {
-                if (nanos <= 0L)
-                    break;
-                nanos = condition.awaitNanos(nanos);
-            }
-            state = State.DONE;
-            return response;
-        } finally {
-            lock.unlock();
-        }
-    }
-
-    @Override
-    public void onMessage(Message message) {
-        if (message instanceof TextMessage) {
-            TextMessage textMessage = (TextMessage) message;
-            try {
-                final Object modelObject = unmarshaller.apply(textMessage.getText());
-                response = castToClassResponse(modelObject, responseClass);
-            } catch (Exception e) {
-                state = State.ERROR;
-                logger.error(e.getMessage(), e);
-            } finally {
-                // notify
-                awaken();
-            }
-        }
-    }
-
-    private T castToClassResponse(final Object modelObject, Class<T> classResponse) {
-        return classResponse.cast(modelObject);
-    }
-
-    private void awaken() {
-        lock.lock();
-        try {
-            condition.signal();
-        } finally {
-            lock.unlock();
-        }
     }
 
     @Override
@@ -146,6 +56,10 @@ public class JmsFutureImpl<T> implements JmsFuture<T> {
         } catch (JMSException e) {
             logger.error(e.getMessage(), e);
         }
+        resources.close();
+    }
+
+    private static void closeSession(final Session session) {
         try {
             if (session != null) {
                 session.close();
@@ -153,6 +67,9 @@ public class JmsFutureImpl<T> implements JmsFuture<T> {
         } catch (JMSException e) {
             logger.error(e.getMessage(), e);
         }
+    }
+
+    private static void closeConnection(final Connection connection) {
         try {
             if (connection != null) {
                 connection.close();
@@ -0,0 +1,60 @@
+package com.spaniard.jms.client.core;
+
+import javax.jms.Destination;
+
+/**
+ * Reply of a single destination of `JmsMessageSender.scatterGather(...)`.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public final class JmsGatherResult<T> {
+
+    private final Destination destination;
+    private final T reply;
+    private final Throwable cause;
+
+    private JmsGatherResult(Destination destination, T reply, Throwable cause) {
+        this.destination = destination;
+        this.reply = reply;
+        this.cause = cause;
+    }
+
+    static <T> JmsGatherResult<T> replied(Destination destination, T reply) {
+        return new JmsGatherResult<>(destination, reply, null);
+    }
+
+    static <T> JmsGatherResult<T> failed(Destination destination, Throwable cause) {
+        return new JmsGatherResult<>(destination, null, cause);
+    }
+
+    /**
+     * @return destination the request was sent to
+     */
+    public Destination getDestination() {
+        return destination;
+    }
+
+    /**
+     * @return unmarshalled reply or null if the reply could not be received
+     */
+    public T getReply() {
+        return reply;
+    }
+
+    public boolean isReplied() {
+        return cause == null;
+    }
+
+    /**
+     * @return reason of the failure (unmarshalling, broken reply channel) or null if the reply is received
+     */
+    public Throwable getCause() {
+        return cause;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("JmsGatherResult[destination=%s, replied=%s]", destination, isReplied());
+    }
+}
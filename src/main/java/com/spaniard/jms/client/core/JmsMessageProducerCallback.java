@@ -12,7 +12,7 @@ import javax.jms.Session;
 public interface JmsMessageProducerCallback<Response> {
 
     /**
-     *  Session and MessageProducer is closed by JmsMessageSender.
+     *  Session and MessageProducer is closed by JmsMessageSender (or given back to the pool in pooling mode).
      *
      * @param session -- jms session
      * @param messageProducer -- jms message producer
@@ -1,5 +1,11 @@
 package com.spaniard.jms.client.core;
 
+import com.spaniard.jms.client.core.support.JmsMessagePayload;
+import com.spaniard.jms.client.core.support.chunking.JmsChunkAssembler;
+import com.spaniard.jms.client.core.support.chunking.JmsChunkGroup;
+import com.spaniard.jms.client.core.support.claimcheck.JmsClaimCheck;
+import com.spaniard.jms.client.core.support.compression.JmsPayloadCompressor;
+import com.spaniard.jms.client.core.support.delta.JmsDeltaDecoder;
 import com.spaniard.jms.client.core.support.unmarshalling.AbstractUnmarshaller;
 import com.spaniard.jms.client.core.support.unmarshalling.Unmarshaller;
 import com.spaniard.jms.client.exception.JmsException;
@@ -9,14 +15,26 @@ import org.springframework.jms.core.JmsTemplate;
 import javax.jms.*;
 import javax.jms.Queue;
 import java.util.*;
+import java.util.function.Supplier;
 
 public class JmsMessageReceiver {
 
+    // chunk of an incomplete group or delta without its base has been received
+    private static final Object INCOMPLETE = new Object();
+
     private JmsTemplate jmsTemplate;
 
     private String modelPackage;
     // default is XML
     private Strategy strategy = Strategy.XML;
+
+    private JmsPayloadCompressor payloadCompressor;
+
+    private JmsChunkAssembler chunkAssembler;
+
+    private JmsDeltaDecoder deltaDecoder;
+
+    private JmsClaimCheck claimCheck;
     // it is used in BeanPostProcessor, in order to avoid using jaxb ObjectFactory
     private Set<Class> modelClasses;
 
@@ -32,6 +50,45 @@ public class JmsMessageReceiver {
         this.strategy = strategy;
     }
 
+    /**
+     * Compressed messages are inflated with or without the compressor, it is needed for preset dictionary and stats
+     *
+     * @param payloadCompressor -- payload compressor
+     */
+    public void setPayloadCompressor(JmsPayloadCompressor payloadCompressor) {
+        this.payloadCompressor = payloadCompressor;
+    }
+
+    /**
+     * Reassembles chunked payloads, receive methods return complete objects only.
+     * Browsing reassembles groups which are entirely in the queue, using a copy of the assembler.
+     *
+     * @param chunkAssembler -- chunk assembler
+     */
+    public void setChunkAssembler(JmsChunkAssembler chunkAssembler) {
+        this.chunkAssembler = chunkAssembler;
+    }
+
+    /**
+     * Rebuilds model objects sent in delta mode, deltas without their base are skipped.
+     * Browsing rebuilds deltas which base is in the queue, using a copy of the decoder.
+     *
+     * @param deltaDecoder -- delta decoder
+     */
+    public void setDeltaDecoder(JmsDeltaDecoder deltaDecoder) {
+        this.deltaDecoder = deltaDecoder;
+    }
+
+    /**
+     * Resolves payloads sent by reference. Received payloads are released (see `deleteOnConsume`),
+     * browsed payloads are not.
+     *
+     * @param claimCheck -- claim check with the blob store shared with senders
+     */
+    public void setClaimCheck(JmsClaimCheck claimCheck) {
+        this.claimCheck = claimCheck;
+    }
+
     /**
      * Receive unmarshalled object from given destination. Unmarshalling is done using specified strategy.
      * By default XML.
@@ -41,15 +98,11 @@ public class JmsMessageReceiver {
      * @throws JmsException
      */
     public Object receive(final Destination destination) throws JmsException {
-        final Message message = jmsTemplate.receive(destination);
-        // no more messages
-        if (message == null) return null;
-        if (message instanceof TextMessage) return unmarshallMessage((TextMessage) message, strategy);
-        throw new JmsException(String.format("Received message [%s] is not of type TextMessage", message.getClass().getName()));
+        return receiveModelObject(() -> jmsTemplate.receive(destination), strategy);
     }
 
     /**
-     * Receive text message from given destination. Message text is casted to responseClass type using strategy.
+     * Receive text or bytes message from given destination. Message text is casted to responseClass type using strategy.
      *
      * @param destination   -- jms destination (topic, queue)
      * @param strategy      -- strategy (xml, json, string)
@@ -58,11 +111,7 @@ public class JmsMessageReceiver {
      * @throws JmsException
      */
     public <T> T receive(final Destination destination, final Strategy strategy, final Class<T> responseClass) throws JmsException {
-        final Message message = jmsTemplate.receive(destination);
-        // no more messages
-        if (message == null) return null;
-        if (message instanceof TextMessage) return unmarshallMessage((TextMessage) message, strategy, responseClass);
-        throw new JmsException(String.format("Received message [%s] is not of type TextMessage", message.getClass().getName()));
+        return responseClass.cast(receiveModelObject(() -> jmsTemplate.receive(destination), strategy));
     }
 
     /**
@@ -76,15 +125,11 @@ public class JmsMessageReceiver {
      * @throws JmsException
      */
     public <T> T receiveSelected(final Destination destination, final String selector, final Strategy strategy, final Class<T> responseClass) throws JmsException {
-        final Message message = jmsTemplate.receiveSelected(destination, selector);
-        // no more messages
-        if (message == null) return null;
-        if (message instanceof TextMessage) return unmarshallMessage((TextMessage) message, strategy, responseClass);
-        throw new JmsException(String.format("Received message [%s] is not of type TextMessage", message.getClass().getName()));
+        return responseClass.cast(receiveModelObject(() -> jmsTemplate.receiveSelected(destination, selector), strategy));
     }
 
     /**
-     * Receive text message from given destination. Message text is casted to responseClass type using specified strategy.
+     * Receive text or bytes message from given destination. Message text is casted to responseClass type using specified strategy.
      * By default XML.
      *
      * @param destination   -- jms destination (topic, queue)
@@ -93,11 +138,7 @@ public class JmsMessageReceiver {
      * @throws JmsException
      */
     public <T> T receive(final Destination destination, final Class<T> responseClass) throws JmsException {
-        final Message message = jmsTemplate.receive(destination);
-        // no more messages
-        if (message == null) return null;
-        if (message instanceof TextMessage) return unmarshallMessage((TextMessage) message, strategy, responseClass);
-        throw new JmsException(String.format("Received message [%s] is not of type TextMessage", message.getClass().getName()));
+        return responseClass.cast(receiveModelObject(() -> jmsTemplate.receive(destination), strategy));
     }
 
     /**
@@ -110,11 +151,7 @@ public class JmsMessageReceiver {
      * @throws JmsException
      */
     public <T> T receiveSelected(final Destination destination, final String selector, final Class<T> responseClass) throws JmsException {
-        final Message message = jmsTemplate.receiveSelected(destination, selector);
-        // no more messages
-        if (message == null) return null;
-        if (message instanceof TextMessage) return unmarshallMessage((TextMessage) message, strategy, responseClass);
-        throw new JmsException(String.format("Received message [%s] is not of type TextMessage", message.getClass().getName()));
+        return responseClass.cast(receiveModelObject(() -> jmsTemplate.receiveSelected(destination, selector), strategy));
     }
 
     /**
@@ -137,12 +174,16 @@ public class JmsMessageReceiver {
         return jmsTemplate.execute(session -> {
             MessageConsumer messageConsumer = session.createConsumer(destination, selector);
             List<T> batch = new ArrayList<>(batchSize);
-            int count = 0;
             Message message;
-            while (count++ < batchSize && (message = messageConsumer.receive(jmsTemplate.getReceiveTimeout())) != null) {
-                if (!(message instanceof TextMessage)) return null;
+            // chunks of incomplete groups are not counted
+            while (batch.size() < batchSize && (message = messageConsumer.receive(jmsTemplate.getReceiveTimeout())) != null) {
+                if (!JmsMessagePayload.isSupported(message)) return null;
                 try {
-                    batch.add(unmarshallMessage((TextMessage) message, strategy, responseClass));
+                    final Object modelObject = getModelObject(message, strategy, chunkAssembler, deltaDecoder);
+                    if (modelObject != INCOMPLETE) {
+                        batch.add(responseClass.cast(modelObject));
+                    }
+                    releaseClaimCheck(message);
                 } catch (JmsException e) {
                     throw new JMSException(e.getMessage());
                 }
@@ -165,12 +206,18 @@ public class JmsMessageReceiver {
             @Override
             public List<T> doInJms(Session session, QueueBrowser browser) throws JMSException {
                 final List<T> resultList = new ArrayList<>();
+                // browsing does not consume chunks, so groups are reassembled apart from the receivers
+                final JmsChunkAssembler browseAssembler = chunkAssembler != null ? chunkAssembler.copy() : null;
+                final JmsDeltaDecoder browseDecoder = deltaDecoder != null ? deltaDecoder.copy() : null;
                 final Enumeration messages = browser.getEnumeration();
                 while (messages.hasMoreElements()) {
                     final Message message = (Message) messages.nextElement();
-                    if (message != null && message instanceof TextMessage) {
+                    if (JmsMessagePayload.isSupported(message)) {
                         try {
-                            resultList.add(unmarshallMessage((TextMessage) message, strategy, responseClass));
+                            final Object modelObject = getModelObject(message, strategy, browseAssembler, browseDecoder);
+                            if (modelObject != INCOMPLETE) {
+                                resultList.add(responseClass.cast(modelObject));
+                            }
                         } catch (JmsException e) {
                             throw new JMSException(e.getMessage());
                         }
@@ -196,12 +243,18 @@ public class JmsMessageReceiver {
             @Override
             public List<T> doInJms(Session session, QueueBrowser browser) throws JMSException {
                 final List<T> resultList = new ArrayList<>();
+                // browsing does not consume chunks, so groups are reassembled apart from the receivers
+                final JmsChunkAssembler browseAssembler = chunkAssembler != null ? chunkAssembler.copy() : null;
+                final JmsDeltaDecoder browseDecoder = deltaDecoder != null ? deltaDecoder.copy() : null;
                 final Enumeration messages = browser.getEnumeration();
                 while (messages.hasMoreElements()) {
                     final Message message = (Message) messages.nextElement();
-                    if (message != null && message instanceof TextMessage) {
+                    if (JmsMessagePayload.isSupported(message)) {
                         try {
-                            resultList.add(unmarshallMessage((TextMessage) message, strategy, responseClass));
+                            final Object modelObject = getModelObject(message, strategy, browseAssembler, browseDecoder);
+                            if (modelObject != INCOMPLETE) {
+                                resultList.add(responseClass.cast(modelObject));
+                            }
                         } catch (JmsException e) {
                             throw new JMSException(e.getMessage());
                         }
@@ -259,25 +312,55 @@ public class JmsMessageReceiver {
         return selectorStr;
     }
 
-    private <T> T unmarshallMessage(final TextMessage textMessage, final Strategy strategy, final Class<T> responseClass) throws JmsException {
-        final Object modelObject = getModelObject(textMessage, strategy);
-        return responseClass.cast(modelObject);
-    }
-
-    private Object unmarshallMessage(final TextMessage textMessage, final Strategy strategy) throws JmsException {
-        return getModelObject(textMessage, strategy);
+    // receives until a complete object is received or no more messages
+    private Object receiveModelObject(final Supplier<Message> receiver, final Strategy strategy) throws JmsException {
+        Message message;
+        while ((message = receiver.get()) != null) {
+            final Object modelObject = getModelObject(message, strategy, chunkAssembler, deltaDecoder);
+            releaseClaimCheck(message);
+            if (modelObject != INCOMPLETE) return modelObject;
+        }
+        return null;
     }
 
-    private Object getModelObject(final TextMessage textMessage, final Strategy strategy) throws JmsException {
+    // both TextMessage and BytesMessage are supported, returns INCOMPLETE for chunks of incomplete groups
+    private Object getModelObject(final Message message, final Strategy strategy, final JmsChunkAssembler assembler,
+                                  final JmsDeltaDecoder decoder) throws JmsException {
         final Unmarshaller unmarshaller = Objects.isNull(modelPackage)
                 ? AbstractUnmarshaller.UnmarshallerFactory.fromModelClasses(modelClasses)
                 : AbstractUnmarshaller.UnmarshallerFactory.fromModelPackage(modelPackage);
         try {
-            return unmarshaller.unmarshall(strategy, textMessage.getText());
+            JmsChunkGroup chunkGroup = null;
+            if (assembler != null && JmsChunkAssembler.isChunk(message)) {
+                chunkGroup = assembler.accept(message);
+                if (chunkGroup == null) return INCOMPLETE;
+            }
+            if (decoder != null && JmsDeltaDecoder.isDelta(message)) {
+                final byte[] marshalled = decoder.decode(message, chunkGroup != null
+                        ? JmsMessagePayload.readPayload(chunkGroup, payloadCompressor)
+                        : claimCheck != null && JmsClaimCheck.isReference(message)
+                        ? claimCheck.readPayload(message, payloadCompressor)
+                        : JmsMessagePayload.readPayload(message, payloadCompressor));
+                return marshalled != null ? JmsMessagePayload.unmarshall(unmarshaller, strategy, marshalled) : INCOMPLETE;
+            }
+            if (chunkGroup != null) {
+                return JmsMessagePayload.unmarshall(unmarshaller, strategy, chunkGroup, payloadCompressor);
+            }
+            if (claimCheck != null && JmsClaimCheck.isReference(message)) {
+                return claimCheck.unmarshall(unmarshaller, strategy, message, payloadCompressor);
+            }
+            return JmsMessagePayload.unmarshall(unmarshaller, strategy, message, payloadCompressor);
         } catch (JMSException e) {
             throw new JmsException(e.getMessage(), e);
         }
     }
 
-
+    private void releaseClaimCheck(final Message message) throws JmsException {
+        if (claimCheck == null) return;
+        try {
+            claimCheck.release(message);
+        } catch (JMSException e) {
+            throw new JmsException(e.getMessage(), e);
+        }
+    }
 }
@@ -1,6 +1,33 @@
 package com.spaniard.jms.client.core;
 
+import com.spaniard.jms.client.core.support.async.JmsAsyncSendPipeline;
+import com.spaniard.jms.client.core.support.async.JmsBatchChannel;
+import com.spaniard.jms.client.core.support.balancer.JmsBroker;
+import com.spaniard.jms.client.core.support.balancer.JmsBrokerBalancer;
+import com.spaniard.jms.client.core.support.breaker.JmsCircuitBreaker;
+import com.spaniard.jms.client.core.support.breaker.JmsCircuitOpenException;
+import com.spaniard.jms.client.core.support.JmsDeadline;
+import com.spaniard.jms.client.core.support.JmsEncodedPayload;
+import com.spaniard.jms.client.core.support.JmsMessagePayload;
+import com.spaniard.jms.client.core.support.chunking.JmsPayloadChunker;
+import com.spaniard.jms.client.core.support.compression.JmsPayloadCompressor;
+import com.spaniard.jms.client.core.support.conflation.JmsConflator;
+import com.spaniard.jms.client.core.support.cache.JmsRequestCoalescer;
+import com.spaniard.jms.client.core.support.cache.JmsRequestKey;
+import com.spaniard.jms.client.core.support.cache.JmsResponseCache;
+import com.spaniard.jms.client.core.support.claimcheck.JmsClaimCheck;
+import com.spaniard.jms.client.core.support.delta.JmsDeltaEncoder;
+import com.spaniard.jms.client.core.support.outbox.JmsOutbox;
+import com.spaniard.jms.client.core.support.packing.JmsMessagePacker;
+import com.spaniard.jms.client.core.support.outbox.JmsOutboxRecord;
 import com.spaniard.jms.client.core.support.marshalling.Marshaller;
+import com.spaniard.jms.client.core.support.policy.JmsRequestPolicy;
+import com.spaniard.jms.client.core.support.pool.JmsConnectionPool;
+import com.spaniard.jms.client.core.support.pool.PooledSession;
+import com.spaniard.jms.client.core.support.ratelimit.JmsRateLimiter;
+import com.spaniard.jms.client.core.support.ratelimit.RateLimitPolicy;
+import com.spaniard.jms.client.core.support.reply.JmsReplyChannel;
+import com.spaniard.jms.client.core.support.reply.JmsReplyFuture;
 import com.spaniard.jms.client.core.support.unmarshalling.Unmarshaller;
 import com.spaniard.jms.client.exception.IllegalPropertyException;
 import com.spaniard.jms.client.exception.JmsException;
@@ -8,17 +35,28 @@ import com.spaniard.jms.client.core.support.ClassName;
 import com.spaniard.jms.client.core.support.unmarshalling.AbstractUnmarshaller;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jms.connection.ConnectionFactoryUtils;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.jms.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.function.Function;
 
 import static com.spaniard.jms.client.core.JmsMessageSender.SenderStrategy.*;
 import static com.spaniard.jms.client.core.support.marshalling.AbstractMarshaller.MarshallerFactory;
@@ -37,6 +75,36 @@ public class JmsMessageSender {
 
     private ConnectionFactory xaConnectionFactory;
 
+    private JmsConnectionPool connectionPool;
+
+    private JmsReplyChannel replyChannel;
+
+    private Executor callbackExecutor;
+
+    private JmsAsyncSendPipeline asyncSendPipeline;
+
+    private JmsOutbox outbox;
+
+    private JmsConflator conflator;
+
+    private JmsMessagePacker messagePacker;
+
+    private JmsDeltaEncoder deltaEncoder;
+
+    private JmsClaimCheck claimCheck;
+
+    private JmsRequestPolicy requestPolicy;
+
+    private JmsResponseCache responseCache;
+
+    private JmsRequestCoalescer requestCoalescer;
+
+    private JmsRateLimiter rateLimiter;
+
+    private JmsCircuitBreaker circuitBreaker;
+
+    private JmsBrokerBalancer brokerBalancer;
+
     private String modelPackage;
 
     // default is XML
@@ -50,6 +118,20 @@ public class JmsMessageSender {
 
     private long expiration;
 
+    private boolean binaryPayload;
+
+    private JmsPayloadCompressor payloadCompressor;
+
+    private JmsPayloadChunker payloadChunker;
+
+    // it is filled in BeanPostProcessor from @JmsModelMapping
+    private Map<Class<?>, JmsSendProfile> sendProfiles = Collections.emptyMap();
+
+    // default is 1000 messages per transaction
+    private int batchSize = 1000;
+    // 0 means commit by batchSize only
+    private long batchCommitInterval;
+
     // it is used in BeanPostProcessor, in order to avoid using jaxb ObjectFactory
     private Set<Class> modelClasses;
 
@@ -92,6 +174,67 @@ public class JmsMessageSender {
         this.expiration = expiration;
     }
 
+    /**
+     * Model objects are marshalled straight to UTF-8 bytes and sent as BytesMessage instead of TextMessage.
+     * JmsMessageListener, JmsMessageReceiver and request futures read both message types.
+     *
+     * @param binaryPayload -- true to send BytesMessage, default is false
+     */
+    public void setBinaryPayload(boolean binaryPayload) {
+        this.binaryPayload = binaryPayload;
+    }
+
+    /**
+     * Payloads above compressor threshold are deflated and sent as BytesMessage. Replies are inflated
+     * transparently with the same compressor (its preset dictionary).
+     *
+     * @param payloadCompressor -- payload compressor, compression is off if not set
+     */
+    public void setPayloadCompressor(JmsPayloadCompressor payloadCompressor) {
+        this.payloadCompressor = payloadCompressor;
+    }
+
+    /**
+     * Payloads bigger than chunk size (after compression) are sent as a group of chunks, which is reassembled
+     * by JmsMessageListener and JmsMessageReceiver with JmsChunkAssembler. Replies of the listener are not chunked.
+     *
+     * @param payloadChunker -- payload chunker, chunking is off if not set
+     */
+    public void setPayloadChunker(JmsPayloadChunker payloadChunker) {
+        this.payloadChunker = payloadChunker;
+    }
+
+    /**
+     * Per model class delivery mode, priority, ttl and strategy. Profiles of annotated model classes are
+     * generated by JmsModelMappingBeanPostProcessor, profiles set here take precedence.
+     *
+     * @param sendProfiles -- send profile map (ModelClass, JmsSendProfile)
+     */
+    public void setSendProfiles(Map<Class<?>, JmsSendProfile> sendProfiles) {
+        this.sendProfiles = Collections.unmodifiableMap(new HashMap<>(sendProfiles));
+    }
+
+    /**
+     * @return unmodifiable send profile map (ModelClass, JmsSendProfile)
+     */
+    public Map<Class<?>, JmsSendProfile> getSendProfiles() {
+        return sendProfiles;
+    }
+
+    /**
+     * @param batchSize -- maximum number of messages committed in one transaction by `sendAll(...)`
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @param batchCommitInterval -- maximum time in milliseconds of one `sendAll(...)` transaction, 0 means no limit
+     */
+    public void setBatchCommitInterval(long batchCommitInterval) {
+        this.batchCommitInterval = batchCommitInterval;
+    }
+
     /**
      * This connection factory is used for `request` and `asyncRequest` methods
      *
@@ -102,7 +245,9 @@ public class JmsMessageSender {
     }
 
     /**
-     * This connection factory is used for `send(...)` methods
+     * This connection factory is used for `send(...)` methods. Inside a Spring managed transaction
+     * (JtaTransactionManager for instance) one connection and session is bound to the transaction and is reused
+     * by all its sends, so the transaction enlists one resource. Session is closed on transaction completion.
      *
      * @param xaConnectionFactory -- implementation of xa connection factory such as ActiveMQXAConnectionFactory
      */
@@ -111,14 +256,174 @@ public class JmsMessageSender {
     }
 
     /**
-     * Sends modelObject to the destination. Returns JMSClientFuture for asynchronous manipulation.
-     * JMSClientFuture waits for the reply (responseClass).
+     * Enables pooling mode. Pooled connections, sessions and producers are used instead of `connectionFactory`
+     * for `request`, `asyncRequest`, `execute` and non-transaction `send(...)` methods.
+     * Xa transaction `send(...)` methods are not affected.
+     *
+     * @param connectionPool -- pool of long-lived connections
+     */
+    public void setConnectionPool(JmsConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
+    /**
+     * Enables shared reply queues for `asyncRequest` and `request(modelObject, ...)` methods.
+     * Replies are multiplexed by correlation id, so no temp-queue and consumer is created per request.
+     *
+     * @param replyChannel -- shared request-reply engine
+     */
+    public void setReplyChannel(JmsReplyChannel replyChannel) {
+        this.replyChannel = replyChannel;
+    }
+
+    /**
+     * Executor which completes {@link JmsFuture}, so that thenApply/whenComplete callbacks are not run
+     * on the jms dispatcher thread. By default futures are completed on the jms dispatcher thread.
+     *
+     * @param callbackExecutor -- executor for reply callbacks
+     */
+    public void setCallbackExecutor(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * Enables `sendAsync(...)` methods. Sender threads of the pipeline use `connectionFactory`.
+     *
+     * @param asyncSendPipeline -- bounded queue with dedicated sender threads
+     */
+    public void setAsyncSendPipeline(JmsAsyncSendPipeline asyncSendPipeline) {
+        this.asyncSendPipeline = asyncSendPipeline;
+    }
+
+    /**
+     * Store-and-forward mode. `send(...)` methods append messages to the local outbox and return immediately,
+     * the outbox forwards them to the broker in the background. Xa sends, requests and `sendAll(...)`
+     * are not spooled.
+     *
+     * @param outbox -- local durable spool
+     */
+    public void setOutbox(JmsOutbox outbox) {
+        this.outbox = outbox;
+    }
+
+    /**
+     * Enables `sendConflated(...)` methods. Flusher thread of the conflator uses `connectionFactory`.
+     *
+     * @param conflator -- latest-value conflation engine
+     */
+    public void setConflator(JmsConflator conflator) {
+        this.conflator = conflator;
+    }
+
+    /**
+     * Enables `sendPacked(...)` methods. Flusher thread of the packer uses `connectionFactory`.
+     *
+     * @param messagePacker -- packs small model objects into envelope messages
+     */
+    public void setMessagePacker(JmsMessagePacker messagePacker) {
+        this.messagePacker = messagePacker;
+    }
+
+    /**
+     * Delta mode. Model objects of the classes with a key extractor are sent as deltas against the previous object
+     * of the same key, with periodic full snapshots. Requests and spooled messages are sent in full.
+     * Listeners and receivers should have JmsDeltaDecoder.
+     *
+     * @param deltaEncoder -- keeps the last marshalled form per key
+     */
+    public void setDeltaEncoder(JmsDeltaEncoder deltaEncoder) {
+        this.deltaEncoder = deltaEncoder;
+    }
+
+    /**
+     * Claim-check mode. Payloads which are not smaller than the claim check threshold are written to its blob store
+     * and a reference message is sent instead, so chunking is not applied to them. Spooled messages are sent in full.
+     * Listeners and receivers should have JmsClaimCheck with the same blob store.
+     *
+     * @param claimCheck -- claim check with the blob store
+     */
+    public void setClaimCheck(JmsClaimCheck claimCheck) {
+        this.claimCheck = claimCheck;
+    }
+
+    /**
+     * Hedges and retries `request(modelObject, responseClass, timeout, unit)`, other request methods are not affected.
+     *
+     * @param requestPolicy -- hedging and retry policy
+     */
+    public void setRequestPolicy(JmsRequestPolicy requestPolicy) {
+        this.requestPolicy = requestPolicy;
+    }
+
+    /**
+     * Caches replies of `request(modelObject, responseClass, timeout, unit)` for the request classes configured in
+     * the cache, other request methods are not affected.
+     *
+     * @param responseCache -- response cache, it could listen to an invalidation topic
+     */
+    public void setResponseCache(JmsResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * Concurrent identical `request(modelObject, responseClass, timeout, unit)` calls of the request classes
+     * configured in the coalescer share one request, other request methods are not affected.
+     * Cache misses are coalesced if the response cache is set as well.
+     *
+     * @param requestCoalescer -- single-flight request coalescer
+     */
+    public void setRequestCoalescer(JmsRequestCoalescer requestCoalescer) {
+        this.requestCoalescer = requestCoalescer;
+    }
+
+    /**
+     * Limits the rate of all messages sent by this sender, including requests, batches and background sends.
+     * Messages spooled to the outbox are not limited.
+     * <p>
+     * In QUEUE mode a non-transacted send over the limit returns at once and the message is sent later
+     * by the limiter thread, so a failure of that send is not thrown to the caller: it is only logged and
+     * counted by {@link JmsRateLimiter#getFailedDeferredSends()}.
+     *
+     * @param rateLimiter -- global and per destination rate limits
+     */
+    public void setRateLimiter(JmsRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Fails sends and requests fast while the destination or the connection factory is failing or slow.
+     * Failures of the outbox forwarder and the reply channel are not counted.
+     *
+     * @param circuitBreaker -- circuit breaker
+     */
+    public void setCircuitBreaker(JmsCircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Spreads requests and non-transaction `send(...)` methods across the brokers of a network of brokers,
+     * `connectionFactory` and `connectionPool` are not used then. Xa transaction `send(...)` methods are not affected.
+     * Circuits of the circuit breaker are kept per broker.
+     *
+     * @param brokerBalancer -- brokers and balancing policy
+     */
+    public void setBrokerBalancer(JmsBrokerBalancer brokerBalancer) {
+        this.brokerBalancer = brokerBalancer;
+    }
+
+    /**
+     * Sends modelObject to the destination. Returns JmsFuture for asynchronous manipulation.
+     * JmsFuture waits for the reply (responseClass).
      * <p>
      * For instance:
-     * try (JMSClientFuture<Clazz.class> future = jmsClientMessageSender.asyncRequest(message, Clazz.class)) {
+     * try (JmsFuture<Clazz> future = jmsMessageSender.asyncRequest(message, Clazz.class)) {
      * // do some work...
      * Clazz instance = future.get();
      * }
+     * <p>
+     * or without blocking a thread:
+     * JmsFuture<Clazz> future = jmsMessageSender.asyncRequest(message, Clazz.class);
+     * future.whenComplete((instance, e) -> future.close());
      *
      * @param modelObject   -- Model class that should be send
      * @param responseClass -- Response class that should be received
@@ -126,14 +431,24 @@ public class JmsMessageSender {
      * @throws JmsException
      */
     public <T> JmsFuture<T> asyncRequest(final Object modelObject, final Class<T> responseClass) throws JmsException {
+        if (Objects.nonNull(replyChannel)) {
+            return sharedRequest(modelObject, responseClass, replyChannel.getDefaultTimeout(), null);
+        }
+        final Destination destination = obtainDestination(modelObject);
+        checkCircuit(REQUEST, destination);
         try {
             final Sender sender = new Sender(REQUEST);
             // first create future with message consumer
             final JmsFuture<T> responseFuture = sender.createAndGetFuture(responseClass);
-            final Destination destination = obtainDestination(modelObject);
-            log(modelObject, destination);
-            // send message with reply to
-            sender.send(destination, modelObject);
+            try {
+                log(modelObject, destination);
+                // send message with reply to
+                sender.send(destination, modelObject);
+            } catch (JMSException | RuntimeException e) {
+                // release consumer, session and connection
+                responseFuture.close();
+                throw e;
+            }
             return responseFuture;
         } catch (JMSException e) {
             throw new JmsException(e.getMessage(), e);
@@ -150,11 +465,19 @@ public class JmsMessageSender {
      */
     @Deprecated
     public <T> T request(final Object modelObject, final Class<T> responseClass) throws JmsException {
+        if (Objects.nonNull(replyChannel)) {
+            try (final JmsFuture<T> responseFuture = sharedRequest(modelObject, responseClass, replyChannel.getDefaultTimeout(), null)) {
+                return responseFuture.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new JmsException(e.getMessage(), e);
+            }
+        }
+        final Destination destination = obtainDestination(modelObject);
+        checkCircuit(REQUEST, destination);
         try {
             final Sender sender = new Sender(REQUEST);
             // first create future with message consumer
             try (final JmsFuture<T> responseFuture = sender.createAndGetFuture(responseClass)) {
-                final Destination destination = obtainDestination(modelObject);
                 log(modelObject, destination);
                 // send message with reply to
                 sender.send(destination, modelObject);
@@ -176,11 +499,33 @@ public class JmsMessageSender {
      * @throws JmsException
      */
     public <T> T request(final Object modelObject, final Class<T> responseClass, long timeout, TimeUnit unit) throws JmsException {
+        if (Objects.nonNull(responseCache) && responseCache.supports(modelObject)) {
+            return cachedRequest(modelObject, responseClass, timeout, unit);
+        }
+        return coalescedRequest(modelObject, responseClass, timeout, unit, null, null);
+    }
+
+    // marshalled is null if the request is not marshalled yet
+    private <T> T timedRequest(final Object modelObject, final Class<T> responseClass, long timeout, TimeUnit unit,
+                               final JmsEncodedPayload marshalled) throws JmsException {
+        if (Objects.nonNull(requestPolicy)) {
+            return policyRequest(modelObject, responseClass, unit.toMillis(timeout), marshalled);
+        }
+        if (Objects.nonNull(replyChannel)) {
+            try (final JmsFuture<T> responseFuture = sharedRequest(modelObject, responseClass, unit.toMillis(timeout), marshalled)) {
+                return responseFuture.get(timeout, unit);
+            } catch (InterruptedException | ExecutionException | TimeoutException e) {
+                throw new JmsException(e.getMessage(), e);
+            }
+        }
+        final Destination destination = obtainDestination(modelObject);
+        checkCircuit(REQUEST, destination);
         try {
             final Sender sender = new Sender(REQUEST);
+            sender.deadline = JmsDeadline.of(unit.toMillis(timeout));
+            sender.marshalled = marshalled;
             // first create future with message consumer
             try (final JmsFuture<T> responseFuture = sender.createAndGetFuture(responseClass)) {
-                final Destination destination = obtainDestination(modelObject);
                 logger.debug("Sending object [{}] to the destination [{}]", modelObject, destination);
                 // send message with reply to
                 sender.send(destination, modelObject);
@@ -204,11 +549,13 @@ public class JmsMessageSender {
      */
     public <T> T request(final Destination replyToDestination, final Object modelObject, final Class<T> responseClass,
                          long timeout, TimeUnit unit) throws JmsException {
+        final Destination destination = obtainDestination(modelObject);
+        checkCircuit(REPLY_TO_REQUEST, destination);
         try {
             final Sender sender = new Sender(REPLY_TO_REQUEST, replyToDestination);
+            sender.deadline = JmsDeadline.of(unit.toMillis(timeout));
             // first create future with message consumer
             try (final JmsFuture<T> responseFuture = sender.createAndGetFuture(responseClass)) {
-                final Destination destination = obtainDestination(modelObject);
                 logger.debug("Sending object [{}] to the destination [{}]", modelObject, destination);
                 // send message with reply to
                 sender.send(destination, modelObject);
@@ -219,16 +566,135 @@ public class JmsMessageSender {
         }
     }
 
+    /**
+     * Sends modelObject to all destinations and gathers their replies. ModelObject is marshalled once,
+     * all replies are received through one reply destination (the shared reply channel if it is set, otherwise
+     * one temp-queue), every destination gets its own correlation id.
+     * <p>
+     * For instance:
+     * try (JmsScatterGather<Clazz> gather = jmsMessageSender.scatterGather(query, destinations, Clazz.class, 1, TimeUnit.SECONDS)) {
+     * gather.stream().filter(JmsGatherResult::isReplied).forEach(result -> merge(result.getReply()));
+     * }
+     * <p>
+     * or without blocking a thread:
+     * jmsMessageSender.scatterGather(query, destinations, Clazz.class, 1, TimeUnit.SECONDS)
+     * .toCompletionStage().thenAccept(results -> merge(results));
+     *
+     * @param modelObject   -- Model class that should be send
+     * @param destinations  -- javax.jms.Destination endpoints
+     * @param responseClass -- Response class that should be received
+     * @param timeout       -- the maximum time to wait for the replies
+     * @param unit          -- the time unit of the timeout argument
+     * @return replies, completed with the partial replies at the deadline
+     * @throws JmsException if the request could not be sent to some destination
+     */
+    public <T> JmsScatterGather<T> scatterGather(final Object modelObject, final Collection<Destination> destinations,
+                                                 final Class<T> responseClass, long timeout, TimeUnit unit) throws JmsException {
+        if (destinations.isEmpty()) {
+            throw new IllegalArgumentException("destinations are empty");
+        }
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("timeout should be greater than 0");
+        }
+        final Map<String, Destination> correlatedDestinations = new LinkedHashMap<>();
+        for (Destination destination : destinations) {
+            correlatedDestinations.put(UUID.randomUUID().toString(), destination);
+        }
+        if (Objects.nonNull(replyChannel)) {
+            return sharedScatterGather(modelObject, correlatedDestinations, responseClass, unit.toMillis(timeout));
+        }
+        try {
+            final Sender sender = new Sender(REQUEST);
+            sender.deadline = JmsDeadline.of(unit.toMillis(timeout));
+            final JmsScatterGather<T> gather = new JmsScatterGather<>(correlatedDestinations, unit.toMillis(timeout),
+                    responseClass, strategy, responseUnmarshaller(), callbackExecutor, payloadCompressor, sender);
+            try {
+                // first create reply consumer
+                gather.consume(sender.session, sender.replyToDestination);
+                sender.scatter(correlatedDestinations, modelObject).forEach((correlationId, e) -> gather.onReply(correlationId, null, e));
+            } catch (JMSException | RuntimeException e) {
+                // release consumer, session and connection
+                gather.close();
+                throw e;
+            }
+            return gather;
+        } catch (JMSException e) {
+            throw new JmsException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Sends all requests back-to-back on one session, every request to the destination of its model class, and
+     * receives all replies through one reply destination (the shared reply channel if it is set, otherwise one
+     * temp-queue). Every request gets its own correlation id and exactly one result, requests which could not be
+     * sent or have no reply until the deadline are reported on their own.
+     * <p>
+     * For instance:
+     * try (JmsBulkRequest<Clazz> bulk = jmsMessageSender.requestAll(queries, Clazz.class, 5, TimeUnit.SECONDS)) {
+     * bulk.stream().filter(JmsBulkResult::isReplied).forEach(result -> merge(result.getIndex(), result.getReply()));
+     * }
+     * <p>
+     * or replies in the request order without blocking a thread:
+     * jmsMessageSender.requestAll(queries, Clazz.class, 5, TimeUnit.SECONDS)
+     * .toCompletionStage().thenAccept(results -> merge(results));
+     *
+     * @param requests      -- Model classes that should be send
+     * @param responseClass -- Response class that should be received
+     * @param timeout       -- the maximum time to wait for the replies
+     * @param unit          -- the time unit of the timeout argument
+     * @return results of the requests, completed when every request has its result
+     * @throws JmsException if the session or the reply consumer could not be created
+     */
+    public <T> JmsBulkRequest<T> requestAll(final List<?> requests, final Class<T> responseClass,
+                                            long timeout, TimeUnit unit) throws JmsException {
+        if (requests.isEmpty()) {
+            throw new IllegalArgumentException("requests are empty");
+        }
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("timeout should be greater than 0");
+        }
+        final List<String> correlationIds = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            correlationIds.add(UUID.randomUUID().toString());
+        }
+        if (Objects.nonNull(replyChannel)) {
+            return sharedRequestAll(requests, correlationIds, responseClass, unit.toMillis(timeout));
+        }
+        try {
+            final Sender sender = new Sender(REQUEST);
+            sender.deadline = JmsDeadline.of(unit.toMillis(timeout));
+            final JmsBulkRequest<T> bulk = new JmsBulkRequest<>(requests, correlationIds, unit.toMillis(timeout),
+                    responseClass, strategy, responseUnmarshaller(), callbackExecutor, payloadCompressor, sender);
+            try {
+                // first create reply consumer
+                bulk.consume(sender.session, sender.replyToDestination);
+                sender.pipeline(requests, correlationIds).forEach((correlationId, e) -> bulk.onReply(correlationId, null, e));
+            } catch (JMSException | RuntimeException e) {
+                // release consumer, session and connection
+                bulk.close();
+                throw e;
+            }
+            return bulk;
+        } catch (JMSException e) {
+            throw new JmsException(e.getMessage(), e);
+        }
+    }
+
     /**
      * Just sends ModelClass to the destination. Destination should be set in the destination Map.
      * Can be used in either way (inside Xa transaction or without transaction).
+     * <p>
+     * If the rate limiter works in QUEUE mode and the limit is exceeded, the method returns successfully
+     * before the message is sent, see {@link #setRateLimiter(JmsRateLimiter)}.
      *
      * @param modelObject -- Model class that should be send
      * @throws JmsException
      */
     public void send(final Object modelObject) throws JmsException {
         final Destination destination = obtainDestination(modelObject);
-        try (Sender sender = new Sender(defineSenderStrategy())) {
+        final SenderStrategy senderStrategy = defineSenderStrategy();
+        checkCircuit(senderStrategy, destination);
+        try (Sender sender = new Sender(senderStrategy)) {
             log(modelObject, destination);
             // send message
             sender.send(destination, modelObject);
@@ -247,7 +713,9 @@ public class JmsMessageSender {
      */
     public void send(final Object modelObject, int priority) throws JmsException {
         final Destination destination = obtainDestination(modelObject);
-        try (Sender sender = new Sender(defineSenderStrategy())) {
+        final SenderStrategy senderStrategy = defineSenderStrategy();
+        checkCircuit(senderStrategy, destination);
+        try (Sender sender = new Sender(senderStrategy)) {
             log(modelObject, destination);
             // send message
             sender.send(destination, modelObject, priority);
@@ -266,7 +734,9 @@ public class JmsMessageSender {
      */
     public void send(final Object modelObject, final Map<String, String> properties) throws JmsException {
         final Destination destination = obtainDestination(modelObject);
-        try (Sender sender = new Sender(defineSenderStrategy())) {
+        final SenderStrategy senderStrategy = defineSenderStrategy();
+        checkCircuit(senderStrategy, destination);
+        try (Sender sender = new Sender(senderStrategy)) {
             log(modelObject, destination);
             // send message
             sender.send(destination, modelObject, properties);
@@ -284,7 +754,9 @@ public class JmsMessageSender {
      * @throws JmsException
      */
     public void send(final Destination destination, final Object modelObject) throws JmsException {
-        try (Sender sender = new Sender(defineSenderStrategy())) {
+        final SenderStrategy senderStrategy = defineSenderStrategy();
+        checkCircuit(senderStrategy, destination);
+        try (Sender sender = new Sender(senderStrategy)) {
             log(modelObject, destination);
             // send message
             sender.send(destination, modelObject);
@@ -303,7 +775,9 @@ public class JmsMessageSender {
      * @throws JmsException
      */
     public void send(final Destination destination, final Object modelObject, final Map<String, String> properties) throws JmsException {
-        try (Sender sender = new Sender(defineSenderStrategy())) {
+        final SenderStrategy senderStrategy = defineSenderStrategy();
+        checkCircuit(senderStrategy, destination);
+        try (Sender sender = new Sender(senderStrategy)) {
             log(modelObject, destination);
             // send message
             sender.send(destination, modelObject, properties);
@@ -322,7 +796,9 @@ public class JmsMessageSender {
      * @throws JmsException
      */
     public void send(final Destination destination, final Object modelObject, final Strategy strategy) throws JmsException {
-        try (Sender sender = new Sender(defineSenderStrategy())) {
+        final SenderStrategy senderStrategy = defineSenderStrategy();
+        checkCircuit(senderStrategy, destination);
+        try (Sender sender = new Sender(senderStrategy)) {
             log(modelObject, destination);
             // send message
             sender.send(destination, modelObject, strategy);
@@ -342,7 +818,9 @@ public class JmsMessageSender {
      * @throws JmsException
      */
     public void send(final Destination destination, final Object modelObject, final int priority, final Strategy strategy) throws JmsException {
-        try (Sender sender = new Sender(defineSenderStrategy())) {
+        final SenderStrategy senderStrategy = defineSenderStrategy();
+        checkCircuit(senderStrategy, destination);
+        try (Sender sender = new Sender(senderStrategy)) {
             log(modelObject, destination);
             // send message
             sender.send(destination, modelObject, priority, strategy);
@@ -362,7 +840,9 @@ public class JmsMessageSender {
      * @throws JmsException
      */
     public void send(final Destination destination, final Object modelObject, final Map<String, String> properties, final Strategy strategy) throws JmsException {
-        try (Sender sender = new Sender(defineSenderStrategy())) {
+        final SenderStrategy senderStrategy = defineSenderStrategy();
+        checkCircuit(senderStrategy, destination);
+        try (Sender sender = new Sender(senderStrategy)) {
             log(modelObject, destination);
             // send message
             sender.send(destination, modelObject, properties, strategy);
@@ -371,6 +851,243 @@ public class JmsMessageSender {
         }
     }
 
+    /**
+     * Puts modelObject to the async send queue and returns immediately. ModelObject is marshalled and sent by
+     * the sender thread of the pipeline. Destination should be set in the destination Map.
+     * Should not be used inside Xa transaction.
+     *
+     * @param modelObject -- Model class that should be send
+     * @return completion handle, completed when the message is sent or failed
+     * @throws JmsException if there is no destination or the queue is full and overflow policy is FAIL
+     */
+    public CompletableFuture<Void> sendAsync(final Object modelObject) throws JmsException {
+        return sendAsync(obtainDestination(modelObject), modelObject);
+    }
+
+    /**
+     * Puts modelObject to the async send queue and returns immediately, see {@link #sendAsync(Object)}.
+     *
+     * @param destination -- javax.jms.Destination endpoint
+     * @param modelObject -- Model class that should be send
+     * @return completion handle, completed when the message is sent or failed
+     * @throws JmsException if the queue is full and overflow policy is FAIL
+     */
+    public CompletableFuture<Void> sendAsync(final Destination destination, final Object modelObject) throws JmsException {
+        if (Objects.isNull(asyncSendPipeline)) {
+            throw new IllegalPropertyException("AsyncSendPipeline property is null");
+        }
+        asyncSendPipeline.start(() -> new Sender(TRANSACTED, true));
+        log(modelObject, destination);
+        return asyncSendPipeline.submit(destination, modelObject);
+    }
+
+    /**
+     * Marshalls modelObject and packs it with other model objects bound for the same destination into one envelope
+     * message, returns immediately. Envelopes are sent by the packer, JmsMessageListener unpacks them and handles
+     * every model object on its own. Model object which is too big to be packed is sent as a separate message.
+     * Destination should be set in the destination Map.
+     *
+     * @param modelObject -- Model class that should be send
+     * @throws JmsException if there is no destination or the packer is closed
+     */
+    public void sendPacked(final Object modelObject) throws JmsException {
+        sendPacked(obtainDestination(modelObject), modelObject);
+    }
+
+    /**
+     * Packs modelObject into the envelope of the given Destination, see {@link #sendPacked(Object)}.
+     *
+     * @param destination -- javax.jms.Destination endpoint
+     * @param modelObject -- Model class that should be send
+     * @throws JmsException if the packer is closed
+     */
+    public void sendPacked(final Destination destination, final Object modelObject) throws JmsException {
+        if (Objects.isNull(messagePacker)) {
+            throw new IllegalPropertyException("MessagePacker property is null");
+        }
+        messagePacker.start((envelopeDestination, envelope, count) -> {
+            try (Sender sender = new Sender(NON_XA)) {
+                sender.sendEnvelope(envelopeDestination, envelope, count);
+            }
+        });
+        final Strategy messageStrategy = sendProfiles.getOrDefault(modelObject.getClass(), JmsSendProfile.NONE).strategyOr(strategy);
+        // envelope is compressed as a whole
+        final JmsEncodedPayload payload = JmsMessagePayload.encode(createMarshaller(), messageStrategy, modelObject,
+                binaryPayload, null);
+        log(modelObject, destination);
+        if (!messagePacker.pack(destination, payload.getBytes())) {
+            send(destination, modelObject);
+        }
+    }
+
+    /**
+     * Keeps modelObject as the latest value of its key and returns immediately. Pending values are sent by
+     * the conflator periodically, value which is superseded before that is never sent.
+     * Destination should be set in the destination Map.
+     *
+     * @param modelObject -- Model class that should be send, key extractor should be set for its class
+     * @throws JmsException if there is no destination or the key is null
+     */
+    public void sendConflated(final Object modelObject) throws JmsException {
+        sendConflated(obtainDestination(modelObject), modelObject);
+    }
+
+    /**
+     * Keeps modelObject as the latest value of its key, see {@link #sendConflated(Object)}.
+     *
+     * @param destination -- javax.jms.Destination endpoint
+     * @param modelObject -- Model class that should be send, key extractor should be set for its class
+     * @throws JmsException if the key is null
+     */
+    public void sendConflated(final Destination destination, final Object modelObject) throws JmsException {
+        if (Objects.isNull(conflator)) {
+            throw new IllegalPropertyException("Conflator property is null");
+        }
+        conflator.start(() -> new Sender(TRANSACTED, true));
+        conflator.submit(destination, modelObject);
+    }
+
+    /**
+     * Sends modelObject to all destinations. ModelObject is marshalled once, all messages are sent by one session
+     * with a producer per destination.
+     *
+     * @param modelObject  -- Model class that should be send
+     * @param destinations -- javax.jms.Destination endpoints
+     * @throws JmsException
+     */
+    public void multicast(final Object modelObject, final Collection<Destination> destinations) throws JmsException {
+        multicast(modelObject, destinations, false);
+    }
+
+    /**
+     * Sends modelObject to all destinations, see {@link #multicast(Object, Collection)}.
+     * If transacted, messages are sent in one local transaction, so either all destinations get the message
+     * or none of them. Inside Xa transaction messages are sent in the Xa transaction anyway.
+     *
+     * @param modelObject  -- Model class that should be send
+     * @param destinations -- javax.jms.Destination endpoints
+     * @param transacted   -- send all messages in one local transaction
+     * @throws JmsException
+     */
+    public void multicast(final Object modelObject, final Collection<Destination> destinations, final boolean transacted) throws JmsException {
+        if (destinations.isEmpty()) {
+            return;
+        }
+        final SenderStrategy defaultStrategy = defineSenderStrategy();
+        final SenderStrategy senderStrategy = transacted && defaultStrategy != XA ? TRANSACTED : defaultStrategy;
+        for (Destination destination : destinations) {
+            checkCircuit(senderStrategy, destination);
+        }
+        try (Sender sender = new Sender(senderStrategy)) {
+            try {
+                sender.multicast(destinations, modelObject);
+                if (senderStrategy == TRANSACTED) {
+                    sender.commit();
+                }
+            } catch (JMSException | RuntimeException e) {
+                if (senderStrategy == TRANSACTED) {
+                    sender.rollback();
+                }
+                throw e;
+            }
+        } catch (JMSException e) {
+            throw new JmsException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Sends all modelObjects in local transactions, every transaction is committed after `batchSize` messages
+     * or `batchCommitInterval` milliseconds. Destination of every modelObject should be set in the destination Map.
+     * One connection and session is used for the whole collection. Sending stops at the first batch which is
+     * rolled back, so elements after that batch are not sent.
+     * Should not be used inside Xa transaction.
+     *
+     * @param modelObjects -- Model classes that should be send
+     * @return results of the batches in the sending order
+     * @throws JmsException if connection or session could not be opened
+     */
+    public List<JmsBatchResult> sendAll(final Collection<?> modelObjects) throws JmsException {
+        return sendAll(null, modelObjects);
+    }
+
+    /**
+     * Sends all modelObjects to the given Destination in local transactions,
+     * see {@link #sendAll(Collection)}.
+     *
+     * @param destination  -- javax.jms.Destination endpoint
+     * @param modelObjects -- Model classes that should be send
+     * @return results of the batches in the sending order
+     * @throws JmsException if connection or session could not be opened
+     */
+    public List<JmsBatchResult> sendAll(final Destination destination, final Collection<?> modelObjects) throws JmsException {
+        if (batchSize <= 0) {
+            throw new IllegalPropertyException("batchSize should be greater than 0");
+        }
+        final List<JmsBatchResult> results = new ArrayList<>();
+        try (Sender sender = new Sender(TRANSACTED)) {
+            int index = 0;
+            int firstIndex = 0;
+            long batchStart = System.currentTimeMillis();
+            for (Object modelObject : modelObjects) {
+                try {
+                    final Destination target = destination != null ? destination : obtainDestination(modelObject);
+                    log(modelObject, target);
+                    sender.send(target, modelObject);
+                } catch (JmsException | JMSException | RuntimeException e) {
+                    sender.rollback();
+                    results.add(JmsBatchResult.rolledBack(firstIndex, index - firstIndex + 1, e));
+                    return results;
+                }
+                index++;
+                if (index - firstIndex >= batchSize
+                        || (batchCommitInterval > 0 && System.currentTimeMillis() - batchStart >= batchCommitInterval)) {
+                    if (!commitBatch(sender, results, firstIndex, index - firstIndex)) {
+                        return results;
+                    }
+                    firstIndex = index;
+                    batchStart = System.currentTimeMillis();
+                }
+            }
+            if (index > firstIndex) {
+                commitBatch(sender, results, firstIndex, index - firstIndex);
+            }
+            return results;
+        } catch (JMSException e) {
+            throw new JmsException(e.getMessage(), e);
+        }
+    }
+
+    private boolean commitBatch(final Sender sender, final List<JmsBatchResult> results, final int firstIndex, final int size) {
+        try {
+            sender.commit();
+            logger.debug("Committed batch of {} messages starting from index {}", size, firstIndex);
+            results.add(JmsBatchResult.committed(firstIndex, size));
+            return true;
+        } catch (JMSException e) {
+            sender.rollback();
+            results.add(JmsBatchResult.rolledBack(firstIndex, size, e));
+            return false;
+        }
+    }
+
+    /**
+     * Publishes invalidation of cached replies to the topic the response caches listen to, see JmsResponseCache
+     *
+     * @param topic        -- invalidation topic
+     * @param requestClass -- request class which replies are invalidated, null invalidates all replies
+     * @throws JmsException
+     */
+    public void invalidateResponses(final Destination topic, final Class<?> requestClass) throws JmsException {
+        execute(topic, (session, messageProducer) -> {
+            final Message message = session.createMessage();
+            if (requestClass != null) {
+                message.setStringProperty(JmsResponseCache.INVALIDATE_CLASS_PROPERTY, requestClass.getCanonicalName());
+            }
+            messageProducer.send(message);
+            return null;
+        });
+    }
+
     /**
      * Non-transaction use
      *
@@ -390,6 +1107,277 @@ public class JmsMessageSender {
         }
     }
 
+    // request through the shared reply channel, future is registered before the request is sent
+    private <T> JmsFuture<T> sharedRequest(final Object modelObject, final Class<T> responseClass, final long timeoutMillis,
+                                           final JmsEncodedPayload marshalled) throws JmsException {
+        final Destination destination = obtainDestination(modelObject);
+        final JmsReplyFuture<T> responseFuture = new JmsReplyFuture<>(replyChannel, UUID.randomUUID().toString(),
+                responseClass, strategy, responseUnmarshaller(), callbackExecutor, payloadCompressor);
+        checkCircuit(SHARED_REQUEST, destination);
+        final Destination replyToDestination = replyChannel.register(responseFuture, timeoutMillis);
+        try (Sender sender = new Sender(SHARED_REQUEST, replyToDestination, responseFuture.getCorrelationId())) {
+            sender.deadline = JmsDeadline.of(timeoutMillis);
+            sender.marshalled = marshalled;
+            log(modelObject, destination);
+            // send message with reply to
+            sender.send(destination, modelObject);
+        } catch (JMSException e) {
+            responseFuture.close();
+            throw new JmsException(e.getMessage(), e);
+        } catch (RuntimeException e) {
+            responseFuture.close();
+            throw e;
+        }
+        return responseFuture;
+    }
+
+    // reply is cached by the hash of the marshalled request, reply to a request sent before an invalidation is not cached
+    private <T> T cachedRequest(final Object modelObject, final Class<T> responseClass, long timeout, TimeUnit unit) throws JmsException {
+        // request marshalled for the key is sent as is on a cache miss
+        final JmsEncodedPayload marshalled = marshallRequest(modelObject);
+        final JmsRequestKey key = requestKey(modelObject, responseClass, marshalled);
+        final T cached = responseCache.get(key, responseClass);
+        if (cached != null) {
+            logger.debug("Reply to [{}] is taken from the cache", key);
+            return cached;
+        }
+        final long generation = responseCache.generation();
+        final T reply = coalescedRequest(modelObject, responseClass, timeout, unit, key, marshalled);
+        responseCache.put(key, generation, reply);
+        return reply;
+    }
+
+    // identical concurrent requests share one request, requestKey and marshalled are null if the request is not marshalled yet
+    private <T> T coalescedRequest(final Object modelObject, final Class<T> responseClass, long timeout, TimeUnit unit,
+                                   final JmsRequestKey requestKey, final JmsEncodedPayload marshalled) throws JmsException {
+        if (Objects.isNull(requestCoalescer) || !requestCoalescer.supports(modelObject)) {
+            return timedRequest(modelObject, responseClass, timeout, unit, marshalled);
+        }
+        // request marshalled for the key is sent by the leader, key function does not marshall it
+        final JmsEncodedPayload[] request = {marshalled};
+        final Object key = requestCoalescer.key(modelObject, responseClass, () -> {
+            if (requestKey != null) return requestKey;
+            request[0] = marshallRequest(modelObject);
+            return requestKey(modelObject, responseClass, request[0]);
+        });
+        return requestCoalescer.execute(key, responseClass, timeout, unit,
+                () -> timedRequest(modelObject, responseClass, timeout, unit, request[0]));
+    }
+
+    // not compressed, the same form the request is sent in
+    private JmsEncodedPayload marshallRequest(final Object modelObject) {
+        final Strategy messageStrategy = sendProfiles.getOrDefault(modelObject.getClass(), JmsSendProfile.NONE).strategyOr(strategy);
+        return JmsMessagePayload.encode(createMarshaller(), messageStrategy, modelObject, binaryPayload, null);
+    }
+
+    private static JmsRequestKey requestKey(final Object modelObject, final Class<?> responseClass, final JmsEncodedPayload marshalled) {
+        return JmsRequestKey.of(modelObject.getClass(), responseClass, marshalled.getBytes());
+    }
+
+    // request with hedges and retries, all copies of the request have the same correlation id
+    private <T> T policyRequest(final Object modelObject, final Class<T> responseClass, final long timeoutMillis,
+                                final JmsEncodedPayload marshalled) throws JmsException {
+        final Destination destination = obtainDestination(modelObject);
+        checkCircuit(Objects.nonNull(replyChannel) ? SHARED_REQUEST : REQUEST, destination);
+        final String correlationId = UUID.randomUUID().toString();
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        // the same deadline for hedges and retries
+        final long requestDeadline = JmsDeadline.of(timeoutMillis);
+        Sender requestSender;
+        JmsFuture<T> future;
+        final Destination replyToDestination;
+        try {
+            if (Objects.nonNull(replyChannel)) {
+                final JmsReplyFuture<T> replyFuture = new JmsReplyFuture<>(replyChannel, correlationId, responseClass,
+                        strategy, responseUnmarshaller(), callbackExecutor, payloadCompressor);
+                // request deadline is checked here
+                replyToDestination = replyChannel.register(replyFuture, 0);
+                requestSender = null;
+                future = replyFuture;
+            } else {
+                requestSender = requestSender(correlationId, requestDeadline, marshalled);
+                replyToDestination = requestSender.replyToDestination;
+                future = requestSender.createAndGetFuture(responseClass);
+            }
+        } catch (JMSException e) {
+            throw new JmsException(e.getMessage(), e);
+        }
+        try {
+            int retry = 0;
+            while (true) {
+                if (requestSender != null && requestSender.failed) {
+                    // session of the failed send could not be reused, the retry is sent by a new sender with its own temp-queue
+                    try {
+                        final Sender reopened = requestSender(correlationId, requestDeadline, marshalled);
+                        final JmsFuture<T> reopenedFuture = reopened.createAndGetFuture(responseClass);
+                        future.close();
+                        requestSender = reopened;
+                        future = reopenedFuture;
+                    } catch (JMSException | JmsException e) {
+                        // the failed sender is kept, the attempt fails and is retried
+                        logger.warn("Could not reopen request sender for correlation id [{}]", correlationId, e);
+                    }
+                }
+                final long attemptStart = System.nanoTime();
+                final long attemptDeadline = requestPolicy.getAttemptTimeout() > 0
+                        ? Math.min(deadline, attemptStart + TimeUnit.MILLISECONDS.toNanos(requestPolicy.getAttemptTimeout()))
+                        : deadline;
+                // late reply to the previous attempt could have been received during the backoff
+                if (future.isDone() || sendRequest(requestSender, replyToDestination, correlationId, requestDeadline, destination, modelObject, marshalled)) {
+                    int hedges = 0;
+                    while (true) {
+                        final long hedgeDelay = requestPolicy.hedgeDelay();
+                        final long waitUntil = hedgeDelay > 0 && hedges < requestPolicy.getMaxHedges()
+                                ? Math.min(attemptDeadline, attemptStart + TimeUnit.MILLISECONDS.toNanos(hedgeDelay * (hedges + 1)))
+                                : attemptDeadline;
+                        try {
+                            final T reply = future.get(Math.max(0, waitUntil - System.nanoTime()), TimeUnit.NANOSECONDS);
+                            requestPolicy.recordReply(System.nanoTime() - attemptStart);
+                            return reply;
+                        } catch (TimeoutException e) {
+                            if (System.nanoTime() - attemptDeadline >= 0) break;
+                            hedges++;
+                            requestPolicy.recordHedge();
+                            sendRequest(requestSender, replyToDestination, correlationId, requestDeadline, destination, modelObject, marshalled);
+                        }
+                    }
+                }
+                final long remaining = deadline - System.nanoTime();
+                if (retry >= requestPolicy.getMaxRetries() || remaining <= 0) break;
+                retry++;
+                requestPolicy.recordRetry();
+                Thread.sleep(Math.min(requestPolicy.backoff(retry), TimeUnit.NANOSECONDS.toMillis(remaining)));
+            }
+            requestPolicy.recordTimeout();
+            throw new JmsException(String.format("No reply received for correlation id [%s] within %d ms after %d retries",
+                    correlationId, timeoutMillis, retry));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JmsException(e.getMessage(), e);
+        } catch (ExecutionException e) {
+            throw new JmsException(e.getMessage(), e);
+        } finally {
+            future.close();
+        }
+    }
+
+    // request sender with its own temp-queue, all request senders of a policy request share the correlation id
+    private Sender requestSender(final String correlationId, final long requestDeadline, final JmsEncodedPayload marshalled) throws JMSException {
+        final Sender requestSender = new Sender(REQUEST);
+        requestSender.correlationId = correlationId;
+        requestSender.deadline = requestDeadline;
+        requestSender.marshalled = marshalled;
+        return requestSender;
+    }
+
+    // returns false if the request could not be sent, so that it is retried
+    private boolean sendRequest(final Sender requestSender, final Destination replyToDestination, final String correlationId,
+                                final long requestDeadline, final Destination destination, final Object modelObject,
+                                final JmsEncodedPayload marshalled) {
+        log(modelObject, destination);
+        try {
+            if (requestSender != null) {
+                requestSender.send(destination, modelObject);
+                return true;
+            }
+            try (Sender sender = new Sender(SHARED_REQUEST, replyToDestination, correlationId)) {
+                sender.deadline = requestDeadline;
+                sender.marshalled = marshalled;
+                sender.send(destination, modelObject);
+            }
+            return true;
+        } catch (JMSException e) {
+            logger.warn("Could not send request with correlation id [{}] to the destination [{}]", correlationId, destination, e);
+            return false;
+        }
+    }
+
+    // every destination is registered in the shared reply channel, replies are dispatched by correlation id
+    private <T> JmsScatterGather<T> sharedScatterGather(final Object modelObject, final Map<String, Destination> correlatedDestinations,
+                                                        final Class<T> responseClass, final long timeoutMillis) throws JmsException {
+        final Unmarshaller unmarshaller = responseUnmarshaller();
+        final List<JmsReplyFuture<T>> replyFutures = new ArrayList<>(correlatedDestinations.size());
+        final JmsScatterGather<T> gather = new JmsScatterGather<>(correlatedDestinations, timeoutMillis, responseClass,
+                strategy, unmarshaller, callbackExecutor, payloadCompressor, () -> replyFutures.forEach(JmsReplyFuture::close));
+        try {
+            Destination replyToDestination = null;
+            for (String correlationId : correlatedDestinations.keySet()) {
+                final JmsReplyFuture<T> replyFuture = new JmsReplyFuture<>(replyChannel, correlationId, responseClass,
+                        strategy, unmarshaller, null, payloadCompressor);
+                replyFutures.add(replyFuture);
+                // the gather has its own deadline, dispatching does not depend on the reply queue
+                replyToDestination = replyChannel.register(replyFuture, 0);
+                replyFuture.whenComplete((reply, e) -> gather.onReply(correlationId, reply,
+                        e instanceof CompletionException && e.getCause() != null ? e.getCause() : e));
+            }
+            try (Sender sender = new Sender(SHARED_REQUEST, replyToDestination)) {
+                sender.deadline = JmsDeadline.of(timeoutMillis);
+                sender.scatter(correlatedDestinations, modelObject).forEach((correlationId, e) -> gather.onReply(correlationId, null, e));
+            }
+        } catch (JMSException e) {
+            gather.close();
+            throw new JmsException(e.getMessage(), e);
+        } catch (JmsException | RuntimeException e) {
+            gather.close();
+            throw e;
+        }
+        return gather;
+    }
+
+    // every request is registered in the shared reply channel, replies are dispatched by correlation id
+    private <T> JmsBulkRequest<T> sharedRequestAll(final List<?> requests, final List<String> correlationIds,
+                                                   final Class<T> responseClass, final long timeoutMillis) throws JmsException {
+        final Unmarshaller unmarshaller = responseUnmarshaller();
+        final List<JmsReplyFuture<T>> replyFutures = new ArrayList<>(correlationIds.size());
+        final JmsBulkRequest<T> bulk = new JmsBulkRequest<>(requests, correlationIds, timeoutMillis, responseClass,
+                strategy, unmarshaller, callbackExecutor, payloadCompressor, () -> replyFutures.forEach(JmsReplyFuture::close));
+        try {
+            Destination replyToDestination = null;
+            for (String correlationId : correlationIds) {
+                final JmsReplyFuture<T> replyFuture = new JmsReplyFuture<>(replyChannel, correlationId, responseClass,
+                        strategy, unmarshaller, null, payloadCompressor);
+                replyFutures.add(replyFuture);
+                // the bulk request has its own deadline, dispatching does not depend on the reply queue
+                replyToDestination = replyChannel.register(replyFuture, 0);
+                replyFuture.whenComplete((reply, e) -> bulk.onReply(correlationId, reply,
+                        e instanceof CompletionException && e.getCause() != null ? e.getCause() : e));
+            }
+            try (Sender sender = new Sender(SHARED_REQUEST, replyToDestination)) {
+                sender.deadline = JmsDeadline.of(timeoutMillis);
+                sender.pipeline(requests, correlationIds).forEach((correlationId, e) -> bulk.onReply(correlationId, null, e));
+            }
+        } catch (JMSException e) {
+            bulk.close();
+            throw new JmsException(e.getMessage(), e);
+        } catch (JmsException | RuntimeException e) {
+            bulk.close();
+            throw e;
+        }
+        return bulk;
+    }
+
+    // message deferred by the rate limiter, its permit is taken already
+    private void sendDeferred(final Destination destination, final Object modelObject, final JmsEncodedPayload marshalled,
+                              final Strategy strategy, final Map<String, String> properties, final int priority) throws JMSException {
+        try (Sender sender = new Sender(NON_XA)) {
+            sender.rateLimited = false;
+            sender.marshalled = marshalled;
+            sender.send(destination, modelObject, strategy, properties, priority);
+        }
+    }
+
+    private Marshaller createMarshaller() {
+        return Objects.isNull(modelPackage)
+                ? MarshallerFactory.fromModelClasses(modelClasses)
+                : MarshallerFactory.fromModelPackage(modelPackage);
+    }
+
+    private Unmarshaller responseUnmarshaller() {
+        return Objects.isNull(modelPackage)
+                ? AbstractUnmarshaller.UnmarshallerFactory.fromModelClasses(modelClasses)
+                : AbstractUnmarshaller.UnmarshallerFactory.fromModelPackage(modelPackage);
+    }
+
     private Destination obtainDestination(final Object modelObject) throws JmsException {
         if (destinations == null) {
             throw new JmsException("No 'destinations' are set");
@@ -406,11 +1394,43 @@ public class JmsMessageSender {
         logger.debug("Sending object [{}] to the destination [{}]", modelObject, destination);
     }
 
+    // fails fast before a connection is opened, trial calls are taken by the Sender
+    private void checkCircuit(final SenderStrategy senderStrategy, final Destination destination) throws JmsException {
+        final Object connectionSource = connectionSource(senderStrategy);
+        if (circuitBreaker == null || connectionSource == null) return;
+        try {
+            circuitBreaker.check(connectionSource, null);
+            circuitBreaker.check(connectionSource, destination);
+        } catch (JmsCircuitOpenException e) {
+            throw new JmsException(e.getMessage(), e);
+        }
+    }
+
+    // null if nothing is opened or the broker is not chosen yet
+    private Object connectionSource(final SenderStrategy senderStrategy) {
+        switch (senderStrategy) {
+            case XA:
+                return xaConnectionFactory;
+            case OUTBOX:
+                return null;
+            default:
+                if (Objects.nonNull(brokerBalancer)) {
+                    return null;
+                }
+                return senderStrategy == SenderStrategy.TRANSACTED || Objects.isNull(connectionPool)
+                        ? connectionFactory
+                        : connectionPool;
+        }
+    }
+
     private SenderStrategy defineSenderStrategy() {
         if (Objects.nonNull(xaConnectionFactory)) {
             return SenderStrategy.XA;
         }
-        if (Objects.nonNull(connectionFactory)) {
+        if (Objects.nonNull(outbox)) {
+            return SenderStrategy.OUTBOX;
+        }
+        if (Objects.nonNull(connectionFactory) || Objects.nonNull(connectionPool) || Objects.nonNull(brokerBalancer)) {
             return SenderStrategy.NON_XA;
         }
         throw new IllegalPropertyException("ConnectionFactory and XaConnectionFactory properties are null");
@@ -424,127 +1444,503 @@ public class JmsMessageSender {
         // is used outside transaction
         NON_XA,
         // is used for `request` method where we pass reply to destination as an argument
-        REPLY_TO_REQUEST
+        REPLY_TO_REQUEST,
+        // is used for `request` methods, where reply is received through the shared reply channel
+        SHARED_REQUEST,
+        // is used for `sendAll` methods, local transaction is committed by the caller
+        TRANSACTED,
+        // is used for `send` methods in store-and-forward mode, no jms resources are opened
+        OUTBOX
     }
 
     /**
      * Sender class opens Connection, Session in the constructor. Temp-queue is created depending on the strategy.
      * Connection, Session is closed inside the `execute(...)` method.
+     * In pooling mode Session is borrowed from {@link JmsConnectionPool} and is given back on close.
+     * With {@link JmsBrokerBalancer} the broker is chosen in the constructor and is released on close.
      */
-    private class Sender implements JmsMessageSenderAutoClosable {
+    private class Sender implements JmsMessageSenderAutoClosable, JmsBatchChannel {
 
-        private final Connection connection;
-        private final Session session;
+        private Connection connection;
+        private Session session;
         private Destination replyToDestination;
+        // preset correlation id, otherwise random one is generated per message
+        private String correlationId;
+        // not null in pooling mode
+        private PooledSession pooledSession;
+        // temp-queue is created by this sender and should be deleted on close
+        private boolean temporaryReplyTo;
+        // session could not be reused after jms failure
+        private boolean failed;
+        // producers are cached per destination for the sender lifetime (TRANSACTED strategy only)
+        private Map<Destination, MessageProducer> producers;
+        // messages are appended to the outbox (OUTBOX strategy only)
+        private boolean spooling;
+        // request deadline in epoch milliseconds, it limits time to live of the messages
+        private long deadline = JmsDeadline.NONE;
+        // model object which is marshalled already (request for its cache or coalescing key, message before
+        // it is deferred by the rate limiter), it is not marshalled again
+        private JmsEncodedPayload marshalled;
+        // permit of the rate limiter is taken for every message
+        private boolean rateLimited = true;
+        // message could be sent later by the rate limiter (NON_XA strategy only)
+        private boolean deferrable;
+        // connection factory, xa connection factory or pool the circuits are kept for, null if nothing is opened
+        private Object connectionSource;
+        // not null if the broker is chosen by the balancer
+        private JmsBroker broker;
+        // long-lived sender of a worker, it is not counted as outstanding call of the broker
+        private boolean channel;
+        // pool the session is borrowed from
+        private JmsConnectionPool sessionPool;
+        // session is bound to the transaction and is closed on its completion (XA strategy only)
+        private boolean transactionBound;
+        // deltas of the local transaction, they are invalidated on rollback (TRANSACTED strategy only),
+        // deltas of the xa transaction are invalidated by its synchronization
+        private final List<JmsDeltaEncoder.Encoded> uncommittedDeltas = new ArrayList<>();
 
         private Sender(SenderStrategy senderStrategy) throws JMSException {
+            this(senderStrategy, false);
+        }
+
+        private Sender(SenderStrategy senderStrategy, boolean channel) throws JMSException {
+            this.channel = channel;
+            acquireBrokerCircuit(senderStrategy);
             // TODO: instead of switch use MAP (switch statement looks ugly)
-            switch (senderStrategy) {
-                case REQUEST:
-                    // use replyTo mechanism
-                    if (Objects.isNull(connectionFactory)) {
-                        throw new IllegalPropertyException("ConnectionFactory property is null");
-                    }
-                    connection = connectionFactory.createConnection();
-                    session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
-                    connection.start();
-                    replyToDestination = session.createTemporaryQueue();
-                    break;
-                case XA:
-                    // should be used in Xa transaction
-                    connection = xaConnectionFactory.createConnection();
-                    session = connection.createSession(true, Session.AUTO_ACKNOWLEDGE);
-                    break;
-                case NON_XA:
-                default:
-                    if (Objects.isNull(connectionFactory)) {
-                        throw new IllegalPropertyException("ConnectionFactory property is null");
-                    }
-                    connection = connectionFactory.createConnection();
-                    session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
-                    break;
+            try {
+                switch (senderStrategy) {
+                    case REQUEST:
+                        // use replyTo mechanism
+                        openSession(true);
+                        replyToDestination = session.createTemporaryQueue();
+                        temporaryReplyTo = true;
+                        break;
+                    case XA:
+                        // should be used in Xa transaction, session is the same for all sends of the transaction
+                        session = ConnectionFactoryUtils.getTransactionalSession(xaConnectionFactory, null, false);
+                        if (session != null) {
+                            transactionBound = true;
+                            break;
+                        }
+                        connection = xaConnectionFactory.createConnection();
+                        session = connection.createSession(true, Session.AUTO_ACKNOWLEDGE);
+                        break;
+                    case TRANSACTED:
+                        // local transaction, pooled sessions are not transacted
+                        final ConnectionFactory transactedFactory = broker != null ? broker.getConnectionFactory() : connectionFactory;
+                        if (Objects.isNull(transactedFactory)) {
+                            throw new IllegalPropertyException("ConnectionFactory property is null");
+                        }
+                        connection = transactedFactory.createConnection();
+                        session = connection.createSession(true, Session.SESSION_TRANSACTED);
+                        producers = new HashMap<>();
+                        break;
+                    case OUTBOX:
+                        spooling = true;
+                        break;
+                    case NON_XA:
+                    default:
+                        openSession(false);
+                        deferrable = true;
+                        break;
+                }
+            } catch (JMSException | RuntimeException e) {
+                completeCircuit(null, e, 0);
+                releaseBroker(e instanceof JMSException);
+                throw e;
             }
+            completeCircuit(null, null, 0);
         }
 
         private Sender(SenderStrategy senderStrategy, Destination replyToDestination) throws JMSException {
-            switch (senderStrategy) {
-                case REPLY_TO_REQUEST:
-                    // use replyTo mechanism
-                    if (Objects.isNull(connectionFactory)) {
-                        throw new IllegalPropertyException("ConnectionFactory property is null");
-                    }
-                    connection = connectionFactory.createConnection();
-                    session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
-                    connection.start();
-                    this.replyToDestination = replyToDestination;
-                    break;
-                default:
-                    if (Objects.isNull(connectionFactory)) {
-                        throw new IllegalPropertyException("ConnectionFactory property is null");
-                    }
-                    connection = connectionFactory.createConnection();
-                    session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
-                    break;
+            acquireBrokerCircuit(senderStrategy);
+            try {
+                switch (senderStrategy) {
+                    case REPLY_TO_REQUEST:
+                        // use replyTo mechanism
+                        openSession(true);
+                        this.replyToDestination = replyToDestination;
+                        break;
+                    case SHARED_REQUEST:
+                        // reply is consumed by the shared reply channel
+                        openSession(false);
+                        this.replyToDestination = replyToDestination;
+                        break;
+                    default:
+                        openSession(false);
+                        break;
+                }
+            } catch (JMSException | RuntimeException e) {
+                completeCircuit(null, e, 0);
+                releaseBroker(e instanceof JMSException);
+                throw e;
+            }
+            completeCircuit(null, null, 0);
+        }
+
+        private Sender(SenderStrategy senderStrategy, Destination replyToDestination, String correlationId) throws JMSException {
+            this(senderStrategy, replyToDestination);
+            this.correlationId = correlationId;
+        }
+
+        // broker is released if its circuit is open, the open circuit counts as jms failure of the broker
+        private void acquireBrokerCircuit(final SenderStrategy senderStrategy) throws JMSException {
+            acquireBroker(senderStrategy);
+            try {
+                acquireCircuit(null);
+            } catch (JMSException | RuntimeException e) {
+                releaseBroker(e instanceof JMSException);
+                throw e;
+            }
+        }
+
+        // circuits are kept for the chosen broker
+        private void acquireBroker(final SenderStrategy senderStrategy) {
+            if (brokerBalancer == null || senderStrategy == SenderStrategy.XA || senderStrategy == SenderStrategy.OUTBOX) {
+                connectionSource = connectionSource(senderStrategy);
+                return;
             }
+            broker = channel ? brokerBalancer.choose() : brokerBalancer.acquire();
+            connectionSource = senderStrategy == SenderStrategy.TRANSACTED || broker.getConnectionPool() == null
+                    ? broker.getConnectionFactory()
+                    : broker.getConnectionPool();
         }
 
-        private void send(final Destination destination, final Object modelObject) throws JMSException {
-            send(destination, marshall(modelObject, strategy), properties, Message.DEFAULT_PRIORITY);
+        private void releaseBroker(final boolean failure) {
+            if (broker == null) return;
+            if (channel) {
+                brokerBalancer.report(broker, failure);
+            } else {
+                brokerBalancer.release(broker, failure);
+            }
+            broker = null;
+        }
+
+        // either borrows session from the pool or opens a new connection
+        private void openSession(final boolean startConnection) throws JMSException {
+            final JmsConnectionPool pool = broker != null ? broker.getConnectionPool() : connectionPool;
+            if (Objects.nonNull(pool)) {
+                sessionPool = pool;
+                pooledSession = pool.borrowSession();
+                connection = pooledSession.getConnection();
+                session = pooledSession.getSession();
+                return;
+            }
+            final ConnectionFactory factory = broker != null ? broker.getConnectionFactory() : connectionFactory;
+            if (Objects.isNull(factory)) {
+                throw new IllegalPropertyException("ConnectionFactory property is null");
+            }
+            connection = factory.createConnection();
+            session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            if (startConnection) {
+                connection.start();
+            }
+        }
+
+        @Override
+        public void send(final Destination destination, final Object modelObject) throws JMSException {
+            send(destination, modelObject, null, properties, JmsSendProfile.DEFAULT_PRIORITY);
         }
 
         private void send(final Destination destination, final Object modelObject, int priority) throws JMSException {
-            send(destination, marshall(modelObject, strategy), properties, priority);
+            send(destination, modelObject, null, properties, priority);
         }
 
         private void send(final Destination destination, final Object modelObject, final Map<String, String> properties) throws JMSException {
-            send(destination, marshall(modelObject, strategy), properties, Message.DEFAULT_PRIORITY);
+            send(destination, modelObject, null, properties, JmsSendProfile.DEFAULT_PRIORITY);
         }
 
         private void send(final Destination destination, final Object modelObject, final Strategy strategy) throws JMSException {
-            send(destination, marshall(modelObject, strategy), properties, Message.DEFAULT_PRIORITY);
+            send(destination, modelObject, strategy, properties, JmsSendProfile.DEFAULT_PRIORITY);
         }
 
         private void send(final Destination destination, final Object modelObject, final int priority, final Strategy strategy) throws JMSException {
-            send(destination, marshall(modelObject, strategy), properties, priority);
+            send(destination, modelObject, strategy, properties, priority);
         }
 
         private void send(final Destination destination, final Object modelObject, final Map<String, String> properties, final Strategy strategy) throws JMSException {
-            send(destination, marshall(modelObject, strategy), properties, Message.DEFAULT_PRIORITY);
+            send(destination, modelObject, strategy, properties, JmsSendProfile.DEFAULT_PRIORITY);
         }
 
-        private void send(final Destination destination, final String message, final Map<String, String> properties, int priority) throws JMSException {
-            execute(destination, (session, messageProducer) -> {
-                // create text message
-                final TextMessage textMessage = session.createTextMessage(message);
-                if (replyToDestination != null) {
-                    // correlationID
-                    final String correlationId = getCorrelationId();
-                    textMessage.setJMSCorrelationID(correlationId);
-                    textMessage.setJMSReplyTo(replyToDestination);
+        // null strategy and -1 priority are taken from the send profile of the model class
+        private void send(final Destination destination, final Object modelObject, final Strategy strategy,
+                          final Map<String, String> properties, int priority) throws JMSException {
+            final JmsSendProfile sendProfile = sendProfiles.getOrDefault(modelObject.getClass(), JmsSendProfile.NONE);
+            final Strategy messageStrategy = strategy != null ? strategy : sendProfile.strategyOr(JmsMessageSender.this.strategy);
+            // caller could change the model object once a deferred send returns, so it is marshalled before it is deferred
+            final JmsEncodedPayload marshalledPayload = marshalled == null && couldBeDeferred()
+                    ? JmsMessagePayload.encode(createMarshaller(), messageStrategy, modelObject, binaryPayload, null)
+                    : marshalled;
+            if (!acquirePermit(destination, () -> sendDeferred(destination, modelObject, marshalledPayload, strategy, properties, priority))) {
+                return;
+            }
+            final int messagePriority = priority != JmsSendProfile.DEFAULT_PRIORITY ? priority : sendProfile.priorityOr(Message.DEFAULT_PRIORITY);
+            final long timeToLive = Math.max(sendProfile.expirationOr(expiration), Message.DEFAULT_TIME_TO_LIVE);
+            final JmsEncodedPayload payload;
+            final JmsDeltaEncoder.Encoded encoded;
+            // requests and spooled messages are always sent in full
+            if (deltaEncoder != null && !spooling && replyToDestination == null && deltaEncoder.supports(modelObject)) {
+                final JmsEncodedPayload full = marshalledPayload != null
+                        ? marshalledPayload
+                        : JmsMessagePayload.encode(createMarshaller(), messageStrategy, modelObject, binaryPayload, null);
+                encoded = deltaEncoder.encode(destination, modelObject, full.getBytes());
+                payload = JmsMessagePayload.compress(encoded == null || encoded.isSnapshot()
+                        ? full
+                        : JmsEncodedPayload.binary(encoded.getBody(), false), payloadCompressor);
+            } else {
+                encoded = null;
+                payload = marshalledPayload != null
+                        ? JmsMessagePayload.compress(marshalledPayload, payloadCompressor)
+                        : JmsMessagePayload.encode(createMarshaller(), messageStrategy, modelObject, binaryPayload, payloadCompressor);
+            }
+            if (spooling) {
+                spool(destination, payload, properties, sendProfile.getDeliveryMode(), messagePriority, timeToLive);
+                return;
+            }
+            if (encoded != null) {
+                sendDelta(destination, payload, encoded, properties, sendProfile.getDeliveryMode(), messagePriority, timeToLive);
+                return;
+            }
+            final String correlationId = replyToDestination != null ? getCorrelationId() : null;
+            sendPayload(destination, payload, correlationId, properties, sendProfile.getDeliveryMode(), messagePriority, timeToLive);
+        }
+
+        // snapshot or delta, the key is sent in full next time if the message is not sent or is rolled back
+        private void sendDelta(final Destination destination, final JmsEncodedPayload payload, final JmsDeltaEncoder.Encoded encoded,
+                               final Map<String, String> properties, final int deliveryMode, final int priority,
+                               final long timeToLive) throws JMSException {
+            final Map<String, String> deltaProperties = properties == null ? new HashMap<>() : new HashMap<>(properties);
+            deltaProperties.putAll(encoded.getProperties());
+            try {
+                sendPayload(destination, payload, null, deltaProperties, deliveryMode, priority, timeToLive);
+            } catch (JMSException | RuntimeException e) {
+                deltaEncoder.invalidate(encoded);
+                throw e;
+            }
+            if (producers != null) {
+                uncommittedDeltas.add(encoded);
+            } else if (transactionBound) {
+                invalidateOnRollback(encoded);
+            }
+        }
+
+        // xa transaction is completed by the transaction manager, not by the sender
+        private void invalidateOnRollback(final JmsDeltaEncoder.Encoded encoded) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        deltaEncoder.invalidate(encoded);
+                    }
                 }
-                // check whether we need properties
-                if (properties != null) {
-                    for (Map.Entry<String, String> entry : properties.entrySet()) {
-                        textMessage.setStringProperty(entry.getKey(), entry.getValue());
+            });
+        }
+
+        // circuit of the destination, or of the connection source if destination is null
+        private void acquireCircuit(final Destination destination) throws JMSException {
+            if (circuitBreaker != null && connectionSource != null) {
+                circuitBreaker.acquire(connectionSource, destination);
+            }
+        }
+
+        // jms failures trip the circuit, other failures (marshalling, configuration) are ignored
+        private void completeCircuit(final Destination destination, final Exception failure, final long latencyNanos) {
+            if (circuitBreaker == null || connectionSource == null) return;
+            if (failure == null) {
+                circuitBreaker.onSuccess(connectionSource, destination, latencyNanos);
+            } else if (failure instanceof JMSException) {
+                circuitBreaker.onFailure(connectionSource, destination);
+            } else {
+                circuitBreaker.onIgnored(connectionSource, destination);
+            }
+        }
+
+        // returns false if the message is deferred by the rate limiter
+        private boolean acquirePermit(final Destination destination, final JmsRateLimiter.DeferredSend deferredSend) throws JMSException {
+            if (rateLimiter == null || !rateLimited || spooling) return true;
+            // requests wait for their permit, reply consumer is already waiting
+            return rateLimiter.acquire(destination, deferrable && replyToDestination == null ? deferredSend : null);
+        }
+
+        private boolean couldBeDeferred() {
+            return rateLimiter != null && rateLimited && !spooling && deferrable && replyToDestination == null
+                    && rateLimiter.getPolicy() == RateLimitPolicy.QUEUE;
+        }
+
+        // modelObject is marshalled once and sent to every destination with its own correlation id,
+        // returns correlation ids of the destinations which circuits are open
+        private Map<String, JmsCircuitOpenException> scatter(final Map<String, Destination> correlatedDestinations,
+                                                             final Object modelObject) throws JMSException {
+            final Map<String, JmsCircuitOpenException> rejected = new HashMap<>();
+            final JmsSendProfile sendProfile = sendProfiles.getOrDefault(modelObject.getClass(), JmsSendProfile.NONE);
+            final Strategy messageStrategy = sendProfile.strategyOr(JmsMessageSender.this.strategy);
+            final int messagePriority = sendProfile.priorityOr(Message.DEFAULT_PRIORITY);
+            final long timeToLive = Math.max(sendProfile.expirationOr(expiration), Message.DEFAULT_TIME_TO_LIVE);
+            final JmsEncodedPayload payload = JmsMessagePayload.encode(createMarshaller(), messageStrategy, modelObject,
+                    binaryPayload, payloadCompressor);
+            for (Map.Entry<String, Destination> entry : correlatedDestinations.entrySet()) {
+                acquirePermit(entry.getValue(), null);
+                log(modelObject, entry.getValue());
+                try {
+                    sendPayload(entry.getValue(), payload, entry.getKey(), properties, sendProfile.getDeliveryMode(),
+                            messagePriority, timeToLive);
+                } catch (JmsCircuitOpenException e) {
+                    rejected.put(entry.getKey(), e);
+                }
+            }
+            return rejected;
+        }
+
+        // requests are sent back-to-back with their correlation ids, producers are cached for the pipeline,
+        // returns correlation ids of the requests which could not be sent
+        private Map<String, Exception> pipeline(final List<?> requests, final List<String> correlationIds) {
+            final Map<String, Exception> failures = new HashMap<>();
+            if (producers == null && pooledSession == null) {
+                producers = new HashMap<>();
+            }
+            for (int i = 0; i < requests.size(); i++) {
+                final Object request = requests.get(i);
+                correlationId = correlationIds.get(i);
+                try {
+                    final Destination destination = obtainDestination(request);
+                    log(request, destination);
+                    send(destination, request);
+                } catch (JmsCircuitOpenException | JmsException | RuntimeException e) {
+                    failures.put(correlationId, e);
+                } catch (JMSException e) {
+                    // session could not be used any more, the rest of the requests fail as well
+                    for (int j = i; j < requests.size(); j++) {
+                        failures.put(correlationIds.get(j), e);
                     }
+                    break;
+                }
+            }
+            correlationId = null;
+            return failures;
+        }
+
+        // modelObject is marshalled once and sent to every destination, producers are cached for the multicast
+        private void multicast(final Collection<Destination> destinations, final Object modelObject) throws JMSException {
+            final JmsSendProfile sendProfile = sendProfiles.getOrDefault(modelObject.getClass(), JmsSendProfile.NONE);
+            final Strategy messageStrategy = sendProfile.strategyOr(JmsMessageSender.this.strategy);
+            final int messagePriority = sendProfile.priorityOr(Message.DEFAULT_PRIORITY);
+            final long timeToLive = Math.max(sendProfile.expirationOr(expiration), Message.DEFAULT_TIME_TO_LIVE);
+            final JmsEncodedPayload payload = JmsMessagePayload.encode(createMarshaller(), messageStrategy, modelObject,
+                    binaryPayload, payloadCompressor);
+            if (!spooling && producers == null && pooledSession == null) {
+                producers = new HashMap<>();
+            }
+            for (Destination destination : destinations) {
+                acquirePermit(destination, null);
+                log(modelObject, destination);
+                if (spooling) {
+                    spool(destination, payload, properties, sendProfile.getDeliveryMode(), messagePriority, timeToLive);
+                } else {
+                    sendPayload(destination, payload, null, properties, sendProfile.getDeliveryMode(), messagePriority, timeToLive);
+                }
+            }
+        }
+
+        // envelope of packed model objects, send settings of the sender are used
+        private void sendEnvelope(final Destination destination, final byte[] envelope, final int count) throws JMSException {
+            acquirePermit(destination, null);
+            final JmsEncodedPayload payload = JmsMessagePayload.compress(JmsEncodedPayload.binary(envelope, false), payloadCompressor);
+            final Map<String, String> envelopeProperties = properties == null ? new HashMap<>() : new HashMap<>(properties);
+            envelopeProperties.put(JmsMessagePacker.PACKED_COUNT_PROPERTY, String.valueOf(count));
+            sendPayload(destination, payload, null, envelopeProperties, JmsSendProfile.NONE.getDeliveryMode(),
+                    Message.DEFAULT_PRIORITY, Math.max(expiration, Message.DEFAULT_TIME_TO_LIVE));
+        }
+
+        // takes a trial call of the destination circuit if it is half-open, send latency is recorded
+        private void sendPayload(final Destination destination, final JmsEncodedPayload payload, final String correlationId,
+                                 final Map<String, String> properties, final int deliveryMode, final int priority,
+                                 final long timeToLive) throws JMSException {
+            acquireCircuit(destination);
+            final long start = System.nanoTime();
+            try {
+                producePayload(destination, payload, correlationId, properties, deliveryMode, priority, timeToLive);
+            } catch (JMSException | RuntimeException e) {
+                completeCircuit(destination, e, 0);
+                throw e;
+            }
+            completeCircuit(destination, null, System.nanoTime() - start);
+        }
+
+        private void producePayload(final Destination destination, final JmsEncodedPayload payload, final String correlationId,
+                                    final Map<String, String> properties, final int deliveryMode, final int priority,
+                                    final long timeToLive) throws JMSException {
+            final long messageTimeToLive = deadline != JmsDeadline.NONE ? JmsDeadline.timeToLive(deadline, timeToLive) : timeToLive;
+            // oversize payload is stored before sending, the broker gets its reference only
+            final String reference = claimCheck != null && claimCheck.shouldCheck(payload) ? claimCheck.store(payload) : null;
+            try {
+                produceMessages(destination, payload, reference, correlationId, properties, deliveryMode, priority, messageTimeToLive);
+            } catch (JMSException | RuntimeException e) {
+                if (reference != null) {
+                    claimCheck.discard(reference);
+                }
+                throw e;
+            }
+        }
+
+        private void produceMessages(final Destination destination, final JmsEncodedPayload payload, final String reference,
+                                     final String correlationId, final Map<String, String> properties,
+                                     final int deliveryMode, final int priority, final long messageTimeToLive) throws JMSException {
+            execute(destination, (session, messageProducer) -> {
+                // create text or bytes message, reference of a claim-checked payload or chunks of a big payload
+                final List<? extends Message> messages = reference != null
+                        ? Collections.singletonList(claimCheck.createReference(session, reference, payload))
+                        : payloadChunker != null && payloadChunker.shouldChunk(payload)
+                        ? payloadChunker.createChunks(session, payload)
+                        : Collections.singletonList(JmsMessagePayload.createMessage(session, payload));
+                // all chunks have the same correlationID
+                for (Message message : messages) {
+                    if (replyToDestination != null) {
+                        message.setJMSCorrelationID(correlationId);
+                        message.setJMSReplyTo(replyToDestination);
+                    }
+                    // check whether we need properties
+                    if (properties != null) {
+                        for (Map.Entry<String, String> entry : properties.entrySet()) {
+                            message.setStringProperty(entry.getKey(), entry.getValue());
+                        }
+                    }
+                    if (deadline != JmsDeadline.NONE) {
+                        message.setLongProperty(JmsDeadline.DEADLINE_PROPERTY, deadline);
+                    }
+                    // send message, producers are shared between model classes, so send settings are passed explicitly
+                    messageProducer.send(message, deliveryMode, priority, messageTimeToLive);
                 }
-                messageProducer.setPriority(priority);
-                // send message
-                messageProducer.send(textMessage);
                 return null;
             });
         }
 
+        // the same payload as `send(...)` sends, but without session, big payloads are spooled as is
+        private void spool(final Destination destination, final JmsEncodedPayload payload, final Map<String, String> properties,
+                           final int deliveryMode, final int priority, final long timeToLive) throws JMSException {
+            final Map<String, String> recordProperties = properties == null ? new HashMap<>() : new HashMap<>(properties);
+            if (payload.isCompressed()) {
+                recordProperties.put(JmsPayloadCompressor.CONTENT_ENCODING_PROPERTY, JmsPayloadCompressor.DEFLATE);
+            }
+            outbox.append(JmsOutboxRecord.of(destination, payload.isText(), payload.getBytes(), recordProperties,
+                    deliveryMode, priority, timeToLive));
+        }
+
         private <R> R execute(final Destination destination, final JmsMessageProducerCallback<R> jmsMessageProducerCallback) throws JMSException {
             MessageProducer messageProducer = null;
             try {
-                messageProducer = session.createProducer(destination);
+                // pooled and transacted producers are cached and never closed here
+                messageProducer = pooledSession != null
+                        ? pooledSession.getProducer(destination)
+                        : producers != null ? obtainProducer(destination) : session.createProducer(destination);
                 if (expiration > 0) {
                     messageProducer.setTimeToLive(expiration);
                 }
                 return jmsMessageProducerCallback.execute(session, messageProducer);
+            } catch (JMSException e) {
+                failed = true;
+                throw e;
             } finally {
-                if (messageProducer != null) {
+                if (messageProducer != null && pooledSession == null && producers == null) {
                     try {
                         messageProducer.close();
                     } catch (JMSException e) {
@@ -554,8 +1950,52 @@ public class JmsMessageSender {
             }
         }
 
+        private MessageProducer obtainProducer(final Destination destination) throws JMSException {
+            MessageProducer messageProducer = producers.get(destination);
+            if (messageProducer == null) {
+                messageProducer = session.createProducer(destination);
+                producers.put(destination, messageProducer);
+            }
+            return messageProducer;
+        }
+
+        @Override
+        public void commit() throws JMSException {
+            session.commit();
+            uncommittedDeltas.clear();
+        }
+
+        @Override
+        public void rollback() {
+            uncommittedDeltas.forEach(deltaEncoder::invalidate);
+            uncommittedDeltas.clear();
+            try {
+                session.rollback();
+            } catch (JMSException e) {
+                logger.error("Could not rollback jms session", e);
+            }
+        }
+
         @Override
         public void close() {
+            releaseBroker(failed);
+            if (pooledSession != null) {
+                releasePooledSession();
+                return;
+            }
+            if (producers != null) {
+                for (MessageProducer messageProducer : producers.values()) {
+                    try {
+                        messageProducer.close();
+                    } catch (JMSException e) {
+                        logger.error("Could not close message producer", e);
+                    }
+                }
+                producers.clear();
+            }
+            if (transactionBound) {
+                return;
+            }
             if (session != null) {
                 try {
                     session.close();
@@ -572,29 +2012,42 @@ public class JmsMessageSender {
             }
         }
 
-        private String marshall(final Object modelObject, final Strategy strategy) {
-            final Marshaller marshaller = Objects.isNull(modelPackage)
-                    ? MarshallerFactory.fromModelClasses(modelClasses)
-                    : MarshallerFactory.fromModelPackage(modelPackage);
-            return marshaller.marshall(strategy, modelObject);
+        private void releasePooledSession() {
+            final PooledSession released = pooledSession;
+            pooledSession = null;
+            // temp-queue lives as long as the connection does, so it should be deleted explicitly
+            if (temporaryReplyTo) {
+                try {
+                    ((TemporaryQueue) replyToDestination).delete();
+                } catch (JMSException e) {
+                    logger.warn("Could not delete temporary queue", e);
+                    failed = true;
+                }
+            }
+            if (failed) {
+                sessionPool.invalidate(released);
+            } else {
+                sessionPool.release(released);
+            }
         }
 
         private <T> JmsFuture<T> createAndGetFuture(final Class<T> responseClass) throws JmsException {
-            Function<String, Object> unmarshallerFunction = (message) -> {
-                Unmarshaller unmarshaller = Objects.isNull(modelPackage)
-                        ? AbstractUnmarshaller.UnmarshallerFactory.fromModelClasses(modelClasses)
-                        : AbstractUnmarshaller.UnmarshallerFactory.fromModelPackage(modelPackage);
-                return unmarshaller.unmarshall(strategy, message);
-            };
-            return new JmsFutureImpl(connection, session, replyToDestination, responseClass, unmarshallerFunction);
+            try {
+                return new JmsFutureImpl<>(session, replyToDestination, responseClass, strategy, responseUnmarshaller(),
+                        callbackExecutor, payloadCompressor, this);
+            } catch (JmsException e) {
+                close();
+                throw e;
+            }
         }
 
         private String getCorrelationId() {
-            return UUID.randomUUID().toString();
+            return correlationId != null ? correlationId : UUID.randomUUID().toString();
         }
     }
 
-    private interface JmsMessageSenderAutoClosable extends AutoCloseable {
+    // Sender resources are released by JmsFuture in case of request-reply
+    interface JmsMessageSenderAutoClosable extends AutoCloseable {
 
         void close();
     }
@@ -6,8 +6,8 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 /**
- * Mapping DTO class to Jms queue
- * Used in JmsModelMappingBeanPostProcessor
+ * Mapping DTO class to Jms queue and its send profile (delivery mode, priority, ttl, strategy)
+ * Used in JmsModelMappingBeanPostProcessor, see {@link JmsSendProfile}
  */
 @Retention(RetentionPolicy.RUNTIME)
 @Target({ElementType.TYPE})
@@ -16,5 +16,16 @@ public @interface JmsModelMapping {
     // Jms Queue bean name
     String value() default "";
 
-}
+    // javax.jms.DeliveryMode.PERSISTENT or NON_PERSISTENT, 0 - default (persistent)
+    int deliveryMode() default JmsSendProfile.DEFAULT;
+
+    // 0-9, -1 - priority passed to JmsMessageSender.send(...) or jms default priority
+    int priority() default JmsSendProfile.DEFAULT_PRIORITY;
+
+    // ttl in milliseconds, -1 - JmsMessageSender expiration, 0 - message never expires
+    long expiration() default JmsSendProfile.DEFAULT_EXPIRATION;
 
+    // empty - JmsMessageSender strategy
+    Strategy[] strategy() default {};
+
+}
@@ -0,0 +1,315 @@
+package com.spaniard.jms.client.core;
+
+import com.spaniard.jms.client.core.support.ClassName;
+import com.spaniard.jms.client.core.support.JmsMessagePayload;
+import com.spaniard.jms.client.core.support.compression.JmsPayloadCompressor;
+import com.spaniard.jms.client.core.support.unmarshalling.Unmarshaller;
+import com.spaniard.jms.client.exception.JmsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageListener;
+import javax.jms.Session;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Replies of one request sent to several destinations by `JmsMessageSender.scatterGather(...)`.
+ * Every destination gets its own correlation id, all replies are received through one reply destination.
+ * <p>
+ * Replies could be taken as they arrive with {@link #poll()} or {@link #stream()}, or all at once with
+ * {@link #toCompletionStage()}, which is completed when every destination has replied or at the deadline with
+ * the replies received so far. Replies received after the deadline are dropped. Jms resources are released as soon
+ * as the gather is completed, it should be closed anyway if it is abandoned before the deadline.
+ * <p>
+ * Deadlines of all gathers are run by one shared timer thread, jms resources of all gathers are closed by another
+ * shared thread (close is the only session method allowed from any thread), so that a slow close does not delay
+ * deadlines.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public class JmsScatterGather<T> implements MessageListener, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClassName.getClassName());
+
+    // deadlines of all gathers
+    private static final ScheduledThreadPoolExecutor TIMER;
+    // release of jms resources of all gathers
+    private static final ExecutorService RELEASER;
+
+    static {
+        TIMER = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "jms-scatter-gather-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        TIMER.setRemoveOnCancelPolicy(true);
+        RELEASER = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "jms-scatter-gather-releaser");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private final List<Destination> destinations;
+    // correlation id -> destination, entry is removed by the first reply
+    private final Map<String, Destination> pending = new ConcurrentHashMap<>();
+    private final BlockingQueue<JmsGatherResult<T>> arrivals = new LinkedBlockingQueue<>();
+    private final CompletableFuture<List<JmsGatherResult<T>>> completion = new CompletableFuture<>();
+    // read-only view, so that callers could not complete the gather
+    private final CompletionStage<List<JmsGatherResult<T>>> stage = completion.thenApply(Function.identity());
+    private final AtomicBoolean released = new AtomicBoolean();
+    // replies taken by poll, the gather could not have more replies than destinations
+    private final AtomicInteger taken = new AtomicInteger();
+
+    private final Class<T> responseClass;
+    private final Strategy strategy;
+    private final Unmarshaller unmarshaller;
+    private final Executor callbackExecutor;
+    private final JmsPayloadCompressor payloadCompressor;
+    private final AutoCloseable resources;
+    private final long deadline;
+    private final ScheduledFuture<?> deadlineTask;
+
+    // guarded by this
+    private final List<JmsGatherResult<T>> results = new ArrayList<>();
+    private boolean done;
+
+    private MessageConsumer messageConsumer;
+
+    JmsScatterGather(Map<String, Destination> correlatedDestinations, long timeoutMillis, Class<T> responseClass,
+                     Strategy strategy, Unmarshaller unmarshaller, Executor callbackExecutor,
+                     JmsPayloadCompressor payloadCompressor, AutoCloseable resources) {
+        this.destinations = Collections.unmodifiableList(new ArrayList<>(correlatedDestinations.values()));
+        this.pending.putAll(correlatedDestinations);
+        this.responseClass = responseClass;
+        this.strategy = strategy;
+        this.unmarshaller = unmarshaller;
+        this.callbackExecutor = callbackExecutor;
+        this.payloadCompressor = payloadCompressor;
+        this.resources = resources;
+        this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.deadlineTask = TIMER.schedule(this::expire, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // replies are consumed by the gather itself from the temp-queue of the request
+    void consume(final Session session, final Destination replyTo) throws JMSException {
+        messageConsumer = session.createConsumer(replyTo);
+        messageConsumer.setMessageListener(this);
+    }
+
+    /**
+     * @return destinations the request was sent to
+     */
+    public List<Destination> getDestinations() {
+        return destinations;
+    }
+
+    /**
+     * @return destinations which have not replied yet (or until the deadline)
+     */
+    public List<Destination> getMissing() {
+        final List<Destination> missing = new ArrayList<>(destinations);
+        synchronized (this) {
+            for (JmsGatherResult<T> result : results) {
+                missing.remove(result.getDestination());
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Takes the next reply in the arrival order, waits until the deadline if there is none.
+     *
+     * @return next reply or null if all replies are taken or the deadline is over
+     * @throws InterruptedException
+     */
+    public JmsGatherResult<T> poll() throws InterruptedException {
+        while (true) {
+            final JmsGatherResult<T> result = arrivals.poll();
+            if (result != null) return take(result);
+            final long remaining = deadline - System.nanoTime();
+            // completion could be run later by the callback executor, do not wait for it
+            if (taken.get() >= destinations.size() || isFinished() || remaining <= 0) {
+                return take(arrivals.poll());
+            }
+            final JmsGatherResult<T> arrived = arrivals.poll(remaining, TimeUnit.NANOSECONDS);
+            if (arrived != null) return take(arrived);
+        }
+    }
+
+    /**
+     * Blocking stream of replies in the arrival order, see {@link #poll()}. Replies taken by `poll()` are not
+     * repeated in the stream.
+     *
+     * @return stream which ends when all destinations have replied or at the deadline
+     */
+    public Stream<JmsGatherResult<T>> stream() {
+        return StreamSupport.stream(new Spliterators.AbstractSpliterator<JmsGatherResult<T>>(destinations.size(),
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super JmsGatherResult<T>> action) {
+                final JmsGatherResult<T> result;
+                try {
+                    result = poll();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                if (result == null) return false;
+                action.accept(result);
+                return true;
+            }
+        }, false);
+    }
+
+    /**
+     * @return all replies in the arrival order, completed when every destination has replied or with partial
+     * replies at the deadline. Dependent stages run on the callback executor if it is set.
+     */
+    public CompletionStage<List<JmsGatherResult<T>>> toCompletionStage() {
+        return stage;
+    }
+
+    public boolean isDone() {
+        return completion.isDone();
+    }
+
+    @Override
+    public void onMessage(Message message) {
+        final String correlationId;
+        try {
+            correlationId = message.getJMSCorrelationID();
+        } catch (JMSException e) {
+            logger.error("Could not read correlation id of the reply", e);
+            return;
+        }
+        final Destination destination = correlationId == null ? null : pending.remove(correlationId);
+        if (destination == null) {
+            logger.debug("No pending destination found for correlation id [{}], reply is dropped", correlationId);
+            return;
+        }
+        try {
+            final Object modelObject = JmsMessagePayload.unmarshall(unmarshaller, strategy, message, payloadCompressor);
+            arrive(JmsGatherResult.replied(destination, responseClass.cast(modelObject)));
+        } catch (JmsException | JMSException | RuntimeException e) {
+            arrive(JmsGatherResult.failed(destination, e));
+        }
+    }
+
+    // is called when the reply is received through the shared reply channel
+    void onReply(final String correlationId, final T reply, final Throwable cause) {
+        final Destination destination = pending.remove(correlationId);
+        if (destination == null) return;
+        arrive(cause == null ? JmsGatherResult.replied(destination, reply) : JmsGatherResult.failed(destination, cause));
+    }
+
+    /**
+     * Completes the gather with the replies received so far and releases jms resources.
+     */
+    @Override
+    public void close() {
+        expire();
+        release();
+    }
+
+    private JmsGatherResult<T> take(final JmsGatherResult<T> result) {
+        if (result != null) {
+            taken.incrementAndGet();
+        }
+        return result;
+    }
+
+    // no reply is queued after the gather is finished
+    private synchronized boolean isFinished() {
+        return done;
+    }
+
+    private void arrive(final JmsGatherResult<T> result) {
+        final List<JmsGatherResult<T>> snapshot;
+        synchronized (this) {
+            if (done) return;
+            results.add(result);
+            arrivals.offer(result);
+            if (results.size() < destinations.size()) return;
+            done = true;
+            snapshot = new ArrayList<>(results);
+        }
+        finish(snapshot);
+    }
+
+    private void expire() {
+        final List<JmsGatherResult<T>> snapshot;
+        synchronized (this) {
+            if (done) return;
+            done = true;
+            snapshot = new ArrayList<>(results);
+        }
+        logger.debug("Scatter-gather is completed with {} of {} replies", snapshot.size(), destinations.size());
+        finish(snapshot);
+    }
+
+    private void finish(final List<JmsGatherResult<T>> snapshot) {
+        deadlineTask.cancel(false);
+        try {
+            // reply consumer could not be closed by its own dispatcher thread
+            RELEASER.execute(this::release);
+        } catch (RejectedExecutionException e) {
+            release();
+        }
+        final Runnable completeGather = () -> completion.complete(Collections.unmodifiableList(snapshot));
+        if (callbackExecutor == null) {
+            completeGather.run();
+            return;
+        }
+        try {
+            callbackExecutor.execute(completeGather);
+        } catch (RejectedExecutionException e) {
+            // never lose the replies, complete on the current thread
+            completeGather.run();
+        }
+    }
+
+    private void release() {
+        if (!released.compareAndSet(false, true)) return;
+        if (messageConsumer != null) {
+            try {
+                messageConsumer.close();
+            } catch (JMSException e) {
+                logger.error(e.getMessage(), e);
+            }
+        }
+        try {
+            resources.close();
+        } catch (Exception e) {
+            logger.error("Could not release scatter-gather resources", e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.spaniard.jms.client.core;
+
+import com.spaniard.jms.client.exception.IllegalPropertyException;
+
+import javax.jms.DeliveryMode;
+
+/**
+ * Immutable send settings of a model class, precompiled by JmsModelMappingBeanPostProcessor from
+ * {@link JmsModelMapping}. Unset values fall back to JmsMessageSender settings, explicit arguments of
+ * `send(...)` (priority, strategy) take precedence over the profile.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public final class JmsSendProfile {
+
+    static final int DEFAULT = 0;
+    static final int DEFAULT_PRIORITY = -1;
+    static final long DEFAULT_EXPIRATION = -1;
+
+    // profile with no overrides
+    static final JmsSendProfile NONE = new JmsSendProfile(DEFAULT, DEFAULT_PRIORITY, DEFAULT_EXPIRATION, null);
+
+    private final int deliveryMode;
+    private final int priority;
+    private final long expiration;
+    private final Strategy strategy;
+
+    /**
+     * @param deliveryMode -- DeliveryMode.PERSISTENT or NON_PERSISTENT, 0 - default (persistent)
+     * @param priority     -- 0-9, -1 - default
+     * @param expiration   -- ttl in milliseconds, -1 - default, 0 - message never expires
+     * @param strategy     -- strategy for marshalling, null - default
+     */
+    public JmsSendProfile(int deliveryMode, int priority, long expiration, Strategy strategy) {
+        if (deliveryMode != DEFAULT && deliveryMode != DeliveryMode.PERSISTENT && deliveryMode != DeliveryMode.NON_PERSISTENT) {
+            throw new IllegalPropertyException("Unknown delivery mode " + deliveryMode);
+        }
+        if (priority < DEFAULT_PRIORITY || priority > 9) {
+            throw new IllegalPropertyException("Priority should be between 0 and 9");
+        }
+        if (expiration < DEFAULT_EXPIRATION) {
+            throw new IllegalPropertyException("Expiration should not be negative");
+        }
+        this.deliveryMode = deliveryMode == DEFAULT ? DeliveryMode.PERSISTENT : deliveryMode;
+        this.priority = priority;
+        this.expiration = expiration;
+        this.strategy = strategy;
+    }
+
+    public static JmsSendProfile of(final JmsModelMapping mapping) {
+        final Strategy[] strategies = mapping.strategy();
+        if (strategies.length > 1) {
+            throw new IllegalPropertyException("Only one strategy could be set in @JmsModelMapping");
+        }
+        return new JmsSendProfile(mapping.deliveryMode(), mapping.priority(), mapping.expiration(),
+                strategies.length == 0 ? null : strategies[0]);
+    }
+
+    public int getDeliveryMode() {
+        return deliveryMode;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public long getExpiration() {
+        return expiration;
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    public boolean isDefault() {
+        return deliveryMode == DeliveryMode.PERSISTENT && priority == DEFAULT_PRIORITY
+                && expiration == DEFAULT_EXPIRATION && strategy == null;
+    }
+
+    int priorityOr(final int defaultPriority) {
+        return priority == DEFAULT_PRIORITY ? defaultPriority : priority;
+    }
+
+    long expirationOr(final long defaultExpiration) {
+        return expiration == DEFAULT_EXPIRATION ? defaultExpiration : expiration;
+    }
+
+    Strategy strategyOr(final Strategy defaultStrategy) {
+        return strategy == null ? defaultStrategy : strategy;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("JmsSendProfile[deliveryMode=%d, priority=%d, expiration=%d, strategy=%s]",
+                deliveryMode, priority, expiration, strategy);
+    }
+}
@@ -0,0 +1,55 @@
+package com.spaniard.jms.client.core.support;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+/**
+ * Absolute deadline of a request. Requests with timeout carry the deadline (epoch milliseconds) in the
+ * `requestDeadline` property, and JMSExpiration is set to the same time, so that the broker could drop the request
+ * as well. Requester and consumer clocks are expected to be synchronized.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public final class JmsDeadline {
+
+    public static final String DEADLINE_PROPERTY = "requestDeadline";
+
+    // 0 means no deadline
+    public static final long NONE = 0;
+
+    private JmsDeadline() {
+    }
+
+    /**
+     * @param timeoutMillis -- request timeout in milliseconds
+     * @return deadline in epoch milliseconds or NONE if there is no timeout
+     */
+    public static long of(final long timeoutMillis) {
+        return timeoutMillis > 0 ? System.currentTimeMillis() + timeoutMillis : NONE;
+    }
+
+    /**
+     * @param deadline   -- deadline in epoch milliseconds
+     * @param timeToLive -- time to live of the message, 0 means unlimited
+     * @return time to live which does not exceed the deadline, at least 1 ms
+     */
+    public static long timeToLive(final long deadline, final long timeToLive) {
+        final long remaining = Math.max(1, deadline - System.currentTimeMillis());
+        return timeToLive > 0 ? Math.min(timeToLive, remaining) : remaining;
+    }
+
+    /**
+     * @param message -- received message
+     * @return true if the deadline property or JMSExpiration of the message is over
+     * @throws JMSException
+     */
+    public static boolean isExpired(final Message message) throws JMSException {
+        final long now = System.currentTimeMillis();
+        if (message.propertyExists(DEADLINE_PROPERTY) && message.getLongProperty(DEADLINE_PROPERTY) <= now) {
+            return true;
+        }
+        final long expiration = message.getJMSExpiration();
+        return expiration > 0 && expiration <= now;
+    }
+}
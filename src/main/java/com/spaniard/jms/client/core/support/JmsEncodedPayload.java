@@ -0,0 +1,60 @@
+package com.spaniard.jms.client.core.support;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Marshalled (and possibly compressed) model object which is not bound to a jms session yet.
+ * Text payload becomes TextMessage, binary payload becomes BytesMessage.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public final class JmsEncodedPayload {
+
+    private final String text;
+    private final byte[] bytes;
+    private final boolean compressed;
+
+    private JmsEncodedPayload(String text, byte[] bytes, boolean compressed) {
+        this.text = text;
+        this.bytes = bytes;
+        this.compressed = compressed;
+    }
+
+    public static JmsEncodedPayload text(final String text) {
+        return new JmsEncodedPayload(text, null, false);
+    }
+
+    public static JmsEncodedPayload binary(final byte[] bytes, final boolean compressed) {
+        return new JmsEncodedPayload(null, bytes, compressed);
+    }
+
+    public boolean isText() {
+        return text != null;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return binary payload or UTF-8 encoded text
+     */
+    public byte[] getBytes() {
+        return text != null ? text.getBytes(StandardCharsets.UTF_8) : bytes;
+    }
+
+    /**
+     * @return true if binary payload is deflated
+     */
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * @return length of text in chars or of binary payload in bytes
+     */
+    public int length() {
+        return text != null ? text.length() : bytes.length;
+    }
+}
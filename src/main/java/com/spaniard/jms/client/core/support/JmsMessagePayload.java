@@ -0,0 +1,314 @@
+package com.spaniard.jms.client.core.support;
+
+import com.spaniard.jms.client.core.Strategy;
+import com.spaniard.jms.client.core.support.chunking.JmsChunkGroup;
+import com.spaniard.jms.client.core.support.claimcheck.JmsClaimCheck;
+import com.spaniard.jms.client.core.support.chunking.JmsPayloadChunker;
+import com.spaniard.jms.client.core.support.compression.JmsPayloadCompressor;
+import com.spaniard.jms.client.core.support.marshalling.Marshaller;
+import com.spaniard.jms.client.core.support.unmarshalling.Unmarshaller;
+import com.spaniard.jms.client.exception.JmsException;
+
+import org.springframework.util.StreamUtils;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageFormatException;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static com.spaniard.jms.client.core.support.compression.JmsPayloadCompressor.CONTENT_ENCODING_PROPERTY;
+import static com.spaniard.jms.client.core.support.compression.JmsPayloadCompressor.DEFLATE;
+
+/**
+ * Reads and copies payload of either TextMessage or BytesMessage.
+ * BytesMessage payload is UTF-8 encoded marshalled model object, deflated if the message is marked with
+ * {@link JmsPayloadCompressor#CONTENT_ENCODING_PROPERTY} property.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public abstract class JmsMessagePayload {
+
+    // inflates payloads when no compressor is configured on the receiving side (no preset dictionary)
+    private static final JmsPayloadCompressor DEFAULT_COMPRESSOR = new JmsPayloadCompressor();
+
+    private JmsMessagePayload() {
+    }
+
+    /**
+     * Creates TextMessage or BytesMessage with marshalled model object, see {@link #encode}
+     *
+     * @param session     -- jms session
+     * @param marshaller  -- marshaller
+     * @param strategy    -- strategy (xml, json, string)
+     * @param modelObject -- model object
+     * @param binary      -- true to create BytesMessage
+     * @param compressor  -- payload compressor, could be null
+     * @return new message
+     * @throws JMSException
+     */
+    public static Message createMessage(final Session session, final Marshaller marshaller, final Strategy strategy,
+                                        final Object modelObject, final boolean binary,
+                                        final JmsPayloadCompressor compressor) throws JMSException {
+        return createMessage(session, encode(marshaller, strategy, modelObject, binary, compressor));
+    }
+
+    /**
+     * Marshalls model object. If compressor is set and payload is not smaller than its threshold, payload is
+     * deflated and becomes binary regardless of `binary` flag, unless it does not compress well enough.
+     *
+     * @param marshaller  -- marshaller
+     * @param strategy    -- strategy (xml, json, string)
+     * @param modelObject -- model object
+     * @param binary      -- true for binary payload
+     * @param compressor  -- payload compressor, could be null
+     * @return encoded payload
+     */
+    public static JmsEncodedPayload encode(final Marshaller marshaller, final Strategy strategy, final Object modelObject,
+                                           final boolean binary, final JmsPayloadCompressor compressor) {
+        if (binary) {
+            final byte[] payload = marshaller.marshallToBytes(strategy, modelObject);
+            final byte[] deflated = compressor != null && compressor.shouldCompress(payload.length)
+                    ? compressor.compressIfSmaller(payload)
+                    : null;
+            return deflated != null ? JmsEncodedPayload.binary(deflated, true) : JmsEncodedPayload.binary(payload, false);
+        }
+        final String payload = marshaller.marshall(strategy, modelObject);
+        // length in chars is good enough to compare with the threshold
+        if (compressor != null && compressor.shouldCompress(payload.length())) {
+            final byte[] deflated = compressor.compressIfSmaller(payload.getBytes(StandardCharsets.UTF_8));
+            if (deflated != null) {
+                return JmsEncodedPayload.binary(deflated, true);
+            }
+        }
+        return JmsEncodedPayload.text(payload);
+    }
+
+    /**
+     * @param payload    -- encoded payload
+     * @param compressor -- payload compressor, could be null
+     * @return deflated binary payload if it is not smaller than the compressor threshold and compresses well enough,
+     * otherwise payload as is
+     */
+    public static JmsEncodedPayload compress(final JmsEncodedPayload payload, final JmsPayloadCompressor compressor) {
+        if (compressor == null || payload.isCompressed() || !compressor.shouldCompress(payload.length())) {
+            return payload;
+        }
+        final byte[] deflated = compressor.compressIfSmaller(payload.getBytes());
+        return deflated != null ? JmsEncodedPayload.binary(deflated, true) : payload;
+    }
+
+    /**
+     * @param session -- jms session
+     * @param payload -- encoded payload
+     * @return TextMessage or BytesMessage, compressed BytesMessage is marked with content encoding property
+     * @throws JMSException
+     */
+    public static Message createMessage(final Session session, final JmsEncodedPayload payload) throws JMSException {
+        if (payload.isText()) {
+            return session.createTextMessage(payload.getText());
+        }
+        final BytesMessage bytesMessage = session.createBytesMessage();
+        bytesMessage.writeBytes(payload.getBytes());
+        if (payload.isCompressed()) {
+            bytesMessage.setStringProperty(CONTENT_ENCODING_PROPERTY, DEFLATE);
+        }
+        return bytesMessage;
+    }
+
+    public static boolean isCompressed(final Message message) throws JMSException {
+        return message instanceof BytesMessage && DEFLATE.equals(message.getStringProperty(CONTENT_ENCODING_PROPERTY));
+    }
+
+    /**
+     * @param propertyName -- jms property name
+     * @return true if the property describes payload encoding (compression, chunking, claim check) and should not be copied
+     * to a message with another payload
+     */
+    public static boolean isPayloadProperty(final String propertyName) {
+        return CONTENT_ENCODING_PROPERTY.equals(propertyName)
+                || JmsPayloadChunker.CHUNK_COUNT_PROPERTY.equals(propertyName)
+                || JmsPayloadChunker.GROUP_ID_PROPERTY.equals(propertyName)
+                || JmsPayloadChunker.GROUP_SEQUENCE_PROPERTY.equals(propertyName)
+                || JmsClaimCheck.CLAIM_CHECK_PROPERTY.equals(propertyName);
+    }
+
+    public static boolean isSupported(final Message message) {
+        return message instanceof TextMessage || message instanceof BytesMessage;
+    }
+
+    /**
+     * Unmarshalls TextMessage from its text and BytesMessage straight from its byte stream
+     *
+     * @param unmarshaller -- unmarshaller
+     * @param strategy     -- strategy (xml, json, string)
+     * @param message      -- jms message
+     * @return model object
+     * @throws JMSException
+     * @throws JmsException if message is neither TextMessage nor BytesMessage
+     */
+    public static Object unmarshall(final Unmarshaller unmarshaller, final Strategy strategy, final Message message)
+            throws JMSException, JmsException {
+        return unmarshall(unmarshaller, strategy, message, null);
+    }
+
+    /**
+     * The same as {@link #unmarshall(Unmarshaller, Strategy, Message)}, compressed payload is inflated on the fly
+     *
+     * @param compressor -- payload compressor (preset dictionary and stats), could be null
+     */
+    public static Object unmarshall(final Unmarshaller unmarshaller, final Strategy strategy, final Message message,
+                                    final JmsPayloadCompressor compressor) throws JMSException, JmsException {
+        if (message instanceof TextMessage) {
+            return unmarshaller.unmarshall(strategy, ((TextMessage) message).getText());
+        }
+        if (message instanceof BytesMessage) {
+            try (InputStream inputStream = openStream((BytesMessage) message, compressor)) {
+                return unmarshaller.unmarshall(strategy, inputStream);
+            } catch (IOException e) {
+                throw new JmsException(e.getMessage(), e);
+            }
+        }
+        throw unsupported(message);
+    }
+
+    /**
+     * @param unmarshaller -- unmarshaller
+     * @param strategy     -- strategy (xml, json, string)
+     * @param payload      -- UTF-8 encoded marshalled model object, not compressed
+     * @return model object
+     */
+    public static Object unmarshall(final Unmarshaller unmarshaller, final Strategy strategy, final byte[] payload) {
+        return unmarshaller.unmarshall(strategy, new ByteArrayInputStream(payload));
+    }
+
+    /**
+     * Unmarshalls payload of the complete chunk group streaming it chunk by chunk
+     *
+     * @param unmarshaller -- unmarshaller
+     * @param strategy     -- strategy (xml, json, string)
+     * @param group        -- complete chunk group
+     * @param compressor   -- payload compressor, could be null
+     * @return model object
+     * @throws JmsException
+     */
+    public static Object unmarshall(final Unmarshaller unmarshaller, final Strategy strategy, final JmsChunkGroup group,
+                                    final JmsPayloadCompressor compressor) throws JmsException {
+        final InputStream chunks = group.openStream();
+        try (InputStream inputStream = group.isCompressed()
+                ? (compressor != null ? compressor : DEFAULT_COMPRESSOR).decompress(chunks)
+                : chunks) {
+            return unmarshaller.unmarshall(strategy, inputStream);
+        } catch (IOException e) {
+            throw new JmsException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param bytesMessage -- received message
+     * @param compressor   -- payload compressor, could be null
+     * @return stream of the payload, inflated if the message is compressed
+     * @throws JMSException
+     */
+    public static InputStream openStream(final BytesMessage bytesMessage, final JmsPayloadCompressor compressor)
+            throws JMSException {
+        final byte[] bytes = readBytes(bytesMessage);
+        if (isCompressed(bytesMessage)) {
+            return (compressor != null ? compressor : DEFAULT_COMPRESSOR).decompress(bytes);
+        }
+        return new ByteArrayInputStream(bytes);
+    }
+
+    /**
+     * @param message    -- TextMessage or BytesMessage
+     * @param compressor -- payload compressor, could be null
+     * @return UTF-8 encoded text or payload of BytesMessage, inflated if the message is compressed
+     * @throws JMSException
+     * @throws JmsException if message is neither TextMessage nor BytesMessage
+     */
+    public static byte[] readPayload(final Message message, final JmsPayloadCompressor compressor)
+            throws JMSException, JmsException {
+        if (message instanceof TextMessage) {
+            return ((TextMessage) message).getText().getBytes(StandardCharsets.UTF_8);
+        }
+        if (message instanceof BytesMessage) {
+            return readPayload((BytesMessage) message, compressor);
+        }
+        throw unsupported(message);
+    }
+
+    /**
+     * @param bytesMessage -- received message
+     * @param compressor   -- payload compressor, could be null
+     * @return payload, inflated if the message is compressed
+     * @throws JMSException
+     * @throws JmsException if compressed payload is corrupted
+     */
+    public static byte[] readPayload(final BytesMessage bytesMessage, final JmsPayloadCompressor compressor)
+            throws JMSException, JmsException {
+        if (!isCompressed(bytesMessage)) {
+            return readBytes(bytesMessage);
+        }
+        try (InputStream inputStream = openStream(bytesMessage, compressor)) {
+            return StreamUtils.copyToByteArray(inputStream);
+        } catch (IOException e) {
+            throw new JmsException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param group      -- complete chunk group
+     * @param compressor -- payload compressor, could be null
+     * @return payload of the group, inflated if the group is compressed
+     * @throws JmsException if compressed payload is corrupted
+     */
+    public static byte[] readPayload(final JmsChunkGroup group, final JmsPayloadCompressor compressor) throws JmsException {
+        final InputStream chunks = group.openStream();
+        try (InputStream inputStream = group.isCompressed()
+                ? (compressor != null ? compressor : DEFAULT_COMPRESSOR).decompress(chunks)
+                : chunks) {
+            return StreamUtils.copyToByteArray(inputStream);
+        } catch (IOException e) {
+            throw new JmsException(e.getMessage(), e);
+        }
+    }
+
+    public static byte[] readBytes(final BytesMessage bytesMessage) throws JMSException {
+        // message could be read already (redelivery, browsing)
+        bytesMessage.reset();
+        final byte[] bytes = new byte[(int) bytesMessage.getBodyLength()];
+        bytesMessage.readBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Creates new message of the same type with the same body. Properties and headers are not copied.
+     *
+     * @param session -- jms session
+     * @param message -- source message
+     * @return new message
+     * @throws JMSException (MessageFormatException if message is neither TextMessage nor BytesMessage)
+     */
+    public static Message copyBody(final Session session, final Message message) throws JMSException {
+        if (message instanceof TextMessage) {
+            return session.createTextMessage(((TextMessage) message).getText());
+        }
+        if (message instanceof BytesMessage) {
+            final BytesMessage bytesMessage = session.createBytesMessage();
+            bytesMessage.writeBytes(readBytes((BytesMessage) message));
+            return bytesMessage;
+        }
+        throw new MessageFormatException(unsupported(message).getMessage());
+    }
+
+    public static JmsException unsupported(final Message message) {
+        return new JmsException(String.format("Received message [%s] is neither TextMessage nor BytesMessage",
+                message.getClass().getName()));
+    }
+}
@@ -0,0 +1,302 @@
+package com.spaniard.jms.client.core.support.async;
+
+import com.spaniard.jms.client.core.support.ClassName;
+import com.spaniard.jms.client.exception.IllegalPropertyException;
+import com.spaniard.jms.client.exception.JmsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Fire-and-forget send pipeline. Model objects are put to a bounded in-memory queue by the caller and are
+ * marshalled and sent by dedicated sender threads. Every sender thread drains up to `batchSize` messages,
+ * waiting at most `linger` milliseconds for the batch to fill up, and sends them in one local transaction.
+ * <p>
+ * Messages are kept in memory only, so they are lost if the process dies before they are sent.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public class JmsAsyncSendPipeline implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClassName.getClassName());
+
+    // how often idle sender threads check whether the pipeline is closed
+    private static final long POLL_INTERVAL = 100;
+
+    // Property fields
+    private int capacity = 10000;
+
+    private int threads = 1;
+
+    private int batchSize = 100;
+
+    private long linger = 5;
+
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile BlockingQueue<PendingSend> queue;
+    private volatile boolean closed;
+    // submits enqueue under the read lock, so that nothing is enqueued after close() has set `closed`
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private List<Thread> workers;
+
+    /**
+     * @param capacity -- maximum number of queued messages, default is 10000
+     */
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param threads -- number of sender threads, default is 1
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @param batchSize -- maximum number of messages sent in one transaction, default is 100
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @param linger -- maximum time in milliseconds to wait for a batch to fill up, default is 5
+     */
+    public void setLinger(long linger) {
+        this.linger = linger;
+    }
+
+    /**
+     * @param overflowPolicy -- what to do when the queue is full, default is BLOCK
+     */
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Starts sender threads, is called by JmsMessageSender on the first asynchronous send.
+     *
+     * @param channelFactory -- opens transacted channel for a sender thread
+     */
+    public void start(final JmsBatchChannel.Factory channelFactory) {
+        if (queue != null) return;
+        synchronized (this) {
+            if (queue == null) {
+                startWorkers(channelFactory);
+            }
+        }
+    }
+
+    private void startWorkers(final JmsBatchChannel.Factory channelFactory) {
+        if (capacity <= 0 || threads <= 0 || batchSize <= 0) {
+            throw new IllegalPropertyException("capacity, threads and batchSize should be greater than 0");
+        }
+        workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            final Thread worker = new Thread(() -> work(channelFactory), "jms-async-sender-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+        }
+        queue = new ArrayBlockingQueue<>(capacity);
+        workers.forEach(Thread::start);
+    }
+
+    /**
+     * @param destination -- jms destination
+     * @param modelObject -- Model class that should be send
+     * @return completion handle, completed when the message is committed
+     * @throws JmsException if the queue is full and overflow policy is FAIL, or the pipeline is closed
+     */
+    public CompletableFuture<Void> submit(final Destination destination, final Object modelObject) throws JmsException {
+        closeLock.readLock().lock();
+        try {
+            if (closed || queue == null) {
+                throw new JmsException("Async send pipeline is not started or closed");
+            }
+            return enqueue(new PendingSend(destination, modelObject));
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    private CompletableFuture<Void> enqueue(final PendingSend pendingSend) throws JmsException {
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    queue.put(pendingSend);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new JmsException("Interrupted while waiting for a free slot in async send queue", e);
+                }
+                break;
+            case DROP:
+                if (!queue.offer(pendingSend)) {
+                    dropped.increment();
+                    pendingSend.future.completeExceptionally(new JmsException("Async send queue is full, message is dropped"));
+                }
+                break;
+            case FAIL:
+            default:
+                if (!queue.offer(pendingSend)) {
+                    throw new JmsException("Async send queue is full");
+                }
+                break;
+        }
+        return pendingSend.future;
+    }
+
+    public int getQueuedMessages() {
+        return queue == null ? 0 : queue.size();
+    }
+
+    public long getSentMessages() {
+        return sent.sum();
+    }
+
+    public long getFailedMessages() {
+        return failed.sum();
+    }
+
+    public long getDroppedMessages() {
+        return dropped.sum();
+    }
+
+    /**
+     * Stops accepting new messages and waits until queued messages are sent.
+     * Messages left in the queue by interrupted sender threads fail.
+     */
+    @Override
+    public void close() {
+        // waits for submits in progress, blocked submits are unblocked by the sender threads
+        closeLock.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        final List<Thread> started;
+        synchronized (this) {
+            started = workers;
+        }
+        if (started == null) return;
+        for (Thread worker : started) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        final List<PendingSend> notSent = new ArrayList<>();
+        queue.drainTo(notSent);
+        if (!notSent.isEmpty()) {
+            logger.warn("{} queued messages are not sent, async send pipeline is closed", notSent.size());
+            fail(notSent, new JmsException("Async send pipeline is closed"));
+        }
+    }
+
+    private void work(final JmsBatchChannel.Factory channelFactory) {
+        final List<PendingSend> batch = new ArrayList<>(batchSize);
+        JmsBatchChannel channel = null;
+        try {
+            while (!closed || !queue.isEmpty()) {
+                final PendingSend first = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                fill(batch);
+                channel = flush(channelFactory, channel, batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(batch, new JmsException("Async sender thread is interrupted"));
+        } finally {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    // waits up to `linger` ms for the batch to fill up
+    private void fill(final List<PendingSend> batch) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(linger);
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            final long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) return;
+            final PendingSend next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) return;
+            batch.add(next);
+        }
+    }
+
+    // returns channel to be reused by the next batch or null if the channel is broken
+    private JmsBatchChannel flush(final JmsBatchChannel.Factory channelFactory, JmsBatchChannel channel,
+                                  final List<PendingSend> batch) {
+        final List<PendingSend> accepted = new ArrayList<>(batch.size());
+        try {
+            if (channel == null) {
+                channel = channelFactory.open();
+            }
+            for (PendingSend pendingSend : batch) {
+                try {
+                    channel.send(pendingSend.destination, pendingSend.modelObject);
+                    accepted.add(pendingSend);
+                } catch (RuntimeException e) {
+                    // marshalling failure affects the single message only
+                    failed.increment();
+                    pendingSend.future.completeExceptionally(e);
+                }
+            }
+            channel.commit();
+            sent.add(accepted.size());
+            accepted.forEach(pendingSend -> pendingSend.future.complete(null));
+            return channel;
+        } catch (JMSException | RuntimeException e) {
+            logger.error("Could not send batch of {} messages", batch.size(), e);
+            if (channel != null) {
+                channel.rollback();
+                channel.close();
+            }
+            // messages which failed on marshalling are completed already
+            final List<PendingSend> notSent = new ArrayList<>(batch);
+            notSent.removeIf(pendingSend -> pendingSend.future.isDone());
+            fail(notSent, e);
+            return null;
+        }
+    }
+
+    private void fail(final List<PendingSend> pendingSends, final Throwable cause) {
+        failed.add(pendingSends.size());
+        pendingSends.forEach(pendingSend -> pendingSend.future.completeExceptionally(cause));
+    }
+
+    private static class PendingSend {
+        private final Destination destination;
+        private final Object modelObject;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private PendingSend(Destination destination, Object modelObject) {
+            this.destination = destination;
+            this.modelObject = modelObject;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.spaniard.jms.client.core.support.async;
+
+import javax.jms.Destination;
+import javax.jms.JMSException;
+
+/**
+ * Transacted channel owned by a single sender thread. Model objects are marshalled inside `send(...)`.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public interface JmsBatchChannel extends AutoCloseable {
+
+    void send(Destination destination, Object modelObject) throws JMSException;
+
+    void commit() throws JMSException;
+
+    void rollback();
+
+    @Override
+    void close();
+
+    @FunctionalInterface
+    interface Factory {
+
+        JmsBatchChannel open() throws JMSException;
+    }
+}
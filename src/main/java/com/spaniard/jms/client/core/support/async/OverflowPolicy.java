@@ -0,0 +1,16 @@
+package com.spaniard.jms.client.core.support.async;
+
+/**
+ * What to do when the queue of {@link JmsAsyncSendPipeline} is full
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public enum OverflowPolicy {
+    // caller waits for a free slot
+    BLOCK,
+    // message is not sent, completion handle is failed
+    DROP,
+    // JmsException is thrown to the caller
+    FAIL
+}
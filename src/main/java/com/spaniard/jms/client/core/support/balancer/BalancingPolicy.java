@@ -0,0 +1,14 @@
+package com.spaniard.jms.client.core.support.balancer;
+
+/**
+ * How {@link JmsBrokerBalancer} chooses a broker
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public enum BalancingPolicy {
+    // broker with the least sends and requests in flight per unit of weight
+    LEAST_OUTSTANDING,
+    // brokers are taken in turn, proportionally to their weights
+    WEIGHTED_ROUND_ROBIN
+}
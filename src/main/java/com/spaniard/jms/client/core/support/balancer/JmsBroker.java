@@ -0,0 +1,158 @@
+package com.spaniard.jms.client.core.support.balancer;
+
+import com.spaniard.jms.client.core.support.pool.JmsConnectionPool;
+import com.spaniard.jms.client.exception.IllegalPropertyException;
+
+import javax.jms.ConnectionFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One broker of {@link JmsBrokerBalancer}. Connections are borrowed from `connectionPool` if it is set,
+ * otherwise they are opened with `connectionFactory`. Local transactions (`sendAll(...)`, `sendAsync(...)`,
+ * `sendConflated(...)`) always use `connectionFactory`.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public class JmsBroker {
+
+    // Property fields
+    private String name;
+
+    private ConnectionFactory connectionFactory;
+
+    private JmsConnectionPool connectionPool;
+
+    private int weight = 1;
+
+    // sends and requests in flight
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    // nano time the broker is taken back into rotation, guarded by the balancer health checks
+    private volatile long unhealthyUntil;
+    private volatile boolean healthy = true;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder ejections = new LongAdder();
+
+    /**
+     * @param name -- broker name for logs, broker url for instance
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param connectionFactory -- connection factory of the broker such as (ActiveMQConnectionFactory)
+     */
+    public void setConnectionFactory(ConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+
+    /**
+     * @param connectionPool -- pool of long-lived connections to the broker
+     */
+    public void setConnectionPool(JmsConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
+    /**
+     * @param weight -- relative share of the load, default is 1
+     */
+    public void setWeight(int weight) {
+        if (weight <= 0) {
+            throw new IllegalPropertyException("weight should be greater than 0");
+        }
+        this.weight = weight;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ConnectionFactory getConnectionFactory() {
+        return connectionFactory;
+    }
+
+    public JmsConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return sends and requests in flight, a request is in flight until its future is closed
+     */
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * @return sends and requests completed without jms failure
+     */
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    /**
+     * @return sends and requests failed with jms failure
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return number of times the broker was taken out of rotation
+     */
+    public long getEjections() {
+        return ejections.sum();
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    @Override
+    public String toString() {
+        return name != null ? name : String.valueOf(connectionFactory);
+    }
+
+    // connection factory or pool the sender uses, circuits of the circuit breaker are kept per connection source
+    Object getConnectionSource() {
+        return connectionPool != null ? connectionPool : connectionFactory;
+    }
+
+    boolean isAvailable(final long now) {
+        return healthy || now - unhealthyUntil >= 0;
+    }
+
+    void acquire() {
+        outstanding.incrementAndGet();
+    }
+
+    void release() {
+        outstanding.decrementAndGet();
+    }
+
+    // returns true if the broker should be taken out of rotation
+    boolean record(final boolean failure, final int failureThreshold, final long now, final long recoveryNanos) {
+        if (!failure) {
+            completed.increment();
+            consecutiveFailures.set(0);
+            healthy = true;
+            return false;
+        }
+        failed.increment();
+        if (consecutiveFailures.incrementAndGet() < failureThreshold) return false;
+        // broker stays out of rotation for the recovery interval, one more failure after it ejects the broker again
+        consecutiveFailures.set(failureThreshold - 1);
+        unhealthyUntil = now + recoveryNanos;
+        healthy = false;
+        ejections.increment();
+        return true;
+    }
+}
@@ -0,0 +1,208 @@
+package com.spaniard.jms.client.core.support.balancer;
+
+import com.spaniard.jms.client.core.support.ClassName;
+import com.spaniard.jms.client.exception.IllegalPropertyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spreads sends and requests of {@link com.spaniard.jms.client.core.JmsMessageSender} across the brokers of a
+ * network of brokers. A broker is chosen per `send(...)`, per request and per `sendAll(...)` call, so one call
+ * never spans brokers. Long-lived channels of `sendAsync(...)` and `sendConflated(...)` choose their broker when
+ * they are opened (and reopened after a failure), they are not counted as outstanding calls.
+ * <p>
+ * A broker is taken out of rotation after `failureThreshold` consecutive jms failures, and is given traffic again
+ * after `recoveryInterval` milliseconds. If all brokers are out of rotation, all of them are used.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public class JmsBrokerBalancer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClassName.getClassName());
+
+    // Property fields
+    private List<JmsBroker> brokers = Collections.emptyList();
+
+    private BalancingPolicy policy = BalancingPolicy.LEAST_OUTSTANDING;
+
+    private int failureThreshold = 3;
+
+    private long recoveryInterval = 5000;
+
+    // broker indexes in smooth weighted round robin order
+    private int[] schedule = new int[0];
+    private final AtomicLong next = new AtomicLong();
+
+    /**
+     * @param brokers -- brokers of the network, every broker should have connection factory or connection pool
+     */
+    public void setBrokers(List<JmsBroker> brokers) {
+        if (brokers == null || brokers.isEmpty()) {
+            throw new IllegalPropertyException("brokers should not be empty");
+        }
+        for (JmsBroker broker : brokers) {
+            if (broker.getConnectionSource() == null) {
+                throw new IllegalPropertyException("ConnectionFactory and ConnectionPool properties of broker " + broker + " are null");
+            }
+        }
+        this.brokers = Collections.unmodifiableList(new ArrayList<>(brokers));
+        this.schedule = schedule(this.brokers);
+    }
+
+    /**
+     * @param policy -- how the broker is chosen, default is LEAST_OUTSTANDING
+     */
+    public void setPolicy(BalancingPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * @param failureThreshold -- consecutive jms failures which take the broker out of rotation, default is 3
+     */
+    public void setFailureThreshold(int failureThreshold) {
+        if (failureThreshold <= 0) {
+            throw new IllegalPropertyException("failureThreshold should be greater than 0");
+        }
+        this.failureThreshold = failureThreshold;
+    }
+
+    /**
+     * @param recoveryInterval -- time in milliseconds the broker is out of rotation, default is 5000
+     */
+    public void setRecoveryInterval(long recoveryInterval) {
+        this.recoveryInterval = recoveryInterval;
+    }
+
+    /**
+     * Chooses the broker and counts the call as outstanding. Every acquired broker should be released.
+     *
+     * @return broker for the next send or request
+     */
+    public JmsBroker acquire() {
+        final JmsBroker broker = choose();
+        broker.acquire();
+        return broker;
+    }
+
+    /**
+     * Chooses the broker for a long-lived channel, the channel is not counted as outstanding, so that it does not
+     * load the broker for its lifetime. Jms failures of the channel are reported by {@link #report(JmsBroker, boolean)}.
+     *
+     * @return broker for the channel
+     */
+    public JmsBroker choose() {
+        if (brokers.isEmpty()) {
+            throw new IllegalPropertyException("Brokers property is empty");
+        }
+        final long now = System.nanoTime();
+        JmsBroker broker = select(now, true);
+        if (broker == null) {
+            // no broker is healthy, it is better to try than to fail
+            broker = select(now, false);
+        }
+        return broker;
+    }
+
+    /**
+     * @param broker  -- acquired broker
+     * @param failure -- true if the call failed with jms failure
+     */
+    public void release(final JmsBroker broker, final boolean failure) {
+        broker.release();
+        report(broker, failure);
+    }
+
+    /**
+     * @param broker  -- broker chosen for a channel
+     * @param failure -- true if the channel failed with jms failure
+     */
+    public void report(final JmsBroker broker, final boolean failure) {
+        if (broker.record(failure, failureThreshold, System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(recoveryInterval))) {
+            logger.warn("Broker [{}] is out of rotation for {} ms after {} consecutive failures", broker, recoveryInterval, failureThreshold);
+        }
+    }
+
+    public List<JmsBroker> getBrokers() {
+        return brokers;
+    }
+
+    /**
+     * @return number of brokers in rotation
+     */
+    public int getHealthyBrokers() {
+        final long now = System.nanoTime();
+        return (int) brokers.stream().filter(broker -> broker.isAvailable(now)).count();
+    }
+
+    private JmsBroker select(final long now, final boolean availableOnly) {
+        return policy == BalancingPolicy.WEIGHTED_ROUND_ROBIN
+                ? selectRoundRobin(now, availableOnly)
+                : selectLeastOutstanding(now, availableOnly);
+    }
+
+    private JmsBroker selectRoundRobin(final long now, final boolean availableOnly) {
+        final int[] order = schedule;
+        for (int i = 0; i < order.length; i++) {
+            final JmsBroker broker = brokers.get(order[(int) Math.floorMod(next.getAndIncrement(), (long) order.length)]);
+            if (!availableOnly || broker.isAvailable(now)) {
+                return broker;
+            }
+        }
+        return null;
+    }
+
+    // outstanding calls are compared per unit of weight, ties are broken by the rotating start
+    private JmsBroker selectLeastOutstanding(final long now, final boolean availableOnly) {
+        final int size = brokers.size();
+        final int start = (int) Math.floorMod(next.getAndIncrement(), (long) size);
+        JmsBroker best = null;
+        long bestLoad = 0;
+        for (int i = 0; i < size; i++) {
+            final JmsBroker broker = brokers.get((start + i) % size);
+            if (availableOnly && !broker.isAvailable(now)) continue;
+            final long outstanding = broker.getOutstanding();
+            if (best == null || outstanding * best.getWeight() < bestLoad * broker.getWeight()) {
+                best = broker;
+                bestLoad = outstanding;
+            }
+        }
+        return best;
+    }
+
+    // smooth weighted round robin: weights 5, 1, 1 give a a b a c a a instead of a a a a a b c
+    private static int[] schedule(final List<JmsBroker> brokers) {
+        int divisor = 0;
+        for (JmsBroker broker : brokers) {
+            divisor = gcd(divisor, broker.getWeight());
+        }
+        int total = 0;
+        for (JmsBroker broker : brokers) {
+            total += broker.getWeight() / divisor;
+        }
+        final int[] order = new int[total];
+        final int[] current = new int[brokers.size()];
+        for (int slot = 0; slot < total; slot++) {
+            int selected = 0;
+            for (int i = 0; i < brokers.size(); i++) {
+                current[i] += brokers.get(i).getWeight() / divisor;
+                if (current[i] > current[selected]) {
+                    selected = i;
+                }
+            }
+            current[selected] -= total;
+            order[slot] = selected;
+        }
+        return order;
+    }
+
+    private static int gcd(final int a, final int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+}
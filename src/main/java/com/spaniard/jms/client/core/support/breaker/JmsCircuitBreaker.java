@@ -0,0 +1,348 @@
+package com.spaniard.jms.client.core.support.breaker;
+
+import com.spaniard.jms.client.core.support.ClassName;
+import com.spaniard.jms.client.exception.IllegalPropertyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.Destination;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Circuit breaker of {@link com.spaniard.jms.client.core.JmsMessageSender}. There is a circuit per
+ * (connection factory, destination) and a circuit per connection factory, which guards opening of connections.
+ * <p>
+ * Circuit trips (opens) when the failure rate or the slow call rate of the last `windowSize` calls reaches its
+ * threshold. While the circuit is open, calls fail with {@link JmsCircuitOpenException} without opening connections.
+ * After `openDuration` milliseconds the circuit is half-open: up to `halfOpenProbes` trial calls are let through,
+ * the circuit is closed if they all succeed and opened again on the first failure.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public class JmsCircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClassName.getClassName());
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    // Property fields
+    private double failureRateThreshold = 0.5;
+
+    private long slowCallDuration;
+
+    private double slowCallRateThreshold = 0.5;
+
+    private int windowSize = 20;
+
+    private int minimumCalls = 10;
+
+    private long openDuration = 5000;
+
+    private int halfOpenProbes = 1;
+
+    private final Map<CircuitKey, Circuit> circuits = new ConcurrentHashMap<>();
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder trips = new LongAdder();
+
+    /**
+     * @param failureRateThreshold -- failure rate (0, 1] which opens the circuit, default is 0.5
+     */
+    public void setFailureRateThreshold(double failureRateThreshold) {
+        if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+            throw new IllegalPropertyException("failureRateThreshold should be in (0, 1]");
+        }
+        this.failureRateThreshold = failureRateThreshold;
+    }
+
+    /**
+     * @param slowCallDuration -- send time in milliseconds above which the call is slow, 0 means latency is ignored
+     */
+    public void setSlowCallDuration(long slowCallDuration) {
+        this.slowCallDuration = slowCallDuration;
+    }
+
+    /**
+     * @param slowCallRateThreshold -- slow call rate (0, 1] which opens the circuit, default is 0.5
+     */
+    public void setSlowCallRateThreshold(double slowCallRateThreshold) {
+        if (slowCallRateThreshold <= 0 || slowCallRateThreshold > 1) {
+            throw new IllegalPropertyException("slowCallRateThreshold should be in (0, 1]");
+        }
+        this.slowCallRateThreshold = slowCallRateThreshold;
+    }
+
+    /**
+     * @param windowSize -- number of the last calls the rates are calculated from, default is 20
+     */
+    public void setWindowSize(int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalPropertyException("windowSize should be greater than 0");
+        }
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * @param minimumCalls -- number of calls in the window before the circuit could trip, default is 10
+     */
+    public void setMinimumCalls(int minimumCalls) {
+        this.minimumCalls = minimumCalls;
+    }
+
+    /**
+     * @param openDuration -- time in milliseconds the circuit stays open before trial calls, default is 5000
+     */
+    public void setOpenDuration(long openDuration) {
+        this.openDuration = openDuration;
+    }
+
+    /**
+     * @param halfOpenProbes -- number of trial calls in half-open state, default is 1
+     */
+    public void setHalfOpenProbes(int halfOpenProbes) {
+        if (halfOpenProbes <= 0) {
+            throw new IllegalPropertyException("halfOpenProbes should be greater than 0");
+        }
+        this.halfOpenProbes = halfOpenProbes;
+    }
+
+    /**
+     * Fails fast if the circuit is open, no trial call is taken.
+     *
+     * @param connectionFactory -- connection factory (or pool) the call uses
+     * @param destination       -- jms destination, null for the connection circuit
+     * @throws JmsCircuitOpenException
+     */
+    public void check(final Object connectionFactory, final Destination destination) throws JmsCircuitOpenException {
+        final Circuit circuit = circuits.get(new CircuitKey(connectionFactory, destination));
+        if (circuit != null && !circuit.permits()) {
+            throw reject(destination);
+        }
+    }
+
+    /**
+     * Permits the call, takes a trial call if the circuit is half-open. The call should be completed with
+     * `onSuccess(...)`, `onFailure(...)` or `onIgnored(...)`.
+     *
+     * @param connectionFactory -- connection factory (or pool) the call uses
+     * @param destination       -- jms destination, null for the connection circuit
+     * @throws JmsCircuitOpenException if the circuit is open
+     */
+    public void acquire(final Object connectionFactory, final Destination destination) throws JmsCircuitOpenException {
+        if (!circuit(connectionFactory, destination).acquire()) {
+            throw reject(destination);
+        }
+    }
+
+    /**
+     * @param latencyNanos -- duration of the call
+     */
+    public void onSuccess(final Object connectionFactory, final Destination destination, final long latencyNanos) {
+        final boolean slow = slowCallDuration > 0 && latencyNanos > TimeUnit.MILLISECONDS.toNanos(slowCallDuration);
+        circuit(connectionFactory, destination).complete(slow ? Outcome.SLOW : Outcome.SUCCESS);
+    }
+
+    public void onFailure(final Object connectionFactory, final Destination destination) {
+        circuit(connectionFactory, destination).complete(Outcome.FAILURE);
+    }
+
+    /**
+     * Call has failed for a reason which does not depend on the broker (marshalling), trial call is given back.
+     */
+    public void onIgnored(final Object connectionFactory, final Destination destination) {
+        circuit(connectionFactory, destination).complete(Outcome.IGNORED);
+    }
+
+    /**
+     * @param connectionFactory -- connection factory (or pool)
+     * @param destination       -- jms destination, null for the connection circuit
+     * @return state of the circuit
+     */
+    public State getState(final Object connectionFactory, final Destination destination) {
+        final Circuit circuit = circuits.get(new CircuitKey(connectionFactory, destination));
+        return circuit == null ? State.CLOSED : circuit.state;
+    }
+
+    public long getOpenCircuits() {
+        return circuits.values().stream().filter(circuit -> circuit.state != State.CLOSED).count();
+    }
+
+    /**
+     * @return calls which failed fast because the circuit was open
+     */
+    public long getRejectedCalls() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return number of times circuits were opened
+     */
+    public long getTrips() {
+        return trips.sum();
+    }
+
+    private Circuit circuit(final Object connectionFactory, final Destination destination) {
+        final CircuitKey key = new CircuitKey(connectionFactory, destination);
+        final Circuit circuit = circuits.get(key);
+        return circuit != null ? circuit : circuits.computeIfAbsent(key, Circuit::new);
+    }
+
+    private JmsCircuitOpenException reject(final Destination destination) {
+        rejected.increment();
+        return new JmsCircuitOpenException(destination == null
+                ? "Circuit of the connection factory is open"
+                : String.format("Circuit of the destination [%s] is open", destination));
+    }
+
+    private enum Outcome {
+        SUCCESS,
+        SLOW,
+        FAILURE,
+        IGNORED
+    }
+
+    private final class Circuit {
+        private final CircuitKey key;
+        // state is read without lock on the fast path
+        private volatile State state = State.CLOSED;
+        private volatile long openedAt;
+
+        // guarded by this
+        private final Outcome[] window = new Outcome[windowSize];
+        private int next;
+        private int calls;
+        private int failures;
+        private int slowCalls;
+        private int probes;
+        private int succeededProbes;
+
+        private Circuit(CircuitKey key) {
+            this.key = key;
+        }
+
+        private boolean permits() {
+            final State current = state;
+            if (current == State.CLOSED) return true;
+            if (current == State.OPEN) return System.nanoTime() - openedAt >= TimeUnit.MILLISECONDS.toNanos(openDuration);
+            synchronized (this) {
+                return probes < halfOpenProbes;
+            }
+        }
+
+        private boolean acquire() {
+            if (state == State.CLOSED) return true;
+            synchronized (this) {
+                if (state == State.OPEN) {
+                    if (System.nanoTime() - openedAt < TimeUnit.MILLISECONDS.toNanos(openDuration)) return false;
+                    state = State.HALF_OPEN;
+                    probes = 0;
+                    succeededProbes = 0;
+                    logger.info("Circuit of {} is half-open", key);
+                }
+                if (state == State.HALF_OPEN) {
+                    if (probes >= halfOpenProbes) return false;
+                    probes++;
+                }
+                return true;
+            }
+        }
+
+        private synchronized void complete(final Outcome outcome) {
+            if (state == State.HALF_OPEN) {
+                switch (outcome) {
+                    case SUCCESS:
+                        if (++succeededProbes >= halfOpenProbes) {
+                            reset();
+                            state = State.CLOSED;
+                            logger.info("Circuit of {} is closed", key);
+                        }
+                        break;
+                    case IGNORED:
+                        probes--;
+                        break;
+                    default:
+                        open();
+                        break;
+                }
+                return;
+            }
+            // calls started before the circuit was opened are not counted
+            if (state != State.CLOSED || outcome == Outcome.IGNORED) return;
+            record(outcome);
+            if (calls >= Math.min(Math.max(1, minimumCalls), window.length)
+                    && ((double) failures / calls >= failureRateThreshold || (double) slowCalls / calls >= slowCallRateThreshold)) {
+                logger.warn("Circuit of {} is open, {} failed and {} slow of the last {} calls", key, failures, slowCalls, calls);
+                open();
+            }
+        }
+
+        // guarded by this
+        private void record(final Outcome outcome) {
+            final Outcome evicted = window[next];
+            if (evicted == Outcome.FAILURE) failures--;
+            if (evicted == Outcome.SLOW) slowCalls--;
+            if (evicted == null) calls++;
+            window[next] = outcome;
+            next = (next + 1) % window.length;
+            if (outcome == Outcome.FAILURE) failures++;
+            if (outcome == Outcome.SLOW) slowCalls++;
+        }
+
+        // guarded by this
+        private void open() {
+            reset();
+            openedAt = System.nanoTime();
+            state = State.OPEN;
+            trips.increment();
+        }
+
+        // guarded by this
+        private void reset() {
+            Arrays.fill(window, null);
+            next = 0;
+            calls = 0;
+            failures = 0;
+            slowCalls = 0;
+        }
+    }
+
+    private static final class CircuitKey {
+        private final Object connectionFactory;
+        private final Destination destination;
+        private final int hash;
+
+        private CircuitKey(Object connectionFactory, Destination destination) {
+            this.connectionFactory = connectionFactory;
+            this.destination = destination;
+            this.hash = Objects.hash(System.identityHashCode(connectionFactory), destination);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CircuitKey)) return false;
+            final CircuitKey that = (CircuitKey) o;
+            return connectionFactory == that.connectionFactory && Objects.equals(destination, that.destination);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return destination == null ? "connection factory " + connectionFactory : "destination " + destination;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.spaniard.jms.client.core.support.breaker;
+
+import javax.jms.JMSException;
+
+/**
+ * Is thrown instead of sending while the circuit of the destination (or connection factory) is open.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public class JmsCircuitOpenException extends JMSException {
+
+    private static final long serialVersionUID = 1L;
+
+    public JmsCircuitOpenException(String reason) {
+        super(reason);
+    }
+}
@@ -0,0 +1,147 @@
+package com.spaniard.jms.client.core.support.cache;
+
+import com.spaniard.jms.client.exception.JmsException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight coalescing of `JmsMessageSender.request(modelObject, responseClass, timeout, unit)`. Concurrent
+ * identical requests share one in-flight request: the first caller sends it, the others wait for its reply (or
+ * failure) within their own timeout. The reply is shared between callers and should not be modified.
+ * <p>
+ * Requests are identical if they have the same {@link JmsRequestKey} (hash of the marshalled request), or the same
+ * key returned by the key function of the request class, which saves marshalling of coalesced requests.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public class JmsRequestCoalescer {
+
+    /**
+     * Request which reply is shared
+     */
+    @FunctionalInterface
+    public interface Request<T> {
+        T execute() throws JmsException;
+    }
+
+    // Property fields
+    private Set<Class<?>> requestClasses = Collections.emptySet();
+
+    private Map<Class<?>, Function<Object, ?>> keyFunctions = Collections.emptyMap();
+
+    private final Map<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * @param requestClasses -- request classes which are coalesced by the hash of the marshalled request
+     */
+    public void setRequestClasses(Set<Class<?>> requestClasses) {
+        this.requestClasses = new HashSet<>(requestClasses);
+    }
+
+    /**
+     * @param keyFunctions -- request class -> function which returns key of the request (equals and hashCode
+     *                     should be implemented), these classes are coalesced as well
+     */
+    public void setKeyFunctions(Map<Class<?>, Function<Object, ?>> keyFunctions) {
+        this.keyFunctions = new HashMap<>(keyFunctions);
+    }
+
+    /**
+     * @param modelObject -- request
+     * @return true if the request class is coalesced
+     */
+    public boolean supports(final Object modelObject) {
+        return requestClasses.contains(modelObject.getClass()) || keyFunctions.containsKey(modelObject.getClass());
+    }
+
+    /**
+     * @param modelObject   -- request
+     * @param responseClass -- response class
+     * @param requestKey    -- key of the marshalled request, is called if there is no key function
+     * @return key which identical requests have
+     */
+    public Object key(final Object modelObject, final Class<?> responseClass, final Supplier<JmsRequestKey> requestKey) {
+        final Function<Object, ?> keyFunction = keyFunctions.get(modelObject.getClass());
+        return keyFunction != null
+                ? Arrays.asList(modelObject.getClass(), responseClass, keyFunction.apply(modelObject))
+                : requestKey.get();
+    }
+
+    /**
+     * Executes the request or waits for the identical one in flight
+     *
+     * @param key           -- key of the request, see `key(...)`
+     * @param responseClass -- response class
+     * @param timeout       -- the maximum time to wait for the identical request
+     * @param unit          -- the time unit of the timeout argument
+     * @param request       -- request which is executed if there is no identical one in flight
+     * @return reply
+     * @throws JmsException if the request has failed or there is no reply of the identical request in time
+     */
+    public <T> T execute(final Object key, final Class<T> responseClass, final long timeout, final TimeUnit unit,
+                         final Request<T> request) throws JmsException {
+        final CompletableFuture<Object> flight = new CompletableFuture<>();
+        final CompletableFuture<Object> leader = inFlight.putIfAbsent(key, flight);
+        if (leader == null) {
+            sent.increment();
+            try {
+                final T reply = request.execute();
+                flight.complete(reply);
+                return reply;
+            } catch (Throwable e) {
+                // waiters fail with the same cause
+                flight.completeExceptionally(e);
+                throw e;
+            } finally {
+                // the next request is sent again, it is not served from the completed flight
+                inFlight.remove(key, flight);
+            }
+        }
+        coalesced.increment();
+        try {
+            return responseClass.cast(leader.get(timeout, unit));
+        } catch (ExecutionException e) {
+            throw new JmsException(e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException | TimeoutException e) {
+            throw new JmsException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return number of requests in flight
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * @return requests which were sent
+     */
+    public long getSentRequests() {
+        return sent.sum();
+    }
+
+    /**
+     * @return requests which waited for the identical request in flight instead of being sent
+     */
+    public long getCoalescedRequests() {
+        return coalesced.sum();
+    }
+}
@@ -0,0 +1,74 @@
+package com.spaniard.jms.client.core.support.cache;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Identity of a request: request class, response class and SHA-256 hash of the marshalled request.
+ * Requests which are marshalled to the same payload are equal.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public final class JmsRequestKey {
+
+    private final Class<?> requestClass;
+    private final Class<?> responseClass;
+    private final byte[] digest;
+    private final int hash;
+
+    private JmsRequestKey(Class<?> requestClass, Class<?> responseClass, byte[] digest) {
+        this.requestClass = requestClass;
+        this.responseClass = responseClass;
+        this.digest = digest;
+        // digest is uniformly distributed already
+        this.hash = 31 * requestClass.hashCode() + ((digest[0] & 0xff) << 24 | (digest[1] & 0xff) << 16
+                | (digest[2] & 0xff) << 8 | (digest[3] & 0xff));
+    }
+
+    /**
+     * @param requestClass  -- class of the model object
+     * @param responseClass -- response class
+     * @param marshalled    -- marshalled model object
+     * @return key of the request
+     */
+    public static JmsRequestKey of(final Class<?> requestClass, final Class<?> responseClass, final byte[] marshalled) {
+        try {
+            return new JmsRequestKey(requestClass, responseClass, MessageDigest.getInstance("SHA-256").digest(marshalled));
+        } catch (NoSuchAlgorithmException e) {
+            // every java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Class<?> getRequestClass() {
+        return requestClass;
+    }
+
+    public Class<?> getResponseClass() {
+        return responseClass;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof JmsRequestKey)) return false;
+        final JmsRequestKey that = (JmsRequestKey) o;
+        return requestClass == that.requestClass && responseClass == that.responseClass && Arrays.equals(digest, that.digest);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(requestClass.getSimpleName()).append('[');
+        for (int i = 0; i < 8; i++) {
+            sb.append(String.format("%02x", digest[i]));
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,220 @@
+package com.spaniard.jms.client.core.support.cache;
+
+import com.spaniard.jms.client.core.support.ClassName;
+import com.spaniard.jms.client.exception.IllegalPropertyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Response cache of `JmsMessageSender.request(modelObject, responseClass, timeout, unit)`. Replies of the request
+ * classes with a time to live are cached by {@link JmsRequestKey}, so that repeated requests with the same payload
+ * are not sent until the reply expires. Cached replies are shared between callers and should not be modified.
+ * <p>
+ * Cache is bounded by `maxEntries`, the least recently used entry is evicted. Entries are invalidated explicitly
+ * with `invalidate(...)` or by invalidation messages, if the cache listens to an invalidation topic: a message with
+ * `invalidateClass` property (canonical name of the request class) invalidates replies of that class, a message
+ * without it invalidates all replies. Reply which was requested before an invalidation is not cached.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public class JmsResponseCache implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClassName.getClassName());
+
+    public static final String INVALIDATE_CLASS_PROPERTY = "invalidateClass";
+
+    // Property fields
+    private Map<Class<?>, Long> timeToLive = Collections.emptyMap();
+
+    private int maxEntries = 10000;
+
+    // guarded by this, access order
+    private final LinkedHashMap<JmsRequestKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // guarded by this, is incremented by every invalidation
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * @param timeToLive -- request class -> time to live of its replies in milliseconds, other classes are not cached
+     */
+    public void setTimeToLive(Map<Class<?>, Long> timeToLive) {
+        for (Map.Entry<Class<?>, Long> entry : timeToLive.entrySet()) {
+            if (entry.getValue() == null || entry.getValue() <= 0) {
+                throw new IllegalPropertyException(String.format("timeToLive of [%s] should be greater than 0",
+                        entry.getKey().getCanonicalName()));
+            }
+        }
+        this.timeToLive = new HashMap<>(timeToLive);
+    }
+
+    /**
+     * @param maxEntries -- maximum number of cached replies, default is 10000
+     */
+    public void setMaxEntries(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalPropertyException("maxEntries should be greater than 0");
+        }
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param modelObject -- request
+     * @return true if replies of the request class are cached
+     */
+    public boolean supports(final Object modelObject) {
+        return timeToLive.containsKey(modelObject.getClass());
+    }
+
+    /**
+     * @param key           -- key of the request
+     * @param responseClass -- response class
+     * @return cached reply or null if there is none or it is expired
+     */
+    public <T> T get(final JmsRequestKey key, final Class<T> responseClass) {
+        final long now = System.nanoTime();
+        synchronized (this) {
+            final Entry entry = entries.get(key);
+            if (entry != null) {
+                if (now - entry.expiresAt < 0) {
+                    hits.increment();
+                    return responseClass.cast(entry.reply);
+                }
+                entries.remove(key);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * @return current generation, it should be taken before the request is sent and passed to `put(...)`
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Caches the reply unless it is null or the cache is invalidated since the generation was taken
+     *
+     * @param key        -- key of the request
+     * @param generation -- generation taken before the request was sent
+     * @param reply      -- reply
+     */
+    public void put(final JmsRequestKey key, final long generation, final Object reply) {
+        final Long ttl = timeToLive.get(key.getRequestClass());
+        if (reply == null || ttl == null) return;
+        final long expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttl);
+        synchronized (this) {
+            if (generation != this.generation) return;
+            entries.put(key, new Entry(reply, expiresAt));
+            if (entries.size() > maxEntries) {
+                final Iterator<JmsRequestKey> eldest = entries.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Invalidates cached replies of the request class
+     *
+     * @param requestClass -- request class
+     */
+    public void invalidate(final Class<?> requestClass) {
+        synchronized (this) {
+            generation++;
+            entries.keySet().removeIf(key -> key.getRequestClass() == requestClass);
+        }
+        invalidations.increment();
+        logger.debug("Cached replies of [{}] are invalidated", requestClass.getCanonicalName());
+    }
+
+    public void invalidateAll() {
+        synchronized (this) {
+            generation++;
+            entries.clear();
+        }
+        invalidations.increment();
+        logger.debug("All cached replies are invalidated");
+    }
+
+    /**
+     * Invalidation message of the topic, see `INVALIDATE_CLASS_PROPERTY`
+     */
+    @Override
+    public void onMessage(Message message) {
+        try {
+            final String className = message.getStringProperty(INVALIDATE_CLASS_PROPERTY);
+            if (className == null || className.isEmpty()) {
+                invalidateAll();
+                return;
+            }
+            for (Class<?> requestClass : timeToLive.keySet()) {
+                if (className.equals(requestClass.getCanonicalName())) {
+                    invalidate(requestClass);
+                    return;
+                }
+            }
+        } catch (JMSException e) {
+            // reply of unknown freshness should not be served
+            logger.error("Could not read invalidation message, all cached replies are invalidated", e);
+            invalidateAll();
+        }
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return hits of all lookups, 0 if there are no lookups
+     */
+    public double getHitRate() {
+        final long hitCount = hits.sum();
+        final long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    private static final class Entry {
+        private final Object reply;
+        private final long expiresAt;
+
+        private Entry(Object reply, long expiresAt) {
+            this.reply = reply;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
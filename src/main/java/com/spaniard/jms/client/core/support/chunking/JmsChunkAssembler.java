@@ -0,0 +1,219 @@
+package com.spaniard.jms.client.core.support.chunking;
+
+import com.spaniard.jms.client.core.support.ClassName;
+import com.spaniard.jms.client.core.support.JmsMessagePayload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.spaniard.jms.client.core.support.chunking.JmsPayloadChunker.CHUNK_COUNT_PROPERTY;
+import static com.spaniard.jms.client.core.support.chunking.JmsPayloadChunker.GROUP_ID_PROPERTY;
+import static com.spaniard.jms.client.core.support.chunking.JmsPayloadChunker.GROUP_SEQUENCE_PROPERTY;
+import static com.spaniard.jms.client.core.support.chunking.JmsPayloadChunker.LAST_SEQUENCE;
+
+/**
+ * Reassembles chunks created by {@link JmsPayloadChunker}. Chunks could arrive in any order, duplicates
+ * (redelivered chunks) are ignored. Incomplete groups are dropped after `groupTimeout` milliseconds since their
+ * first chunk, or as soon as the group exceeds `maxGroupBytes` or all incomplete groups exceed `maxPendingBytes`.
+ * Chunks of a dropped group which arrive later are discarded until the group times out.
+ * <p>
+ * Chunks are acknowledged as they arrive, so an incomplete group is lost if the consumer dies.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public class JmsChunkAssembler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClassName.getClassName());
+
+    // Property fields
+    private long groupTimeout = 60000;
+
+    private long maxGroupBytes = 64L * 1024 * 1024;
+
+    private long maxPendingBytes = 256L * 1024 * 1024;
+
+    private final Map<String, Group> groups = new ConcurrentHashMap<>();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final AtomicLong lastSweep = new AtomicLong(System.currentTimeMillis());
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+
+    /**
+     * @param groupTimeout -- maximum time in milliseconds to wait for all chunks of a group, default is 60000
+     */
+    public void setGroupTimeout(long groupTimeout) {
+        this.groupTimeout = groupTimeout;
+    }
+
+    /**
+     * @param maxGroupBytes -- maximum payload size of a group, default is 64M
+     */
+    public void setMaxGroupBytes(long maxGroupBytes) {
+        this.maxGroupBytes = maxGroupBytes;
+    }
+
+    /**
+     * @param maxPendingBytes -- maximum size of all incomplete groups, default is 256M
+     */
+    public void setMaxPendingBytes(long maxPendingBytes) {
+        this.maxPendingBytes = maxPendingBytes;
+    }
+
+    /**
+     * @return new assembler with the same settings and no state (is used for browsing)
+     */
+    public JmsChunkAssembler copy() {
+        final JmsChunkAssembler copy = new JmsChunkAssembler();
+        copy.setGroupTimeout(groupTimeout);
+        copy.setMaxGroupBytes(maxGroupBytes);
+        copy.setMaxPendingBytes(maxPendingBytes);
+        return copy;
+    }
+
+    public static boolean isChunk(final Message message) throws JMSException {
+        return message instanceof BytesMessage && message.propertyExists(CHUNK_COUNT_PROPERTY);
+    }
+
+    /**
+     * @param chunk -- received chunk
+     * @return complete group or null if the group is incomplete or dropped
+     * @throws JMSException
+     */
+    public JmsChunkGroup accept(final Message chunk) throws JMSException {
+        final long now = System.currentTimeMillis();
+        sweep(now);
+        final String groupId = chunk.getStringProperty(GROUP_ID_PROPERTY);
+        final int count = chunk.getIntProperty(CHUNK_COUNT_PROPERTY);
+        // the last chunk closes the group, its position is given by the number of chunks
+        final int groupSequence = chunk.getIntProperty(GROUP_SEQUENCE_PROPERTY);
+        final int sequence = groupSequence == LAST_SEQUENCE ? count : groupSequence;
+        if (groupId == null || count <= 0 || sequence < 1 || sequence > count) {
+            logger.warn("Chunk [{}] of group [{}] with {} chunks is invalid, chunk is discarded", sequence, groupId, count);
+            rejected.increment();
+            return null;
+        }
+        final byte[] bytes = JmsMessagePayload.readBytes((BytesMessage) chunk);
+        while (true) {
+            final Group group = groups.computeIfAbsent(groupId, id -> new Group(count, now));
+            synchronized (group) {
+                if (group.removed) {
+                    // expired concurrently, start a new group
+                    continue;
+                }
+                if (group.chunks == null) {
+                    // group is dropped already
+                    return null;
+                }
+                if (group.chunks.length != count) {
+                    drop(group, String.format("chunks of group [%s] disagree on the number of chunks", groupId));
+                    return null;
+                }
+                if (group.chunks[sequence - 1] != null) {
+                    duplicates.increment();
+                    return null;
+                }
+                if (group.bytes + bytes.length > maxGroupBytes) {
+                    drop(group, String.format("group [%s] exceeds %d bytes", groupId, maxGroupBytes));
+                    return null;
+                }
+                if (pendingBytes.addAndGet(bytes.length) > maxPendingBytes) {
+                    pendingBytes.addAndGet(-bytes.length);
+                    drop(group, String.format("incomplete groups exceed %d bytes, group [%s] is dropped", maxPendingBytes, groupId));
+                    return null;
+                }
+                group.chunks[sequence - 1] = bytes;
+                group.bytes += bytes.length;
+                if (++group.received < group.chunks.length) {
+                    return null;
+                }
+                group.removed = true;
+                groups.remove(groupId, group);
+                pendingBytes.addAndGet(-group.bytes);
+                completed.increment();
+                return new JmsChunkGroup(chunk, group.chunks, JmsMessagePayload.isCompressed(chunk));
+            }
+        }
+    }
+
+    public int getPendingGroups() {
+        return groups.size();
+    }
+
+    public long getPendingBytes() {
+        return pendingBytes.get();
+    }
+
+    public long getCompletedGroups() {
+        return completed.sum();
+    }
+
+    public long getExpiredGroups() {
+        return expired.sum();
+    }
+
+    /**
+     * @return groups dropped because of memory caps and invalid chunks
+     */
+    public long getRejectedGroups() {
+        return rejected.sum();
+    }
+
+    public long getDuplicateChunks() {
+        return duplicates.sum();
+    }
+
+    // guarded by group, chunks are released, but the group stays as a tombstone until it times out
+    private void drop(final Group group, final String reason) {
+        logger.warn("Chunk group is dropped: {}", reason);
+        rejected.increment();
+        pendingBytes.addAndGet(-group.bytes);
+        group.chunks = null;
+        group.bytes = 0;
+    }
+
+    // incomplete groups are checked at most twice per timeout
+    private void sweep(final long now) {
+        final long last = lastSweep.get();
+        if (now - last < groupTimeout / 2 || !lastSweep.compareAndSet(last, now)) return;
+        for (Map.Entry<String, Group> entry : groups.entrySet()) {
+            final Group group = entry.getValue();
+            synchronized (group) {
+                if (!group.removed && now - group.created > groupTimeout) {
+                    if (group.chunks != null) {
+                        logger.warn("Chunk group [{}] is expired, {} of {} chunks received", entry.getKey(),
+                                group.received, group.chunks.length);
+                        expired.increment();
+                        pendingBytes.addAndGet(-group.bytes);
+                    }
+                    group.removed = true;
+                    groups.remove(entry.getKey(), group);
+                }
+            }
+        }
+    }
+
+    private static class Group {
+        private final long created;
+        // null if the group is dropped
+        private byte[][] chunks;
+        private int received;
+        private long bytes;
+        private boolean removed;
+
+        private Group(int count, long created) {
+            this.chunks = new byte[count][];
+            this.created = created;
+        }
+    }
+}
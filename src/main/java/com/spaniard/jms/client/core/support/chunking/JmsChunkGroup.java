@@ -0,0 +1,50 @@
+package com.spaniard.jms.client.core.support.chunking;
+
+import javax.jms.Message;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Complete group of chunks. Payload is streamed chunk by chunk, chunks are never concatenated.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public final class JmsChunkGroup {
+
+    private final Message message;
+    private final byte[][] chunks;
+    private final boolean compressed;
+
+    JmsChunkGroup(Message message, byte[][] chunks, boolean compressed) {
+        this.message = message;
+        this.chunks = chunks;
+        this.compressed = compressed;
+    }
+
+    /**
+     * @return chunk which has completed the group, its headers (correlation id, reply to) are the same for all chunks
+     */
+    public Message getMessage() {
+        return message;
+    }
+
+    /**
+     * @return true if the whole payload is deflated
+     */
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    public InputStream openStream() {
+        final List<InputStream> streams = new ArrayList<>(chunks.length);
+        for (byte[] chunk : chunks) {
+            streams.add(new ByteArrayInputStream(chunk));
+        }
+        return new SequenceInputStream(Collections.enumeration(streams));
+    }
+}
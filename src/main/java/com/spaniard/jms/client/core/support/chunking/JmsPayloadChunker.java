@@ -0,0 +1,97 @@
+package com.spaniard.jms.client.core.support.chunking;
+
+import com.spaniard.jms.client.core.support.JmsEncodedPayload;
+import com.spaniard.jms.client.exception.IllegalPropertyException;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Session;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.spaniard.jms.client.core.support.compression.JmsPayloadCompressor.CONTENT_ENCODING_PROPERTY;
+import static com.spaniard.jms.client.core.support.compression.JmsPayloadCompressor.DEFLATE;
+
+/**
+ * Splits payloads bigger than `chunkSize` bytes into sequenced BytesMessage chunks of one group.
+ * Group id and sequence (1-based) are set to standard JMSXGroupID/JMSXGroupSeq properties, so that the broker
+ * delivers all chunks of a group to the same consumer. The last chunk has sequence -1, which closes the group
+ * on the broker. Every chunk carries the number of chunks of its group.
+ * Chunks are reassembled by {@link JmsChunkAssembler}.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public class JmsPayloadChunker {
+
+    public static final String GROUP_ID_PROPERTY = "JMSXGroupID";
+    public static final String GROUP_SEQUENCE_PROPERTY = "JMSXGroupSeq";
+    public static final String CHUNK_COUNT_PROPERTY = "chunkCount";
+    // closes the message group on the broker
+    public static final int LAST_SEQUENCE = -1;
+
+    // Property fields
+    private int chunkSize = 1024 * 1024;
+
+    private final LongAdder chunkedMessages = new LongAdder();
+    private final LongAdder chunks = new LongAdder();
+
+    /**
+     * @param chunkSize -- maximum size of the chunk in bytes, bigger payloads are chunked, default is 1M
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalPropertyException("chunkSize should be greater than 0");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @param payload -- encoded payload
+     * @return true if payload should be sent in chunks
+     */
+    public boolean shouldChunk(final JmsEncodedPayload payload) {
+        // text is at least as long in UTF-8 bytes as in chars
+        return payload.length() > chunkSize;
+    }
+
+    /**
+     * Creates chunks of the payload, payload is written to the chunks without copying.
+     *
+     * @param session -- jms session
+     * @param payload -- encoded payload
+     * @return chunks in the sending order
+     * @throws JMSException
+     */
+    public List<BytesMessage> createChunks(final Session session, final JmsEncodedPayload payload) throws JMSException {
+        final byte[] bytes = payload.getBytes();
+        final int count = (bytes.length + chunkSize - 1) / chunkSize;
+        final String groupId = UUID.randomUUID().toString();
+        final List<BytesMessage> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final BytesMessage chunk = session.createBytesMessage();
+            final int offset = i * chunkSize;
+            chunk.writeBytes(bytes, offset, Math.min(chunkSize, bytes.length - offset));
+            chunk.setStringProperty(GROUP_ID_PROPERTY, groupId);
+            chunk.setIntProperty(GROUP_SEQUENCE_PROPERTY, i + 1 < count ? i + 1 : LAST_SEQUENCE);
+            chunk.setIntProperty(CHUNK_COUNT_PROPERTY, count);
+            if (payload.isCompressed()) {
+                chunk.setStringProperty(CONTENT_ENCODING_PROPERTY, DEFLATE);
+            }
+            messages.add(chunk);
+        }
+        chunkedMessages.increment();
+        chunks.add(count);
+        return messages;
+    }
+
+    public long getChunkedMessages() {
+        return chunkedMessages.sum();
+    }
+
+    public long getChunks() {
+        return chunks.sum();
+    }
+}
@@ -0,0 +1,33 @@
+package com.spaniard.jms.client.core.support.claimcheck;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Storage of claim-checked payloads, it should be shared by senders and consumers, see {@link JmsClaimCheck}
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public interface JmsBlobStore {
+
+    /**
+     * @param blob -- payload
+     * @return reference which is sent instead of the payload
+     * @throws IOException
+     */
+    String write(byte[] blob) throws IOException;
+
+    /**
+     * @param reference -- reference returned by `write(...)`
+     * @return stream of the payload
+     * @throws IOException (FileNotFoundException if the payload is deleted already)
+     */
+    InputStream open(String reference) throws IOException;
+
+    /**
+     * @param reference -- reference returned by `write(...)`, missing payload is ignored
+     * @throws IOException
+     */
+    void delete(String reference) throws IOException;
+}
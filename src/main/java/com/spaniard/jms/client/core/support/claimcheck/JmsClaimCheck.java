@@ -0,0 +1,218 @@
+package com.spaniard.jms.client.core.support.claimcheck;
+
+import com.spaniard.jms.client.core.Strategy;
+import com.spaniard.jms.client.core.support.ClassName;
+import com.spaniard.jms.client.core.support.JmsEncodedPayload;
+import com.spaniard.jms.client.core.support.compression.JmsPayloadCompressor;
+import com.spaniard.jms.client.core.support.unmarshalling.Unmarshaller;
+import com.spaniard.jms.client.exception.IllegalPropertyException;
+import com.spaniard.jms.client.exception.JmsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.StreamUtils;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.spaniard.jms.client.core.support.compression.JmsPayloadCompressor.CONTENT_ENCODING_PROPERTY;
+import static com.spaniard.jms.client.core.support.compression.JmsPayloadCompressor.DEFLATE;
+
+/**
+ * Claim check of oversize payloads. Payload which is not smaller than `threshold` bytes (after compression) is
+ * written to the blob store, and an empty BytesMessage with `claimCheck` reference property is sent instead.
+ * Consumers resolve the reference when the message is handled, so the broker never holds the payload.
+ * <p>
+ * Payloads are deleted by the retention of the blob store. With `deleteOnConsume` listeners and receivers also
+ * delete the payload once the message is handled, it should be used for queues only, as redelivered messages and
+ * other subscribers would not find the payload.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public class JmsClaimCheck {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClassName.getClassName());
+
+    public static final String CLAIM_CHECK_PROPERTY = "claimCheck";
+
+    // inflates payloads when no compressor is configured on the receiving side (no preset dictionary)
+    private static final JmsPayloadCompressor DEFAULT_COMPRESSOR = new JmsPayloadCompressor();
+
+    // Property fields
+    private JmsBlobStore blobStore;
+
+    private int threshold = 1024 * 1024;
+
+    private boolean deleteOnConsume;
+
+    private final LongAdder checked = new LongAdder();
+    private final LongAdder resolved = new LongAdder();
+
+    /**
+     * @param blobStore -- blob store shared by senders and consumers
+     */
+    public void setBlobStore(JmsBlobStore blobStore) {
+        this.blobStore = blobStore;
+    }
+
+    /**
+     * @param threshold -- minimum payload size in bytes which is claim-checked, default is 1 MB
+     */
+    public void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * @param deleteOnConsume -- delete the payload once the message is handled by a listener or a receiver
+     */
+    public void setDeleteOnConsume(boolean deleteOnConsume) {
+        this.deleteOnConsume = deleteOnConsume;
+    }
+
+    /**
+     * @param payload -- encoded payload
+     * @return true if the payload should be claim-checked
+     */
+    public boolean shouldCheck(final JmsEncodedPayload payload) {
+        return payload.length() >= threshold;
+    }
+
+    /**
+     * @param payload -- encoded payload
+     * @return reference of the stored payload
+     * @throws JMSException if the payload could not be stored
+     */
+    public String store(final JmsEncodedPayload payload) throws JMSException {
+        try {
+            final String reference = blobStore().write(payload.getBytes());
+            checked.increment();
+            return reference;
+        } catch (IOException e) {
+            final JMSException jmsException = new JMSException("Could not store claim-checked payload: " + e.getMessage());
+            jmsException.setLinkedException(e);
+            jmsException.initCause(e);
+            throw jmsException;
+        }
+    }
+
+    /**
+     * @param session   -- jms session
+     * @param reference -- reference of the stored payload
+     * @param payload   -- stored payload
+     * @return empty BytesMessage with the reference, compressed payload is marked with content encoding property
+     * @throws JMSException
+     */
+    public Message createReference(final Session session, final String reference, final JmsEncodedPayload payload)
+            throws JMSException {
+        final BytesMessage message = session.createBytesMessage();
+        message.setStringProperty(CLAIM_CHECK_PROPERTY, reference);
+        if (payload.isCompressed()) {
+            message.setStringProperty(CONTENT_ENCODING_PROPERTY, DEFLATE);
+        }
+        return message;
+    }
+
+    /**
+     * Deletes the payload of a message which has not been sent
+     *
+     * @param reference -- reference of the stored payload
+     */
+    public void discard(final String reference) {
+        try {
+            blobStore().delete(reference);
+        } catch (IOException e) {
+            logger.warn("Could not delete claim-checked payload [{}], it is deleted by retention", reference, e);
+        }
+    }
+
+    /**
+     * @param message -- received message
+     * @return true if the payload of the message is claim-checked
+     * @throws JMSException
+     */
+    public static boolean isReference(final Message message) throws JMSException {
+        return message.propertyExists(CLAIM_CHECK_PROPERTY);
+    }
+
+    /**
+     * Unmarshalls the payload straight from the blob store stream
+     *
+     * @param unmarshaller -- unmarshaller
+     * @param strategy     -- strategy (xml, json, string)
+     * @param message      -- reference message
+     * @param compressor   -- payload compressor, could be null
+     * @return model object
+     * @throws JMSException
+     * @throws JmsException if the payload could not be read
+     */
+    public Object unmarshall(final Unmarshaller unmarshaller, final Strategy strategy, final Message message,
+                             final JmsPayloadCompressor compressor) throws JMSException, JmsException {
+        try (InputStream inputStream = openStream(message, compressor)) {
+            return unmarshaller.unmarshall(strategy, inputStream);
+        } catch (IOException e) {
+            throw new JmsException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param message    -- reference message
+     * @param compressor -- payload compressor, could be null
+     * @return payload, inflated if it is compressed
+     * @throws JMSException
+     * @throws JmsException if the payload could not be read
+     */
+    public byte[] readPayload(final Message message, final JmsPayloadCompressor compressor) throws JMSException, JmsException {
+        try (InputStream inputStream = openStream(message, compressor)) {
+            return StreamUtils.copyToByteArray(inputStream);
+        } catch (IOException e) {
+            throw new JmsException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Deletes the payload if `deleteOnConsume` is set, is called once the message is handled
+     *
+     * @param message -- reference message
+     * @throws JMSException
+     */
+    public void release(final Message message) throws JMSException {
+        if (deleteOnConsume && isReference(message)) {
+            discard(message.getStringProperty(CLAIM_CHECK_PROPERTY));
+        }
+    }
+
+    /**
+     * @return payloads sent by reference
+     */
+    public long getCheckedPayloads() {
+        return checked.sum();
+    }
+
+    /**
+     * @return references resolved by consumers
+     */
+    public long getResolvedPayloads() {
+        return resolved.sum();
+    }
+
+    private InputStream openStream(final Message message, final JmsPayloadCompressor compressor) throws JMSException, IOException {
+        final InputStream inputStream = blobStore().open(message.getStringProperty(CLAIM_CHECK_PROPERTY));
+        resolved.increment();
+        if (DEFLATE.equals(message.getStringProperty(CONTENT_ENCODING_PROPERTY))) {
+            return (compressor != null ? compressor : DEFAULT_COMPRESSOR).decompress(inputStream);
+        }
+        return inputStream;
+    }
+
+    private JmsBlobStore blobStore() {
+        if (blobStore == null) {
+            throw new IllegalPropertyException("BlobStore property is null");
+        }
+        return blobStore;
+    }
+}
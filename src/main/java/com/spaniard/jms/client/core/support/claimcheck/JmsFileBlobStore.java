@@ -0,0 +1,250 @@
+package com.spaniard.jms.client.core.support.claimcheck;
+
+import com.spaniard.jms.client.core.support.ClassName;
+import com.spaniard.jms.client.exception.IllegalPropertyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Blob store on a shared filesystem. Every payload is a file, written and read through a memory mapping, so
+ * the payload is copied once on write and is unmarshalled straight from the page cache on read. Payload is written
+ * to a temporary file which is atomically renamed, so consumers never see partial payloads.
+ * <p>
+ * Files older than `retention` milliseconds are deleted by the sweeper thread every `sweepInterval` milliseconds,
+ * whether they have been consumed or not.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public class JmsFileBlobStore implements JmsBlobStore, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClassName.getClassName());
+
+    private static final String BLOB_SUFFIX = ".blob";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    // references come from messages, so they are validated before they become paths
+    private static final Pattern REFERENCE = Pattern.compile("[0-9a-f]{2}/[0-9a-f\\-]{36}");
+
+    // Property fields
+    private Path directory;
+
+    private long retention = TimeUnit.DAYS.toMillis(1);
+
+    private long sweepInterval = TimeUnit.MINUTES.toMillis(10);
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder writtenBytes = new LongAdder();
+    private final LongAdder read = new LongAdder();
+    private final LongAdder swept = new LongAdder();
+
+    private volatile ScheduledThreadPoolExecutor sweeper;
+    private volatile boolean closed;
+
+    /**
+     * @param directory -- directory on the filesystem shared by senders and consumers
+     */
+    public void setDirectory(String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    /**
+     * @param retention -- time in milliseconds a payload is kept, default is one day
+     */
+    public void setRetention(long retention) {
+        this.retention = retention;
+    }
+
+    /**
+     * @param sweepInterval -- interval in milliseconds between retention sweeps, default is 10 minutes
+     */
+    public void setSweepInterval(long sweepInterval) {
+        this.sweepInterval = sweepInterval;
+    }
+
+    @Override
+    public String write(final byte[] blob) throws IOException {
+        start();
+        final String name = UUID.randomUUID().toString();
+        final String reference = name.substring(0, 2) + "/" + name;
+        final Path target = resolve(reference);
+        Files.createDirectories(target.getParent());
+        final Path temporary = target.resolveSibling(name + TEMPORARY_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, blob.length);
+            buffer.put(blob);
+            buffer.force();
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        written.increment();
+        writtenBytes.add(blob.length);
+        return reference;
+    }
+
+    @Override
+    public InputStream open(final String reference) throws IOException {
+        start();
+        final Path path = resolve(reference);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // mapping stays valid after the channel is closed
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            read.increment();
+            return new ByteBufferInputStream(buffer);
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException("Claim-checked payload [" + reference + "] is not found, it could be deleted by retention");
+        }
+    }
+
+    @Override
+    public void delete(final String reference) throws IOException {
+        Files.deleteIfExists(resolve(reference));
+    }
+
+    public long getWrittenBlobs() {
+        return written.sum();
+    }
+
+    public long getWrittenBytes() {
+        return writtenBytes.sum();
+    }
+
+    public long getReadBlobs() {
+        return read.sum();
+    }
+
+    /**
+     * @return payloads deleted by retention
+     */
+    public long getSweptBlobs() {
+        return swept.sum();
+    }
+
+    /**
+     * Stops the sweeper thread, payloads are kept.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        final ScheduledThreadPoolExecutor started = sweeper;
+        if (started != null) {
+            started.shutdownNow();
+        }
+    }
+
+    private void start() {
+        if (sweeper != null) return;
+        synchronized (this) {
+            if (sweeper != null) return;
+            if (directory == null) {
+                throw new IllegalPropertyException("Directory property is null");
+            }
+            if (retention <= 0 || sweepInterval <= 0) {
+                throw new IllegalPropertyException("retention and sweepInterval should be greater than 0");
+            }
+            if (closed) {
+                throw new IllegalStateException("Blob store is closed");
+            }
+            final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                final Thread thread = new Thread(runnable, "jms-blob-sweeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleWithFixedDelay(this::sweep, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+            sweeper = executor;
+        }
+    }
+
+    private Path resolve(final String reference) throws IOException {
+        if (reference == null || !REFERENCE.matcher(reference).matches()) {
+            throw new IOException("Invalid claim check reference [" + reference + "]");
+        }
+        if (directory == null) {
+            throw new IllegalPropertyException("Directory property is null");
+        }
+        return directory.resolve(reference + BLOB_SUFFIX);
+    }
+
+    // payloads and abandoned temporary files older than retention
+    private void sweep() {
+        final long expiredBefore = System.currentTimeMillis() - retention;
+        final List<Path> files;
+        try (Stream<Path> paths = Files.walk(directory, 2)) {
+            files = paths.filter(path -> {
+                final String name = path.getFileName().toString();
+                return name.endsWith(BLOB_SUFFIX) || name.endsWith(TEMPORARY_SUFFIX);
+            }).collect(Collectors.toList());
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not list claim-checked payloads in [{}]", directory, e);
+            return;
+        }
+        for (Path file : files) {
+            try {
+                if (Files.getLastModifiedTime(file).toMillis() < expiredBefore && Files.deleteIfExists(file)) {
+                    swept.increment();
+                }
+            } catch (NoSuchFileException e) {
+                // deleted by a consumer or another sweeper
+            } catch (IOException e) {
+                logger.warn("Could not delete claim-checked payload [{}]", file, e);
+            }
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length) {
+            if (length == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+            final int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public long skip(final long n) {
+            final int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
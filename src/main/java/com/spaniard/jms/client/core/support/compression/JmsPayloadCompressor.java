@@ -0,0 +1,376 @@
+package com.spaniard.jms.client.core.support.compression;
+
+import com.spaniard.jms.client.exception.IllegalPropertyException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Deflates payloads which are bigger than `threshold` bytes. Compressed payload is sent as BytesMessage marked
+ * with {@link #CONTENT_ENCODING_PROPERTY} property. Optional preset dictionary (the same on both sides) improves
+ * compression of small and similar messages, dictionary could be trained from sample messages.
+ * <p>
+ * Deflaters are reused from a bounded pool, deflaters which do not fit into the pool and all pooled deflaters
+ * on close are ended, so that their native memory is released. Compression ratio and CPU time are collected.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public class JmsPayloadCompressor implements AutoCloseable {
+
+    public static final String CONTENT_ENCODING_PROPERTY = "contentEncoding";
+    public static final String DEFLATE = "deflate";
+
+    // length of the segments which are counted while training a dictionary
+    private static final int SEGMENT_LENGTH = 16;
+    private static final int DEFAULT_DICTIONARY_SIZE = 16 * 1024;
+    private static final int BUFFER_SIZE = 8192;
+
+    // Property fields
+    private int threshold = 8192;
+
+    private int level = Deflater.DEFAULT_COMPRESSION;
+
+    private double maxRatio = 0.9;
+
+    private volatile byte[] dictionary;
+
+    private int maxPooledDeflaters = Runtime.getRuntime().availableProcessors() * 2;
+
+    private volatile BlockingQueue<Deflater> deflaters;
+    private volatile boolean closed;
+
+    private final LongAdder compressed = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder incompressible = new LongAdder();
+    private final LongAdder decompressed = new LongAdder();
+    private final LongAdder bytesBeforeCompression = new LongAdder();
+    private final LongAdder bytesAfterCompression = new LongAdder();
+    private final LongAdder compressionNanos = new LongAdder();
+    private final LongAdder decompressionNanos = new LongAdder();
+
+    /**
+     * @param threshold -- payloads of at least `threshold` bytes are compressed, default is 8192
+     */
+    public void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * @param level -- deflate level 0-9, should be set before the first compression
+     */
+    public void setLevel(int level) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalPropertyException("Compression level should be between -1 and 9");
+        }
+        this.level = level;
+    }
+
+    /**
+     * @param maxRatio -- payload is sent as is if its compressed size is bigger than this part of the original size,
+     *                 default is 0.9
+     */
+    public void setMaxRatio(double maxRatio) {
+        if (maxRatio <= 0 || maxRatio > 1) {
+            throw new IllegalPropertyException("maxRatio should be in (0, 1]");
+        }
+        this.maxRatio = maxRatio;
+    }
+
+    /**
+     * @param maxPooledDeflaters -- maximum number of idle deflaters kept for reuse, default is twice the number of
+     *                           processors, should be set before the first compression
+     */
+    public void setMaxPooledDeflaters(int maxPooledDeflaters) {
+        if (maxPooledDeflaters <= 0) {
+            throw new IllegalPropertyException("maxPooledDeflaters should be greater than 0");
+        }
+        this.maxPooledDeflaters = maxPooledDeflaters;
+    }
+
+    /**
+     * @param dictionary -- preset dictionary, should be the same for sender and receiver
+     */
+    public void setDictionary(byte[] dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Trains preset dictionary from sample messages, see {@link #trainDictionary(Collection, int)}
+     *
+     * @param samples -- typical marshalled messages
+     */
+    public void setDictionarySamples(Collection<String> samples) {
+        final List<byte[]> binarySamples = new ArrayList<>(samples.size());
+        for (String sample : samples) {
+            binarySamples.add(sample.getBytes(StandardCharsets.UTF_8));
+        }
+        this.dictionary = trainDictionary(binarySamples, DEFAULT_DICTIONARY_SIZE);
+    }
+
+    public byte[] getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @param length -- payload length in bytes
+     * @return true if payload should be compressed
+     */
+    public boolean shouldCompress(final int length) {
+        if (length >= threshold) {
+            return true;
+        }
+        skipped.increment();
+        return false;
+    }
+
+    public byte[] compress(final byte[] payload) {
+        final long start = System.nanoTime();
+        final byte[] result = deflate(payload);
+        record(payload, result, start);
+        return result;
+    }
+
+    /**
+     * @param payload -- payload which is not smaller than the threshold, see {@link #shouldCompress(int)}
+     * @return deflated payload, null if it does not compress well enough (`maxRatio`) and should be sent as is
+     */
+    public byte[] compressIfSmaller(final byte[] payload) {
+        final long start = System.nanoTime();
+        final byte[] result = deflate(payload);
+        if (result.length > payload.length * maxRatio) {
+            compressionNanos.add(System.nanoTime() - start);
+            incompressible.increment();
+            return null;
+        }
+        record(payload, result, start);
+        return result;
+    }
+
+    private byte[] deflate(final byte[] payload) {
+        final Deflater deflater = borrowDeflater();
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(Math.max(64, payload.length / 4));
+        try {
+            final byte[] presetDictionary = dictionary;
+            if (presetDictionary != null) {
+                deflater.setDictionary(presetDictionary);
+            }
+            deflater.setInput(payload);
+            deflater.finish();
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                final int length = deflater.deflate(buffer);
+                outputStream.write(buffer, 0, length);
+            }
+        } finally {
+            returnDeflater(deflater);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private void record(final byte[] payload, final byte[] result, final long start) {
+        compressionNanos.add(System.nanoTime() - start);
+        compressed.increment();
+        bytesBeforeCompression.add(payload.length);
+        bytesAfterCompression.add(result.length);
+    }
+
+    /**
+     * @param payload -- deflated payload
+     * @return stream of inflated payload, inflater is released when the stream is closed or fully read
+     */
+    public InputStream decompress(final byte[] payload) {
+        return decompress(new ByteArrayInputStream(payload));
+    }
+
+    /**
+     * @param payload -- stream of deflated payload
+     * @return stream of inflated payload, inflater is released when the stream is closed or fully read
+     */
+    public InputStream decompress(final InputStream payload) {
+        decompressed.increment();
+        return new DictionaryInflaterInputStream(payload, new Inflater());
+    }
+
+    /**
+     * Ends pooled deflaters. Compression still works after close, but deflaters are not pooled any more.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        final BlockingQueue<Deflater> pool = deflaters;
+        if (pool == null) return;
+        Deflater deflater;
+        while ((deflater = pool.poll()) != null) {
+            deflater.end();
+        }
+    }
+
+    public long getCompressedMessages() {
+        return compressed.sum();
+    }
+
+    public long getSkippedMessages() {
+        return skipped.sum();
+    }
+
+    /**
+     * @return payloads which were sent as is, because they did not compress well enough
+     */
+    public long getIncompressibleMessages() {
+        return incompressible.sum();
+    }
+
+    public long getDecompressedMessages() {
+        return decompressed.sum();
+    }
+
+    /**
+     * @return compressed size / original size of all compressed payloads, 1.0 if nothing is compressed
+     */
+    public double getCompressionRatio() {
+        final long before = bytesBeforeCompression.sum();
+        return before == 0 ? 1.0 : (double) bytesAfterCompression.sum() / before;
+    }
+
+    public long getCompressionTimeNanos() {
+        return compressionNanos.sum();
+    }
+
+    public long getDecompressionTimeNanos() {
+        return decompressionNanos.sum();
+    }
+
+    /**
+     * Builds a dictionary out of segments which occur in most of the samples. The most frequent segments are put
+     * at the end of the dictionary, closer to the compressed data.
+     *
+     * @param samples -- typical payloads
+     * @param maxSize -- maximum dictionary size in bytes (deflate window is 32K)
+     * @return dictionary or null if samples have nothing in common
+     */
+    public static byte[] trainDictionary(final Collection<byte[]> samples, final int maxSize) {
+        // number of samples which contain the segment
+        final Map<ByteBuffer, Integer> frequencies = new HashMap<>();
+        for (byte[] sample : samples) {
+            final Set<ByteBuffer> segments = new HashSet<>();
+            for (int i = 0; i + SEGMENT_LENGTH <= sample.length; i += SEGMENT_LENGTH / 4) {
+                segments.add(ByteBuffer.wrap(sample, i, SEGMENT_LENGTH).slice());
+            }
+            for (ByteBuffer segment : segments) {
+                frequencies.merge(segment, 1, Integer::sum);
+            }
+        }
+        final List<Map.Entry<ByteBuffer, Integer>> common = new ArrayList<>();
+        for (Map.Entry<ByteBuffer, Integer> entry : frequencies.entrySet()) {
+            if (entry.getValue() > 1) {
+                common.add(entry);
+            }
+        }
+        if (common.isEmpty()) {
+            return null;
+        }
+        common.sort((left, right) -> Integer.compare(right.getValue(), left.getValue()));
+        final int segments = Math.min(common.size(), maxSize / SEGMENT_LENGTH);
+        final byte[] trained = new byte[segments * SEGMENT_LENGTH];
+        for (int i = 0; i < segments; i++) {
+            // the most frequent segment is the last one
+            common.get(i).getKey().duplicate().get(trained, trained.length - (i + 1) * SEGMENT_LENGTH, SEGMENT_LENGTH);
+        }
+        return trained;
+    }
+
+    private Deflater borrowDeflater() {
+        final Deflater pooled = pool().poll();
+        if (pooled == null) {
+            return new Deflater(level);
+        }
+        pooled.reset();
+        return pooled;
+    }
+
+    // deflater which does not fit into the pool is ended right away
+    private void returnDeflater(final Deflater deflater) {
+        if (closed || !pool().offer(deflater)) {
+            deflater.end();
+            return;
+        }
+        // close() could have drained the pool before the deflater was returned
+        if (closed && pool().remove(deflater)) {
+            deflater.end();
+        }
+    }
+
+    private BlockingQueue<Deflater> pool() {
+        BlockingQueue<Deflater> pool = deflaters;
+        if (pool == null) {
+            synchronized (this) {
+                pool = deflaters;
+                if (pool == null) {
+                    pool = new ArrayBlockingQueue<>(maxPooledDeflaters);
+                    deflaters = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    // sets preset dictionary when the stream header asks for it
+    private class DictionaryInflaterInputStream extends InflaterInputStream {
+
+        private boolean ended;
+
+        private DictionaryInflaterInputStream(InputStream in, Inflater inflater) {
+            super(in, inflater, BUFFER_SIZE);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (ended) return -1;
+            final long start = System.nanoTime();
+            try {
+                int n = super.read(b, off, len);
+                if (n == -1 && inf.needsDictionary()) {
+                    final byte[] presetDictionary = dictionary;
+                    if (presetDictionary == null) {
+                        throw new IOException("Payload is compressed with preset dictionary, but no dictionary is set");
+                    }
+                    inf.setDictionary(presetDictionary);
+                    n = super.read(b, off, len);
+                }
+                if (n == -1) {
+                    close();
+                }
+                return n;
+            } finally {
+                decompressionNanos.add(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!ended) {
+                ended = true;
+                inf.end();
+            }
+            super.close();
+        }
+    }
+}
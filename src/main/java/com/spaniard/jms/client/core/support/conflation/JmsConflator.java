@@ -0,0 +1,289 @@
+package com.spaniard.jms.client.core.support.conflation;
+
+import com.spaniard.jms.client.core.support.ClassName;
+import com.spaniard.jms.client.core.support.async.JmsBatchChannel;
+import com.spaniard.jms.client.exception.IllegalPropertyException;
+import com.spaniard.jms.client.exception.JmsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ReflectionUtils;
+
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Latest-value conflation. Only the newest pending model object per (destination, key) is kept, the key is
+ * extracted by the key extractor of the model class. Pending objects are marshalled and sent in one local
+ * transaction every `flushInterval` milliseconds or as soon as `maxPending` keys are pending.
+ * Superseded objects are never marshalled nor sent.
+ * <p>
+ * Order is kept per key only. Objects which could not be sent are kept pending, unless a newer object
+ * has arrived, and are sent on the next flush.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public class JmsConflator implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClassName.getClassName());
+
+    // Property fields
+    private long flushInterval = 100;
+
+    private int maxPending = 10000;
+
+    private Map<Class<?>, Function<Object, ?>> keyExtractors = new HashMap<>();
+
+    private final Map<ConflationKey, Object> pending = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder conflated = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+
+    private volatile ScheduledThreadPoolExecutor flusher;
+    private volatile boolean closed;
+    // is used by the flusher thread only
+    private JmsBatchChannel.Factory channelFactory;
+    private JmsBatchChannel channel;
+
+    /**
+     * @param flushInterval -- interval in milliseconds between flushes, default is 100
+     */
+    public void setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * @param maxPending -- number of pending keys which triggers flush before the interval is over, default is 10000
+     */
+    public void setMaxPending(int maxPending) {
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * @param keyExtractors -- key extractor map (ModelClass, model object -> key)
+     */
+    @SuppressWarnings("unchecked")
+    public void setKeyExtractors(Map<Class<?>, Function<?, ?>> keyExtractors) {
+        for (Map.Entry<Class<?>, Function<?, ?>> entry : keyExtractors.entrySet()) {
+            this.keyExtractors.put(entry.getKey(), (Function<Object, ?>) entry.getValue());
+        }
+    }
+
+    /**
+     * Key is a bean property of the model class, its getter is resolved once.
+     *
+     * @param keyProperties -- key property map (ModelClass, property name)
+     */
+    public void setKeyProperties(Map<Class<?>, String> keyProperties) {
+        for (Map.Entry<Class<?>, String> entry : keyProperties.entrySet()) {
+            final PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(entry.getKey(), entry.getValue());
+            if (descriptor == null || descriptor.getReadMethod() == null) {
+                throw new IllegalPropertyException(String.format("No readable property [%s] found in [%s]",
+                        entry.getValue(), entry.getKey().getName()));
+            }
+            final Method getter = descriptor.getReadMethod();
+            ReflectionUtils.makeAccessible(getter);
+            keyExtractors.put(entry.getKey(), modelObject -> ReflectionUtils.invokeMethod(getter, modelObject));
+        }
+    }
+
+    /**
+     * Starts the flusher thread, is called by JmsMessageSender on the first conflated send.
+     *
+     * @param channelFactory -- opens transacted channel for the flusher thread
+     */
+    public void start(final JmsBatchChannel.Factory channelFactory) {
+        if (flusher != null) return;
+        synchronized (this) {
+            if (flusher != null) return;
+            if (flushInterval <= 0 || maxPending <= 0) {
+                throw new IllegalPropertyException("flushInterval and maxPending should be greater than 0");
+            }
+            this.channelFactory = channelFactory;
+            final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                final Thread thread = new Thread(runnable, "jms-conflator-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+            flusher = executor;
+        }
+    }
+
+    /**
+     * @param destination -- jms destination
+     * @param modelObject -- Model class that should be send, replaces pending object with the same key
+     * @throws JmsException if the conflator is closed or the key is null
+     */
+    public void submit(final Destination destination, final Object modelObject) throws JmsException {
+        if (closed || flusher == null) {
+            throw new JmsException("Conflator is not started or closed");
+        }
+        final Function<Object, ?> keyExtractor = keyExtractors.get(modelObject.getClass());
+        if (keyExtractor == null) {
+            throw new IllegalPropertyException("No key extractor found for " + modelObject.getClass().getName());
+        }
+        final Object key = keyExtractor.apply(modelObject);
+        if (key == null) {
+            throw new JmsException("Conflation key of " + modelObject + " is null");
+        }
+        final ConflationKey conflationKey = new ConflationKey(destination, modelObject.getClass(), key);
+        submitted.increment();
+        if (pending.put(conflationKey, modelObject) != null) {
+            conflated.increment();
+        } else if (pending.size() >= maxPending && flushScheduled.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                // conflator is closing, pending objects are flushed by `close()`
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    public int getPendingKeys() {
+        return pending.size();
+    }
+
+    public long getSubmittedMessages() {
+        return submitted.sum();
+    }
+
+    /**
+     * @return messages which were superseded by a newer one and were not sent
+     */
+    public long getConflatedMessages() {
+        return conflated.sum();
+    }
+
+    public long getSentMessages() {
+        return sent.sum();
+    }
+
+    /**
+     * @return messages which could not be marshalled and were dropped
+     */
+    public long getFailedMessages() {
+        return failed.sum();
+    }
+
+    public long getFailedFlushes() {
+        return failedFlushes.sum();
+    }
+
+    /**
+     * Stops accepting new messages and flushes pending ones.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        final ScheduledThreadPoolExecutor started = flusher;
+        if (started == null) return;
+        started.shutdown();
+        try {
+            started.awaitTermination(flushInterval * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        // the last flush on the caller thread, the flusher is stopped
+        flush();
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    // is run by the flusher thread or by `close()` after the flusher is stopped
+    private synchronized void flush() {
+        flushScheduled.set(false);
+        if (pending.isEmpty()) return;
+        final List<ConflationKey> keys = new ArrayList<>();
+        final List<Object> modelObjects = new ArrayList<>();
+        for (ConflationKey key : pending.keySet()) {
+            // newer object submitted after removal is sent by the next flush
+            final Object modelObject = pending.remove(key);
+            if (modelObject != null) {
+                keys.add(key);
+                modelObjects.add(modelObject);
+            }
+        }
+        try {
+            if (channel == null) {
+                channel = channelFactory.open();
+            }
+            int sentInFlush = 0;
+            for (int i = 0; i < keys.size(); i++) {
+                try {
+                    channel.send(keys.get(i).destination, modelObjects.get(i));
+                    sentInFlush++;
+                } catch (RuntimeException e) {
+                    // marshalling failure affects the single message only, it is not retried
+                    failed.increment();
+                    logger.error("Could not marshall conflated message {}, message is dropped", modelObjects.get(i), e);
+                }
+            }
+            channel.commit();
+            sent.add(sentInFlush);
+        } catch (JMSException | RuntimeException e) {
+            failedFlushes.increment();
+            logger.error("Could not flush {} conflated messages", keys.size(), e);
+            if (channel != null) {
+                channel.rollback();
+                channel.close();
+                channel = null;
+            }
+            // keep for the next flush unless superseded
+            for (int i = 0; i < keys.size(); i++) {
+                pending.putIfAbsent(keys.get(i), modelObjects.get(i));
+            }
+        }
+    }
+
+    private static final class ConflationKey {
+        private final Destination destination;
+        private final Class<?> modelClass;
+        private final Object key;
+        private final int hash;
+
+        private ConflationKey(Destination destination, Class<?> modelClass, Object key) {
+            this.destination = destination;
+            this.modelClass = modelClass;
+            this.key = key;
+            this.hash = Objects.hash(destination, modelClass, key);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ConflationKey)) return false;
+            final ConflationKey that = (ConflationKey) o;
+            return destination.equals(that.destination) && modelClass == that.modelClass && key.equals(that.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
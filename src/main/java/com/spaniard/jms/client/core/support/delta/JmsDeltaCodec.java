@@ -0,0 +1,157 @@
+package com.spaniard.jms.client.core.support.delta;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Byte level delta of two marshalled forms. Delta is the target length followed by COPY (offset, length) and
+ * INSERT (length, bytes) operations, all numbers are varints. Matches are found by a rolling hash of `BLOCK` bytes
+ * over the blocks of the base, and are extended in both directions, so unchanged fields cost a few bytes.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+final class JmsDeltaCodec {
+
+    private static final int BLOCK = 16;
+    private static final int MULTIPLIER = 31;
+    // MULTIPLIER ^ (BLOCK - 1), removes the leading byte from the rolling hash
+    private static final int LEADING_POWER;
+
+    private static final int INSERT = 0;
+    private static final int COPY = 1;
+
+    static {
+        int power = 1;
+        for (int i = 1; i < BLOCK; i++) {
+            power *= MULTIPLIER;
+        }
+        LEADING_POWER = power;
+    }
+
+    private JmsDeltaCodec() {
+    }
+
+    static byte[] diff(final byte[] base, final byte[] target) {
+        final ByteArrayOutputStream delta = new ByteArrayOutputStream(Math.min(target.length, 256));
+        writeVarint(delta, target.length);
+        final Map<Integer, Integer> blocks = new HashMap<>(base.length / BLOCK * 2 + 1);
+        for (int offset = 0; offset + BLOCK <= base.length; offset += BLOCK) {
+            blocks.putIfAbsent(hash(base, offset), offset);
+        }
+        int insertStart = 0;
+        int position = 0;
+        int hash = position + BLOCK <= target.length ? hash(target, position) : 0;
+        while (position + BLOCK <= target.length) {
+            final Integer candidate = blocks.get(hash);
+            if (candidate != null && matches(base, candidate, target, position)) {
+                // extend the match backward into the pending insert and forward
+                int baseStart = candidate;
+                int targetStart = position;
+                while (targetStart > insertStart && baseStart > 0 && base[baseStart - 1] == target[targetStart - 1]) {
+                    baseStart--;
+                    targetStart--;
+                }
+                int baseEnd = candidate + BLOCK;
+                int targetEnd = position + BLOCK;
+                while (targetEnd < target.length && baseEnd < base.length && base[baseEnd] == target[targetEnd]) {
+                    baseEnd++;
+                    targetEnd++;
+                }
+                writeInsert(delta, target, insertStart, targetStart);
+                writeVarint(delta, ((targetEnd - targetStart) << 1) | COPY);
+                writeVarint(delta, baseStart);
+                position = targetEnd;
+                insertStart = targetEnd;
+                if (position + BLOCK <= target.length) {
+                    hash = hash(target, position);
+                }
+                continue;
+            }
+            if (position + BLOCK < target.length) {
+                hash = (hash - (target[position] & 0xff) * LEADING_POWER) * MULTIPLIER + (target[position + BLOCK] & 0xff);
+            }
+            position++;
+        }
+        writeInsert(delta, target, insertStart, target.length);
+        return delta.toByteArray();
+    }
+
+    static byte[] patch(final byte[] base, final byte[] delta) {
+        final int[] cursor = new int[1];
+        final int length = readVarint(delta, cursor);
+        final byte[] target = new byte[length];
+        int position = 0;
+        while (cursor[0] < delta.length) {
+            final int operation = readVarint(delta, cursor);
+            final int size = operation >>> 1;
+            if (size > length - position) {
+                throw new IllegalArgumentException("Delta exceeds target length");
+            }
+            if ((operation & 1) == COPY) {
+                final int offset = readVarint(delta, cursor);
+                if (offset > base.length - size) {
+                    throw new IllegalArgumentException("Delta does not match the base");
+                }
+                System.arraycopy(base, offset, target, position, size);
+            } else {
+                if (size > delta.length - cursor[0]) {
+                    throw new IllegalArgumentException("Delta is truncated");
+                }
+                System.arraycopy(delta, cursor[0], target, position, size);
+                cursor[0] += size;
+            }
+            position += size;
+        }
+        if (position != length) {
+            throw new IllegalArgumentException("Delta is truncated");
+        }
+        return target;
+    }
+
+    private static int hash(final byte[] bytes, final int offset) {
+        int hash = 0;
+        for (int i = offset; i < offset + BLOCK; i++) {
+            hash = hash * MULTIPLIER + (bytes[i] & 0xff);
+        }
+        return hash;
+    }
+
+    private static boolean matches(final byte[] base, final int baseOffset, final byte[] target, final int targetOffset) {
+        for (int i = 0; i < BLOCK; i++) {
+            if (base[baseOffset + i] != target[targetOffset + i]) return false;
+        }
+        return true;
+    }
+
+    private static void writeInsert(final ByteArrayOutputStream delta, final byte[] target, final int from, final int to) {
+        if (to <= from) return;
+        writeVarint(delta, ((to - from) << 1) | INSERT);
+        delta.write(target, from, to - from);
+    }
+
+    private static void writeVarint(final ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(final byte[] bytes, final int[] cursor) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (cursor[0] >= bytes.length) {
+                throw new IllegalArgumentException("Delta is truncated");
+            }
+            final byte next = bytes[cursor[0]++];
+            value |= (next & 0x7f) << shift;
+            if ((next & 0x80) == 0) {
+                if (value < 0) break;
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Delta is corrupted");
+    }
+}
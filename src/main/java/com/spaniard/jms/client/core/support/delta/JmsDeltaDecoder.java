@@ -0,0 +1,142 @@
+package com.spaniard.jms.client.core.support.delta;
+
+import com.spaniard.jms.client.core.support.ClassName;
+import com.spaniard.jms.client.exception.JmsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.spaniard.jms.client.core.support.delta.JmsDeltaEncoder.BASE_VERSION_PROPERTY;
+import static com.spaniard.jms.client.core.support.delta.JmsDeltaEncoder.KEY_PROPERTY;
+import static com.spaniard.jms.client.core.support.delta.JmsDeltaEncoder.VERSION_PROPERTY;
+
+/**
+ * Rebuilds full marshalled forms of model objects sent in delta mode, see {@link JmsDeltaEncoder}.
+ * The last marshalled form is kept per (destination, delta key). Delta which base version is not the kept one
+ * is skipped, the key recovers on the next snapshot. Redelivered message of the kept version gives the kept form.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public class JmsDeltaDecoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClassName.getClassName());
+
+    // Property fields
+    private int maxKeys = 10000;
+
+    // guarded by this, the least recently received keys are evicted
+    private final Map<String, State> states = new LinkedHashMap<String, State>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, State> eldest) {
+            return size() > maxKeys;
+        }
+    };
+
+    private final LongAdder snapshots = new LongAdder();
+    private final LongAdder deltas = new LongAdder();
+    private final LongAdder missedDeltas = new LongAdder();
+
+    /**
+     * @param maxKeys -- maximum number of keys which state is kept, default is 10000
+     */
+    public void setMaxKeys(int maxKeys) {
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * @return decoder with the same settings and empty state, for browsing
+     */
+    public JmsDeltaDecoder copy() {
+        final JmsDeltaDecoder copy = new JmsDeltaDecoder();
+        copy.setMaxKeys(maxKeys);
+        return copy;
+    }
+
+    /**
+     * @param message -- received message
+     * @return true if the message is a snapshot or delta of delta mode
+     * @throws JMSException
+     */
+    public static boolean isDelta(final Message message) throws JMSException {
+        return message.propertyExists(VERSION_PROPERTY);
+    }
+
+    /**
+     * @param message -- snapshot or delta message
+     * @param payload -- payload of the message (inflated if it is compressed)
+     * @return full marshalled form, null if the base of the delta is missing
+     * @throws JMSException
+     * @throws JmsException if the delta is corrupted
+     */
+    public byte[] decode(final Message message, final byte[] payload) throws JMSException, JmsException {
+        final String key = message.getJMSDestination() + "|" + message.getStringProperty(KEY_PROPERTY);
+        final long version = message.getLongProperty(VERSION_PROPERTY);
+        if (!message.propertyExists(BASE_VERSION_PROPERTY)) {
+            synchronized (this) {
+                states.put(key, new State(version, payload));
+            }
+            snapshots.increment();
+            return payload;
+        }
+        final long baseVersion = message.getLongProperty(BASE_VERSION_PROPERTY);
+        final State base;
+        synchronized (this) {
+            base = states.get(key);
+        }
+        if (base != null && base.version == version) {
+            // redelivery of the applied delta
+            return base.marshalled;
+        }
+        if (base == null || base.version != baseVersion) {
+            missedDeltas.increment();
+            logger.debug("Base version {} of delta [{}] is missing, it is skipped until the next snapshot", baseVersion, key);
+            return null;
+        }
+        final byte[] marshalled;
+        try {
+            marshalled = JmsDeltaCodec.patch(base.marshalled, payload);
+        } catch (IllegalArgumentException e) {
+            throw new JmsException(e.getMessage(), e);
+        }
+        synchronized (this) {
+            states.put(key, new State(version, marshalled));
+        }
+        deltas.increment();
+        return marshalled;
+    }
+
+    public synchronized int getKeys() {
+        return states.size();
+    }
+
+    public long getSnapshots() {
+        return snapshots.sum();
+    }
+
+    public long getDeltas() {
+        return deltas.sum();
+    }
+
+    /**
+     * @return deltas which were skipped because their base was missing
+     */
+    public long getMissedDeltas() {
+        return missedDeltas.sum();
+    }
+
+    private static final class State {
+        private final long version;
+        private final byte[] marshalled;
+
+        private State(long version, byte[] marshalled) {
+            this.version = version;
+            this.marshalled = marshalled;
+        }
+    }
+}
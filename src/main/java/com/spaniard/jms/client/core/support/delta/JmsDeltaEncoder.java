@@ -0,0 +1,268 @@
+package com.spaniard.jms.client.core.support.delta;
+
+import com.spaniard.jms.client.exception.IllegalPropertyException;
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ReflectionUtils;
+
+import javax.jms.Destination;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Delta mode of {@link com.spaniard.jms.client.core.JmsMessageSender}. The last marshalled form is kept per
+ * (destination, model class, key), the key is extracted by the key extractor of the model class. Next object of
+ * the same key is sent as a byte level delta against it, see {@link JmsDeltaDecoder}. Every `snapshotInterval`-th
+ * object of the key is sent in full, as well as objects which delta is not smaller than `maxDeltaRatio` of the full
+ * form, so that consumers which have missed the base recover.
+ * <p>
+ * Consumer should receive objects of one key in the sending order (exclusive consumer or message groups by
+ * `deltaKey` property). Sends of one key should not be concurrent.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public class JmsDeltaEncoder {
+
+    public static final String KEY_PROPERTY = "deltaKey";
+    public static final String VERSION_PROPERTY = "deltaVersion";
+    public static final String BASE_VERSION_PROPERTY = "deltaBaseVersion";
+
+    // Property fields
+    private int snapshotInterval = 100;
+
+    private int maxKeys = 10000;
+
+    private double maxDeltaRatio = 0.5;
+
+    private Map<Class<?>, Function<Object, ?>> keyExtractors = new HashMap<>();
+
+    // versions of different sender instances never mix on the consumer side
+    private final String instanceId = UUID.randomUUID().toString();
+
+    // guarded by this, the least recently sent keys are evicted
+    private final Map<StateKey, State> states = new LinkedHashMap<StateKey, State>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<StateKey, State> eldest) {
+            return size() > maxKeys;
+        }
+    };
+
+    private final LongAdder snapshots = new LongAdder();
+    private final LongAdder deltas = new LongAdder();
+    private final LongAdder savedBytes = new LongAdder();
+
+    /**
+     * @param snapshotInterval -- every n-th object of a key is sent in full, default is 100
+     */
+    public void setSnapshotInterval(int snapshotInterval) {
+        if (snapshotInterval <= 0) {
+            throw new IllegalPropertyException("snapshotInterval should be greater than 0");
+        }
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * @param maxKeys -- maximum number of keys which state is kept, default is 10000
+     */
+    public void setMaxKeys(int maxKeys) {
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * @param maxDeltaRatio -- object is sent in full if its delta is bigger than this part of the full form, default is 0.5
+     */
+    public void setMaxDeltaRatio(double maxDeltaRatio) {
+        this.maxDeltaRatio = maxDeltaRatio;
+    }
+
+    /**
+     * @param keyExtractors -- key extractor map (ModelClass, model object -> key)
+     */
+    @SuppressWarnings("unchecked")
+    public void setKeyExtractors(Map<Class<?>, Function<?, ?>> keyExtractors) {
+        for (Map.Entry<Class<?>, Function<?, ?>> entry : keyExtractors.entrySet()) {
+            this.keyExtractors.put(entry.getKey(), (Function<Object, ?>) entry.getValue());
+        }
+    }
+
+    /**
+     * Key is a bean property of the model class, its getter is resolved once.
+     *
+     * @param keyProperties -- key property map (ModelClass, property name)
+     */
+    public void setKeyProperties(Map<Class<?>, String> keyProperties) {
+        for (Map.Entry<Class<?>, String> entry : keyProperties.entrySet()) {
+            final PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(entry.getKey(), entry.getValue());
+            if (descriptor == null || descriptor.getReadMethod() == null) {
+                throw new IllegalPropertyException(String.format("No readable property [%s] found in [%s]",
+                        entry.getValue(), entry.getKey().getName()));
+            }
+            final Method getter = descriptor.getReadMethod();
+            ReflectionUtils.makeAccessible(getter);
+            keyExtractors.put(entry.getKey(), modelObject -> ReflectionUtils.invokeMethod(getter, modelObject));
+        }
+    }
+
+    /**
+     * @param modelObject -- model object
+     * @return true if the model class has a key extractor
+     */
+    public boolean supports(final Object modelObject) {
+        return keyExtractors.containsKey(modelObject.getClass());
+    }
+
+    /**
+     * @param destination -- jms destination
+     * @param modelObject -- model object, its class should be supported
+     * @param marshalled  -- marshalled form of the model object (UTF-8 encoded text or binary), not compressed
+     * @return snapshot or delta, null if the key is null and the object should be sent as usual
+     */
+    public Encoded encode(final Destination destination, final Object modelObject, final byte[] marshalled) {
+        final Object key = keyExtractors.get(modelObject.getClass()).apply(modelObject);
+        if (key == null) {
+            return null;
+        }
+        final StateKey stateKey = new StateKey(destination, modelObject.getClass(), key);
+        final State previous;
+        final long version;
+        synchronized (this) {
+            previous = states.get(stateKey);
+            version = previous != null ? previous.version + 1 : 1;
+            final int sinceSnapshot = previous != null ? previous.sinceSnapshot + 1 : 0;
+            states.put(stateKey, new State(version, marshalled, sinceSnapshot < snapshotInterval ? sinceSnapshot : 0));
+        }
+        final String deltaKey = instanceId + ":" + modelObject.getClass().getName() + ":" + key;
+        if (previous != null && previous.sinceSnapshot + 1 < snapshotInterval) {
+            final byte[] delta = JmsDeltaCodec.diff(previous.marshalled, marshalled);
+            if (delta.length <= marshalled.length * maxDeltaRatio) {
+                deltas.increment();
+                savedBytes.add(marshalled.length - delta.length);
+                return new Encoded(stateKey, deltaKey, version, previous.version, delta);
+            }
+            // delta is too big, the next delta is based on this snapshot anyway
+            synchronized (this) {
+                states.computeIfPresent(stateKey, (k, state) -> state.version == version ? new State(version, marshalled, 0) : state);
+            }
+        }
+        snapshots.increment();
+        return new Encoded(stateKey, deltaKey, version, 0, marshalled);
+    }
+
+    /**
+     * Next object of the key is sent in full, is called if the encoded object could not be sent
+     *
+     * @param encoded -- snapshot or delta which was not sent
+     */
+    public synchronized void invalidate(final Encoded encoded) {
+        states.remove(encoded.stateKey);
+    }
+
+    public synchronized int getKeys() {
+        return states.size();
+    }
+
+    public long getSnapshots() {
+        return snapshots.sum();
+    }
+
+    public long getDeltas() {
+        return deltas.sum();
+    }
+
+    /**
+     * @return bytes which were not sent thanks to deltas
+     */
+    public long getSavedBytes() {
+        return savedBytes.sum();
+    }
+
+    /**
+     * Snapshot or delta of a model object
+     */
+    public static final class Encoded {
+        private final StateKey stateKey;
+        private final String deltaKey;
+        private final long version;
+        // 0 for snapshots
+        private final long baseVersion;
+        private final byte[] body;
+
+        private Encoded(StateKey stateKey, String deltaKey, long version, long baseVersion, byte[] body) {
+            this.stateKey = stateKey;
+            this.deltaKey = deltaKey;
+            this.version = version;
+            this.baseVersion = baseVersion;
+            this.body = body;
+        }
+
+        public boolean isSnapshot() {
+            return baseVersion == 0;
+        }
+
+        /**
+         * @return marshalled form for snapshots, delta otherwise
+         */
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * @return key, version and base version (deltas only) properties of the message
+         */
+        public Map<String, String> getProperties() {
+            final Map<String, String> properties = new HashMap<>(4);
+            properties.put(KEY_PROPERTY, deltaKey);
+            properties.put(VERSION_PROPERTY, String.valueOf(version));
+            if (!isSnapshot()) {
+                properties.put(BASE_VERSION_PROPERTY, String.valueOf(baseVersion));
+            }
+            return properties;
+        }
+    }
+
+    private static final class State {
+        private final long version;
+        private final byte[] marshalled;
+        private final int sinceSnapshot;
+
+        private State(long version, byte[] marshalled, int sinceSnapshot) {
+            this.version = version;
+            this.marshalled = marshalled;
+            this.sinceSnapshot = sinceSnapshot;
+        }
+    }
+
+    private static final class StateKey {
+        private final Destination destination;
+        private final Class<?> modelClass;
+        private final Object key;
+        private final int hash;
+
+        private StateKey(Destination destination, Class<?> modelClass, Object key) {
+            this.destination = destination;
+            this.modelClass = modelClass;
+            this.key = key;
+            this.hash = Objects.hash(destination, modelClass, key);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof StateKey)) return false;
+            final StateKey that = (StateKey) o;
+            return destination.equals(that.destination) && modelClass == that.modelClass && key.equals(that.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
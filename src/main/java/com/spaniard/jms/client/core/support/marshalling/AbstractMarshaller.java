@@ -14,12 +14,20 @@ import java.util.function.Function;
 public class AbstractMarshaller implements Marshaller {
 
     final Map<Strategy, Function<Object, String>> marshaller = new HashMap<>(Strategy.values().length);
+    // strategies which could be marshalled straight to UTF-8 bytes
+    final Map<Strategy, Function<Object, byte[]>> binaryMarshaller = new HashMap<>(Strategy.values().length);
 
     @Override
     public String marshall(final Strategy strategy, final Object modelObject) {
         return marshaller.get(strategy).apply(modelObject);
     }
 
+    @Override
+    public byte[] marshallToBytes(final Strategy strategy, final Object modelObject) {
+        final Function<Object, byte[]> binary = binaryMarshaller.get(strategy);
+        return binary != null ? binary.apply(modelObject) : Marshaller.super.marshallToBytes(strategy, modelObject);
+    }
+
     public static class MarshallerFactory {
 
         public static Marshaller fromModelClasses(final Set<Class> modelClasses) {
@@ -0,0 +1,13 @@
+package com.spaniard.jms.client.core.support.marshalling;
+
+/**
+ * Either ObjectMapper::writeValueAsString or ObjectMapper::writeValueAsBytes
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+@FunctionalInterface
+interface JsonWriter<R> {
+
+    R write(Object modelObject) throws Exception;
+}
@@ -2,6 +2,8 @@ package com.spaniard.jms.client.core.support.marshalling;
 
 import com.spaniard.jms.client.core.Strategy;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * @author Alexander Nesterov
  * @version 1.0
@@ -9,4 +11,11 @@ import com.spaniard.jms.client.core.Strategy;
 public interface Marshaller {
 
     String marshall(Strategy strategy, Object modelObject);
+
+    /**
+     * @return UTF-8 encoded marshalled model object
+     */
+    default byte[] marshallToBytes(Strategy strategy, Object modelObject) {
+        return marshall(strategy, modelObject).getBytes(StandardCharsets.UTF_8);
+    }
 }
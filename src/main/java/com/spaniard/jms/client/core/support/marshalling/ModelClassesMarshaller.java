@@ -7,6 +7,9 @@ import com.spaniard.jms.client.core.Strategy;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
+import javax.xml.transform.Result;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayOutputStream;
 import java.io.StringWriter;
 import java.util.Objects;
 import java.util.Set;
@@ -26,44 +29,57 @@ public class ModelClassesMarshaller extends AbstractMarshaller implements Marsha
     void init(final Set<Class> modelClasses) {
         marshaller.put(Strategy.STRING, modelObject -> modelObject.toString());
         marshaller.put(Strategy.XML, modelObject -> {
-            if (Objects.isNull(modelClasses)) {
-                throw new IllegalPropertyException("modelClasses is null");
-            }
-            final ClassLoader cl = Thread.currentThread().getContextClassLoader();
-            try {
+            final StringWriter stringWriter = new StringWriter();
+            marshallXml(modelClasses, modelObject, new StreamResult(stringWriter));
+            return stringWriter.toString();
+        });
+        marshaller.put(Strategy.JSON, modelObject -> marshallJson(modelClasses, modelObject, jsonMapper::writeValueAsString));
+        // JAXB and Jackson write UTF-8 straight to the byte stream
+        binaryMarshaller.put(Strategy.XML, modelObject -> {
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            marshallXml(modelClasses, modelObject, new StreamResult(outputStream));
+            return outputStream.toByteArray();
+        });
+        binaryMarshaller.put(Strategy.JSON, modelObject -> marshallJson(modelClasses, modelObject, jsonMapper::writeValueAsBytes));
+    }
+
+    private void marshallXml(final Set<Class> modelClasses, final Object modelObject, final Result result) {
+        if (Objects.isNull(modelClasses)) {
+            throw new IllegalPropertyException("modelClasses is null");
+        }
+        final ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        try {
+            // NOTE: Change thread context class loader. Need that for case when there are no
+            // model classes in the thread's class loader.
+            Thread.currentThread().setContextClassLoader(this.getClass().getClassLoader());
+            final JAXBContext jaxbContext = JAXBContext.newInstance(modelClasses.toArray(new Class[0]));
+            final javax.xml.bind.Marshaller marshaller = jaxbContext.createMarshaller();
+            marshaller.marshal(modelObject, result);
+        } catch (JAXBException e) {
+            throw new MarshallerException(e.getMessage(), e);
+        } finally {
+            Thread.currentThread().setContextClassLoader(cl);
+        }
+    }
+
+    private <R> R marshallJson(final Set<Class> modelClasses, final Object modelObject, final JsonWriter<R> jsonWriter) {
+        if (Objects.isNull(modelClasses)) {
+            throw new IllegalPropertyException("modelClasses is null");
+        }
+        final ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        try {
+            if (modelClasses.contains(modelObject.getClass())) {
                 // NOTE: Change thread context class loader. Need that for case when there are no
                 // model classes in the thread's class loader.
                 Thread.currentThread().setContextClassLoader(this.getClass().getClassLoader());
-                final JAXBContext jaxbContext = JAXBContext.newInstance(modelClasses.toArray(new Class[0]));
-                final javax.xml.bind.Marshaller marshaller = jaxbContext.createMarshaller();
-                final StringWriter stringWriter = new StringWriter();
-                marshaller.marshal(modelObject, stringWriter);
-                return stringWriter.toString();
-            } catch (JAXBException e) {
-                throw new MarshallerException(e.getMessage(), e);
-            } finally {
-                Thread.currentThread().setContextClassLoader(cl);
-            }
-        });
-        marshaller.put(Strategy.JSON, modelObject -> {
-            if (Objects.isNull(modelClasses)) {
-                throw new IllegalPropertyException("modelClasses is null");
+                return jsonWriter.write(modelObject);
+            } else {
+                throw new IllegalArgumentException("Model package not contains object class " + modelObject.getClass().getName());
             }
-            final ClassLoader cl = Thread.currentThread().getContextClassLoader();
-            try {
-                if (modelClasses.contains(modelObject.getClass())) {
-                    // NOTE: Change thread context class loader. Need that for case when there are no
-                    // model classes in the thread's class loader.
-                    Thread.currentThread().setContextClassLoader(this.getClass().getClassLoader());
-                    return jsonMapper.writeValueAsString(modelObject);
-                } else {
-                    throw new IllegalArgumentException("Model package not contains object class " + modelObject.getClass().getName());
-                }
-            } catch (Exception e) {
-                throw new MarshallerException(e.getMessage(), e);
-            } finally {
-                Thread.currentThread().setContextClassLoader(cl);
-            }
-        });
+        } catch (Exception e) {
+            throw new MarshallerException(e.getMessage(), e);
+        } finally {
+            Thread.currentThread().setContextClassLoader(cl);
+        }
     }
 }
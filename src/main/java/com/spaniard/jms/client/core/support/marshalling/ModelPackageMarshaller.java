@@ -7,6 +7,9 @@ import com.spaniard.jms.client.exception.MarshallerException;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
+import javax.xml.transform.Result;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayOutputStream;
 import java.io.StringWriter;
 import java.util.HashSet;
 import java.util.Objects;
@@ -34,41 +37,54 @@ public class ModelPackageMarshaller extends AbstractMarshaller implements Marsha
                 : new HashSet<>();
         marshaller.put(STRING, modelObject -> modelObject.toString());
         marshaller.put(XML, modelObject -> {
-            if (Objects.isNull(modelPackage)) {
-                throw new IllegalPropertyException("modelPackage is null!");
-            }
-            final ClassLoader cl = Thread.currentThread().getContextClassLoader();
-            try {
+            final StringWriter stringWriter = new StringWriter();
+            marshallXml(modelPackage, modelObject, new StreamResult(stringWriter));
+            return stringWriter.toString();
+        });
+        marshaller.put(JSON, modelObject -> marshallJson(modelPackageClasses, modelObject, jsonMapper::writeValueAsString));
+        // JAXB and Jackson write UTF-8 straight to the byte stream
+        binaryMarshaller.put(XML, modelObject -> {
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            marshallXml(modelPackage, modelObject, new StreamResult(outputStream));
+            return outputStream.toByteArray();
+        });
+        binaryMarshaller.put(JSON, modelObject -> marshallJson(modelPackageClasses, modelObject, jsonMapper::writeValueAsBytes));
+    }
+
+    private void marshallXml(final String modelPackage, final Object modelObject, final Result result) {
+        if (Objects.isNull(modelPackage)) {
+            throw new IllegalPropertyException("modelPackage is null!");
+        }
+        final ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        try {
+            // NOTE: Change thread context class loader. Need that for case when there are no
+            // model classes in the thread's class loader.
+            Thread.currentThread().setContextClassLoader(this.getClass().getClassLoader());
+            final JAXBContext jaxbContext = JAXBContext.newInstance(modelPackage);
+            final javax.xml.bind.Marshaller marshaller = jaxbContext.createMarshaller();
+            marshaller.marshal(modelObject, result);
+        } catch (JAXBException e) {
+            throw new MarshallerException(e.getMessage(), e);
+        } finally {
+            Thread.currentThread().setContextClassLoader(cl);
+        }
+    }
+
+    private <R> R marshallJson(final Set<Class> modelPackageClasses, final Object modelObject, final JsonWriter<R> jsonWriter) {
+        final ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        try {
+            if (modelPackageClasses.contains(modelObject.getClass())) {
                 // NOTE: Change thread context class loader. Need that for case when there are no
                 // model classes in the thread's class loader.
                 Thread.currentThread().setContextClassLoader(this.getClass().getClassLoader());
-                final JAXBContext jaxbContext = JAXBContext.newInstance(modelPackage);
-                final javax.xml.bind.Marshaller marshaller = jaxbContext.createMarshaller();
-                final StringWriter stringWriter = new StringWriter();
-                marshaller.marshal(modelObject, stringWriter);
-                return stringWriter.toString();
-            } catch (JAXBException e) {
-                throw new MarshallerException(e.getMessage(), e);
-            } finally {
-                Thread.currentThread().setContextClassLoader(cl);
+                return jsonWriter.write(modelObject);
+            } else {
+                throw new IllegalArgumentException("Model package not contains object class " + modelObject.getClass().getName());
             }
-        });
-        marshaller.put(JSON, modelObject -> {
-            final ClassLoader cl = Thread.currentThread().getContextClassLoader();
-            try {
-                if (modelPackageClasses.contains(modelObject.getClass())) {
-                    // NOTE: Change thread context class loader. Need that for case when there are no
-                    // model classes in the thread's class loader.
-                    Thread.currentThread().setContextClassLoader(this.getClass().getClassLoader());
-                    return jsonMapper.writeValueAsString(modelObject);
-                } else {
-                    throw new IllegalArgumentException("Model package not contains object class " + modelObject.getClass().getName());
-                }
-            } catch (Exception e) {
-                throw new MarshallerException(e.getMessage(), e);
-            } finally {
-                Thread.currentThread().setContextClassLoader(cl);
-            }
-        });
+        } catch (Exception e) {
+            throw new MarshallerException(e.getMessage(), e);
+        } finally {
+            Thread.currentThread().setContextClassLoader(cl);
+        }
     }
 }
@@ -0,0 +1,340 @@
+package com.spaniard.jms.client.core.support.outbox;
+
+import com.spaniard.jms.client.core.support.ClassName;
+import com.spaniard.jms.client.exception.IllegalPropertyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.BytesMessage;
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.ResourceAllocationException;
+import javax.jms.Session;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local store-and-forward spool. Sends are appended to a memory-mapped journal on local disk and acknowledged
+ * immediately, the forwarder thread drains the journal to the broker in order, in local transactions of up to
+ * `batchSize` messages, and checkpoints its position after every commit. If the broker is down, the forwarder
+ * retries every `retryInterval` milliseconds, producers keep appending until `maxSegments` are full.
+ * <p>
+ * Delivery is at-least-once: a batch committed right before a crash, but not checkpointed yet, is sent again
+ * after restart. Without `syncOnAppend` spooled messages survive process crash, but not os crash.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public class JmsOutbox implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClassName.getClassName());
+
+    // how often idle forwarder checks whether the outbox is closed
+    private static final long POLL_INTERVAL = 100;
+
+    // Property fields
+    private ConnectionFactory connectionFactory;
+
+    private String directory;
+
+    private int segmentSize = 32 * 1024 * 1024;
+
+    private int maxSegments = 32;
+
+    private boolean syncOnAppend;
+
+    private int batchSize = 100;
+
+    private long retryInterval = 1000;
+
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder forwarded = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder corrupted = new LongAdder();
+    private final LongAdder failedAttempts = new LongAdder();
+
+    private volatile JmsOutboxJournal journal;
+    private volatile boolean closed;
+    private Thread forwarder;
+
+    /**
+     * @param connectionFactory -- connection factory used by the forwarder
+     */
+    public void setConnectionFactory(ConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+
+    /**
+     * @param directory -- journal directory, should not be shared with other outboxes
+     */
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @param segmentSize -- size of the segment file in bytes, default is 32M
+     */
+    public void setSegmentSize(int segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * @param maxSegments -- maximum number of undelivered segments, default is 32
+     */
+    public void setMaxSegments(int maxSegments) {
+        this.maxSegments = maxSegments;
+    }
+
+    /**
+     * @param syncOnAppend -- true to flush every appended record to disk, default is false
+     */
+    public void setSyncOnAppend(boolean syncOnAppend) {
+        this.syncOnAppend = syncOnAppend;
+    }
+
+    /**
+     * @param batchSize -- maximum number of messages forwarded in one transaction, default is 100
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @param retryInterval -- delay in milliseconds before the next attempt when broker is unavailable, default is 1000
+     */
+    public void setRetryInterval(long retryInterval) {
+        this.retryInterval = retryInterval;
+    }
+
+    /**
+     * Recovers the journal and starts the forwarder. Is called on the first append, should be called
+     * on application startup (init-method) to forward messages spooled before restart.
+     *
+     * @throws JMSException (ResourceAllocationException if the journal could not be opened)
+     */
+    public void start() throws JMSException {
+        if (journal != null) return;
+        synchronized (this) {
+            if (journal != null) return;
+            if (closed) {
+                throw new IllegalStateException("Outbox is closed");
+            }
+            if (Objects.isNull(connectionFactory)) {
+                throw new IllegalPropertyException("ConnectionFactory property is null");
+            }
+            if (Objects.isNull(directory)) {
+                throw new IllegalPropertyException("No 'directory' property is set");
+            }
+            if (segmentSize <= 0 || maxSegments <= 0 || batchSize <= 0) {
+                throw new IllegalPropertyException("segmentSize, maxSegments and batchSize should be greater than 0");
+            }
+            final JmsOutboxJournal recovered;
+            try {
+                recovered = new JmsOutboxJournal(Paths.get(directory), segmentSize, maxSegments, syncOnAppend);
+            } catch (IOException e) {
+                throw resourceAllocationException("Could not open outbox journal", e);
+            }
+            forwarder = new Thread(() -> forward(recovered), "jms-outbox-forwarder");
+            forwarder.setDaemon(true);
+            journal = recovered;
+            forwarder.start();
+        }
+    }
+
+    /**
+     * @param record -- message to be spooled
+     * @throws JMSException (ResourceAllocationException if the outbox is full or could not be written)
+     */
+    public void append(final JmsOutboxRecord record) throws JMSException {
+        start();
+        if (closed) {
+            throw new IllegalStateException("Outbox is closed");
+        }
+        try {
+            journal.append(record.toBytes());
+        } catch (IOException e) {
+            throw resourceAllocationException(e.getMessage(), e);
+        }
+        appended.increment();
+    }
+
+    public long getAppendedMessages() {
+        return appended.sum();
+    }
+
+    public long getForwardedMessages() {
+        return forwarded.sum();
+    }
+
+    /**
+     * @return messages which ttl is over before they are forwarded
+     */
+    public long getExpiredMessages() {
+        return expired.sum();
+    }
+
+    /**
+     * @return records which could not be read (crc mismatch or broken serialization), they are skipped
+     */
+    public long getCorruptedMessages() {
+        final JmsOutboxJournal started = journal;
+        return corrupted.sum() + (started == null ? 0 : started.getCorruptedRecords());
+    }
+
+    public long getFailedAttempts() {
+        return failedAttempts.sum();
+    }
+
+    public int getSegments() {
+        final JmsOutboxJournal started = journal;
+        return started == null ? 0 : started.getSegments();
+    }
+
+    /**
+     * Stops accepting new messages and waits until the forwarder delivers spooled messages or fails to do it.
+     * Messages which are not delivered stay in the journal.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        final Thread started;
+        synchronized (this) {
+            started = forwarder;
+        }
+        if (started == null) return;
+        try {
+            started.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        journal.force();
+    }
+
+    private void forward(final JmsOutboxJournal journal) {
+        final Forwarder channel = new Forwarder();
+        try {
+            while (!closed || journal.hasPending()) {
+                final List<JmsOutboxJournal.Entry> batch = journal.read(batchSize);
+                if (batch.isEmpty()) {
+                    journal.awaitAppend(POLL_INTERVAL);
+                    continue;
+                }
+                try {
+                    channel.send(batch);
+                    journal.checkpoint(batch.get(batch.size() - 1));
+                } catch (JMSException | IOException | RuntimeException e) {
+                    // forwarder thread must survive any failure, messages stay in the journal
+                    failedAttempts.increment();
+                    logger.warn("Could not forward {} outbox messages, retry in {} ms", batch.size(), retryInterval, e);
+                    channel.close();
+                    journal.rewind();
+                    if (closed) {
+                        // messages are forwarded after restart
+                        return;
+                    }
+                    Thread.sleep(retryInterval);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static ResourceAllocationException resourceAllocationException(final String message, final Exception cause) {
+        final ResourceAllocationException exception = new ResourceAllocationException(message);
+        exception.setLinkedException(cause);
+        exception.initCause(cause);
+        return exception;
+    }
+
+    // transacted session of the forwarder thread, is reopened after failure
+    private class Forwarder {
+
+        private Connection connection;
+        private Session session;
+        private final Map<String, MessageProducer> producers = new HashMap<>();
+
+        private void send(final List<JmsOutboxJournal.Entry> batch) throws JMSException {
+            if (session == null) {
+                connection = connectionFactory.createConnection();
+                session = connection.createSession(true, Session.SESSION_TRANSACTED);
+            }
+            int sent = 0;
+            for (JmsOutboxJournal.Entry entry : batch) {
+                final JmsOutboxRecord record;
+                try {
+                    record = JmsOutboxRecord.fromBytes(entry.getRecord());
+                } catch (IOException e) {
+                    corrupted.increment();
+                    logger.error("Could not read outbox record, record is skipped", e);
+                    continue;
+                }
+                long timeToLive = record.getTimeToLive();
+                if (timeToLive > 0) {
+                    // ttl is counted from the time the message was spooled
+                    timeToLive -= System.currentTimeMillis() - record.getTimestamp();
+                    if (timeToLive <= 0) {
+                        expired.increment();
+                        continue;
+                    }
+                }
+                producer(record).send(createMessage(record), record.getDeliveryMode(), record.getPriority(), timeToLive);
+                sent++;
+            }
+            session.commit();
+            forwarded.add(sent);
+        }
+
+        private MessageProducer producer(final JmsOutboxRecord record) throws JMSException {
+            final String key = (record.isTopic() ? "topic://" : "queue://") + record.getDestinationName();
+            MessageProducer producer = producers.get(key);
+            if (producer == null) {
+                producer = session.createProducer(record.isTopic()
+                        ? session.createTopic(record.getDestinationName())
+                        : session.createQueue(record.getDestinationName()));
+                producers.put(key, producer);
+            }
+            return producer;
+        }
+
+        private Message createMessage(final JmsOutboxRecord record) throws JMSException {
+            final Message message;
+            if (record.isText()) {
+                message = session.createTextMessage(new String(record.getBody(), StandardCharsets.UTF_8));
+            } else {
+                final BytesMessage bytesMessage = session.createBytesMessage();
+                bytesMessage.writeBytes(record.getBody());
+                message = bytesMessage;
+            }
+            for (Map.Entry<String, String> entry : record.getProperties().entrySet()) {
+                message.setStringProperty(entry.getKey(), entry.getValue());
+            }
+            return message;
+        }
+
+        private void close() {
+            producers.clear();
+            session = null;
+            if (connection != null) {
+                try {
+                    // closes session and producers as well
+                    connection.close();
+                } catch (JMSException e) {
+                    logger.error("Could not close outbox connection", e);
+                }
+                connection = null;
+            }
+        }
+    }
+}
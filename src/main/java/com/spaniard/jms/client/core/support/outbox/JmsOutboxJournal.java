@@ -0,0 +1,381 @@
+package com.spaniard.jms.client.core.support.outbox;
+
+import com.spaniard.jms.client.core.support.ClassName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of memory-mapped, fixed size segment files. Record is [length][crc32][bytes].
+ * The single reader (forwarder thread) reads records in order, its position is persisted to the checkpoint file
+ * once the records are delivered. Segments before the checkpoint are deleted. Checkpoint is synced to disk and
+ * replaced atomically, corrupted checkpoint is ignored and the records are forwarded again from the first segment.
+ * <p>
+ * On recovery the reader continues from the checkpoint, the writer continues after the last valid record
+ * of the last segment, so a record torn by a crash is overwritten. Record which fails crc check on read ends
+ * its segment: the rest of a sealed segment is skipped, the segment being written is truncated at the record.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+final class JmsOutboxJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClassName.getClassName());
+
+    private static final String SEGMENT_PREFIX = "outbox-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CHECKPOINT_FILE = "outbox.checkpoint";
+    // segment + position + crc32
+    private static final int CHECKPOINT_SIZE = 16;
+    // length + crc32
+    private static final int RECORD_HEADER = 8;
+    // rest of the segment is empty
+    private static final int END_OF_SEGMENT = -1;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final boolean syncOnAppend;
+
+    // guarded by this
+    private final NavigableMap<Long, MappedByteBuffer> segments = new TreeMap<>();
+    private long writeSegment;
+    private int writePosition;
+
+    // reader state is owned by the forwarder thread, read under lock by `hasPending`
+    private long readSegment;
+    private int readPosition;
+    private long checkpointSegment;
+    private int checkpointPosition;
+    // the last corrupted record which is counted, records read again after rewind are not counted twice
+    private long corruptedSegment = -1;
+    private int corruptedPosition = -1;
+
+    private final LongAdder corrupted = new LongAdder();
+
+    JmsOutboxJournal(Path directory, int segmentSize, int maxSegments, boolean syncOnAppend) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.syncOnAppend = syncOnAppend;
+        recover();
+    }
+
+    /**
+     * @param record -- serialized record
+     * @throws IOException if the record is too big, outbox is full or file could not be mapped
+     */
+    synchronized void append(final byte[] record) throws IOException {
+        final int size = RECORD_HEADER + record.length;
+        if (size > segmentSize) {
+            throw new IOException(String.format("Record of %d bytes does not fit into outbox segment of %d bytes",
+                    record.length, segmentSize));
+        }
+        if (writePosition + size > segmentSize) {
+            roll();
+        }
+        final MappedByteBuffer buffer = segments.get(writeSegment);
+        final CRC32 crc = new CRC32();
+        crc.update(record);
+        final ByteBuffer view = buffer.duplicate();
+        view.position(writePosition + RECORD_HEADER);
+        view.put(record);
+        buffer.putInt(writePosition + 4, (int) crc.getValue());
+        buffer.putInt(writePosition, record.length);
+        if (syncOnAppend) {
+            buffer.force();
+        }
+        writePosition += size;
+        notifyAll();
+    }
+
+    /**
+     * Reads records after the current read position, the position is not persisted until checkpoint.
+     *
+     * @param maxRecords -- maximum number of records
+     * @return records, empty if the reader has caught up with the writer
+     */
+    List<Entry> read(final int maxRecords) {
+        final List<Entry> entries = new ArrayList<>();
+        while (entries.size() < maxRecords) {
+            final long limitSegment;
+            final int limitPosition;
+            final MappedByteBuffer buffer;
+            synchronized (this) {
+                limitSegment = writeSegment;
+                limitPosition = writePosition;
+                buffer = segments.get(readSegment);
+            }
+            if (buffer == null || readSegment == limitSegment && readPosition >= limitPosition) {
+                break;
+            }
+            final int length = readPosition + RECORD_HEADER <= segmentSize ? buffer.getInt(readPosition) : END_OF_SEGMENT;
+            if (length <= 0 || readPosition + RECORD_HEADER + length > segmentSize) {
+                if (readSegment == limitSegment) {
+                    // record below the write position is written completely, its length is corrupted
+                    countCorrupted();
+                    truncateOrSkip();
+                } else {
+                    // sealed segment is over
+                    nextReadSegment();
+                }
+                continue;
+            }
+            final byte[] record = new byte[length];
+            final ByteBuffer view = buffer.duplicate();
+            view.position(readPosition + RECORD_HEADER);
+            view.get(record);
+            final CRC32 crc = new CRC32();
+            crc.update(record);
+            if ((int) crc.getValue() != buffer.getInt(readPosition + 4)) {
+                countCorrupted();
+                truncateOrSkip();
+                continue;
+            }
+            readPosition += RECORD_HEADER + length;
+            entries.add(new Entry(record, readSegment, readPosition));
+        }
+        return entries;
+    }
+
+    /**
+     * Persists read position after the given entry and deletes fully delivered segments.
+     *
+     * @param entry -- the last delivered entry
+     * @throws IOException
+     */
+    void checkpoint(final Entry entry) throws IOException {
+        final ByteBuffer checkpoint = ByteBuffer.allocate(CHECKPOINT_SIZE);
+        checkpoint.putLong(entry.segment).putInt(entry.nextPosition);
+        final CRC32 crc = new CRC32();
+        crc.update(checkpoint.array(), 0, CHECKPOINT_SIZE - 4);
+        checkpoint.putInt((int) crc.getValue());
+        checkpoint.flip();
+        final Path checkpointFile = directory.resolve(CHECKPOINT_FILE);
+        final Path tempFile = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (checkpoint.hasRemaining()) {
+                channel.write(checkpoint);
+            }
+            channel.force(true);
+        }
+        Files.move(tempFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+        checkpointSegment = entry.segment;
+        checkpointPosition = entry.nextPosition;
+        deleteSegmentsBefore(checkpointSegment);
+    }
+
+    /**
+     * Moves the reader back to the checkpoint, records after it are read again.
+     */
+    void rewind() {
+        readSegment = checkpointSegment;
+        readPosition = checkpointPosition;
+    }
+
+    synchronized boolean hasPending() {
+        return readSegment != writeSegment || readPosition < writePosition;
+    }
+
+    synchronized void awaitAppend(final long timeoutMillis) throws InterruptedException {
+        if (!hasPending()) {
+            wait(timeoutMillis);
+        }
+    }
+
+    /**
+     * @return records which failed crc check on read, the rest of their segments is skipped
+     */
+    long getCorruptedRecords() {
+        return corrupted.sum();
+    }
+
+    synchronized int getSegments() {
+        return segments.size();
+    }
+
+    synchronized void force() {
+        segments.values().forEach(MappedByteBuffer::force);
+    }
+
+    // guarded by this
+    private void roll() throws IOException {
+        if (segments.size() >= maxSegments) {
+            throw new IOException(String.format("Outbox is full, %d segments are not delivered yet", segments.size()));
+        }
+        final MappedByteBuffer buffer = segments.get(writeSegment);
+        if (writePosition + 4 <= segmentSize) {
+            buffer.putInt(writePosition, END_OF_SEGMENT);
+        }
+        // data of the sealed segment should not depend on the os page cache for too long
+        buffer.force();
+        segments.put(writeSegment + 1, map(writeSegment + 1));
+        writeSegment++;
+        writePosition = 0;
+    }
+
+    private void nextReadSegment() {
+        readSegment++;
+        readPosition = 0;
+    }
+
+    private void countCorrupted() {
+        if (readSegment > corruptedSegment || readSegment == corruptedSegment && readPosition > corruptedPosition) {
+            corruptedSegment = readSegment;
+            corruptedPosition = readPosition;
+            corrupted.increment();
+            logger.error("Outbox segment {} is corrupted at position {}, rest of the segment is skipped", readSegment, readPosition);
+        }
+    }
+
+    // the reader never passes the writer: the segment being written is truncated at the corrupted record,
+    // the next record is appended in its place
+    private void truncateOrSkip() {
+        synchronized (this) {
+            if (readSegment == writeSegment) {
+                writePosition = readPosition;
+                return;
+            }
+        }
+        nextReadSegment();
+    }
+
+    private void recover() throws IOException {
+        Files.createDirectories(directory);
+        final List<Long> existing = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                final String name = file.getFileName().toString();
+                existing.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        existing.sort(null);
+        final Path checkpointFile = directory.resolve(CHECKPOINT_FILE);
+        if (!(Files.exists(checkpointFile) && readCheckpoint(checkpointFile)) && !existing.isEmpty()) {
+            checkpointSegment = existing.get(0);
+        }
+        for (Long segment : existing) {
+            if (segment < checkpointSegment) {
+                Files.deleteIfExists(segmentPath(segment));
+            } else {
+                segments.put(segment, map(segment));
+            }
+        }
+        if (!segments.containsKey(checkpointSegment)) {
+            segments.put(checkpointSegment, map(checkpointSegment));
+        }
+        writeSegment = segments.lastKey();
+        writePosition = scan(segments.get(writeSegment));
+        if (checkpointSegment == writeSegment && checkpointPosition > writePosition) {
+            checkpointPosition = writePosition;
+        }
+        rewind();
+        logger.info("Outbox is recovered from [{}]: {} segments, reader at {}:{}, writer at {}:{}", directory,
+                segments.size(), readSegment, readPosition, writeSegment, writePosition);
+    }
+
+    // false if the checkpoint is truncated or corrupted
+    private boolean readCheckpoint(final Path checkpointFile) throws IOException {
+        final byte[] bytes = Files.readAllBytes(checkpointFile);
+        if (bytes.length == CHECKPOINT_SIZE) {
+            final ByteBuffer checkpoint = ByteBuffer.wrap(bytes);
+            final CRC32 crc = new CRC32();
+            crc.update(bytes, 0, CHECKPOINT_SIZE - 4);
+            final long segment = checkpoint.getLong();
+            final int position = checkpoint.getInt();
+            if ((int) crc.getValue() == checkpoint.getInt() && position >= 0 && position <= segmentSize) {
+                checkpointSegment = segment;
+                checkpointPosition = position;
+                return true;
+            }
+        }
+        logger.warn("Outbox checkpoint [{}] is corrupted, messages are forwarded again from the first segment", checkpointFile);
+        return false;
+    }
+
+    // rename is durable once the directory is synced, directory could not be opened on some platforms
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            logger.debug("Could not sync outbox directory [{}]", directory, e);
+        }
+    }
+
+    // position after the last valid record
+    private int scan(final MappedByteBuffer buffer) {
+        int position = 0;
+        while (position + RECORD_HEADER <= segmentSize) {
+            final int length = buffer.getInt(position);
+            if (length <= 0 || position + RECORD_HEADER + length > segmentSize) break;
+            final byte[] record = new byte[length];
+            final ByteBuffer view = buffer.duplicate();
+            view.position(position + RECORD_HEADER);
+            view.get(record);
+            final CRC32 crc = new CRC32();
+            crc.update(record);
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                logger.warn("Torn record is found at position {} of the last outbox segment", position);
+                break;
+            }
+            position += RECORD_HEADER + length;
+        }
+        return position;
+    }
+
+    private synchronized void deleteSegmentsBefore(final long segment) {
+        while (!segments.isEmpty() && segments.firstKey() < segment) {
+            final long delivered = segments.pollFirstEntry().getKey();
+            try {
+                Files.deleteIfExists(segmentPath(delivered));
+            } catch (IOException e) {
+                logger.warn("Could not delete delivered outbox segment {}", delivered, e);
+            }
+        }
+    }
+
+    private MappedByteBuffer map(final long segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(segment),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // file is extended with zeros up to the segment size
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private Path segmentPath(final long segment) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    static final class Entry {
+        private final byte[] record;
+        private final long segment;
+        private final int nextPosition;
+
+        private Entry(byte[] record, long segment, int nextPosition) {
+            this.record = record;
+            this.segment = segment;
+            this.nextPosition = nextPosition;
+        }
+
+        byte[] getRecord() {
+            return record;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.spaniard.jms.client.core.support.outbox;
+
+import javax.jms.Destination;
+import javax.jms.InvalidDestinationException;
+import javax.jms.JMSException;
+import javax.jms.Queue;
+import javax.jms.TemporaryQueue;
+import javax.jms.TemporaryTopic;
+import javax.jms.Topic;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Marshalled message which is spooled to {@link JmsOutbox}. Send settings (delivery mode, priority, ttl)
+ * are resolved before the message is spooled, so the forwarder does not need model classes.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public final class JmsOutboxRecord {
+
+    private static final byte VERSION = 1;
+
+    private final String destinationName;
+    private final boolean topic;
+    private final boolean text;
+    private final byte[] body;
+    private final Map<String, String> properties;
+    private final int deliveryMode;
+    private final int priority;
+    private final long timeToLive;
+    private final long timestamp;
+
+    private JmsOutboxRecord(String destinationName, boolean topic, boolean text, byte[] body, Map<String, String> properties,
+                            int deliveryMode, int priority, long timeToLive, long timestamp) {
+        this.destinationName = destinationName;
+        this.topic = topic;
+        this.text = text;
+        this.body = body;
+        this.properties = properties;
+        this.deliveryMode = deliveryMode;
+        this.priority = priority;
+        this.timeToLive = timeToLive;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * @param destination  -- queue or topic, temporary destinations do not survive restart and could not be spooled
+     * @param text         -- true for TextMessage (body is UTF-8 encoded text), false for BytesMessage
+     * @param body         -- message body
+     * @param properties   -- jms string properties, could be null
+     * @param deliveryMode -- jms delivery mode
+     * @param priority     -- jms priority
+     * @param timeToLive   -- ttl in milliseconds counted from now, 0 means message never expires
+     * @return record
+     * @throws JMSException (InvalidDestinationException if destination could not be spooled)
+     */
+    public static JmsOutboxRecord of(Destination destination, boolean text, byte[] body, Map<String, String> properties,
+                                     int deliveryMode, int priority, long timeToLive) throws JMSException {
+        if (destination instanceof TemporaryQueue || destination instanceof TemporaryTopic) {
+            throw new InvalidDestinationException("Temporary destination could not be spooled to outbox");
+        }
+        final boolean topic;
+        final String destinationName;
+        if (destination instanceof Queue) {
+            topic = false;
+            destinationName = ((Queue) destination).getQueueName();
+        } else if (destination instanceof Topic) {
+            topic = true;
+            destinationName = ((Topic) destination).getTopicName();
+        } else {
+            throw new InvalidDestinationException("Destination is neither Queue nor Topic: " + destination);
+        }
+        return new JmsOutboxRecord(destinationName, topic, text, body,
+                properties == null ? Collections.emptyMap() : Collections.unmodifiableMap(new HashMap<>(properties)),
+                deliveryMode, priority, timeToLive, System.currentTimeMillis());
+    }
+
+    public String getDestinationName() {
+        return destinationName;
+    }
+
+    public boolean isTopic() {
+        return topic;
+    }
+
+    public boolean isText() {
+        return text;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    public int getDeliveryMode() {
+        return deliveryMode;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * @return time in milliseconds when the record was spooled
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    byte[] toBytes() {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length + 128);
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeByte(VERSION);
+            output.writeUTF(destinationName);
+            output.writeBoolean(topic);
+            output.writeBoolean(text);
+            output.writeInt(deliveryMode);
+            output.writeInt(priority);
+            output.writeLong(timeToLive);
+            output.writeLong(timestamp);
+            output.writeInt(properties.size());
+            for (Map.Entry<String, String> entry : properties.entrySet()) {
+                output.writeUTF(entry.getKey());
+                output.writeUTF(entry.getValue());
+            }
+            output.writeInt(body.length);
+            output.write(body);
+        } catch (IOException e) {
+            // never happens with in-memory stream
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static JmsOutboxRecord fromBytes(final byte[] bytes) throws IOException {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            final byte version = input.readByte();
+            if (version != VERSION) {
+                throw new IOException("Unknown outbox record version " + version);
+            }
+            final String destinationName = input.readUTF();
+            final boolean topic = input.readBoolean();
+            final boolean text = input.readBoolean();
+            final int deliveryMode = input.readInt();
+            final int priority = input.readInt();
+            final long timeToLive = input.readLong();
+            final long timestamp = input.readLong();
+            final int propertyCount = input.readInt();
+            final Map<String, String> properties = new HashMap<>();
+            for (int i = 0; i < propertyCount; i++) {
+                properties.put(input.readUTF(), input.readUTF());
+            }
+            final byte[] body = new byte[input.readInt()];
+            input.readFully(body);
+            return new JmsOutboxRecord(destinationName, topic, text, body, Collections.unmodifiableMap(properties),
+                    deliveryMode, priority, timeToLive, timestamp);
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.spaniard.jms.client.core.support.packing;
+
+import com.spaniard.jms.client.core.support.ClassName;
+import com.spaniard.jms.client.exception.IllegalPropertyException;
+import com.spaniard.jms.client.exception.JmsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Packs small model objects bound for the same destination into one envelope message. An envelope is sent as soon
+ * as it holds `maxPackedMessages` elements or `maxPackedBytes` bytes, or when its first element is `lingerTime`
+ * milliseconds old. Envelope is a BytesMessage with `packedCount` property, its body is a sequence of
+ * (int length, marshalled model object) elements. JmsMessageListener unpacks envelopes and handles every element
+ * on its own.
+ * <p>
+ * Envelopes are sent by the flusher thread in the packing order. Envelope which could not be sent is dropped,
+ * so elements are lost if the broker is unavailable or the process dies before the envelope is sent.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public class JmsMessagePacker implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClassName.getClassName());
+
+    public static final String PACKED_COUNT_PROPERTY = "packedCount";
+
+    // Property fields
+    private int maxPackedMessages = 100;
+
+    private int maxPackedBytes = 64 * 1024;
+
+    private long lingerTime = 5;
+
+    private final Map<Destination, Envelope> envelopes = new ConcurrentHashMap<>();
+    // full and lingered envelopes in the packing order
+    private final Queue<Envelope> ready = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder packed = new LongAdder();
+    private final LongAdder sentEnvelopes = new LongAdder();
+    private final LongAdder sentMessages = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private volatile ScheduledThreadPoolExecutor flusher;
+    private volatile boolean closed;
+    // is used by the flusher thread only
+    private EnvelopeSender envelopeSender;
+
+    /**
+     * @param maxPackedMessages -- maximum number of elements in one envelope, default is 100
+     */
+    public void setMaxPackedMessages(int maxPackedMessages) {
+        this.maxPackedMessages = maxPackedMessages;
+    }
+
+    /**
+     * Should be less than the chunking threshold of the sender, if chunking is enabled.
+     *
+     * @param maxPackedBytes -- maximum size of envelope body before compression, default is 65536
+     */
+    public void setMaxPackedBytes(int maxPackedBytes) {
+        this.maxPackedBytes = maxPackedBytes;
+    }
+
+    /**
+     * @param lingerTime -- maximum time in milliseconds the first element waits for the envelope to fill up, default is 5
+     */
+    public void setLingerTime(long lingerTime) {
+        this.lingerTime = lingerTime;
+    }
+
+    /**
+     * Starts the flusher thread, is called by JmsMessageSender on the first packed send.
+     *
+     * @param envelopeSender -- sends the envelope on the flusher thread
+     */
+    public void start(final EnvelopeSender envelopeSender) {
+        if (flusher != null) return;
+        synchronized (this) {
+            if (flusher != null) return;
+            if (maxPackedMessages <= 0 || maxPackedBytes <= 0 || lingerTime <= 0) {
+                throw new IllegalPropertyException("maxPackedMessages, maxPackedBytes and lingerTime should be greater than 0");
+            }
+            this.envelopeSender = envelopeSender;
+            final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                final Thread thread = new Thread(runnable, "jms-packer-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // envelopes are checked twice per linger time, so the first element waits at most 1.5 linger time
+            final long period = Math.max(1, TimeUnit.MILLISECONDS.toMicros(lingerTime) / 2);
+            executor.scheduleWithFixedDelay(this::flushLingered, period, period, TimeUnit.MICROSECONDS);
+            flusher = executor;
+        }
+    }
+
+    /**
+     * @param destination -- jms destination
+     * @param element     -- marshalled model object
+     * @return false if the element is too big to be packed, it should be sent as a separate message then
+     * @throws JmsException if the packer is not started or closed
+     */
+    public boolean pack(final Destination destination, final byte[] element) throws JmsException {
+        if (closed || flusher == null) {
+            throw new JmsException("Packer is not started or closed");
+        }
+        if (Integer.BYTES + element.length > maxPackedBytes) {
+            return false;
+        }
+        // true if an envelope is handed over to the flusher
+        final boolean[] full = new boolean[1];
+        envelopes.compute(destination, (key, envelope) -> {
+            if (envelope != null && !envelope.fits(element)) {
+                ready.add(envelope);
+                full[0] = true;
+                envelope = null;
+            }
+            if (envelope == null) {
+                envelope = new Envelope(destination);
+            }
+            envelope.add(element);
+            if (envelope.count >= maxPackedMessages || envelope.size >= maxPackedBytes) {
+                ready.add(envelope);
+                full[0] = true;
+                return null;
+            }
+            return envelope;
+        });
+        packed.increment();
+        if (full[0]) {
+            try {
+                flusher.execute(this::sendReady);
+            } catch (RejectedExecutionException e) {
+                // packer is closing, ready envelopes are sent by `close()`
+            }
+        }
+        return true;
+    }
+
+    public long getPackedMessages() {
+        return packed.sum();
+    }
+
+    public long getSentEnvelopes() {
+        return sentEnvelopes.sum();
+    }
+
+    public long getSentMessages() {
+        return sentMessages.sum();
+    }
+
+    /**
+     * @return elements of the envelopes which could not be sent
+     */
+    public long getFailedMessages() {
+        return failed.sum();
+    }
+
+    /**
+     * @return average number of elements per sent envelope
+     */
+    public double getPackingRatio() {
+        final long envelopesSent = sentEnvelopes.sum();
+        return envelopesSent == 0 ? 0 : (double) sentMessages.sum() / envelopesSent;
+    }
+
+    /**
+     * Stops accepting new messages and sends pending envelopes.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        final ScheduledThreadPoolExecutor started = flusher;
+        if (started == null) return;
+        started.shutdown();
+        try {
+            started.awaitTermination(Math.max(lingerTime * 2, 1000), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        // the last flush on the caller thread, the flusher is stopped
+        for (Destination destination : envelopes.keySet()) {
+            envelopes.computeIfPresent(destination, (key, envelope) -> {
+                ready.add(envelope);
+                return null;
+            });
+        }
+        sendReady();
+    }
+
+    /**
+     * @param message -- received message
+     * @return true if the message is an envelope of packed messages
+     * @throws JMSException
+     */
+    public static boolean isEnvelope(final Message message) throws JMSException {
+        return message.propertyExists(PACKED_COUNT_PROPERTY);
+    }
+
+    /**
+     * @param body -- body of the envelope (inflated if it is compressed)
+     * @return marshalled model objects in the packing order
+     * @throws JmsException if the body is corrupted
+     */
+    public static List<byte[]> unpack(final byte[] body) throws JmsException {
+        final ByteBuffer buffer = ByteBuffer.wrap(body);
+        final List<byte[]> elements = new ArrayList<>();
+        while (buffer.hasRemaining()) {
+            if (buffer.remaining() < Integer.BYTES) {
+                throw new JmsException("Envelope of packed messages is corrupted");
+            }
+            final int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                throw new JmsException("Envelope of packed messages is corrupted");
+            }
+            final byte[] element = new byte[length];
+            buffer.get(element);
+            elements.add(element);
+        }
+        return elements;
+    }
+
+    private void flushLingered() {
+        final long now = System.nanoTime();
+        final long linger = TimeUnit.MILLISECONDS.toNanos(lingerTime);
+        for (Destination destination : envelopes.keySet()) {
+            envelopes.computeIfPresent(destination, (key, envelope) -> {
+                if (now - envelope.createdAt < linger) return envelope;
+                ready.add(envelope);
+                return null;
+            });
+        }
+        sendReady();
+    }
+
+    // is run by the flusher thread or by `close()` after the flusher is stopped
+    private synchronized void sendReady() {
+        Envelope envelope;
+        while ((envelope = ready.poll()) != null) {
+            try {
+                envelopeSender.send(envelope.destination, envelope.toBytes(), envelope.count);
+                sentEnvelopes.increment();
+                sentMessages.add(envelope.count);
+            } catch (JMSException | RuntimeException e) {
+                failed.add(envelope.count);
+                logger.error("Could not send envelope of {} packed messages to the destination [{}]",
+                        envelope.count, envelope.destination, e);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface EnvelopeSender {
+
+        void send(Destination destination, byte[] envelope, int count) throws JMSException;
+    }
+
+    private final class Envelope {
+        private final Destination destination;
+        private final long createdAt = System.nanoTime();
+        private final List<byte[]> elements = new ArrayList<>();
+        private int count;
+        private int size;
+
+        private Envelope(Destination destination) {
+            this.destination = destination;
+        }
+
+        private boolean fits(final byte[] element) {
+            return size + Integer.BYTES + element.length <= maxPackedBytes;
+        }
+
+        private void add(final byte[] element) {
+            elements.add(element);
+            count++;
+            size += Integer.BYTES + element.length;
+        }
+
+        private byte[] toBytes() {
+            final ByteBuffer buffer = ByteBuffer.allocate(size);
+            for (byte[] element : elements) {
+                buffer.putInt(element.length);
+                buffer.put(element);
+            }
+            return buffer.array();
+        }
+    }
+}
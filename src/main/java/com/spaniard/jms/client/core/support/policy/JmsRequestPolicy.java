@@ -0,0 +1,200 @@
+package com.spaniard.jms.client.core.support.policy;
+
+import com.spaniard.jms.client.exception.IllegalPropertyException;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hedging and retry policy of `JmsMessageSender.request(..., timeout, unit)`.
+ * <p>
+ * If no reply is received within the hedge delay, a duplicate request with the same correlation id is sent,
+ * the first reply completes the request and the rest are discarded. The hedge delay is either fixed or
+ * the given percentile of recent reply latencies (the fixed delay is used until enough latencies are recorded).
+ * <p>
+ * If no reply is received within `attemptTimeout`, or the request could not be sent, the request is retried
+ * up to `maxRetries` times after exponential backoff with full jitter. Retries use the same correlation id as well,
+ * so a late reply to an earlier attempt is accepted. Neither hedges nor retries go beyond the request timeout.
+ * Without the shared reply channel a retry after a jms failure is sent from a new session with its own temp-queue,
+ * replies to the earlier attempts are lost then.
+ * <p>
+ * Hedged and retried requests should be idempotent for the consumers.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public class JmsRequestPolicy {
+
+    // latencies are kept in a ring, percentile is recalculated every RECALCULATE_INTERVAL latencies
+    private static final int LATENCY_SAMPLES = 1024;
+    private static final int MIN_LATENCY_SAMPLES = 100;
+    private static final int RECALCULATE_INTERVAL = 64;
+
+    // Property fields
+    private long hedgeDelay;
+
+    private double hedgePercentile;
+
+    private int maxHedges = 1;
+
+    private int maxRetries;
+
+    private long attemptTimeout;
+
+    private long retryBackoff = 100;
+
+    private long maxRetryBackoff = 2000;
+
+    private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_SAMPLES);
+    private final AtomicLong recorded = new AtomicLong();
+    private volatile long percentileDelay = -1;
+
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder replies = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    /**
+     * @param hedgeDelay -- delay in milliseconds before a duplicate request is sent, 0 means no fixed delay
+     */
+    public void setHedgeDelay(long hedgeDelay) {
+        this.hedgeDelay = hedgeDelay;
+    }
+
+    /**
+     * @param hedgePercentile -- percentile of reply latencies (0.95, 0.99) used as the hedge delay, 0 means off
+     */
+    public void setHedgePercentile(double hedgePercentile) {
+        if (hedgePercentile < 0 || hedgePercentile >= 1) {
+            throw new IllegalPropertyException("hedgePercentile should be in [0, 1)");
+        }
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    /**
+     * @param maxHedges -- maximum number of duplicate requests per attempt, default is 1
+     */
+    public void setMaxHedges(int maxHedges) {
+        this.maxHedges = maxHedges;
+    }
+
+    /**
+     * @param maxRetries -- maximum number of retries, default is 0
+     */
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * @param attemptTimeout -- time in milliseconds to wait for the reply before retry, 0 means the whole timeout
+     */
+    public void setAttemptTimeout(long attemptTimeout) {
+        this.attemptTimeout = attemptTimeout;
+    }
+
+    /**
+     * @param retryBackoff -- backoff in milliseconds before the first retry, doubled for every next one, default is 100
+     */
+    public void setRetryBackoff(long retryBackoff) {
+        this.retryBackoff = retryBackoff;
+    }
+
+    /**
+     * @param maxRetryBackoff -- maximum backoff in milliseconds, default is 2000
+     */
+    public void setMaxRetryBackoff(long maxRetryBackoff) {
+        this.maxRetryBackoff = maxRetryBackoff;
+    }
+
+    public int getMaxHedges() {
+        return maxHedges;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public long getAttemptTimeout() {
+        return attemptTimeout;
+    }
+
+    /**
+     * @return delay in milliseconds before a duplicate request is sent, 0 if hedging is off
+     */
+    public long hedgeDelay() {
+        if (maxHedges <= 0) return 0;
+        final long delay = percentileDelay;
+        return delay > 0 ? delay : hedgeDelay;
+    }
+
+    /**
+     * @param retry -- number of the retry, starting from 1
+     * @return random backoff in milliseconds in [0, min(maxRetryBackoff, retryBackoff * 2^(retry - 1))]
+     */
+    public long backoff(final int retry) {
+        final long ceiling = Math.min(maxRetryBackoff, retryBackoff << Math.min(retry - 1, 30));
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * @param latencyNanos -- time between the first request and the reply
+     */
+    public void recordReply(final long latencyNanos) {
+        replies.increment();
+        if (hedgePercentile <= 0) return;
+        final long index = recorded.getAndIncrement();
+        latencies.set((int) (index % LATENCY_SAMPLES), TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+        if (index + 1 >= MIN_LATENCY_SAMPLES && (index + 1) % RECALCULATE_INTERVAL == 0) {
+            recalculate((int) Math.min(index + 1, LATENCY_SAMPLES));
+        }
+    }
+
+    public void recordHedge() {
+        hedges.increment();
+    }
+
+    public void recordRetry() {
+        retries.increment();
+    }
+
+    public void recordTimeout() {
+        timeouts.increment();
+    }
+
+    public long getHedgedRequests() {
+        return hedges.sum();
+    }
+
+    public long getRetriedRequests() {
+        return retries.sum();
+    }
+
+    public long getReplies() {
+        return replies.sum();
+    }
+
+    public long getTimedOutRequests() {
+        return timeouts.sum();
+    }
+
+    /**
+     * @return current percentile hedge delay in milliseconds or -1 if not enough latencies are recorded
+     */
+    public long getPercentileDelay() {
+        return percentileDelay;
+    }
+
+    private void recalculate(final int samples) {
+        final long[] sorted = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            sorted[i] = latencies.get(i);
+        }
+        Arrays.sort(sorted);
+        // at least 1 ms, otherwise hedging would be off
+        percentileDelay = Math.max(1, sorted[Math.min(samples - 1, (int) (samples * hedgePercentile))]);
+    }
+}
@@ -0,0 +1,334 @@
+package com.spaniard.jms.client.core.support.pool;
+
+import com.spaniard.jms.client.core.support.ClassName;
+import com.spaniard.jms.client.exception.IllegalPropertyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.Session;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of long-lived jms connections, sessions and message producers.
+ * <p>
+ * Session is checked out by a thread for a single send/request and released afterwards, so every session is
+ * used by one thread at a time. Idle sessions are kept in LIFO order, the most recently released session is reused
+ * first. Sessions are spread over at most `maxConnections` connections. Idle sessions and connections are closed
+ * by a background eviction thread, broken ones are dropped on checkout.
+ * <p>
+ * For instance:
+ * &lt;bean id="jmsConnectionPool" class="com.spaniard.jms.client.core.support.pool.JmsConnectionPool" destroy-method="close"&gt;
+ * &lt;property name="connectionFactory" ref="connectionFactory"/&gt;
+ * &lt;property name="maxConnections" value="4"/&gt;
+ * &lt;/bean&gt;
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public class JmsConnectionPool implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClassName.getClassName());
+
+    // Property fields
+    private ConnectionFactory connectionFactory;
+
+    private int maxConnections = 1;
+
+    private int maxSessions = 100;
+
+    private int maxProducersPerSession = 32;
+
+    private long maxWait = 30000;
+
+    private long idleTimeout = 60000;
+
+    private long evictionInterval = 30000;
+
+    // idle sessions, head is the most recently used one
+    private final Deque<PooledSession> idleSessions = new ConcurrentLinkedDeque<>();
+    // guarded by itself
+    private final List<PooledConnection> connections = new ArrayList<>();
+
+    private final LongAdder sessionHits = new LongAdder();
+    private final LongAdder sessionMisses = new LongAdder();
+    private final LongAdder producerHits = new LongAdder();
+    private final LongAdder producerMisses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private volatile Semaphore permits;
+    private volatile ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    /**
+     * @param connectionFactory -- implementation of connection factory such as (ActiveMQConnectionFactory)
+     */
+    public void setConnectionFactory(ConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+
+    /**
+     * @param maxConnections -- maximum number of open connections, default is 1
+     */
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * @param maxSessions -- maximum number of sessions (checked out and idle), default is 100
+     */
+    public void setMaxSessions(int maxSessions) {
+        this.maxSessions = maxSessions;
+    }
+
+    /**
+     * @param maxProducersPerSession -- maximum number of cached producers per session, default is 32
+     */
+    public void setMaxProducersPerSession(int maxProducersPerSession) {
+        this.maxProducersPerSession = maxProducersPerSession;
+    }
+
+    /**
+     * @param maxWait -- maximum time in milliseconds to wait for a free session, default is 30 seconds
+     */
+    public void setMaxWait(long maxWait) {
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * @param idleTimeout -- time in milliseconds after which idle session or connection is closed, default is 60 seconds
+     */
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * @param evictionInterval -- interval in milliseconds between eviction runs, default is 30 seconds
+     */
+    public void setEvictionInterval(long evictionInterval) {
+        this.evictionInterval = evictionInterval;
+    }
+
+    /**
+     * Checks out a session. Session should be given back with either {@link #release(PooledSession)}
+     * or {@link #invalidate(PooledSession)}.
+     *
+     * @return pooled session
+     * @throws JMSException if no session is available within `maxWait` or session could not be created
+     */
+    public PooledSession borrowSession() throws JMSException {
+        init();
+        acquirePermit();
+        try {
+            PooledSession pooledSession;
+            while ((pooledSession = idleSessions.pollFirst()) != null) {
+                if (pooledSession.isValid()) {
+                    sessionHits.increment();
+                    return pooledSession;
+                }
+                destroy(pooledSession);
+            }
+            sessionMisses.increment();
+            return createSession();
+        } catch (JMSException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns healthy session back to the pool.
+     *
+     * @param pooledSession -- session obtained by {@link #borrowSession()}
+     */
+    public void release(final PooledSession pooledSession) {
+        if (closed || !pooledSession.isValid()) {
+            destroy(pooledSession);
+        } else {
+            pooledSession.touch();
+            idleSessions.offerFirst(pooledSession);
+        }
+        permits.release();
+    }
+
+    /**
+     * Closes session which failed while being used.
+     *
+     * @param pooledSession -- session obtained by {@link #borrowSession()}
+     */
+    public void invalidate(final PooledSession pooledSession) {
+        destroy(pooledSession);
+        permits.release();
+    }
+
+    public long getSessionHits() {
+        return sessionHits.sum();
+    }
+
+    public long getSessionMisses() {
+        return sessionMisses.sum();
+    }
+
+    public long getProducerHits() {
+        return producerHits.sum();
+    }
+
+    public long getProducerMisses() {
+        return producerMisses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public int getIdleSessions() {
+        return idleSessions.size();
+    }
+
+    public int getActiveSessions() {
+        return permits == null ? 0 : maxSessions - permits.availablePermits();
+    }
+
+    public int getOpenConnections() {
+        synchronized (connections) {
+            return connections.size();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+        PooledSession pooledSession;
+        while ((pooledSession = idleSessions.pollFirst()) != null) {
+            destroy(pooledSession);
+        }
+        synchronized (connections) {
+            for (PooledConnection pooledConnection : connections) {
+                pooledConnection.close();
+            }
+            connections.clear();
+        }
+    }
+
+    void producerHit() {
+        producerHits.increment();
+    }
+
+    void producerMiss() {
+        producerMisses.increment();
+    }
+
+    private void init() {
+        if (closed) {
+            throw new IllegalStateException("JmsConnectionPool is closed");
+        }
+        if (permits != null) return;
+        synchronized (this) {
+            if (permits != null) return;
+            if (Objects.isNull(connectionFactory)) {
+                throw new IllegalPropertyException("ConnectionFactory property is null");
+            }
+            if (maxConnections <= 0 || maxSessions <= 0 || maxProducersPerSession <= 0) {
+                throw new IllegalPropertyException("maxConnections, maxSessions and maxProducersPerSession should be greater than 0");
+            }
+            evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "jms-connection-pool-evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            evictor.scheduleWithFixedDelay(this::evict, evictionInterval, evictionInterval, TimeUnit.MILLISECONDS);
+            permits = new Semaphore(maxSessions, true);
+        }
+    }
+
+    private void acquirePermit() throws JMSException {
+        try {
+            if (!permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS)) {
+                throw new JMSException(String.format("Could not obtain pooled jms session within %d ms", maxWait));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JMSException("Interrupted while waiting for pooled jms session");
+        }
+    }
+
+    private PooledSession createSession() throws JMSException {
+        synchronized (connections) {
+            final PooledConnection pooledConnection = obtainConnection();
+            final Session session = pooledConnection.getConnection().createSession(false, Session.AUTO_ACKNOWLEDGE);
+            pooledConnection.incrementSessionCount();
+            return new PooledSession(this, pooledConnection, session, maxProducersPerSession);
+        }
+    }
+
+    // guarded by connections lock
+    private PooledConnection obtainConnection() throws JMSException {
+        PooledConnection leastLoaded = null;
+        for (Iterator<PooledConnection> it = connections.iterator(); it.hasNext(); ) {
+            final PooledConnection pooledConnection = it.next();
+            if (pooledConnection.isBroken()) {
+                // sessions of broken connection are dropped on checkout or eviction
+                if (pooledConnection.getSessionCount() == 0) {
+                    pooledConnection.close();
+                    it.remove();
+                }
+                continue;
+            }
+            if (leastLoaded == null || pooledConnection.getSessionCount() < leastLoaded.getSessionCount()) {
+                leastLoaded = pooledConnection;
+            }
+        }
+        if (leastLoaded == null || (leastLoaded.getSessionCount() > 0 && connections.size() < maxConnections)) {
+            final PooledConnection pooledConnection = new PooledConnection(connectionFactory.createConnection());
+            connections.add(pooledConnection);
+            return pooledConnection;
+        }
+        return leastLoaded;
+    }
+
+    private void destroy(final PooledSession pooledSession) {
+        pooledSession.close();
+        synchronized (connections) {
+            pooledSession.getPooledConnection().decrementSessionCount();
+        }
+    }
+
+    private void evict() {
+        try {
+            final long now = System.currentTimeMillis();
+            for (PooledSession pooledSession : idleSessions) {
+                if ((now - pooledSession.getLastUsed() > idleTimeout || !pooledSession.isValid())
+                        && idleSessions.remove(pooledSession)) {
+                    evictions.increment();
+                    destroy(pooledSession);
+                }
+            }
+            synchronized (connections) {
+                for (Iterator<PooledConnection> it = connections.iterator(); it.hasNext(); ) {
+                    final PooledConnection pooledConnection = it.next();
+                    if (pooledConnection.getSessionCount() == 0
+                            && (pooledConnection.isBroken() || now - pooledConnection.getLastUsed() > idleTimeout)) {
+                        pooledConnection.close();
+                        it.remove();
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("Could not evict idle jms sessions", e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.spaniard.jms.client.core.support.pool;
+
+import com.spaniard.jms.client.core.support.ClassName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.Connection;
+import javax.jms.ExceptionListener;
+import javax.jms.JMSException;
+
+/**
+ * Long-lived jms connection owned by {@link JmsConnectionPool}.
+ * Connection is marked as broken by the jms provider through {@link ExceptionListener}.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+class PooledConnection implements ExceptionListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClassName.getClassName());
+
+    private final Connection connection;
+
+    // guarded by JmsConnectionPool connections lock
+    private int sessionCount;
+
+    private volatile boolean broken;
+
+    private volatile long lastUsed = System.currentTimeMillis();
+
+    PooledConnection(Connection connection) throws JMSException {
+        this.connection = connection;
+        try {
+            this.connection.setExceptionListener(this);
+            // connection is started once, so that pooled sessions could be used for consuming replies as well
+            this.connection.start();
+        } catch (JMSException | RuntimeException e) {
+            // connection is not pooled yet, nobody else would close it
+            close();
+            throw e;
+        }
+    }
+
+    Connection getConnection() {
+        return connection;
+    }
+
+    int getSessionCount() {
+        return sessionCount;
+    }
+
+    void incrementSessionCount() {
+        sessionCount++;
+        lastUsed = System.currentTimeMillis();
+    }
+
+    void decrementSessionCount() {
+        sessionCount--;
+        lastUsed = System.currentTimeMillis();
+    }
+
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    boolean isBroken() {
+        return broken;
+    }
+
+    @Override
+    public void onException(JMSException exception) {
+        logger.warn("Pooled jms connection is broken, it would be evicted", exception);
+        broken = true;
+    }
+
+    void close() {
+        try {
+            connection.close();
+        } catch (JMSException e) {
+            logger.error("Could not close pooled jms connection", e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.spaniard.jms.client.core.support.pool;
+
+import com.spaniard.jms.client.core.support.ClassName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.*;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Jms session checked out from {@link JmsConnectionPool}. Session is used by exactly one thread until it is
+ * released back to the pool. MessageProducers are cached per Destination and are never closed by the caller.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public class PooledSession {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClassName.getClassName());
+
+    private final JmsConnectionPool pool;
+    private final PooledConnection pooledConnection;
+    private final Session session;
+    // access ordered, the least recently used producer is closed when the cache is full
+    private final Map<Destination, MessageProducer> producers;
+
+    private volatile long lastUsed = System.currentTimeMillis();
+
+    PooledSession(JmsConnectionPool pool, PooledConnection pooledConnection, Session session, final int maxProducers) {
+        this.pool = pool;
+        this.pooledConnection = pooledConnection;
+        this.session = session;
+        this.producers = new LinkedHashMap<Destination, MessageProducer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Destination, MessageProducer> eldest) {
+                if (size() > maxProducers) {
+                    closeProducer(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public Connection getConnection() {
+        return pooledConnection.getConnection();
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * Returns cached MessageProducer for the given destination. Producer settings are reset to jms defaults
+     * on every call, because previous user could change them.
+     *
+     * @param destination -- jms destination
+     * @return message producer
+     * @throws JMSException
+     */
+    public MessageProducer getProducer(final Destination destination) throws JMSException {
+        MessageProducer messageProducer = producers.get(destination);
+        if (messageProducer == null) {
+            pool.producerMiss();
+            messageProducer = session.createProducer(destination);
+            producers.put(destination, messageProducer);
+        } else {
+            pool.producerHit();
+            messageProducer.setDeliveryMode(Message.DEFAULT_DELIVERY_MODE);
+            messageProducer.setPriority(Message.DEFAULT_PRIORITY);
+            messageProducer.setTimeToLive(Message.DEFAULT_TIME_TO_LIVE);
+        }
+        return messageProducer;
+    }
+
+    PooledConnection getPooledConnection() {
+        return pooledConnection;
+    }
+
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    void touch() {
+        lastUsed = System.currentTimeMillis();
+    }
+
+    // cheap health check, no broker round trip is made
+    boolean isValid() {
+        if (pooledConnection.isBroken()) {
+            return false;
+        }
+        try {
+            session.getTransacted();
+            return true;
+        } catch (JMSException e) {
+            return false;
+        }
+    }
+
+    void close() {
+        for (Iterator<MessageProducer> it = producers.values().iterator(); it.hasNext(); ) {
+            closeProducer(it.next());
+            it.remove();
+        }
+        try {
+            session.close();
+        } catch (JMSException e) {
+            logger.error("Could not close pooled jms session", e);
+        }
+    }
+
+    private void closeProducer(final MessageProducer messageProducer) {
+        try {
+            messageProducer.close();
+        } catch (JMSException e) {
+            logger.error("Could not close message producer", e);
+        }
+    }
+}
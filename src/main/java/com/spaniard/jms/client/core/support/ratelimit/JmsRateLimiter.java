@@ -0,0 +1,402 @@
+package com.spaniard.jms.client.core.support.ratelimit;
+
+import com.spaniard.jms.client.core.support.ClassName;
+import com.spaniard.jms.client.exception.IllegalPropertyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.ResourceAllocationException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Global and per-destination rate limits of {@link com.spaniard.jms.client.core.JmsMessageSender}.
+ * Every limit is a lock-free token bucket (GCRA): a permit is taken by a single CAS of the theoretical arrival
+ * time of the next message, up to `burst` permits could be taken at once after idle time.
+ * <p>
+ * If the limit is exceeded, the caller waits for the permit (BLOCK), gets ResourceAllocationException (FAIL),
+ * or returns immediately and the message is sent by the limiter thread when its permit is due (QUEUE).
+ * Requests and transacted sends could not be deferred, so they wait in QUEUE mode. Messages which could be deferred
+ * are marshalled before the permit is taken, so the model object could be changed once the send returns.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public class JmsRateLimiter implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClassName.getClassName());
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    // Property fields
+    private double rate;
+
+    private int burst = 1;
+
+    private Map<Destination, Double> destinationRates = Collections.emptyMap();
+
+    private RateLimitPolicy policy = RateLimitPolicy.BLOCK;
+
+    private long maxWait;
+
+    private int maxQueued = 10000;
+
+    private long closeTimeout = 30000;
+
+    private final Map<Destination, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private volatile TokenBucket globalBucket;
+    private volatile ScheduledThreadPoolExecutor scheduler;
+    private volatile boolean closed;
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+    private final LongAdder failedDeferred = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    /**
+     * @param rate -- global limit in messages per second, 0 means no global limit
+     */
+    public void setRate(double rate) {
+        this.rate = rate;
+    }
+
+    /**
+     * @param burst -- number of messages which could be sent at once after idle time, default is 1
+     */
+    public void setBurst(int burst) {
+        if (burst <= 0) {
+            throw new IllegalPropertyException("burst should be greater than 0");
+        }
+        this.burst = burst;
+    }
+
+    /**
+     * @param destinationRates -- per destination limits in messages per second (Queue | Topic, rate)
+     */
+    public void setDestinationRates(Map<Destination, Double> destinationRates) {
+        for (Map.Entry<Destination, Double> entry : destinationRates.entrySet()) {
+            if (entry.getValue() == null || entry.getValue() <= 0) {
+                throw new IllegalPropertyException("Rate of destination " + entry.getKey() + " should be greater than 0");
+            }
+        }
+        this.destinationRates = new HashMap<>(destinationRates);
+    }
+
+    /**
+     * @param policy -- what to do when the limit is exceeded, default is BLOCK
+     */
+    public void setPolicy(RateLimitPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * @param maxWait -- maximum time in milliseconds to wait for a permit in BLOCK mode, 0 means no limit
+     */
+    public void setMaxWait(long maxWait) {
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * @param maxQueued -- maximum number of deferred messages in QUEUE mode, default is 10000
+     */
+    public void setMaxQueued(int maxQueued) {
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * @param closeTimeout -- time in milliseconds to wait for deferred messages on close, default is 30000
+     */
+    public void setCloseTimeout(long closeTimeout) {
+        this.closeTimeout = closeTimeout;
+    }
+
+    /**
+     * Takes a permit of the destination and the global permit.
+     *
+     * @param destination  -- jms destination
+     * @param deferredSend -- sends the message later, null if the message could not be deferred
+     * @return true if the message should be sent now, false if it is deferred
+     * @throws JMSException (ResourceAllocationException if the limit is exceeded and the message could not wait)
+     */
+    public boolean acquire(final Destination destination, final DeferredSend deferredSend) throws JMSException {
+        final TokenBucket destinationBucket = destinationBucket(destination);
+        final TokenBucket global = globalBucket();
+        if (destinationBucket == null && global == null) return true;
+        final long now = System.nanoTime();
+        if (policy == RateLimitPolicy.FAIL) {
+            if (destinationBucket != null && !destinationBucket.tryAcquire(now)) {
+                throw reject(String.format("Rate limit of the destination [%s] is exceeded", destination));
+            }
+            if (global != null && !global.tryAcquire(now)) {
+                if (destinationBucket != null) {
+                    destinationBucket.release();
+                }
+                throw reject("Global rate limit is exceeded");
+            }
+            return true;
+        }
+        final long wait = Math.max(reserve(destinationBucket, now), reserve(global, now));
+        if (wait <= 0) return true;
+        if (policy == RateLimitPolicy.QUEUE && deferredSend != null) {
+            defer(destinationBucket, global, wait, deferredSend);
+            return false;
+        }
+        if (maxWait > 0 && wait > TimeUnit.MILLISECONDS.toNanos(maxWait)) {
+            release(destinationBucket, global);
+            throw reject(String.format("Rate limit of the destination [%s] requires waiting %d ms", destination,
+                    TimeUnit.NANOSECONDS.toMillis(wait)));
+        }
+        throttled.increment();
+        waitNanos.add(wait);
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResourceAllocationException("Interrupted while waiting for a rate limit permit");
+        }
+        return true;
+    }
+
+    public RateLimitPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return global rate in messages per second measured over the last second
+     */
+    public long getCurrentRate() {
+        final TokenBucket global = globalBucket;
+        return global == null ? 0 : global.currentRate();
+    }
+
+    /**
+     * @param destination -- jms destination
+     * @return rate of the destination in messages per second measured over the last second
+     */
+    public long getCurrentRate(final Destination destination) {
+        final TokenBucket destinationBucket = buckets.get(destination);
+        return destinationBucket == null ? 0 : destinationBucket.currentRate();
+    }
+
+    /**
+     * @return sends which waited for a permit
+     */
+    public long getThrottledSends() {
+        return throttled.sum();
+    }
+
+    public long getRejectedSends() {
+        return rejected.sum();
+    }
+
+    public long getDeferredSends() {
+        return deferred.sum();
+    }
+
+    public long getFailedDeferredSends() {
+        return failedDeferred.sum();
+    }
+
+    public int getQueuedSends() {
+        return queued.get();
+    }
+
+    /**
+     * @return total time in milliseconds that throttled and deferred sends waited for permits
+     */
+    public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos.sum());
+    }
+
+    public double getAverageWaitMillis() {
+        final long waits = throttled.sum() + deferred.sum();
+        return waits == 0 ? 0 : (double) getTotalWaitMillis() / waits;
+    }
+
+    /**
+     * Stops accepting deferred messages and waits up to `closeTimeout` until queued ones are sent.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        final ScheduledThreadPoolExecutor started;
+        synchronized (this) {
+            started = scheduler;
+        }
+        if (started == null) return;
+        started.shutdown();
+        try {
+            if (!started.awaitTermination(closeTimeout, TimeUnit.MILLISECONDS)) {
+                logger.warn("{} deferred messages are not sent", started.shutdownNow().size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void defer(final TokenBucket destinationBucket, final TokenBucket global, final long wait,
+                       final DeferredSend deferredSend) throws JMSException {
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            release(destinationBucket, global);
+            throw reject("Rate limiter queue is full");
+        }
+        try {
+            scheduler().schedule(() -> {
+                queued.decrementAndGet();
+                try {
+                    deferredSend.send();
+                } catch (JMSException | RuntimeException e) {
+                    failedDeferred.increment();
+                    logger.error("Could not send deferred message", e);
+                }
+            }, wait, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            release(destinationBucket, global);
+            throw reject("Rate limiter is closed");
+        }
+        deferred.increment();
+        waitNanos.add(wait);
+    }
+
+    private ScheduledThreadPoolExecutor scheduler() {
+        ScheduledThreadPoolExecutor started = scheduler;
+        if (started != null) return started;
+        synchronized (this) {
+            if (closed) {
+                throw new RejectedExecutionException("Rate limiter is closed");
+            }
+            if (scheduler == null) {
+                scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+                    final Thread thread = new Thread(runnable, "jms-rate-limiter");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            return scheduler;
+        }
+    }
+
+    private ResourceAllocationException reject(final String message) {
+        rejected.increment();
+        return new ResourceAllocationException(message);
+    }
+
+    private TokenBucket destinationBucket(final Destination destination) {
+        final TokenBucket destinationBucket = buckets.get(destination);
+        if (destinationBucket != null) return destinationBucket;
+        final Double destinationRate = destinationRates.get(destination);
+        if (destinationRate == null) return null;
+        return buckets.computeIfAbsent(destination, key -> new TokenBucket(destinationRate, burst));
+    }
+
+    private TokenBucket globalBucket() {
+        TokenBucket global = globalBucket;
+        if (global != null || rate <= 0) return global;
+        synchronized (this) {
+            if (globalBucket == null) {
+                globalBucket = new TokenBucket(rate, burst);
+            }
+            return globalBucket;
+        }
+    }
+
+    private static long reserve(final TokenBucket bucket, final long now) {
+        return bucket == null ? 0 : bucket.reserve(now);
+    }
+
+    private static void release(final TokenBucket destinationBucket, final TokenBucket global) {
+        if (destinationBucket != null) {
+            destinationBucket.release();
+        }
+        if (global != null) {
+            global.release();
+        }
+    }
+
+    /**
+     * Sends the deferred message, is called by the limiter thread.
+     */
+    @FunctionalInterface
+    public interface DeferredSend {
+
+        void send() throws JMSException;
+    }
+
+    private static final class TokenBucket {
+        // nanoseconds per permit
+        private final long interval;
+        // how far the theoretical arrival time could be ahead of now without waiting
+        private final long tolerance;
+        // theoretical arrival time of the next message
+        private final AtomicLong arrival;
+
+        private final AtomicLong windowStart;
+        private final LongAdder windowPermits = new LongAdder();
+        private volatile long lastRate;
+
+        private TokenBucket(double rate, int burst) {
+            this.interval = Math.max(1, (long) (SECOND / rate));
+            this.tolerance = (burst - 1) * interval;
+            final long now = System.nanoTime();
+            this.arrival = new AtomicLong(now);
+            this.windowStart = new AtomicLong(now);
+        }
+
+        // takes a permit, returns time in nanoseconds until the permit is due
+        private long reserve(final long now) {
+            while (true) {
+                final long current = arrival.get();
+                if (arrival.compareAndSet(current, Math.max(current, now) + interval)) {
+                    record(now);
+                    return Math.max(0, current - tolerance - now);
+                }
+            }
+        }
+
+        // takes a permit only if it is due now
+        private boolean tryAcquire(final long now) {
+            while (true) {
+                final long current = arrival.get();
+                if (current - tolerance - now > 0) return false;
+                if (arrival.compareAndSet(current, Math.max(current, now) + interval)) {
+                    record(now);
+                    return true;
+                }
+            }
+        }
+
+        // gives back a permit which was taken, but not used
+        private void release() {
+            arrival.addAndGet(-interval);
+            windowPermits.decrement();
+        }
+
+        private void record(final long now) {
+            final long start = windowStart.get();
+            if (now - start >= SECOND && windowStart.compareAndSet(start, now)) {
+                lastRate = windowPermits.sumThenReset() * SECOND / (now - start);
+            }
+            windowPermits.increment();
+        }
+
+        private long currentRate() {
+            // current window is over, but no permit has been taken since then
+            final long elapsed = System.nanoTime() - windowStart.get();
+            return elapsed >= SECOND ? windowPermits.sum() * SECOND / elapsed : lastRate;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.spaniard.jms.client.core.support.ratelimit;
+
+/**
+ * What to do when a send exceeds the rate limit of {@link JmsRateLimiter}
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public enum RateLimitPolicy {
+    // caller waits for a permit
+    BLOCK,
+    // ResourceAllocationException is thrown to the caller
+    FAIL,
+    // caller returns immediately, message is sent by the limiter thread when the permit is due
+    QUEUE
+}
@@ -0,0 +1,258 @@
+package com.spaniard.jms.client.core.support.reply;
+
+import com.spaniard.jms.client.core.support.ClassName;
+import com.spaniard.jms.client.exception.IllegalPropertyException;
+import com.spaniard.jms.client.exception.JmsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shared request-reply engine. Keeps one or a few long-lived temp-queues with a consumer attached to each of them.
+ * Replies are dispatched to the waiting {@link JmsReplyFuture} by JMSCorrelationID, pending requests are timed out
+ * on a single shared timer. Thousands of concurrent requests reuse the same consumers instead of creating
+ * a connection, temp-queue and consumer per request.
+ * <p>
+ * If the channel connection fails, all pending requests are completed exceptionally and the channel is
+ * reopened on the next request.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public class JmsReplyChannel implements ExceptionListener, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClassName.getClassName());
+
+    // Property fields
+    private ConnectionFactory connectionFactory;
+
+    private int replyQueues = 1;
+
+    private long defaultTimeout;
+
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+
+    private final ScheduledThreadPoolExecutor timer;
+
+    private final AtomicInteger nextQueue = new AtomicInteger();
+
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder orphaned = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    // guarded by this
+    private Connection connection;
+    private volatile List<TemporaryQueue> queues;
+    private volatile boolean closed;
+
+    public JmsReplyChannel() {
+        timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "jms-reply-channel-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * @param connectionFactory -- implementation of connection factory such as (ActiveMQConnectionFactory)
+     */
+    public void setConnectionFactory(ConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+
+    /**
+     * @param replyQueues -- number of reply temp-queues (and dispatcher threads), default is 1
+     */
+    public void setReplyQueues(int replyQueues) {
+        this.replyQueues = replyQueues;
+    }
+
+    /**
+     * @param defaultTimeout -- timeout in milliseconds for requests without explicit timeout, 0 means no timeout
+     */
+    public void setDefaultTimeout(long defaultTimeout) {
+        this.defaultTimeout = defaultTimeout;
+    }
+
+    public long getDefaultTimeout() {
+        return defaultTimeout;
+    }
+
+    /**
+     * Registers pending request. Should be called before the request is sent, so that fast reply is not lost.
+     *
+     * @param future        -- future to be completed by reply
+     * @param timeoutMillis -- timeout in milliseconds, 0 means no timeout
+     * @return reply to destination which should be set to the request message
+     * @throws JmsException
+     */
+    public Destination register(final JmsReplyFuture<?> future, final long timeoutMillis) throws JmsException {
+        final List<TemporaryQueue> replyQueueList = open();
+        final Pending entry = new Pending(future);
+        pending.put(future.getCorrelationId(), entry);
+        if (timeoutMillis > 0) {
+            entry.timeout = timer.schedule(() -> {
+                if (pending.remove(future.getCorrelationId(), entry)) {
+                    timedOut.increment();
+                    future.onTimeout(timeoutMillis);
+                }
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        return replyQueueList.get(Math.floorMod(nextQueue.getAndIncrement(), replyQueueList.size()));
+    }
+
+    /**
+     * Removes pending request, late reply is ignored.
+     *
+     * @param correlationId -- request correlation id
+     */
+    public void unregister(final String correlationId) {
+        final Pending entry = pending.remove(correlationId);
+        if (entry != null) {
+            entry.cancelTimeout();
+        }
+    }
+
+    public int getPendingRequests() {
+        return pending.size();
+    }
+
+    public long getDispatchedReplies() {
+        return dispatched.sum();
+    }
+
+    public long getOrphanedReplies() {
+        return orphaned.sum();
+    }
+
+    public long getTimedOutRequests() {
+        return timedOut.sum();
+    }
+
+    @Override
+    public void onException(JMSException exception) {
+        logger.warn("Reply channel connection is broken, pending requests are failed", exception);
+        synchronized (this) {
+            closeResources();
+        }
+        failPending(new JmsException("Reply channel connection is broken", exception));
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (this) {
+            closeResources();
+        }
+        timer.shutdownNow();
+        failPending(new JmsException("Reply channel is closed"));
+    }
+
+    private List<TemporaryQueue> open() throws JmsException {
+        List<TemporaryQueue> replyQueueList = queues;
+        if (replyQueueList != null) return replyQueueList;
+        synchronized (this) {
+            if (closed) {
+                throw new JmsException("Reply channel is closed");
+            }
+            if (queues != null) return queues;
+            if (Objects.isNull(connectionFactory)) {
+                throw new IllegalPropertyException("ConnectionFactory property is null");
+            }
+            if (replyQueues <= 0) {
+                throw new IllegalPropertyException("replyQueues should be greater than 0");
+            }
+            try {
+                connection = connectionFactory.createConnection();
+                connection.setExceptionListener(this);
+                replyQueueList = new ArrayList<>(replyQueues);
+                for (int i = 0; i < replyQueues; i++) {
+                    // every session has its own dispatcher thread
+                    final Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+                    final TemporaryQueue queue = session.createTemporaryQueue();
+                    session.createConsumer(queue).setMessageListener(this::dispatch);
+                    replyQueueList.add(queue);
+                }
+                connection.start();
+                queues = replyQueueList;
+                logger.debug("Reply channel is opened with {} reply queues", replyQueues);
+                return replyQueueList;
+            } catch (JMSException e) {
+                closeResources();
+                throw new JmsException(e.getMessage(), e);
+            }
+        }
+    }
+
+    private void dispatch(final Message message) {
+        final String correlationId;
+        try {
+            correlationId = message.getJMSCorrelationID();
+        } catch (JMSException e) {
+            logger.error("Could not read correlation id of the reply", e);
+            return;
+        }
+        final Pending entry = correlationId == null ? null : pending.remove(correlationId);
+        if (entry == null) {
+            // request is timed out, cancelled or closed
+            orphaned.increment();
+            logger.debug("No pending request found for correlation id [{}], reply is dropped", correlationId);
+            return;
+        }
+        entry.cancelTimeout();
+        dispatched.increment();
+        entry.future.onMessage(message);
+    }
+
+    private void failPending(final Throwable cause) {
+        for (String correlationId : pending.keySet()) {
+            final Pending entry = pending.remove(correlationId);
+            if (entry != null) {
+                entry.cancelTimeout();
+                entry.future.onFailure(cause);
+            }
+        }
+    }
+
+    // guarded by this
+    private void closeResources() {
+        queues = null;
+        if (connection != null) {
+            try {
+                // closes sessions, consumers and temp-queues as well
+                connection.close();
+            } catch (JMSException e) {
+                logger.error("Could not close reply channel connection", e);
+            }
+            connection = null;
+        }
+    }
+
+    private static class Pending {
+        private final JmsReplyFuture<?> future;
+        private volatile ScheduledFuture<?> timeout;
+
+        private Pending(JmsReplyFuture<?> future) {
+            this.future = future;
+        }
+
+        private void cancelTimeout() {
+            final ScheduledFuture<?> scheduledTimeout = timeout;
+            if (scheduledTimeout != null) {
+                scheduledTimeout.cancel(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.spaniard.jms.client.core.support.reply;
+
+import com.spaniard.jms.client.core.AbstractJmsFuture;
+import com.spaniard.jms.client.core.Strategy;
+import com.spaniard.jms.client.core.support.compression.JmsPayloadCompressor;
+import com.spaniard.jms.client.core.support.unmarshalling.Unmarshaller;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Future of a request which reply is received through the shared {@link JmsReplyChannel}.
+ * Future is completed by the channel dispatcher, no jms resources are held by the future itself.
+ *
+ * @author Alexander Nesterov
+ * @version 1.0
+ */
+public class JmsReplyFuture<T> extends AbstractJmsFuture<T> {
+
+    private final JmsReplyChannel replyChannel;
+    private final String correlationId;
+
+    public JmsReplyFuture(JmsReplyChannel replyChannel, String correlationId, Class<T> responseClass,
+                          Strategy strategy, Unmarshaller unmarshaller) {
+        this(replyChannel, correlationId, responseClass, strategy, unmarshaller, null);
+    }
+
+    public JmsReplyFuture(JmsReplyChannel replyChannel, String correlationId, Class<T> responseClass,
+                          Strategy strategy, Unmarshaller unmarshaller, Executor callbackExecutor) {
+        this(replyChannel, correlationId, responseClass, strategy, unmarshaller, callbackExecutor, null);
+    }
+
+    public JmsReplyFuture(JmsReplyChannel replyChannel, String correlationId, Class<T> responseClass,
+                          Strategy strategy, Unmarshaller unmarshaller, Executor callbackExecutor,
+                          JmsPayloadCompressor payloadCompressor) {
+        super(responseClass, strategy, unmarshaller, callbackExecutor, payloadCompressor);
+        this.replyChannel = replyChannel;
+        this.correlationId = correlationId;
+    }
+
+    public String getCorrelationId() {
+        return correlationId;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        final boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled) {
+            replyChannel.unregister(correlationId);
+        }
+        return cancelled;
+    }
+
+    // is called by the channel timer
+    void onTimeout(final long timeoutMillis) {
+        completeExceptionally(new TimeoutException(
+                String.format("No reply received for correlation id [%s] within %d ms", correlationId, timeoutMillis)));
+    }
+
+    // is called when the channel connection fails
+    void onFailure(final Throwable cause) {
+        completeExceptionally(cause);
+    }
+
+    @Override
+    public void close() {
+        replyChannel.unregister(correlationId);
+    }
+}
@@ -2,6 +2,7 @@ package com.spaniard.jms.client.core.support.unmarshalling;
 
 import com.spaniard.jms.client.core.Strategy;
 
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -14,12 +15,20 @@ import java.util.function.Function;
 public class AbstractUnmarshaller implements Unmarshaller {
 
     final Map<Strategy, Function<String, Object>> unmarshallerMap = new HashMap<>(Strategy.values().length);
+    // strategies which could be unmarshalled straight from UTF-8 byte stream
+    final Map<Strategy, Function<InputStream, Object>> streamUnmarshallerMap = new HashMap<>(Strategy.values().length);
 
     @Override
     public Object unmarshall(final Strategy strategy, final String message) {
         return unmarshallerMap.get(strategy).apply(message);
     }
 
+    @Override
+    public Object unmarshall(final Strategy strategy, final InputStream message) {
+        final Function<InputStream, Object> stream = streamUnmarshallerMap.get(strategy);
+        return stream != null ? stream.apply(message) : Unmarshaller.super.unmarshall(strategy, message);
+    }
+
     public static class UnmarshallerFactory {
 
         public static Unmarshaller fromModelClasses(final Set<Class> modelClasses) {
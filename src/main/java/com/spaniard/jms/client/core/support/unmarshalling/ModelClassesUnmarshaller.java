@@ -1,5 +1,6 @@
 package com.spaniard.jms.client.core.support.unmarshalling;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.spaniard.jms.client.exception.UnmarshallerException;
 import com.spaniard.jms.client.core.Strategy;
@@ -52,5 +53,32 @@ public class ModelClassesUnmarshaller extends AbstractUnmarshaller implements Un
                 throw new UnmarshallerException(e.getMessage(), e);
             }
         });
+        // JAXB and Jackson read UTF-8 straight from the byte stream
+        streamUnmarshallerMap.put(Strategy.XML, message -> {
+            try {
+                final JAXBContext jaxbContext = JAXBContext.newInstance(modelClasses.toArray(new Class[0]));
+                final javax.xml.bind.Unmarshaller jaxbUnmarshaller = jaxbContext.createUnmarshaller();
+                return jaxbUnmarshaller.unmarshal(message);
+            } catch (JAXBException e) {
+                throw new UnmarshallerException(e.getMessage(), e);
+            }
+        });
+        streamUnmarshallerMap.put(Strategy.JSON, message -> {
+            final JsonNode tree;
+            try {
+                // stream could be read only once, so the tree is matched against model classes
+                tree = jsonMapper.readTree(message);
+            } catch (IOException e) {
+                throw new UnmarshallerException(e.getMessage(), e);
+            }
+            for (Class<?> modelClass : modelClasses) {
+                try {
+                    return jsonMapper.treeToValue(tree, modelClass);
+                } catch (IOException e) {
+                    // check deserealization class
+                }
+            }
+            throw new UnmarshallerException("No suitable class for message " + tree);
+        });
     }
 }
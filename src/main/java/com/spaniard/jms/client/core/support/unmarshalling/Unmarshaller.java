@@ -1,6 +1,12 @@
 package com.spaniard.jms.client.core.support.unmarshalling;
 
 import com.spaniard.jms.client.core.Strategy;
+import com.spaniard.jms.client.exception.UnmarshallerException;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
 /**
  * @author Alexander Nesterov
@@ -10,4 +16,15 @@ public interface Unmarshaller {
 
     Object unmarshall(Strategy strategy, String message);
 
+    /**
+     * @param message -- UTF-8 encoded message
+     */
+    default Object unmarshall(Strategy strategy, InputStream message) {
+        try {
+            return unmarshall(strategy, StreamUtils.copyToString(message, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UnmarshallerException(e.getMessage(), e);
+        }
+    }
+
 }
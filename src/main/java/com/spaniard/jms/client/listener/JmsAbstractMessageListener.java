@@ -1,11 +1,16 @@
 package com.spaniard.jms.client.listener;
 
 import com.spaniard.jms.client.core.JmsMessageSender;
+import com.spaniard.jms.client.core.support.chunking.JmsChunkAssembler;
+import com.spaniard.jms.client.core.support.compression.JmsPayloadCompressor;
+import com.spaniard.jms.client.core.support.claimcheck.JmsClaimCheck;
+import com.spaniard.jms.client.core.support.delta.JmsDeltaDecoder;
 import com.spaniard.jms.client.exception.JmsException;
 import com.spaniard.jms.client.core.support.ClassName;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.jms.BytesMessage;
 import javax.jms.Message;
 import javax.jms.MessageListener;
 import javax.jms.TextMessage;
@@ -20,6 +25,14 @@ public abstract class JmsAbstractMessageListener implements MessageListener {
 
     protected JmsMessageSender jmsMessageSender;
 
+    protected JmsPayloadCompressor payloadCompressor;
+
+    protected JmsChunkAssembler chunkAssembler;
+
+    protected JmsDeltaDecoder deltaDecoder;
+
+    protected JmsClaimCheck claimCheck;
+
     /**
      * Jms message sender is required to send messages, such as sending back to replyTo queue
      *
@@ -29,14 +42,54 @@ public abstract class JmsAbstractMessageListener implements MessageListener {
         this.jmsMessageSender = jmsMessageSender;
     }
 
+    /**
+     * Compressed messages are inflated with or without the compressor, it is needed for preset dictionary and stats.
+     * JmsMessageListener also compresses replies with it.
+     *
+     * @param payloadCompressor -- payload compressor
+     */
+    public void setPayloadCompressor(JmsPayloadCompressor payloadCompressor) {
+        this.payloadCompressor = payloadCompressor;
+    }
+
+    /**
+     * Reassembles chunked payloads, see JmsMessageSender.setPayloadChunker(...)
+     *
+     * @param chunkAssembler -- chunk assembler
+     */
+    public void setChunkAssembler(JmsChunkAssembler chunkAssembler) {
+        this.chunkAssembler = chunkAssembler;
+    }
+
+    /**
+     * Rebuilds model objects sent in delta mode, see JmsMessageSender.setDeltaEncoder(...)
+     *
+     * @param deltaDecoder -- delta decoder
+     */
+    public void setDeltaDecoder(JmsDeltaDecoder deltaDecoder) {
+        this.deltaDecoder = deltaDecoder;
+    }
+
+    /**
+     * Resolves payloads sent by reference, see JmsMessageSender.setClaimCheck(...)
+     *
+     * @param claimCheck -- claim check with the blob store shared with senders
+     */
+    public void setClaimCheck(JmsClaimCheck claimCheck) {
+        this.claimCheck = claimCheck;
+    }
+
     @Override
     public void onMessage(Message message) {
-        if (!(message instanceof TextMessage)) {
-            throw new JmsRuntimeException("Received message is not of type 'TextMessage'");
+        if (!(message instanceof TextMessage) && !(message instanceof BytesMessage)) {
+            throw new JmsRuntimeException("Received message is neither of type 'TextMessage' nor 'BytesMessage'");
         }
-        final TextMessage textMessage = (TextMessage) message;
         try {
-            handleTextMessage(textMessage);
+            if (message instanceof TextMessage) {
+                handleTextMessage((TextMessage) message);
+            } else {
+                handleBytesMessage((BytesMessage) message);
+            }
         } catch (JmsException e) {
             // initiate transaction rollback
             throw new JmsRuntimeException(e);
@@ -45,6 +98,16 @@ public abstract class JmsAbstractMessageListener implements MessageListener {
 
     protected abstract void handleTextMessage(TextMessage textMessage) throws JmsException;
 
+    /**
+     * BytesMessage carries UTF-8 encoded payload, see JmsMessageSender.setBinaryPayload(...)
+     *
+     * @param bytesMessage -- received message
+     * @throws JmsException if listener does not support binary payload
+     */
+    protected void handleBytesMessage(BytesMessage bytesMessage) throws JmsException {
+        throw new JmsException("Received message is not of type 'TextMessage'");
+    }
+
     class JmsRuntimeException extends RuntimeException {
         public JmsRuntimeException(String message) {
             super(message);
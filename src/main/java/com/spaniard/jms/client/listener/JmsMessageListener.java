@@ -1,8 +1,15 @@
 package com.spaniard.jms.client.listener;
 
 import com.spaniard.jms.client.core.Strategy;
+import com.spaniard.jms.client.core.support.JmsDeadline;
+import com.spaniard.jms.client.core.support.JmsMessagePayload;
+import com.spaniard.jms.client.core.support.chunking.JmsChunkAssembler;
+import com.spaniard.jms.client.core.support.chunking.JmsChunkGroup;
+import com.spaniard.jms.client.core.support.claimcheck.JmsClaimCheck;
+import com.spaniard.jms.client.core.support.delta.JmsDeltaDecoder;
 import com.spaniard.jms.client.core.support.marshalling.AbstractMarshaller.MarshallerFactory;
 import com.spaniard.jms.client.core.support.marshalling.Marshaller;
+import com.spaniard.jms.client.core.support.packing.JmsMessagePacker;
 import com.spaniard.jms.client.core.support.unmarshalling.Unmarshaller;
 import com.spaniard.jms.client.exception.IllegalPropertyException;
 import com.spaniard.jms.client.exception.JmsException;
@@ -10,14 +17,19 @@ import com.spaniard.jms.client.core.support.unmarshalling.AbstractUnmarshaller;
 import org.apache.activemq.command.ActiveMQQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.util.ErrorHandler;
 import org.springframework.util.MethodInvoker;
 
+import javax.jms.BytesMessage;
 import javax.jms.Destination;
 import javax.jms.JMSException;
+import javax.jms.Message;
 import javax.jms.MessageListener;
 import javax.jms.TextMessage;
+import java.io.ByteArrayInputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
 
 import static com.spaniard.jms.client.core.support.ClassName.getClassName;
 
@@ -41,6 +53,11 @@ public class JmsMessageListener<H> extends JmsAbstractMessageListener implements
     // field is required for searching class-handler beans in the classpath
     private final Class<H> type;
 
+    private ErrorHandler packedErrorHandler;
+
+    private final LongAdder expiredMessages = new LongAdder();
+    private final LongAdder failedPackedMessages = new LongAdder();
+
     // constructor
     public JmsMessageListener() {
         this(null);
@@ -92,8 +109,41 @@ public class JmsMessageListener<H> extends JmsAbstractMessageListener implements
         return type;
     }
 
+    /**
+     * Is called for every packed model object which could not be unmarshalled or handled, the rest of the envelope
+     * is handled anyway. By default the failure is logged.
+     *
+     * @param packedErrorHandler -- error handler of packed model objects
+     */
+    public void setPackedErrorHandler(ErrorHandler packedErrorHandler) {
+        this.packedErrorHandler = packedErrorHandler;
+    }
+
+    /**
+     * @return packed model objects which could not be unmarshalled or handled
+     */
+    public long getFailedPackedMessages() {
+        return failedPackedMessages.sum();
+    }
+
+    /**
+     * @return requests dropped because their deadline was over before they were unmarshalled
+     */
+    public long getExpiredMessages() {
+        return expiredMessages.sum();
+    }
+
     @Override
     protected void handleTextMessage(final TextMessage textMessage) throws JmsException {
+        handleMessage(textMessage);
+    }
+
+    @Override
+    protected void handleBytesMessage(final BytesMessage bytesMessage) throws JmsException {
+        handleMessage(bytesMessage);
+    }
+
+    protected void handleMessage(final Message message) throws JmsException {
         if (delegates == null) {
             throw new IllegalPropertyException("No 'delegates' map is set");
         }
@@ -101,52 +151,141 @@ public class JmsMessageListener<H> extends JmsAbstractMessageListener implements
             throw new IllegalPropertyException("No 'delegateMethod' property is set");
         }
 
+        // nobody waits for the reply of an expired request
+        try {
+            if (JmsDeadline.isExpired(message)) {
+                expiredMessages.increment();
+                logger.debug("Message [{}] is expired, it is dropped", message.getJMSMessageID());
+                return;
+            }
+        } catch (JMSException e) {
+            throw new JmsException(e.getMessage(), e);
+        }
+
         // unmarshall incoming message
         Unmarshaller unmarshaller = Objects.isNull(modelPackage)
                 ? AbstractUnmarshaller.UnmarshallerFactory.fromModelClasses(modelClasses)
                 : AbstractUnmarshaller.UnmarshallerFactory.fromModelPackage(modelPackage);
         Object modelObject;
         try {
-            modelObject = unmarshaller.unmarshall(strategy, textMessage.getText());
+            if (JmsMessagePacker.isEnvelope(message)) {
+                handleEnvelope(message, unmarshaller);
+                releaseClaimCheck(message);
+                return;
+            }
+            JmsChunkGroup chunkGroup = null;
+            if (chunkAssembler != null && JmsChunkAssembler.isChunk(message)) {
+                chunkGroup = chunkAssembler.accept(message);
+                // wait for the rest of the chunks
+                if (chunkGroup == null) return;
+            }
+            if (deltaDecoder != null && JmsDeltaDecoder.isDelta(message)) {
+                // every chunk has delta properties
+                final byte[] marshalled = deltaDecoder.decode(message, chunkGroup != null
+                        ? JmsMessagePayload.readPayload(chunkGroup, payloadCompressor)
+                        : readPayload(message));
+                // base is missing, the key is handled again after the next snapshot
+                if (marshalled == null) {
+                    releaseClaimCheck(message);
+                    return;
+                }
+                modelObject = JmsMessagePayload.unmarshall(unmarshaller, strategy, marshalled);
+            } else if (chunkGroup != null) {
+                modelObject = JmsMessagePayload.unmarshall(unmarshaller, strategy, chunkGroup, payloadCompressor);
+            } else if (claimCheck != null && JmsClaimCheck.isReference(message)) {
+                modelObject = claimCheck.unmarshall(unmarshaller, strategy, message, payloadCompressor);
+            } else {
+                modelObject = JmsMessagePayload.unmarshall(unmarshaller, strategy, message, payloadCompressor);
+            }
         } catch (JMSException e) {
             throw new JmsException(e.getMessage(), e);
         }
 
-        final Object result = invokeMethod(propertiesRequired ? new Object[]{modelObject, getJmsProperties(textMessage)}
+        final Object result = invokeMethod(propertiesRequired ? new Object[]{modelObject, getJmsProperties(message)}
                 : new Object[]{modelObject});
         // if we have a response from a handler -> send to reply queue
         if (result != null) {
-            sendToReplyQueue(result, textMessage);
+            sendToReplyQueue(result, message);
+        }
+        releaseClaimCheck(message);
+    }
+
+    // payload of the message could be claim-checked
+    private byte[] readPayload(final Message message) throws JMSException, JmsException {
+        return claimCheck != null && JmsClaimCheck.isReference(message)
+                ? claimCheck.readPayload(message, payloadCompressor)
+                : JmsMessagePayload.readPayload(message, payloadCompressor);
+    }
+
+    private void releaseClaimCheck(final Message message) throws JmsException {
+        if (claimCheck == null) return;
+        try {
+            claimCheck.release(message);
+        } catch (JMSException e) {
+            throw new JmsException(e.getMessage(), e);
+        }
+    }
+
+    // every packed model object is handled on its own, failure of one element does not affect the others
+    private void handleEnvelope(final Message message, final Unmarshaller unmarshaller) throws JMSException, JmsException {
+        if (!(message instanceof BytesMessage)) {
+            throw new JmsException("Envelope of packed messages is not of type 'BytesMessage'");
+        }
+        final List<byte[]> elements = JmsMessagePacker.unpack(readPayload(message));
+        final Map<String, String> properties = propertiesRequired ? getJmsProperties(message) : null;
+        if (properties != null) {
+            properties.remove(JmsMessagePacker.PACKED_COUNT_PROPERTY);
+        }
+        for (int i = 0; i < elements.size(); i++) {
+            try {
+                final Object modelObject = unmarshaller.unmarshall(strategy, new ByteArrayInputStream(elements.get(i)));
+                // packed messages are sent without reply to, result is ignored
+                invokeMethod(properties != null ? new Object[]{modelObject, new HashMap<>(properties)} : new Object[]{modelObject});
+            } catch (JmsException | RuntimeException e) {
+                failedPackedMessages.increment();
+                if (packedErrorHandler != null) {
+                    packedErrorHandler.handleError(e);
+                } else {
+                    logger.error("Could not handle packed message {} of {} in [{}], it is skipped",
+                            i + 1, elements.size(), message.getJMSMessageID(), e);
+                }
+            }
         }
     }
 
     // do extra routing if we need to
-    protected void sendToReplyQueue(final Object result, final TextMessage textMessage) throws JmsException {
+    // reply is of the same message type as the request (TextMessage or BytesMessage)
+    protected void sendToReplyQueue(final Object result, final Message message) throws JmsException {
         try {
-            final Destination replyToDestination = textMessage.getJMSReplyTo();
-            final String correlationID = textMessage.getJMSCorrelationID();
+            final Destination replyToDestination = message.getJMSReplyTo();
+            final String correlationID = message.getJMSCorrelationID();
             if (replyToDestination != null && correlationID != null) {
                 // if we have a `routeQueue` set - we should copy and send a message to that queue
                 // otherwise `replyTo` queue is used
                 final Destination destination = replyToQueue != null ? new ActiveMQQueue(replyToQueue) : replyToDestination;
-                final String stringMessage = marshall(result);
+                // compressed request is a BytesMessage, but reply is compressed only if it is big enough
+                final boolean binary = message instanceof BytesMessage;
                 try {
                     jmsMessageSender.execute(destination, (session, messageProducer) -> {
-                        final TextMessage newTextMessage = session.createTextMessage(stringMessage);
-                        // copy properties
-                        final Enumeration en = textMessage.getPropertyNames();
+                        final Message replyMessage = JmsMessagePayload.createMessage(session, createMarshaller(),
+                                strategy, result, binary, payloadCompressor);
+                        // copy properties, content encoding and chunking properties belong to the request payload,
+                        // the deadline belongs to the request
+                        final Enumeration en = message.getPropertyNames();
                         while (en.hasMoreElements()) {
                             final String element = en.nextElement().toString();
-                            newTextMessage.setStringProperty(element, textMessage.getStringProperty(element));
+                            if (!JmsMessagePayload.isPayloadProperty(element) && !JmsDeadline.DEADLINE_PROPERTY.equals(element)) {
+                                replyMessage.setStringProperty(element, message.getStringProperty(element));
+                            }
                         }
-                        newTextMessage.setJMSCorrelationID(textMessage.getJMSCorrelationID());
-                        newTextMessage.setJMSReplyTo(textMessage.getJMSReplyTo());
-                        if (textMessage.getJMSExpiration() > 0) {
+                        replyMessage.setJMSCorrelationID(message.getJMSCorrelationID());
+                        replyMessage.setJMSReplyTo(message.getJMSReplyTo());
+                        if (message.getJMSExpiration() > 0) {
                             // ttl is set
-                            messageProducer.setTimeToLive(textMessage.getJMSExpiration() - textMessage.getJMSTimestamp());
+                            messageProducer.setTimeToLive(message.getJMSExpiration() - message.getJMSTimestamp());
                         }
 
-                        messageProducer.send(newTextMessage);
+                        messageProducer.send(replyMessage);
                         return null;
                     });
                 } catch (Exception e) {
@@ -158,13 +297,13 @@ public class JmsMessageListener<H> extends JmsAbstractMessageListener implements
         }
     }
 
-    protected Map<String, String> getJmsProperties(final TextMessage textMessage) throws JmsException {
+    protected Map<String, String> getJmsProperties(final Message message) throws JmsException {
         final Map<String, String> properties = new HashMap<>();
         try {
-            final Enumeration en = textMessage.getPropertyNames();
+            final Enumeration en = message.getPropertyNames();
             while (en.hasMoreElements()) {
                 final String element = en.nextElement().toString();
-                properties.put(element, textMessage.getStringProperty(element));
+                properties.put(element, message.getStringProperty(element));
             }
         } catch (JMSException e) {
             throw new JmsException(e.getMessage(), e);
@@ -194,10 +333,9 @@ public class JmsMessageListener<H> extends JmsAbstractMessageListener implements
         }
     }
 
-    private String marshall(final Object modelObject) throws JmsException {
-        final Marshaller marshaller = Objects.isNull(modelPackage)
+    private Marshaller createMarshaller() {
+        return Objects.isNull(modelPackage)
                 ? MarshallerFactory.fromModelClasses(modelClasses)
                 : MarshallerFactory.fromModelPackage(modelPackage);
-        return marshaller.marshall(strategy, modelObject);
     }
 }
@@ -1,5 +1,6 @@
 package com.spaniard.jms.client.listener;
 
+import com.spaniard.jms.client.core.support.JmsMessagePayload;
 import com.spaniard.jms.client.exception.JmsException;
 
 import javax.jms.*;
@@ -20,24 +21,33 @@ public class JmsReplicatorListener extends JmsAbstractMessageListener implements
 
     @Override
     protected void handleTextMessage(final TextMessage textMessage) throws JmsException {
+        replicate(textMessage);
+    }
+
+    @Override
+    protected void handleBytesMessage(final BytesMessage bytesMessage) throws JmsException {
+        replicate(bytesMessage);
+    }
+
+    private void replicate(final Message message) throws JmsException {
         try {
-            Destination replyToDestination = textMessage.getJMSReplyTo();
+            Destination replyToDestination = message.getJMSReplyTo();
             jmsMessageSender.execute(destinationQueue != null ? destinationQueue : replyToDestination,
                     (session, messageProducer) -> {
-                        final TextMessage newTextMessage = session.createTextMessage(textMessage.getText());
-                        // copy properties
-                        final Enumeration en = textMessage.getPropertyNames();
+                        final Message newMessage = JmsMessagePayload.copyBody(session, message);
+                        // copy properties (compressed payload is forwarded as is together with its content encoding)
+                        final Enumeration en = message.getPropertyNames();
                         while (en.hasMoreElements()) {
                             final String element = en.nextElement().toString();
-                            newTextMessage.setStringProperty(element, textMessage.getStringProperty(element));
+                            newMessage.setStringProperty(element, message.getStringProperty(element));
                         }
-                        newTextMessage.setJMSCorrelationID(textMessage.getJMSCorrelationID());
-                        newTextMessage.setJMSReplyTo(textMessage.getJMSReplyTo());
-                        if (textMessage.getJMSExpiration() > 0) {
+                        newMessage.setJMSCorrelationID(message.getJMSCorrelationID());
+                        newMessage.setJMSReplyTo(message.getJMSReplyTo());
+                        if (message.getJMSExpiration() > 0) {
                             // ttl is set
-                            messageProducer.setTimeToLive(textMessage.getJMSExpiration() - textMessage.getJMSTimestamp());
+                            messageProducer.setTimeToLive(message.getJMSExpiration() - message.getJMSTimestamp());
                         }
-                        messageProducer.send(newTextMessage);
+                        messageProducer.send(newMessage);
                         return null;
                     });
         } catch (JMSException e) {
@@ -4,10 +4,16 @@ import com.spaniard.jms.client.exception.JmsException;
 import com.spaniard.jms.client.listener.JmsAbstractMessageListener;
 import com.rabbitmq.client.*;
 import com.spaniard.jms.client.core.support.ClassName;
+import com.spaniard.jms.client.core.support.JmsMessagePayload;
+import com.spaniard.jms.client.core.support.chunking.JmsChunkAssembler;
+import com.spaniard.jms.client.core.support.chunking.JmsChunkGroup;
+import com.spaniard.jms.client.core.support.claimcheck.JmsClaimCheck;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.jms.BytesMessage;
 import javax.jms.JMSException;
+import javax.jms.Message;
 import javax.jms.MessageListener;
 import javax.jms.TextMessage;
 import java.io.IOException;
@@ -49,6 +55,49 @@ public class RmqReplicatorListener extends JmsAbstractMessageListener implements
 
     @Override
     protected void handleTextMessage(final TextMessage textMessage) throws JmsException {
+        try {
+            final String message = textMessage.getText();
+            logger.debug(String.format("Trying to send message [%s] to queue [%s]", message, destinationQueue));
+            publish(textMessage, message.getBytes(), "text/plain");
+        } catch (JMSException e) {
+            throw new JmsException(e);
+        }
+    }
+
+    @Override
+    protected void handleBytesMessage(final BytesMessage bytesMessage) throws JmsException {
+        try {
+            logger.debug(String.format("Trying to send bytes message to queue [%s]", destinationQueue));
+            // rabbitmq consumers know nothing about jms payload compression and chunking
+            if (chunkAssembler != null && JmsChunkAssembler.isChunk(bytesMessage)) {
+                final JmsChunkGroup chunkGroup = chunkAssembler.accept(bytesMessage);
+                if (chunkGroup != null) {
+                    publish(chunkGroup.getMessage(), JmsMessagePayload.readPayload(chunkGroup, payloadCompressor),
+                            "application/octet-stream");
+                }
+                return;
+            }
+            if (JmsClaimCheck.isReference(bytesMessage)) {
+                publish(bytesMessage, readClaimChecked(bytesMessage), "application/octet-stream");
+                claimCheck.release(bytesMessage);
+                return;
+            }
+            publish(bytesMessage, JmsMessagePayload.readPayload(bytesMessage, payloadCompressor), "application/octet-stream");
+        } catch (JMSException e) {
+            throw new JmsException(e);
+        }
+    }
+
+    // reference message has no body, its empty payload should not be published
+    private byte[] readClaimChecked(final BytesMessage bytesMessage) throws JMSException, JmsException {
+        if (claimCheck == null) {
+            throw new JmsException(String.format("Payload of the message is claim-checked [%s], but claimCheck property is not set",
+                    bytesMessage.getStringProperty(JmsClaimCheck.CLAIM_CHECK_PROPERTY)));
+        }
+        return claimCheck.readPayload(bytesMessage, payloadCompressor);
+    }
+
+    private void publish(final Message jmsMessage, final byte[] body, final String contentType) throws JmsException {
         Connection connection = null;
         Channel channel = null;
         try {
@@ -57,10 +106,8 @@ public class RmqReplicatorListener extends JmsAbstractMessageListener implements
             channel = connection.createChannel();
             channel.queueDeclare(destinationQueue, true, false, false, null);
 
-            final AMQP.BasicProperties properties = getJmsProperties(textMessage);
-            final String message = textMessage.getText();
-            logger.debug(String.format("Trying to send message [%s] to queue [%s]", message, destinationQueue));
-            channel.basicPublish("", destinationQueue, properties, message.getBytes());
+            final AMQP.BasicProperties properties = getJmsProperties(jmsMessage, contentType);
+            channel.basicPublish("", destinationQueue, properties, body);
         } catch (IOException | TimeoutException | JMSException e) {
             throw new JmsException(e);
         } finally {
@@ -81,18 +128,20 @@ public class RmqReplicatorListener extends JmsAbstractMessageListener implements
         }
     }
 
-    private AMQP.BasicProperties getJmsProperties(final TextMessage textMessage) throws JMSException {
+    private AMQP.BasicProperties getJmsProperties(final Message textMessage, final String contentType) throws JMSException {
         // copy properties
         Map<String, Object> headers = new HashMap<>();
         final Enumeration en = textMessage.getPropertyNames();
         while (en.hasMoreElements()) {
             final String element = en.nextElement().toString();
-            headers.put(element, textMessage.getStringProperty(element));
+            if (!JmsMessagePayload.isPayloadProperty(element)) {
+                headers.put(element, textMessage.getStringProperty(element));
+            }
         }
         // the same as MessageProperties.PERSISTENT_TEXT_PLAIN + added jms properties
         return new AMQP.BasicProperties.Builder()
                 .headers(headers)
-                .contentType("text/plain")
+                .contentType(contentType)
                 .deliveryMode(DELIVERY_MODE)
                 .priority(PRIORITY)
                 .build();
@@ -0,0 +1,66 @@
+package com.spaniard.jms.client.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class JmsBulkRequestTest {
+
+    private static final long TIMEOUT = 10000;
+
+    @Test
+    public void lastPollDoesNotWaitForCompletion() throws Exception {
+        final CountDownLatch released = new CountDownLatch(1);
+        // completion is never run
+        final JmsBulkRequest<String> bulk = bulk(runnable -> { }, released);
+
+        bulk.onReply("2", "two", null);
+        bulk.onReply("1", "one", null);
+
+        final long start = System.nanoTime();
+        assertEquals(1, bulk.poll().getIndex());
+        assertEquals(0, bulk.poll().getIndex());
+        assertNull(bulk.poll());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < TIMEOUT / 2);
+        assertFalse(bulk.isDone());
+        assertTrue(released.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void streamEndsWhenEveryRequestHasItsResult() throws Exception {
+        final JmsBulkRequest<String> bulk = bulk(runnable -> { }, new CountDownLatch(1));
+
+        bulk.onReply("1", "one", null);
+        bulk.onReply("2", null, new IllegalStateException("failed"));
+
+        assertEquals("one,failed", bulk.stream()
+                .map(result -> result.isReplied() ? result.getReply() : result.getCause().getMessage())
+                .collect(Collectors.joining(",")));
+    }
+
+    @Test
+    public void closeFailsRequestsWithoutReply() throws Exception {
+        final JmsBulkRequest<String> bulk = bulk(null, new CountDownLatch(1));
+        bulk.onReply("1", "one", null);
+
+        bulk.close();
+
+        assertEquals(2, bulk.stream().count());
+        assertNull(bulk.poll());
+        assertFalse(bulk.toCompletionStage().toCompletableFuture().get().get(1).isReplied());
+    }
+
+    private static JmsBulkRequest<String> bulk(final Executor callbackExecutor, final CountDownLatch released) {
+        return new JmsBulkRequest<>(Arrays.asList("first", "second"), Arrays.asList("1", "2"), TIMEOUT, String.class,
+                null, null, callbackExecutor, null, released::countDown);
+    }
+}
@@ -0,0 +1,59 @@
+package com.spaniard.jms.client.core;
+
+import com.spaniard.jms.client.core.support.balancer.JmsBroker;
+import com.spaniard.jms.client.core.support.balancer.JmsBrokerBalancer;
+import com.spaniard.jms.client.core.support.breaker.JmsCircuitBreaker;
+import com.spaniard.jms.client.core.support.breaker.JmsCircuitOpenException;
+import com.spaniard.jms.client.exception.JmsException;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.junit.Test;
+
+import javax.jms.ConnectionFactory;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JmsMessageSenderTest {
+
+    @Test
+    public void brokerIsReleasedWhenItsCircuitIsOpen() throws Exception {
+        final ConnectionFactory connectionFactory = connectionFactory();
+        final JmsBroker broker = new JmsBroker();
+        broker.setConnectionFactory(connectionFactory);
+        final JmsBrokerBalancer brokerBalancer = new JmsBrokerBalancer();
+        brokerBalancer.setBrokers(Collections.singletonList(broker));
+        final JmsCircuitBreaker circuitBreaker = new JmsCircuitBreaker();
+        circuitBreaker.setWindowSize(2);
+        circuitBreaker.setMinimumCalls(2);
+        for (int i = 0; i < 2; i++) {
+            circuitBreaker.acquire(connectionFactory, null);
+            circuitBreaker.onFailure(connectionFactory, null);
+        }
+        final JmsMessageSender sender = new JmsMessageSender();
+        sender.setBrokerBalancer(brokerBalancer);
+        sender.setCircuitBreaker(circuitBreaker);
+
+        try {
+            sender.send(new ActiveMQQueue("guarded"), "message");
+            fail("JmsException expected");
+        } catch (JmsException expected) {
+            assertTrue(expected.getCause() instanceof JmsCircuitOpenException);
+        }
+
+        assertEquals(0, broker.getOutstanding());
+        assertEquals(1, broker.getFailed());
+    }
+
+    // connection is never opened while the circuit is open
+    private static ConnectionFactory connectionFactory() {
+        return (ConnectionFactory) Proxy.newProxyInstance(JmsMessageSenderTest.class.getClassLoader(),
+                new Class<?>[]{ConnectionFactory.class}, (proxy, method, args) -> {
+                    if ("hashCode".equals(method.getName())) return System.identityHashCode(proxy);
+                    if ("equals".equals(method.getName())) return proxy == args[0];
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
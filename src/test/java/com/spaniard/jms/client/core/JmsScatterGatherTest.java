@@ -0,0 +1,74 @@
+package com.spaniard.jms.client.core;
+
+import org.apache.activemq.command.ActiveMQQueue;
+import org.junit.Test;
+
+import javax.jms.Destination;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class JmsScatterGatherTest {
+
+    private static final long TIMEOUT = 10000;
+
+    @Test
+    public void lastPollDoesNotWaitForCompletion() throws Exception {
+        final CountDownLatch released = new CountDownLatch(1);
+        // completion is never run
+        final JmsScatterGather<String> gather = gather(runnable -> { }, released);
+
+        gather.onReply("1", "one", null);
+        gather.onReply("2", "two", null);
+
+        final long start = System.nanoTime();
+        assertEquals("one", gather.poll().getReply());
+        assertEquals("two", gather.poll().getReply());
+        assertNull(gather.poll());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < TIMEOUT / 2);
+        assertFalse(gather.isDone());
+        assertTrue(released.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void streamEndsWhenAllDestinationsHaveReplied() throws Exception {
+        final JmsScatterGather<String> gather = gather(runnable -> { }, new CountDownLatch(1));
+
+        gather.onReply("2", "two", null);
+        gather.onReply("1", null, new IllegalStateException("failed"));
+
+        assertEquals("two,failed", gather.stream()
+                .map(result -> result.isReplied() ? result.getReply() : result.getCause().getMessage())
+                .collect(Collectors.joining(",")));
+    }
+
+    @Test
+    public void pollReturnsNullAfterClose() throws Exception {
+        final CountDownLatch released = new CountDownLatch(1);
+        final JmsScatterGather<String> gather = gather(null, released);
+        gather.onReply("1", "one", null);
+
+        gather.close();
+
+        assertEquals("one", gather.poll().getReply());
+        assertNull(gather.poll());
+        assertEquals(1, gather.toCompletionStage().toCompletableFuture().get().size());
+        assertEquals(0, released.getCount());
+    }
+
+    private static JmsScatterGather<String> gather(final Executor callbackExecutor, final CountDownLatch released) {
+        final Map<String, Destination> destinations = new LinkedHashMap<>();
+        destinations.put("1", new ActiveMQQueue("first"));
+        destinations.put("2", new ActiveMQQueue("second"));
+        return new JmsScatterGather<>(destinations, TIMEOUT, String.class, null, null, callbackExecutor, null,
+                released::countDown);
+    }
+}
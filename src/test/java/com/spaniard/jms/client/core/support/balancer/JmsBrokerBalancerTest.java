@@ -0,0 +1,72 @@
+package com.spaniard.jms.client.core.support.balancer;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class JmsBrokerBalancerTest {
+
+    @Test
+    public void leastOutstandingBrokerIsChosen() {
+        final JmsBroker first = broker("first");
+        final JmsBroker second = broker("second");
+        final JmsBrokerBalancer balancer = balancer(first, second);
+
+        final JmsBroker busy = balancer.acquire();
+        final JmsBroker idle = balancer.acquire();
+
+        assertEquals(1, first.getOutstanding());
+        assertEquals(1, second.getOutstanding());
+        balancer.release(busy, false);
+        assertSame(busy, balancer.acquire());
+        balancer.release(idle, false);
+    }
+
+    @Test
+    public void channelIsNotCountedAsOutstanding() {
+        final JmsBroker first = broker("first");
+        final JmsBroker second = broker("second");
+        final JmsBrokerBalancer balancer = balancer(first, second);
+
+        final JmsBroker channelBroker = balancer.choose();
+
+        assertEquals(0, first.getOutstanding() + second.getOutstanding());
+        balancer.report(channelBroker, false);
+        assertEquals(0, channelBroker.getOutstanding());
+        assertEquals(1, channelBroker.getCompleted());
+    }
+
+    @Test
+    public void failuresOfChannelTakeBrokerOutOfRotation() {
+        final JmsBroker first = broker("first");
+        final JmsBroker second = broker("second");
+        final JmsBrokerBalancer balancer = balancer(first, second);
+        balancer.setFailureThreshold(2);
+
+        balancer.report(first, true);
+        balancer.report(first, true);
+
+        assertEquals(1, balancer.getHealthyBrokers());
+        assertEquals(1, first.getEjections());
+        for (int i = 0; i < 3; i++) {
+            assertSame(second, balancer.choose());
+        }
+    }
+
+    private static JmsBrokerBalancer balancer(final JmsBroker... brokers) {
+        final JmsBrokerBalancer balancer = new JmsBrokerBalancer();
+        balancer.setBrokers(Arrays.asList(brokers));
+        return balancer;
+    }
+
+    private static JmsBroker broker(final String name) {
+        final JmsBroker broker = new JmsBroker();
+        broker.setName(name);
+        broker.setConnectionFactory(new ActiveMQConnectionFactory("vm://" + name + "?create=false"));
+        return broker;
+    }
+}
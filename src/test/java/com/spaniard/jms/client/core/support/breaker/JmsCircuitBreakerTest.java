@@ -0,0 +1,183 @@
+package com.spaniard.jms.client.core.support.breaker;
+
+import org.apache.activemq.command.ActiveMQQueue;
+import org.junit.Test;
+
+import javax.jms.Destination;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class JmsCircuitBreakerTest {
+
+    private static final Object FACTORY = new Object();
+    private static final Destination QUEUE = new ActiveMQQueue("guarded");
+
+    @Test
+    public void circuitOpensWhenFailureRateReachesThreshold() throws Exception {
+        final JmsCircuitBreaker breaker = breaker();
+
+        call(breaker, true);
+        call(breaker, true);
+        call(breaker, false);
+        assertEquals(JmsCircuitBreaker.State.CLOSED, breaker.getState(FACTORY, QUEUE));
+        call(breaker, false);
+
+        assertEquals(JmsCircuitBreaker.State.OPEN, breaker.getState(FACTORY, QUEUE));
+        assertEquals(1, breaker.getTrips());
+        assertEquals(1, breaker.getOpenCircuits());
+    }
+
+    @Test
+    public void circuitStaysClosedBeforeMinimumCalls() throws Exception {
+        final JmsCircuitBreaker breaker = breaker();
+        breaker.setWindowSize(8);
+        breaker.setMinimumCalls(5);
+
+        for (int i = 0; i < 4; i++) {
+            call(breaker, false);
+        }
+        assertEquals(JmsCircuitBreaker.State.CLOSED, breaker.getState(FACTORY, QUEUE));
+        call(breaker, false);
+        assertEquals(JmsCircuitBreaker.State.OPEN, breaker.getState(FACTORY, QUEUE));
+    }
+
+    @Test
+    public void slowCallsOpenCircuit() throws Exception {
+        final JmsCircuitBreaker breaker = breaker();
+        breaker.setSlowCallDuration(10);
+
+        for (int i = 0; i < 2; i++) {
+            breaker.acquire(FACTORY, QUEUE);
+            breaker.onSuccess(FACTORY, QUEUE, TimeUnit.MILLISECONDS.toNanos(20));
+        }
+
+        assertEquals(JmsCircuitBreaker.State.OPEN, breaker.getState(FACTORY, QUEUE));
+    }
+
+    @Test
+    public void ignoredCallsAreNotCounted() throws Exception {
+        final JmsCircuitBreaker breaker = breaker();
+
+        for (int i = 0; i < 4; i++) {
+            breaker.acquire(FACTORY, QUEUE);
+            breaker.onIgnored(FACTORY, QUEUE);
+        }
+
+        assertEquals(JmsCircuitBreaker.State.CLOSED, breaker.getState(FACTORY, QUEUE));
+    }
+
+    @Test
+    public void openCircuitRejectsCalls() throws Exception {
+        final JmsCircuitBreaker breaker = trippedBreaker(60000);
+
+        assertRejected(breaker);
+        try {
+            breaker.check(FACTORY, QUEUE);
+            fail("JmsCircuitOpenException expected");
+        } catch (JmsCircuitOpenException expected) {
+            // circuit is open
+        }
+        // circuits are per destination
+        breaker.acquire(FACTORY, new ActiveMQQueue("other"));
+        breaker.acquire(new Object(), QUEUE);
+        assertEquals(2, breaker.getRejectedCalls());
+    }
+
+    @Test
+    public void successfulProbeClosesCircuit() throws Exception {
+        final JmsCircuitBreaker breaker = trippedBreaker(50);
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        breaker.check(FACTORY, QUEUE);
+        breaker.acquire(FACTORY, QUEUE);
+        assertEquals(JmsCircuitBreaker.State.HALF_OPEN, breaker.getState(FACTORY, QUEUE));
+        // only one trial call is let through
+        assertRejected(breaker);
+        breaker.onSuccess(FACTORY, QUEUE, 0);
+
+        assertEquals(JmsCircuitBreaker.State.CLOSED, breaker.getState(FACTORY, QUEUE));
+        assertEquals(0, breaker.getOpenCircuits());
+        // window is cleared, a single failure does not reach minimum calls
+        call(breaker, false);
+        assertEquals(JmsCircuitBreaker.State.CLOSED, breaker.getState(FACTORY, QUEUE));
+    }
+
+    @Test
+    public void failedProbeOpensCircuitAgain() throws Exception {
+        final JmsCircuitBreaker breaker = trippedBreaker(50);
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        breaker.acquire(FACTORY, QUEUE);
+        breaker.onFailure(FACTORY, QUEUE);
+
+        assertEquals(JmsCircuitBreaker.State.OPEN, breaker.getState(FACTORY, QUEUE));
+        assertEquals(2, breaker.getTrips());
+        assertRejected(breaker);
+    }
+
+    @Test
+    public void ignoredProbeIsGivenBack() throws Exception {
+        final JmsCircuitBreaker breaker = trippedBreaker(50);
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        breaker.acquire(FACTORY, QUEUE);
+        breaker.onIgnored(FACTORY, QUEUE);
+        assertEquals(JmsCircuitBreaker.State.HALF_OPEN, breaker.getState(FACTORY, QUEUE));
+
+        breaker.acquire(FACTORY, QUEUE);
+        breaker.onSuccess(FACTORY, QUEUE, 0);
+        assertEquals(JmsCircuitBreaker.State.CLOSED, breaker.getState(FACTORY, QUEUE));
+    }
+
+    @Test
+    public void allProbesShouldSucceed() throws Exception {
+        final JmsCircuitBreaker breaker = trippedBreaker(50);
+        breaker.setHalfOpenProbes(2);
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        breaker.acquire(FACTORY, QUEUE);
+        breaker.acquire(FACTORY, QUEUE);
+        assertRejected(breaker);
+        breaker.onSuccess(FACTORY, QUEUE, 0);
+        assertEquals(JmsCircuitBreaker.State.HALF_OPEN, breaker.getState(FACTORY, QUEUE));
+        breaker.onFailure(FACTORY, QUEUE);
+
+        assertEquals(JmsCircuitBreaker.State.OPEN, breaker.getState(FACTORY, QUEUE));
+    }
+
+    private static JmsCircuitBreaker breaker() {
+        final JmsCircuitBreaker breaker = new JmsCircuitBreaker();
+        breaker.setWindowSize(4);
+        breaker.setMinimumCalls(2);
+        return breaker;
+    }
+
+    private static JmsCircuitBreaker trippedBreaker(final long openDuration) throws JmsCircuitOpenException {
+        final JmsCircuitBreaker breaker = breaker();
+        breaker.setOpenDuration(openDuration);
+        call(breaker, false);
+        call(breaker, false);
+        assertEquals(JmsCircuitBreaker.State.OPEN, breaker.getState(FACTORY, QUEUE));
+        return breaker;
+    }
+
+    private static void call(final JmsCircuitBreaker breaker, final boolean success) throws JmsCircuitOpenException {
+        breaker.acquire(FACTORY, QUEUE);
+        if (success) {
+            breaker.onSuccess(FACTORY, QUEUE, 0);
+        } else {
+            breaker.onFailure(FACTORY, QUEUE);
+        }
+    }
+
+    private static void assertRejected(final JmsCircuitBreaker breaker) {
+        try {
+            breaker.acquire(FACTORY, QUEUE);
+            fail("JmsCircuitOpenException expected");
+        } catch (JmsCircuitOpenException expected) {
+            // circuit is open
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.spaniard.jms.client.core.support.cache;
+
+import com.spaniard.jms.client.exception.JmsException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JmsRequestCoalescerTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void waiterSharesReplyOfLeader() throws Exception {
+        final JmsRequestCoalescer coalescer = coalescer();
+        final CountDownLatch sent = new CountDownLatch(1);
+        final CountDownLatch replied = new CountDownLatch(1);
+        final AtomicInteger requests = new AtomicInteger();
+
+        final Future<String> leader = executor.submit(() -> coalescer.execute(key("a"), String.class, 5, TimeUnit.SECONDS, () -> {
+            requests.incrementAndGet();
+            sent.countDown();
+            await(replied);
+            return "reply";
+        }));
+        assertTrue(sent.await(5, TimeUnit.SECONDS));
+        final Future<String> waiter = executor.submit(() -> coalescer.execute(key("a"), String.class, 5, TimeUnit.SECONDS, () -> {
+            requests.incrementAndGet();
+            return "own reply";
+        }));
+        awaitCoalesced(coalescer, 1);
+        replied.countDown();
+
+        assertEquals("reply", leader.get(5, TimeUnit.SECONDS));
+        assertSame(leader.get(), waiter.get(5, TimeUnit.SECONDS));
+        assertEquals(1, requests.get());
+        assertEquals(1, coalescer.getSentRequests());
+        assertEquals(0, coalescer.getInFlight());
+    }
+
+    @Test
+    public void waiterFailsWithCauseOfLeader() throws Exception {
+        final JmsRequestCoalescer coalescer = coalescer();
+        final CountDownLatch sent = new CountDownLatch(1);
+        final CountDownLatch failed = new CountDownLatch(1);
+
+        final Future<String> leader = executor.submit(() -> coalescer.execute(key("a"), String.class, 5, TimeUnit.SECONDS, () -> {
+            sent.countDown();
+            await(failed);
+            throw new JmsException("No reply received");
+        }));
+        assertTrue(sent.await(5, TimeUnit.SECONDS));
+        final Future<String> waiter = executor.submit(() -> coalescer.execute(key("a"), String.class, 5, TimeUnit.SECONDS,
+                () -> "own reply"));
+        awaitCoalesced(coalescer, 1);
+        failed.countDown();
+
+        assertFailed(leader, "No reply received");
+        assertFailed(waiter, "No reply received");
+        assertEquals(0, coalescer.getInFlight());
+    }
+
+    @Test
+    public void waiterTimesOutWhileLeaderIsInFlight() throws Exception {
+        final JmsRequestCoalescer coalescer = coalescer();
+        final CountDownLatch sent = new CountDownLatch(1);
+        final CountDownLatch replied = new CountDownLatch(1);
+
+        final Future<String> leader = executor.submit(() -> coalescer.execute(key("a"), String.class, 5, TimeUnit.SECONDS, () -> {
+            sent.countDown();
+            await(replied);
+            return "reply";
+        }));
+        assertTrue(sent.await(5, TimeUnit.SECONDS));
+        try {
+            coalescer.execute(key("a"), String.class, 50, TimeUnit.MILLISECONDS, () -> "own reply");
+            fail("JmsException expected");
+        } catch (JmsException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        // timeout of the waiter does not affect the leader
+        assertEquals(1, coalescer.getInFlight());
+        replied.countDown();
+        assertEquals("reply", leader.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void nextRequestIsSentAgain() throws Exception {
+        final JmsRequestCoalescer coalescer = coalescer();
+
+        assertEquals("first", coalescer.execute(key("a"), String.class, 1, TimeUnit.SECONDS, () -> "first"));
+        assertEquals("second", coalescer.execute(key("a"), String.class, 1, TimeUnit.SECONDS, () -> "second"));
+        assertEquals(2, coalescer.getSentRequests());
+        assertEquals(0, coalescer.getCoalescedRequests());
+    }
+
+    @Test
+    public void failedLeaderIsNotKeptInFlight() throws Exception {
+        final JmsRequestCoalescer coalescer = coalescer();
+
+        try {
+            coalescer.execute(key("a"), String.class, 1, TimeUnit.SECONDS, () -> {
+                throw new JmsException("Destination is not set");
+            });
+            fail("JmsException expected");
+        } catch (JmsException expected) {
+            // the leader gets its own failure
+        }
+        assertEquals("reply", coalescer.execute(key("a"), String.class, 1, TimeUnit.SECONDS, () -> "reply"));
+    }
+
+    @Test
+    public void keyFunctionDoesNotMarshallRequest() {
+        final JmsRequestCoalescer coalescer = new JmsRequestCoalescer();
+        final Function<Object, ?> keyFunction = request -> ((Query) request).id;
+        coalescer.setKeyFunctions(Collections.singletonMap(Query.class, keyFunction));
+
+        assertTrue(coalescer.supports(new Query("q")));
+        assertFalse(coalescer.supports("text"));
+        assertEquals(coalescer.key(new Query("q"), String.class, JmsRequestCoalescerTest::unexpectedMarshalling),
+                coalescer.key(new Query("q"), String.class, JmsRequestCoalescerTest::unexpectedMarshalling));
+        // replies of different classes are not shared
+        assertNotEquals(coalescer.key(new Query("q"), String.class, JmsRequestCoalescerTest::unexpectedMarshalling),
+                coalescer.key(new Query("q"), Integer.class, JmsRequestCoalescerTest::unexpectedMarshalling));
+    }
+
+    @Test
+    public void requestKeyIsHashOfMarshalledRequest() {
+        final JmsRequestCoalescer coalescer = coalescer();
+
+        assertTrue(coalescer.supports(new Query("q")));
+        assertEquals(key("a"), coalescer.key(new Query("q"), String.class, () -> key("a")));
+        assertNotEquals(key("a"), key("b"));
+        assertNotEquals(key("a"), JmsRequestKey.of(Query.class, Integer.class, "a".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static JmsRequestCoalescer coalescer() {
+        final JmsRequestCoalescer coalescer = new JmsRequestCoalescer();
+        coalescer.setRequestClasses(Collections.singleton(Query.class));
+        return coalescer;
+    }
+
+    private static JmsRequestKey key(final String marshalled) {
+        return JmsRequestKey.of(Query.class, String.class, marshalled.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static JmsRequestKey unexpectedMarshalling() {
+        throw new AssertionError("Request should not be marshalled");
+    }
+
+    private static void await(final CountDownLatch latch) throws JmsException {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new JmsException(e.getMessage(), e);
+        }
+    }
+
+    // waiter is counted before it starts waiting
+    private static void awaitCoalesced(final JmsRequestCoalescer coalescer, final long expected) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (coalescer.getCoalescedRequests() < expected && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+        assertEquals(expected, coalescer.getCoalescedRequests());
+    }
+
+    private static void assertFailed(final Future<String> future, final String message) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("JmsException expected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof JmsException);
+            assertEquals(message, e.getCause().getMessage());
+        }
+    }
+
+    private static final class Query {
+        private final String id;
+
+        private Query(String id) {
+            this.id = id;
+        }
+    }
+}
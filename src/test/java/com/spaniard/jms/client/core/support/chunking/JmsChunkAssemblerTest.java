@@ -0,0 +1,244 @@
+package com.spaniard.jms.client.core.support.chunking;
+
+import com.spaniard.jms.client.core.support.JmsEncodedPayload;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.junit.Test;
+import org.springframework.util.StreamUtils;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Session;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import static com.spaniard.jms.client.core.support.chunking.JmsPayloadChunker.CHUNK_COUNT_PROPERTY;
+import static com.spaniard.jms.client.core.support.chunking.JmsPayloadChunker.GROUP_ID_PROPERTY;
+import static com.spaniard.jms.client.core.support.chunking.JmsPayloadChunker.GROUP_SEQUENCE_PROPERTY;
+import static com.spaniard.jms.client.core.support.chunking.JmsPayloadChunker.LAST_SEQUENCE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class JmsChunkAssemblerTest {
+
+    @Test
+    public void outOfOrderChunksAreReassembledInSequence() throws Exception {
+        final JmsChunkAssembler assembler = new JmsChunkAssembler();
+
+        assertNull(assembler.accept(chunk("g", 3, 3, "ccc")));
+        assertNull(assembler.accept(chunk("g", 1, 3, "aaa")));
+        final JmsChunkGroup group = assembler.accept(chunk("g", 2, 3, "bbb"));
+
+        assertNotNull(group);
+        assertEquals("aaabbbccc", payload(group));
+        assertFalse(group.isCompressed());
+        assertEquals(1, assembler.getCompletedGroups());
+        assertEquals(0, assembler.getPendingGroups());
+        assertEquals(0, assembler.getPendingBytes());
+    }
+
+    @Test
+    public void interleavedGroupsAreReassembledApart() throws Exception {
+        final JmsChunkAssembler assembler = new JmsChunkAssembler();
+
+        assertNull(assembler.accept(chunk("a", 1, 2, "a1")));
+        assertNull(assembler.accept(chunk("b", 2, 2, "b2")));
+        assertEquals("b1b2", payload(assembler.accept(chunk("b", 1, 2, "b1"))));
+        assertEquals("a1a2", payload(assembler.accept(chunk("a", 2, 2, "a2"))));
+        assertEquals(2, assembler.getCompletedGroups());
+    }
+
+    @Test
+    public void duplicateChunkIsIgnored() throws Exception {
+        final JmsChunkAssembler assembler = new JmsChunkAssembler();
+
+        assertNull(assembler.accept(chunk("g", 1, 2, "aaa")));
+        // redelivered chunk
+        assertNull(assembler.accept(chunk("g", 1, 2, "aaa")));
+        final JmsChunkGroup group = assembler.accept(chunk("g", 2, 2, "bbb"));
+
+        assertEquals("aaabbb", payload(group));
+        assertEquals(1, assembler.getDuplicateChunks());
+        assertEquals(0, assembler.getPendingBytes());
+    }
+
+    @Test
+    public void invalidChunksAreRejected() throws Exception {
+        final JmsChunkAssembler assembler = new JmsChunkAssembler();
+
+        assertNull(assembler.accept(chunk("g", 0, 2, "aaa")));
+        assertNull(assembler.accept(chunk("g", 3, 2, "aaa")));
+        assertNull(assembler.accept(chunk("g", 1, 0, "aaa")));
+
+        assertEquals(3, assembler.getRejectedGroups());
+        assertEquals(0, assembler.getPendingGroups());
+    }
+
+    @Test
+    public void chunksDisagreeingOnCountDropTheGroup() throws Exception {
+        final JmsChunkAssembler assembler = new JmsChunkAssembler();
+
+        assertNull(assembler.accept(chunk("g", 1, 2, "aaa")));
+        assertNull(assembler.accept(chunk("g", 2, 3, "bbb")));
+        assertNull(assembler.accept(chunk("g", 2, 2, "bbb")));
+
+        assertEquals(1, assembler.getRejectedGroups());
+        assertEquals(0, assembler.getCompletedGroups());
+        assertEquals(0, assembler.getPendingBytes());
+    }
+
+    @Test
+    public void groupExceedingMaxGroupBytesIsDroppedAndLateChunksAreDiscarded() throws Exception {
+        final JmsChunkAssembler assembler = new JmsChunkAssembler();
+        assembler.setMaxGroupBytes(10);
+
+        assertNull(assembler.accept(chunk("g", 1, 3, "aaaaaaaa")));
+        assertNull(assembler.accept(chunk("g", 2, 3, "bbbbbbbb")));
+        // tombstone discards late chunks, the group is never completed
+        assertNull(assembler.accept(chunk("g", 3, 3, "cc")));
+        assertNull(assembler.accept(chunk("g", 1, 3, "aaaaaaaa")));
+
+        assertEquals(1, assembler.getRejectedGroups());
+        assertEquals(0, assembler.getCompletedGroups());
+        assertEquals(1, assembler.getPendingGroups());
+        assertEquals(0, assembler.getPendingBytes());
+    }
+
+    @Test
+    public void pendingBytesCapDropsTheGroupWhichExceedsIt() throws Exception {
+        final JmsChunkAssembler assembler = new JmsChunkAssembler();
+        assembler.setMaxPendingBytes(20);
+
+        assertNull(assembler.accept(chunk("a", 1, 2, "aaaaaaaaaaaaaaaa")));
+        assertNull(assembler.accept(chunk("b", 1, 2, "bbbbbbbb")));
+        assertEquals(16, assembler.getPendingBytes());
+        // group `a` is not affected and its bytes are released on completion
+        assertEquals("aaaaaaaaaaaaaaaaaa", payload(assembler.accept(chunk("a", 2, 2, "aa"))));
+        assertNull(assembler.accept(chunk("b", 2, 2, "bb")));
+
+        assertEquals(1, assembler.getRejectedGroups());
+        assertEquals(1, assembler.getCompletedGroups());
+        assertEquals(0, assembler.getPendingBytes());
+    }
+
+    @Test
+    public void incompleteGroupExpires() throws Exception {
+        final JmsChunkAssembler assembler = new JmsChunkAssembler();
+        assembler.setGroupTimeout(100);
+
+        assertNull(assembler.accept(chunk("g", 1, 2, "aaa")));
+        Thread.sleep(150);
+        // groups are swept on the next chunk
+        assertNull(assembler.accept(chunk("other", 1, 2, "x")));
+
+        assertEquals(1, assembler.getExpiredGroups());
+        assertEquals(1, assembler.getPendingGroups());
+        assertEquals(1, assembler.getPendingBytes());
+        // the late chunk starts a new group
+        assertNull(assembler.accept(chunk("g", 2, 2, "bbb")));
+        assertEquals(0, assembler.getCompletedGroups());
+    }
+
+    @Test
+    public void tombstoneExpiresAndTheGroupIdCouldBeUsedAgain() throws Exception {
+        final JmsChunkAssembler assembler = new JmsChunkAssembler();
+        assembler.setGroupTimeout(100);
+        assembler.setMaxGroupBytes(5);
+
+        assertNull(assembler.accept(chunk("g", 1, 2, "aaaaaa")));
+        assertEquals(1, assembler.getRejectedGroups());
+        Thread.sleep(150);
+        assertNull(assembler.accept(chunk("other", 1, 2, "x")));
+
+        assertNull(assembler.accept(chunk("g", 1, 2, "aa")));
+        assertEquals("aabb", payload(assembler.accept(chunk("g", 2, 2, "bb"))));
+        // expired tombstone is not an expired group
+        assertEquals(0, assembler.getExpiredGroups());
+    }
+
+    @Test
+    public void compressedChunksMakeCompressedGroup() throws Exception {
+        final JmsChunkAssembler assembler = new JmsChunkAssembler();
+        final BytesMessage first = chunk("g", 1, 2, "aa");
+        final BytesMessage second = chunk("g", 2, 2, "bb");
+        first.setStringProperty("contentEncoding", "deflate");
+        second.setStringProperty("contentEncoding", "deflate");
+
+        assertNull(assembler.accept(first));
+
+        assertTrue(assembler.accept(second).isCompressed());
+    }
+
+    @Test
+    public void copyHasTheSameSettingsAndNoState() throws Exception {
+        final JmsChunkAssembler assembler = new JmsChunkAssembler();
+        assembler.setMaxGroupBytes(5);
+        assertNull(assembler.accept(chunk("g", 1, 2, "aa")));
+
+        final JmsChunkAssembler copy = assembler.copy();
+
+        assertEquals(0, copy.getPendingGroups());
+        assertNull(copy.accept(chunk("g", 1, 2, "aaaaaa")));
+        assertEquals(1, copy.getRejectedGroups());
+        assertEquals(0, assembler.getRejectedGroups());
+    }
+
+    @Test
+    public void lastChunkClosesTheGroup() throws Exception {
+        final JmsPayloadChunker chunker = new JmsPayloadChunker();
+        chunker.setChunkSize(4);
+        final List<BytesMessage> chunks = chunker.createChunks(session(),
+                JmsEncodedPayload.binary("aaaabbbbcc".getBytes(StandardCharsets.UTF_8), false));
+
+        assertEquals(3, chunks.size());
+        assertEquals(1, chunks.get(0).getIntProperty(GROUP_SEQUENCE_PROPERTY));
+        assertEquals(2, chunks.get(1).getIntProperty(GROUP_SEQUENCE_PROPERTY));
+        assertEquals(LAST_SEQUENCE, chunks.get(2).getIntProperty(GROUP_SEQUENCE_PROPERTY));
+
+        final JmsChunkAssembler assembler = new JmsChunkAssembler();
+        Collections.reverse(chunks);
+        JmsChunkGroup group = null;
+        for (BytesMessage chunk : chunks) {
+            chunk.reset();
+            group = assembler.accept(chunk);
+        }
+        assertEquals("aaaabbbbcc", payload(group));
+    }
+
+    @Test
+    public void chunkIsRecognizedByItsCountProperty() throws Exception {
+        assertTrue(JmsChunkAssembler.isChunk(chunk("g", 1, 1, "a")));
+        assertFalse(JmsChunkAssembler.isChunk(new ActiveMQBytesMessage()));
+    }
+
+    private static BytesMessage chunk(final String groupId, final int sequence, final int count, final String body)
+            throws JMSException {
+        final ActiveMQBytesMessage chunk = new ActiveMQBytesMessage();
+        chunk.writeBytes(body.getBytes(StandardCharsets.UTF_8));
+        chunk.setStringProperty(GROUP_ID_PROPERTY, groupId);
+        // the same sequence as the chunker sets
+        chunk.setIntProperty(GROUP_SEQUENCE_PROPERTY, sequence == count ? LAST_SEQUENCE : sequence);
+        chunk.setIntProperty(CHUNK_COUNT_PROPERTY, count);
+        return chunk;
+    }
+
+    // creates messages without a broker
+    private static Session session() {
+        return (Session) Proxy.newProxyInstance(JmsChunkAssemblerTest.class.getClassLoader(), new Class<?>[]{Session.class},
+                (proxy, method, args) -> {
+                    if ("createBytesMessage".equals(method.getName())) {
+                        return new ActiveMQBytesMessage();
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static String payload(final JmsChunkGroup group) throws IOException {
+        return StreamUtils.copyToString(group.openStream(), StandardCharsets.UTF_8);
+    }
+}
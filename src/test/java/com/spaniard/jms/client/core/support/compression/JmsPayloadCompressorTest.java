@@ -0,0 +1,209 @@
+package com.spaniard.jms.client.core.support.compression;
+
+import com.spaniard.jms.client.core.Strategy;
+import com.spaniard.jms.client.core.support.JmsEncodedPayload;
+import com.spaniard.jms.client.core.support.JmsMessagePayload;
+import com.spaniard.jms.client.exception.JmsException;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.junit.Test;
+import org.springframework.util.StreamUtils;
+
+import javax.jms.BytesMessage;
+import javax.jms.Message;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.spaniard.jms.client.core.support.compression.JmsPayloadCompressor.CONTENT_ENCODING_PROPERTY;
+import static com.spaniard.jms.client.core.support.compression.JmsPayloadCompressor.DEFLATE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JmsPayloadCompressorTest {
+
+    private static final String ORDER = "<order><id>42</id><customer>ACME Corporation</customer><status>NEW</status>"
+            + "<lines><line><sku>A-1</sku><quantity>10</quantity></line></lines></order>";
+
+    @Test
+    public void payloadBelowThresholdIsNotCompressed() throws Exception {
+        final JmsPayloadCompressor compressor = compressor(1024);
+
+        final JmsEncodedPayload payload = encode(ORDER, compressor);
+
+        assertTrue(payload.isText());
+        assertFalse(payload.isCompressed());
+        assertEquals(1, compressor.getSkippedMessages());
+        assertEquals(0, compressor.getCompressedMessages());
+        assertEquals(1.0, compressor.getCompressionRatio(), 0);
+    }
+
+    @Test
+    public void payloadAboveThresholdRoundTrips() throws Exception {
+        final JmsPayloadCompressor compressor = compressor(256);
+        final String orders = repeat(ORDER, 20);
+
+        final JmsEncodedPayload payload = encode(orders, compressor);
+
+        assertTrue(payload.isCompressed());
+        assertTrue(payload.length() < orders.length() / 4);
+        assertEquals(orders, inflate(compressor, payload.getBytes()));
+        assertEquals(1, compressor.getCompressedMessages());
+        assertEquals(1, compressor.getDecompressedMessages());
+        assertTrue(compressor.getCompressionRatio() < 0.25);
+    }
+
+    @Test
+    public void incompressiblePayloadIsSentAsIs() throws Exception {
+        final JmsPayloadCompressor compressor = compressor(16);
+        final byte[] random = new byte[4096];
+        new Random(7).nextBytes(random);
+
+        assertNull(compressor.compressIfSmaller(random));
+        final JmsEncodedPayload payload = JmsMessagePayload.compress(JmsEncodedPayload.binary(random, false), compressor);
+
+        assertFalse(payload.isCompressed());
+        assertArrayEquals(random, payload.getBytes());
+        assertEquals(2, compressor.getIncompressibleMessages());
+        assertEquals(0, compressor.getCompressedMessages());
+    }
+
+    @Test
+    public void maxRatioDecidesWhetherCompressionPays() throws Exception {
+        final JmsPayloadCompressor compressor = compressor(16);
+        final byte[] orders = repeat(ORDER, 20).getBytes(StandardCharsets.UTF_8);
+        final int compressedLength = compressor.compress(orders).length;
+
+        compressor.setMaxRatio((double) compressedLength / orders.length / 2);
+        assertNull(compressor.compressIfSmaller(orders));
+        compressor.setMaxRatio((double) compressedLength / orders.length);
+        assertNotNull(compressor.compressIfSmaller(orders));
+    }
+
+    @Test
+    public void compressedMessageIsMarkedAndInflatedOnRead() throws Exception {
+        final JmsPayloadCompressor compressor = compressor(256);
+        final String orders = repeat(ORDER, 20);
+
+        final Message message = JmsMessagePayload.createMessage(session(), encode(orders, compressor));
+        ((ActiveMQBytesMessage) message).reset();
+
+        assertTrue(message instanceof BytesMessage);
+        assertEquals(DEFLATE, message.getStringProperty(CONTENT_ENCODING_PROPERTY));
+        assertTrue(JmsMessagePayload.isCompressed(message));
+        assertEquals(orders, new String(JmsMessagePayload.readPayload(message, compressor), StandardCharsets.UTF_8));
+        // receiver without compressor inflates the payload as well
+        ((ActiveMQBytesMessage) message).reset();
+        assertEquals(orders, new String(JmsMessagePayload.readPayload(message, null), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void uncompressedMessageIsNotMarked() throws Exception {
+        final Message message = JmsMessagePayload.createMessage(session(), encode(ORDER, compressor(1024)));
+
+        assertTrue(message instanceof TextMessage);
+        assertNull(message.getStringProperty(CONTENT_ENCODING_PROPERTY));
+        assertFalse(JmsMessagePayload.isCompressed(message));
+    }
+
+    @Test
+    public void corruptedBodyIsRejected() throws Exception {
+        final JmsPayloadCompressor compressor = compressor(256);
+        final byte[] deflated = compressor.compress(repeat(ORDER, 20).getBytes(StandardCharsets.UTF_8));
+        final ActiveMQBytesMessage message = new ActiveMQBytesMessage();
+        message.writeBytes(Arrays.copyOf(deflated, deflated.length / 2));
+        message.setStringProperty(CONTENT_ENCODING_PROPERTY, DEFLATE);
+        message.reset();
+
+        try {
+            JmsMessagePayload.readPayload(message, compressor);
+            fail("JmsException expected");
+        } catch (JmsException expected) {
+            // truncated deflate stream
+        }
+    }
+
+    @Test
+    public void presetDictionaryShouldBeSetOnBothSides() throws Exception {
+        final JmsPayloadCompressor sender = compressor(16);
+        sender.setDictionarySamples(Arrays.asList(ORDER, ORDER.replace("42", "43"), ORDER.replace("NEW", "PAID")));
+        final JmsPayloadCompressor receiver = compressor(16);
+        receiver.setDictionary(sender.getDictionary());
+        final byte[] order = ORDER.replace("42", "44").getBytes(StandardCharsets.UTF_8);
+
+        final byte[] deflated = sender.compress(order);
+
+        assertTrue(deflated.length < compressor(16).compress(order).length);
+        assertEquals(new String(order, StandardCharsets.UTF_8), inflate(receiver, deflated));
+        try {
+            inflate(compressor(16), deflated);
+            fail("IOException expected");
+        } catch (IOException expected) {
+            // no dictionary on the receiving side
+        }
+    }
+
+    @Test
+    public void compressionWorksAfterClose() throws Exception {
+        final JmsPayloadCompressor compressor = compressor(16);
+        compressor.setMaxPooledDeflaters(1);
+        final byte[] orders = repeat(ORDER, 5).getBytes(StandardCharsets.UTF_8);
+
+        final byte[] pooled = compressor.compress(orders);
+        compressor.close();
+
+        assertArrayEquals(pooled, compressor.compress(orders));
+        assertEquals(new String(orders, StandardCharsets.UTF_8), inflate(compressor, compressor.compress(orders)));
+    }
+
+    private static JmsPayloadCompressor compressor(final int threshold) {
+        final JmsPayloadCompressor compressor = new JmsPayloadCompressor();
+        compressor.setThreshold(threshold);
+        return compressor;
+    }
+
+    private static JmsEncodedPayload encode(final String text, final JmsPayloadCompressor compressor) {
+        return JmsMessagePayload.encode((strategy, modelObject) -> (String) modelObject, Strategy.STRING, text, false, compressor);
+    }
+
+    private static String inflate(final JmsPayloadCompressor compressor, final byte[] deflated) throws IOException {
+        try (InputStream inputStream = compressor.decompress(deflated)) {
+            return new String(StreamUtils.copyToByteArray(inputStream), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String repeat(final String text, final int times) {
+        final StringBuilder sb = new StringBuilder(text.length() * times);
+        for (int i = 0; i < times; i++) {
+            sb.append(text.replace("42", String.valueOf(i)));
+        }
+        return sb.toString();
+    }
+
+    // creates messages without a broker
+    private static Session session() {
+        return (Session) Proxy.newProxyInstance(JmsPayloadCompressorTest.class.getClassLoader(), new Class<?>[]{Session.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "createBytesMessage":
+                            return new ActiveMQBytesMessage();
+                        case "createTextMessage":
+                            final ActiveMQTextMessage textMessage = new ActiveMQTextMessage();
+                            textMessage.setText((String) args[0]);
+                            return textMessage;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,109 @@
+package com.spaniard.jms.client.core.support.delta;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JmsDeltaCodecTest {
+
+    private static final String QUOTE = "{\"id\":\"EURUSD\",\"venue\":\"LMAX\",\"bid\":1.08215,\"ask\":1.08221,"
+            + "\"bidSize\":1000000,\"askSize\":2000000,\"timestamp\":1700000000000,\"source\":\"aggregator-1\"}";
+
+    @Test
+    public void changedFieldsCostFewBytes() {
+        final byte[] base = bytes(QUOTE);
+        final byte[] target = bytes(QUOTE.replace("1.08215", "1.08217").replace("1700000000000", "1700000000250"));
+
+        final byte[] delta = JmsDeltaCodec.diff(base, target);
+
+        assertArrayEquals(target, JmsDeltaCodec.patch(base, delta));
+        assertTrue(delta.length < target.length / 4);
+    }
+
+    @Test
+    public void identicalFormsRoundTrip() {
+        final byte[] base = bytes(QUOTE);
+
+        assertArrayEquals(base, JmsDeltaCodec.patch(base, JmsDeltaCodec.diff(base, base.clone())));
+    }
+
+    @Test
+    public void unrelatedAndEmptyFormsRoundTrip() {
+        final byte[] base = bytes(QUOTE);
+        final byte[] other = bytes("completely different payload without common blocks");
+        final byte[] empty = new byte[0];
+
+        assertArrayEquals(other, JmsDeltaCodec.patch(base, JmsDeltaCodec.diff(base, other)));
+        assertArrayEquals(empty, JmsDeltaCodec.patch(base, JmsDeltaCodec.diff(base, empty)));
+        assertArrayEquals(base, JmsDeltaCodec.patch(empty, JmsDeltaCodec.diff(empty, base)));
+    }
+
+    @Test
+    public void movedAndShortenedBlocksRoundTrip() {
+        final Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            final byte[] base = new byte[random.nextInt(2048)];
+            random.nextBytes(base);
+            final byte[] target = mutate(base, random);
+
+            assertArrayEquals(target, JmsDeltaCodec.patch(base, JmsDeltaCodec.diff(base, target)));
+        }
+    }
+
+    @Test
+    public void corruptedDeltaIsRejected() {
+        final byte[] base = bytes(QUOTE);
+        final byte[] delta = JmsDeltaCodec.diff(base, bytes(QUOTE.replace("LMAX", "EBS")));
+
+        assertRejected(base, Arrays.copyOf(delta, delta.length - 1));
+        // base of a different (shorter) object
+        assertRejected(Arrays.copyOf(base, 20), delta);
+    }
+
+    // cuts, duplicates and overwrites random ranges of the base
+    private static byte[] mutate(final byte[] base, final Random random) {
+        byte[] target = base.clone();
+        for (int i = random.nextInt(4); i >= 0 && target.length > 0; i--) {
+            final int from = random.nextInt(target.length);
+            final int to = from + random.nextInt(target.length - from);
+            switch (random.nextInt(3)) {
+                case 0:
+                    final byte[] cut = new byte[target.length - (to - from)];
+                    System.arraycopy(target, 0, cut, 0, from);
+                    System.arraycopy(target, to, cut, from, target.length - to);
+                    target = cut;
+                    break;
+                case 1:
+                    final byte[] duplicated = Arrays.copyOf(target, target.length + (to - from));
+                    System.arraycopy(target, from, duplicated, target.length, to - from);
+                    target = duplicated;
+                    break;
+                default:
+                    for (int j = from; j < to; j++) {
+                        target[j] = (byte) random.nextInt();
+                    }
+                    break;
+            }
+        }
+        return target;
+    }
+
+    private static void assertRejected(final byte[] base, final byte[] delta) {
+        try {
+            JmsDeltaCodec.patch(base, delta);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException expected) {
+            // delta does not fit the base
+        }
+    }
+
+    private static byte[] bytes(final String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,142 @@
+package com.spaniard.jms.client.core.support.delta;
+
+import com.spaniard.jms.client.exception.JmsException;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.junit.Test;
+
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import java.util.Map;
+
+import static com.spaniard.jms.client.core.support.delta.JmsDeltaEncoderTest.Quote;
+import static com.spaniard.jms.client.core.support.delta.JmsDeltaEncoderTest.encoder;
+import static com.spaniard.jms.client.core.support.delta.JmsDeltaEncoderTest.quote;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JmsDeltaDecoderTest {
+
+    private static final Destination QUEUE = new ActiveMQQueue("quotes");
+
+    @Test
+    public void snapshotAndDeltasAreRebuilt() throws Exception {
+        final JmsDeltaEncoder encoder = encoder();
+        final JmsDeltaDecoder decoder = new JmsDeltaDecoder();
+
+        for (int tick = 1; tick <= 5; tick++) {
+            final JmsDeltaEncoder.Encoded encoded = encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", tick));
+            assertArrayEquals(quote("EURUSD", tick), decoder.decode(message(encoded), encoded.getBody()));
+        }
+
+        assertEquals(1, decoder.getSnapshots());
+        assertEquals(4, decoder.getDeltas());
+        assertEquals(1, decoder.getKeys());
+    }
+
+    @Test
+    public void gapIsSkippedUntilNextSnapshot() throws Exception {
+        final JmsDeltaEncoder encoder = encoder();
+        encoder.setSnapshotInterval(4);
+        final JmsDeltaDecoder decoder = new JmsDeltaDecoder();
+
+        decode(decoder, encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 1)));
+        // delta of the second object is lost
+        encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 2));
+        assertNull(decode(decoder, encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 3))));
+        assertNull(decode(decoder, encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 4))));
+        assertEquals(2, decoder.getMissedDeltas());
+
+        // resync
+        final JmsDeltaEncoder.Encoded snapshot = encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 5));
+        assertTrue(snapshot.isSnapshot());
+        assertArrayEquals(quote("EURUSD", 5), decode(decoder, snapshot));
+        assertArrayEquals(quote("EURUSD", 6), decode(decoder, encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 6))));
+    }
+
+    @Test
+    public void invalidatedSendResyncsWithSnapshot() throws Exception {
+        final JmsDeltaEncoder encoder = encoder();
+        final JmsDeltaDecoder decoder = new JmsDeltaDecoder();
+
+        decode(decoder, encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 1)));
+        // rolled back, consumer never sees it
+        encoder.invalidate(encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 2)));
+
+        assertArrayEquals(quote("EURUSD", 3), decode(decoder, encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 3))));
+        assertArrayEquals(quote("EURUSD", 4), decode(decoder, encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 4))));
+        assertEquals(0, decoder.getMissedDeltas());
+    }
+
+    @Test
+    public void redeliveredDeltaGivesKeptForm() throws Exception {
+        final JmsDeltaEncoder encoder = encoder();
+        final JmsDeltaDecoder decoder = new JmsDeltaDecoder();
+
+        decode(decoder, encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 1)));
+        final JmsDeltaEncoder.Encoded delta = encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 2));
+        decode(decoder, delta);
+
+        assertArrayEquals(quote("EURUSD", 2), decode(decoder, delta));
+        assertEquals(1, decoder.getDeltas());
+        assertEquals(0, decoder.getMissedDeltas());
+    }
+
+    @Test
+    public void destinationsAreDecodedApart() throws Exception {
+        final JmsDeltaEncoder encoder = encoder();
+        final JmsDeltaDecoder decoder = new JmsDeltaDecoder();
+        final Destination other = new ActiveMQQueue("other");
+
+        decode(decoder, encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 1)));
+        encoder.encode(other, new Quote("EURUSD"), quote("EURUSD", 1));
+        final JmsDeltaEncoder.Encoded delta = encoder.encode(other, new Quote("EURUSD"), quote("EURUSD", 2));
+
+        final Message message = message(delta);
+        message.setJMSDestination(other);
+        assertNull(decoder.decode(message, delta.getBody()));
+    }
+
+    @Test
+    public void corruptedDeltaIsRejected() throws Exception {
+        final JmsDeltaEncoder encoder = encoder();
+        final JmsDeltaDecoder decoder = new JmsDeltaDecoder();
+
+        decode(decoder, encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 1)));
+        final JmsDeltaEncoder.Encoded delta = encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 2));
+        try {
+            decoder.decode(message(delta), new byte[]{(byte) 0xff});
+            fail("JmsException expected");
+        } catch (JmsException expected) {
+            // delta does not match its base
+        }
+    }
+
+    @Test
+    public void onlyDeltaModeMessagesAreRecognized() throws Exception {
+        final JmsDeltaEncoder.Encoded snapshot = encoder().encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 1));
+
+        assertTrue(JmsDeltaDecoder.isDelta(message(snapshot)));
+        assertFalse(JmsDeltaDecoder.isDelta(new ActiveMQTextMessage()));
+    }
+
+    private static byte[] decode(final JmsDeltaDecoder decoder, final JmsDeltaEncoder.Encoded encoded)
+            throws JMSException, JmsException {
+        return decoder.decode(message(encoded), encoded.getBody());
+    }
+
+    private static Message message(final JmsDeltaEncoder.Encoded encoded) throws JMSException {
+        final ActiveMQBytesMessage message = new ActiveMQBytesMessage();
+        message.setJMSDestination(QUEUE);
+        for (Map.Entry<String, String> property : encoded.getProperties().entrySet()) {
+            message.setStringProperty(property.getKey(), property.getValue());
+        }
+        return message;
+    }
+}
@@ -0,0 +1,150 @@
+package com.spaniard.jms.client.core.support.delta;
+
+import org.apache.activemq.command.ActiveMQQueue;
+import org.junit.Test;
+
+import javax.jms.Destination;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Function;
+
+import static com.spaniard.jms.client.core.support.delta.JmsDeltaEncoder.BASE_VERSION_PROPERTY;
+import static com.spaniard.jms.client.core.support.delta.JmsDeltaEncoder.VERSION_PROPERTY;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class JmsDeltaEncoderTest {
+
+    private static final Destination QUEUE = new ActiveMQQueue("quotes");
+
+    @Test
+    public void firstObjectIsSnapshotNextAreDeltas() {
+        final JmsDeltaEncoder encoder = encoder();
+
+        final JmsDeltaEncoder.Encoded snapshot = encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 1));
+        final JmsDeltaEncoder.Encoded delta = encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 2));
+
+        assertTrue(snapshot.isSnapshot());
+        assertArrayEquals(quote("EURUSD", 1), snapshot.getBody());
+        assertFalse(snapshot.getProperties().containsKey(BASE_VERSION_PROPERTY));
+        assertFalse(delta.isSnapshot());
+        assertEquals("2", delta.getProperties().get(VERSION_PROPERTY));
+        assertEquals("1", delta.getProperties().get(BASE_VERSION_PROPERTY));
+        assertArrayEquals(quote("EURUSD", 2), JmsDeltaCodec.patch(snapshot.getBody(), delta.getBody()));
+        assertEquals(1, encoder.getSnapshots());
+        assertEquals(1, encoder.getDeltas());
+        assertTrue(encoder.getSavedBytes() > 0);
+    }
+
+    @Test
+    public void keysAndDestinationsAreEncodedApart() {
+        final JmsDeltaEncoder encoder = encoder();
+
+        encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 1));
+        assertTrue(encoder.encode(QUEUE, new Quote("GBPUSD"), quote("GBPUSD", 1)).isSnapshot());
+        assertTrue(encoder.encode(new ActiveMQQueue("other"), new Quote("EURUSD"), quote("EURUSD", 1)).isSnapshot());
+        assertEquals(3, encoder.getKeys());
+    }
+
+    @Test
+    public void everySnapshotIntervalObjectIsSentInFull() {
+        final JmsDeltaEncoder encoder = encoder();
+        encoder.setSnapshotInterval(3);
+
+        assertTrue(encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 1)).isSnapshot());
+        assertFalse(encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 2)).isSnapshot());
+        assertFalse(encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 3)).isSnapshot());
+        assertTrue(encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 4)).isSnapshot());
+        assertFalse(encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 5)).isSnapshot());
+    }
+
+    @Test
+    public void bigDeltaIsSentAsSnapshot() {
+        final JmsDeltaEncoder encoder = encoder();
+
+        encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 1));
+        final JmsDeltaEncoder.Encoded rewritten = encoder.encode(QUEUE, new Quote("EURUSD"),
+                "something else entirely, nothing in common with the previous quote".getBytes(StandardCharsets.UTF_8));
+
+        assertTrue(rewritten.isSnapshot());
+        assertEquals("2", rewritten.getProperties().get(VERSION_PROPERTY));
+        // next delta is based on the rewritten object
+        assertEquals("2", encoder.encode(QUEUE, new Quote("EURUSD"),
+                "something else entirely, nothing in common with the previous quote!".getBytes(StandardCharsets.UTF_8))
+                .getProperties().get(BASE_VERSION_PROPERTY));
+    }
+
+    @Test
+    public void invalidatedKeyIsSentInFull() {
+        final JmsDeltaEncoder encoder = encoder();
+
+        encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 1));
+        final JmsDeltaEncoder.Encoded failed = encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 2));
+        // send has failed or its transaction is rolled back
+        encoder.invalidate(failed);
+
+        final JmsDeltaEncoder.Encoded next = encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 3));
+        assertTrue(next.isSnapshot());
+        assertArrayEquals(quote("EURUSD", 3), next.getBody());
+        assertEquals(1, encoder.getKeys());
+    }
+
+    @Test
+    public void nullKeyIsNotEncoded() {
+        final JmsDeltaEncoder encoder = encoder();
+
+        assertNull(encoder.encode(QUEUE, new Quote(null), quote("EURUSD", 1)));
+        assertTrue(encoder.supports(new Quote(null)));
+        assertFalse(encoder.supports("text"));
+    }
+
+    @Test
+    public void versionsOfEncodersDoNotMix() {
+        final String first = encoder().encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 1))
+                .getProperties().get(JmsDeltaEncoder.KEY_PROPERTY);
+        final String second = encoder().encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 1))
+                .getProperties().get(JmsDeltaEncoder.KEY_PROPERTY);
+
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    public void keyPropertyIsReadByGetter() {
+        final JmsDeltaEncoder encoder = new JmsDeltaEncoder();
+        encoder.setKeyProperties(Collections.singletonMap(Quote.class, "symbol"));
+
+        encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 1));
+        assertFalse(encoder.encode(QUEUE, new Quote("EURUSD"), quote("EURUSD", 2)).isSnapshot());
+    }
+
+    static JmsDeltaEncoder encoder() {
+        final JmsDeltaEncoder encoder = new JmsDeltaEncoder();
+        final Map<Class<?>, Function<?, ?>> keyExtractors =
+                Collections.singletonMap(Quote.class, (Function<Quote, String>) Quote::getSymbol);
+        encoder.setKeyExtractors(keyExtractors);
+        return encoder;
+    }
+
+    static byte[] quote(final String symbol, final int tick) {
+        return String.format("{\"symbol\":\"%s\",\"venue\":\"LMAX\",\"bid\":1.082%02d,\"ask\":1.082%02d,"
+                + "\"bidSize\":1000000,\"askSize\":2000000,\"source\":\"aggregator-1\"}", symbol, tick, tick + 5)
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static final class Quote {
+        private final String symbol;
+
+        Quote(String symbol) {
+            this.symbol = symbol;
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.spaniard.jms.client.core.support.outbox;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JmsOutboxJournalTest {
+
+    private static final int SEGMENT_SIZE = 256;
+    // length + crc32
+    private static final int HEADER = 8;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsRecordsInAppendOrder() throws IOException {
+        final JmsOutboxJournal journal = open();
+        append(journal, "one", "two", "three");
+
+        assertEquals(Arrays.asList("one", "two", "three"), records(journal.read(10)));
+        assertFalse(journal.hasPending());
+        assertTrue(journal.read(10).isEmpty());
+    }
+
+    @Test
+    public void recordsSpanSegments() throws IOException {
+        final JmsOutboxJournal journal = open();
+        final List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            expected.add(String.format("record-%02d-%s", i, "xxxxxxxxxxxxxxxxxxxxxxxxx"));
+        }
+        append(journal, expected.toArray(new String[0]));
+
+        assertTrue(journal.getSegments() > 1);
+        assertEquals(expected, records(journal.read(100)));
+    }
+
+    @Test
+    public void rewindReadsAgainFromCheckpoint() throws IOException {
+        final JmsOutboxJournal journal = open();
+        append(journal, "one", "two", "three");
+        final List<JmsOutboxJournal.Entry> first = journal.read(1);
+        journal.checkpoint(first.get(0));
+        journal.read(10);
+
+        journal.rewind();
+
+        assertEquals(Arrays.asList("two", "three"), records(journal.read(10)));
+    }
+
+    @Test
+    public void recoveryContinuesFromCheckpoint() throws IOException {
+        final JmsOutboxJournal journal = open();
+        append(journal, "one", "two", "three");
+        final List<JmsOutboxJournal.Entry> entries = journal.read(10);
+        // crash after the records are written and read, but before all of them are checkpointed
+        journal.checkpoint(entries.get(0));
+
+        final JmsOutboxJournal recovered = open();
+
+        assertEquals(Arrays.asList("two", "three"), records(recovered.read(10)));
+    }
+
+    @Test
+    public void recoveryWithTruncatedCheckpointReadsEverything() throws IOException {
+        final JmsOutboxJournal journal = open();
+        append(journal, "one", "two");
+        journal.checkpoint(journal.read(1).get(0));
+        final Path checkpoint = folder.getRoot().toPath().resolve("outbox.checkpoint");
+        try (FileChannel channel = FileChannel.open(checkpoint, StandardOpenOption.WRITE)) {
+            channel.truncate(10);
+        }
+
+        assertEquals(Arrays.asList("one", "two"), records(open().read(10)));
+    }
+
+    @Test
+    public void recoveryWithCorruptedCheckpointReadsEverything() throws IOException {
+        final JmsOutboxJournal journal = open();
+        append(journal, "one", "two");
+        journal.checkpoint(journal.read(1).get(0));
+        final Path checkpoint = folder.getRoot().toPath().resolve("outbox.checkpoint");
+        final byte[] bytes = Files.readAllBytes(checkpoint);
+        bytes[11] ^= 1;
+        Files.write(checkpoint, bytes);
+
+        assertEquals(Arrays.asList("one", "two"), records(open().read(10)));
+    }
+
+    @Test
+    public void recoveryWithoutCheckpointReadsEverything() throws IOException {
+        append(open(), "one", "two");
+
+        assertEquals(Arrays.asList("one", "two"), records(open().read(10)));
+    }
+
+    @Test
+    public void deliveredSegmentsAreDeletedOnCheckpoint() throws IOException {
+        final JmsOutboxJournal journal = open();
+        for (int i = 0; i < 20; i++) {
+            append(journal, "record-xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx-" + i);
+        }
+        final List<JmsOutboxJournal.Entry> entries = journal.read(100);
+
+        journal.checkpoint(entries.get(entries.size() - 1));
+
+        assertEquals(1, journal.getSegments());
+        assertEquals(1, segmentFiles().size());
+    }
+
+    @Test
+    public void tornTailIsOverwrittenAfterRecovery() throws IOException {
+        final JmsOutboxJournal journal = open();
+        append(journal, "one", "two");
+        // the second record is torn by a crash: its length is written, its data is not
+        corrupt(segmentFiles().get(0), HEADER + 3 + HEADER + 1);
+
+        final JmsOutboxJournal recovered = open();
+        append(recovered, "three");
+
+        assertEquals(Arrays.asList("one", "three"), records(recovered.read(10)));
+        assertEquals(0, recovered.getCorruptedRecords());
+    }
+
+    @Test
+    public void truncatedTailIsOverwrittenAfterRecovery() throws IOException {
+        final JmsOutboxJournal journal = open();
+        append(journal, "one", "two");
+        // the header of the second record points past the end of the segment
+        final ByteBuffer header = ByteBuffer.allocate(4).putInt(SEGMENT_SIZE);
+        header.flip();
+        try (FileChannel channel = FileChannel.open(segmentFiles().get(0), StandardOpenOption.WRITE)) {
+            channel.write(header, HEADER + 3);
+        }
+
+        final JmsOutboxJournal recovered = open();
+        append(recovered, "three");
+
+        assertEquals(Arrays.asList("one", "three"), records(recovered.read(10)));
+    }
+
+    @Test
+    public void corruptedRecordOfSealedSegmentIsCountedOnce() throws IOException {
+        final JmsOutboxJournal journal = open();
+        final List<String> written = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            written.add("record-xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx-" + i);
+        }
+        append(journal, written.toArray(new String[0]));
+        // the first record of the first (sealed) segment
+        corrupt(segmentFiles().get(0), HEADER + 1);
+
+        final JmsOutboxJournal recovered = open();
+        final List<String> read = records(recovered.read(100));
+        recovered.rewind();
+        recovered.read(100);
+
+        // the rest of the corrupted segment is skipped
+        assertFalse(read.contains(written.get(0)));
+        assertTrue(read.contains(written.get(written.size() - 1)));
+        assertEquals(1, recovered.getCorruptedRecords());
+    }
+
+    @Test
+    public void corruptedRecordOfWrittenSegmentTruncatesIt() throws IOException {
+        final JmsOutboxJournal journal = open();
+        append(journal, "one", "two", "three");
+        // data of the second record is damaged under the running journal
+        corrupt(segmentFiles().get(0), HEADER + 3 + HEADER + 1);
+
+        assertEquals(Arrays.asList("one"), records(journal.read(10)));
+        // the reader does not pass the writer
+        assertFalse(journal.hasPending());
+        assertTrue(journal.read(10).isEmpty());
+        assertEquals(1, journal.getCorruptedRecords());
+
+        append(journal, "four");
+        assertEquals(Arrays.asList("four"), records(journal.read(10)));
+        assertEquals(1, journal.getCorruptedRecords());
+    }
+
+    @Test
+    public void tooBigRecordIsRejected() throws IOException {
+        final JmsOutboxJournal journal = open();
+        try {
+            journal.append(new byte[SEGMENT_SIZE]);
+            fail("Record bigger than a segment should be rejected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("does not fit"));
+        }
+    }
+
+    @Test
+    public void fullOutboxRejectsRecords() throws IOException {
+        final JmsOutboxJournal journal = new JmsOutboxJournal(folder.getRoot().toPath(), SEGMENT_SIZE, 2, false);
+        try {
+            for (int i = 0; i < 100; i++) {
+                journal.append(new byte[100]);
+            }
+            fail("Outbox of 2 segments should be full");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("Outbox is full"));
+        }
+    }
+
+    private JmsOutboxJournal open() throws IOException {
+        return new JmsOutboxJournal(folder.getRoot().toPath(), SEGMENT_SIZE, 100, false);
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        final List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder.getRoot().toPath(), "*.seg")) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+        return files;
+    }
+
+    private static void corrupt(final Path segment, final int position) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final ByteBuffer value = ByteBuffer.allocate(1);
+            channel.read(value, position);
+            value.put(0, (byte) ~value.get(0));
+            value.rewind();
+            channel.write(value, position);
+        }
+    }
+
+    private static void append(final JmsOutboxJournal journal, final String... records) throws IOException {
+        for (String record : records) {
+            journal.append(record.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static List<String> records(final List<JmsOutboxJournal.Entry> entries) {
+        final List<String> records = new ArrayList<>();
+        for (JmsOutboxJournal.Entry entry : entries) {
+            records.add(new String(entry.getRecord(), StandardCharsets.UTF_8));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,196 @@
+package com.spaniard.jms.client.core.support.ratelimit;
+
+import org.apache.activemq.command.ActiveMQQueue;
+import org.junit.Test;
+
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.ResourceAllocationException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JmsRateLimiterTest {
+
+    private static final Destination QUEUE = new ActiveMQQueue("rate.limited");
+
+    @Test
+    public void burstIsTakenAtOnceAfterIdleTime() throws Exception {
+        final JmsRateLimiter limiter = new JmsRateLimiter();
+        limiter.setRate(1);
+        limiter.setBurst(3);
+        limiter.setPolicy(RateLimitPolicy.FAIL);
+
+        assertTrue(limiter.acquire(QUEUE, null));
+        assertTrue(limiter.acquire(QUEUE, null));
+        assertTrue(limiter.acquire(QUEUE, null));
+        assertRejected(limiter, null);
+        assertEquals(1, limiter.getRejectedSends());
+    }
+
+    @Test
+    public void destinationPermitIsReleasedWhenGlobalLimitFails() throws Exception {
+        final JmsRateLimiter limiter = new JmsRateLimiter();
+        // global permit is due every 50 ms, permit of the queue every second
+        limiter.setRate(20);
+        limiter.setDestinationRates(Collections.singletonMap(QUEUE, 1.0));
+        limiter.setBurst(2);
+        limiter.setPolicy(RateLimitPolicy.FAIL);
+        final Destination other = new ActiveMQQueue("other");
+
+        // takes all global permits
+        assertTrue(limiter.acquire(other, null));
+        assertTrue(limiter.acquire(other, null));
+        // permit of the queue is taken, then the global limit fails
+        assertRejected(limiter, null);
+        TimeUnit.MILLISECONDS.sleep(150);
+
+        // the whole burst of the queue is still available
+        assertTrue(limiter.acquire(QUEUE, null));
+        assertTrue(limiter.acquire(QUEUE, null));
+        assertEquals(1, limiter.getRejectedSends());
+    }
+
+    @Test
+    public void blockedSendWaitsForPermit() throws Exception {
+        final JmsRateLimiter limiter = new JmsRateLimiter();
+        limiter.setRate(10);
+
+        assertTrue(limiter.acquire(QUEUE, null));
+        final long start = System.nanoTime();
+        assertTrue(limiter.acquire(QUEUE, null));
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50);
+        assertEquals(1, limiter.getThrottledSends());
+    }
+
+    @Test
+    public void blockedSendIsRejectedIfWaitIsTooLong() throws Exception {
+        final JmsRateLimiter limiter = new JmsRateLimiter();
+        limiter.setRate(1);
+        limiter.setMaxWait(10);
+
+        assertTrue(limiter.acquire(QUEUE, null));
+        assertRejected(limiter, null);
+        // reserved permit is given back
+        assertRejected(limiter, null);
+        assertEquals(0, limiter.getThrottledSends());
+        assertEquals(2, limiter.getRejectedSends());
+    }
+
+    @Test
+    public void queuedSendIsDeferredToLimiterThread() throws Exception {
+        final JmsRateLimiter limiter = new JmsRateLimiter();
+        limiter.setRate(10);
+        limiter.setPolicy(RateLimitPolicy.QUEUE);
+        final CountDownLatch sent = new CountDownLatch(1);
+        final AtomicInteger thread = new AtomicInteger();
+
+        assertTrue(limiter.acquire(QUEUE, sent::countDown));
+        assertFalse(limiter.acquire(QUEUE, () -> {
+            thread.set(Thread.currentThread().getName().equals("jms-rate-limiter") ? 1 : -1);
+            sent.countDown();
+        }));
+        assertEquals(1, limiter.getQueuedSends());
+        assertEquals(1, limiter.getDeferredSends());
+
+        assertTrue(sent.await(5, TimeUnit.SECONDS));
+        assertEquals(1, thread.get());
+        limiter.close();
+        assertEquals(0, limiter.getQueuedSends());
+    }
+
+    @Test
+    public void queuedSendWaitsIfItCouldNotBeDeferred() throws Exception {
+        final JmsRateLimiter limiter = new JmsRateLimiter();
+        limiter.setRate(10);
+        limiter.setPolicy(RateLimitPolicy.QUEUE);
+
+        assertTrue(limiter.acquire(QUEUE, null));
+        assertTrue(limiter.acquire(QUEUE, null));
+
+        assertEquals(1, limiter.getThrottledSends());
+        assertEquals(0, limiter.getDeferredSends());
+    }
+
+    @Test
+    public void failedDeferredSendIsCounted() throws Exception {
+        final JmsRateLimiter limiter = new JmsRateLimiter();
+        limiter.setRate(10);
+        limiter.setPolicy(RateLimitPolicy.QUEUE);
+
+        assertTrue(limiter.acquire(QUEUE, null));
+        // caller is not told about the failure
+        assertFalse(limiter.acquire(QUEUE, () -> {
+            throw new JMSException("broker is down");
+        }));
+        limiter.close();
+
+        assertEquals(1, limiter.getFailedDeferredSends());
+    }
+
+    @Test
+    public void fullQueueRejectsSend() throws Exception {
+        final JmsRateLimiter limiter = new JmsRateLimiter();
+        limiter.setRate(10);
+        limiter.setMaxQueued(1);
+        limiter.setPolicy(RateLimitPolicy.QUEUE);
+
+        assertTrue(limiter.acquire(QUEUE, null));
+        assertFalse(limiter.acquire(QUEUE, () -> { }));
+        assertRejected(limiter, () -> { });
+        assertEquals(1, limiter.getQueuedSends());
+        limiter.close();
+    }
+
+    @Test
+    public void closeSendsQueuedMessages() throws Exception {
+        final JmsRateLimiter limiter = new JmsRateLimiter();
+        limiter.setRate(20);
+        limiter.setPolicy(RateLimitPolicy.QUEUE);
+        final AtomicInteger sent = new AtomicInteger();
+
+        assertTrue(limiter.acquire(QUEUE, null));
+        for (int i = 0; i < 3; i++) {
+            assertFalse(limiter.acquire(QUEUE, sent::incrementAndGet));
+        }
+        limiter.close();
+
+        assertEquals(3, sent.get());
+        assertEquals(0, limiter.getQueuedSends());
+        // closed limiter could not defer messages any more
+        assertRejected(limiter, sent::incrementAndGet);
+        assertEquals(3, sent.get());
+    }
+
+    @Test
+    public void closeGivesUpAfterTimeout() throws Exception {
+        final JmsRateLimiter limiter = new JmsRateLimiter();
+        limiter.setRate(1);
+        limiter.setCloseTimeout(50);
+        limiter.setPolicy(RateLimitPolicy.QUEUE);
+        final AtomicInteger sent = new AtomicInteger();
+
+        assertTrue(limiter.acquire(QUEUE, null));
+        assertFalse(limiter.acquire(QUEUE, sent::incrementAndGet));
+        limiter.close();
+
+        assertEquals(0, sent.get());
+    }
+
+    private static void assertRejected(final JmsRateLimiter limiter, final JmsRateLimiter.DeferredSend deferredSend)
+            throws JMSException {
+        try {
+            limiter.acquire(QUEUE, deferredSend);
+            fail("ResourceAllocationException expected");
+        } catch (ResourceAllocationException expected) {
+            // limit is exceeded
+        }
+    }
+}